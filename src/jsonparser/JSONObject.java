@@ -2,6 +2,7 @@ package jsonparser;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * The JSONObject class is used to recreate the key-value pairs in a JSON. It converts a set of
@@ -44,6 +45,16 @@ public class JSONObject {
   }
 
 
+  /**
+   * Returns the keys of the key, value pairs, in the order they are converted to a JSON.
+   *
+   * @return the keys.
+   */
+  public Set<String> keySet() {
+    return this.JSONHashMap.keySet();
+  }
+
+
   /**
    * Converts the key, value pairs in our hash map to a JSON equivalent string, by appending '{' in
    * the beginning and the end, etc.
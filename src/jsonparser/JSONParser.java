@@ -2,102 +2,161 @@ package jsonparser;
 
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.Reader;
+import java.io.StringReader;
 
 /**
  * The JSONParser class is used to read a JSON file and convert it into its equivalent JSONObject
- * and JSONArray. The parser opens and reads a JSON and puts the key, value pairs in its equivalent
- * JSONObjects and JSONArrays.
+ * and JSONArray. The parser reads the JSON in a single pass with a JSONReader and puts the key,
+ * value pairs in its equivalent JSONObjects and JSONArrays. Every other value, such as a number, is
+ * kept as its String.
  */
 public class JSONParser {
 
-  private final Map<String, Object> JSONParseHashMap;
+  private JSONArray lastArray;
 
   /**
-   * A constructor of the JSONParser class. It initializes an empty map that is used to store the
-   * key, value pairs. The key is of type String, whereas the value is of generic type Object as the
-   * value can either be a JSONObject or a JSONArray.
+   * A constructor of the JSONParser class.
    */
   public JSONParser() {
-    this.JSONParseHashMap = new HashMap<>();
+    this.lastArray = new JSONArray();
   }
 
 
   /**
-   * Opens and reads a JSON file and starts processing it for getting the key, value pairs from the
-   * JSON file. It returns a JSONArray that consists of all the JSONObjects in that file.
+   * Reads a JSON file and returns the JSONArray of the 'stocks' key of the object in that file,
+   * which consists of all the JSONObjects of a portfolio.
    *
    * @param file the JSON file.
-   * @return a JSONArray with all the JSONObjects in that JSON file.
-   * @throws IOException if the file is not a valid JSON, or is not in the specified format.
+   * @return a JSONArray with all the JSONObjects in that JSON file, or an empty JSONArray if the
+   *         file is not a valid JSON.
+   * @throws IOException if it fails to read the file.
    */
-  public JSONArray parse(FileReader file) throws IOException {
-    StringBuilder fileContent = new StringBuilder();
-    JSONArray jsonArray = new JSONArray();
-    int i;
-    while ((i = file.read()) != -1) {
-      fileContent.append((char) i);
-    }
+  public JSONArray parse(Reader file) throws IOException {
     try {
-      getHashMap(String.valueOf(fileContent));
-      jsonArray = getJsonArray();
+      return readStocks(file);
     } catch (IllegalArgumentException ex) {
       System.out.println("File is not a valid JSON.");
+      return new JSONArray();
     }
-    return jsonArray;
   }
 
 
   /**
-   * Puts the data or the file content in a hash map to set the key, value pairs. This method acts
-   * as a helper method to the parse function.
+   * Reads a JSON file and returns the JSONArray of the 'stocks' key of the object in that file.
+   *
+   * @param file the JSON file.
+   * @return a JSONArray with all the JSONObjects in that JSON file, or an empty JSONArray if the
+   *         file is not a valid JSON.
+   * @throws IOException if it fails to read the file.
+   * @deprecated use parse(Reader), which reads any Reader.
+   */
+  @Deprecated
+  public JSONArray parse(FileReader file) throws IOException {
+    return parse((Reader) file);
+  }
+
+
+  /**
+   * Reads a whole JSON document from a string and keeps the JSONArray of its 'stocks' key, to be
+   * returned by getJsonArray.
    *
    * @param jsonString the file contents as a string.
-   * @throws IllegalArgumentException if the file is not a valid JSON, or is not in the specified
-   *                                  format.
+   * @throws IllegalArgumentException if the string is not a valid JSON.
+   * @deprecated use parse(Reader) with a StringReader, which returns the JSONArray directly.
    */
+  @Deprecated
   public void getHashMap(String jsonString) throws IllegalArgumentException {
-    if (jsonString.charAt(0) == '{' && jsonString.charAt(jsonString.length() - 1) == '}') {
-      jsonString = jsonString.substring(1, jsonString.length() - 1);
-      jsonString = jsonString.replace("\"", "");
-      String[] keyValues = jsonString.split(":", 2);
-      if (keyValues.length == 2) {
-        this.JSONParseHashMap.put(keyValues[0], keyValues[1]);
-      } else {
-        throw new IllegalArgumentException("File is not a valid JSON.");
-      }
-    } else {
-      throw new IllegalArgumentException("File is not a valid JSON.");
+    try {
+      this.lastArray = readStocks(new StringReader(jsonString));
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
     }
   }
 
 
   /**
-   * Puts the JSONObjects from the file in a JSONArray. This method acts as a helper method to the
-   * parse function.
+   * Returns the JSONArray of the 'stocks' key of the document last read by getHashMap.
    *
-   * @return a JSONArray with all the JSONObjects (key, value) pairs from the file.
+   * @return a JSONArray with all the JSONObjects of that document.
+   * @deprecated use parse(Reader), which returns the JSONArray directly.
    */
+  @Deprecated
   public JSONArray getJsonArray() {
-    String stocks = (String) this.JSONParseHashMap.get("stocks");
-    stocks = stocks.substring(1, stocks.length() - 1);
-    String[] stocksArray = stocks.split("},");
-    JSONArray jsonArray = new JSONArray();
-    for (int i = 0; i < stocksArray.length; i++) {
-      JSONObject temp = new JSONObject();
-      String individualStock = stocksArray[i];
-      individualStock = individualStock.substring(1);
-      if (i == stocksArray.length - 1) {
-        individualStock = individualStock.substring(0, individualStock.length() - 1);
+    return this.lastArray;
+  }
+
+
+  /**
+   * Converts a single JSON object, such as a line of a portfolio journal, to its equivalent
+   * JSONObject. The values are read the same way as the values of the objects in a JSON file.
+   *
+   * @param jsonString the JSON object as a string.
+   * @return a JSONObject with the key, value pairs of the string.
+   * @throws IllegalArgumentException if the string is not a valid JSON object.
+   */
+  public JSONObject parseObject(String jsonString) throws IllegalArgumentException {
+    try {
+      JSONReader reader = new JSONReader(new StringReader(jsonString));
+      if (reader.next() != JSONReader.Event.START_OBJECT) {
+        throw new IllegalArgumentException("Not a valid JSON object.");
       }
-      String[] tickerDate = individualStock.split(",");
-      for (String s : tickerDate) {
-        String[] keyValuePairs = s.split(":", 2);
-        temp.put(keyValuePairs[0], keyValuePairs[1]);
+      JSONObject jsonObject = readObject(reader);
+      reader.hasNext();
+      return jsonObject;
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+
+  private JSONArray readStocks(Reader file) throws IOException, IllegalArgumentException {
+    JSONArray jsonArray = new JSONArray();
+    JSONReader reader = new JSONReader(file);
+    if (reader.next() != JSONReader.Event.START_OBJECT) {
+      throw new IllegalArgumentException("File is not a valid JSON.");
+    }
+    JSONReader.Event event;
+    while ((event = reader.next()) != JSONReader.Event.END_OBJECT) {
+      String key = reader.getString();
+      event = reader.next();
+      if (key.equals("stocks") && event == JSONReader.Event.START_ARRAY) {
+        jsonArray = readArray(reader);
+      } else {
+        reader.skipValue(event);
       }
-      jsonArray.add(temp);
     }
+    reader.hasNext();
     return jsonArray;
   }
-}
\ No newline at end of file
+
+
+  private JSONObject readObject(JSONReader reader) throws IOException {
+    JSONObject jsonObject = new JSONObject();
+    while (reader.next() != JSONReader.Event.END_OBJECT) {
+      String key = reader.getString();
+      jsonObject.put(key, readValue(reader, reader.next()));
+    }
+    return jsonObject;
+  }
+
+
+  private JSONArray readArray(JSONReader reader) throws IOException {
+    JSONArray jsonArray = new JSONArray();
+    JSONReader.Event event;
+    while ((event = reader.next()) != JSONReader.Event.END_ARRAY) {
+      jsonArray.add(readValue(reader, event));
+    }
+    return jsonArray;
+  }
+
+
+  private Object readValue(JSONReader reader, JSONReader.Event event) throws IOException {
+    if (event == JSONReader.Event.START_OBJECT) {
+      return readObject(reader);
+    } else if (event == JSONReader.Event.START_ARRAY) {
+      return readArray(reader);
+    }
+    return reader.getString();
+  }
+}
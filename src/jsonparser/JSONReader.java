@@ -0,0 +1,401 @@
+package jsonparser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * The JSONReader class reads a JSON document from a Reader one token at a time, in a single pass.
+ * Every call to next returns the next event of the document: the start or the end of an object or
+ * an array, the name of a key, or a value. The text of a key or a value is then returned by
+ * getString, so that reading a document needs no more memory than its largest token.
+ *
+ * <p>The reader follows the full JSON grammar: strings may contain escaped characters, including
+ * commas, colons and quotes, numbers may have a fraction and an exponent, and the document is
+ * checked to be well formed as it is read.
+ */
+public class JSONReader {
+
+  /**
+   * The events of a JSON document.
+   */
+  public enum Event {
+    START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, KEY_NAME, VALUE_STRING, VALUE_NUMBER,
+    VALUE_TRUE, VALUE_FALSE, VALUE_NULL
+  }
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Reader reader;
+  private final char[] buffer;
+  private int position;
+  private int limit;
+  private long offset;
+
+  private final StringBuilder token;
+  private byte[] stack;
+  private int depth;
+  private boolean expectValue;
+  private boolean expectKey;
+  private boolean afterComma;
+  private boolean done;
+
+  private static final byte IN_OBJECT = 1;
+  private static final byte IN_ARRAY = 2;
+
+
+  /**
+   * A constructor of the JSONReader class. The reader reads the input in blocks, so it does not
+   * need to be buffered.
+   *
+   * @param reader the input to read the JSON document from.
+   */
+  public JSONReader(Reader reader) {
+    this.reader = reader;
+    this.buffer = new char[BUFFER_SIZE];
+    this.token = new StringBuilder();
+    this.stack = new byte[16];
+    this.expectValue = true;
+  }
+
+
+  /**
+   * Tells whether the document has more events.
+   *
+   * @return true if next returns another event, false if the whole document was read.
+   * @throws IOException if it fails to read the input.
+   */
+  public boolean hasNext() throws IOException {
+    if (this.done) {
+      skipWhitespace();
+      if (peek() != -1) {
+        throw invalid("Unexpected content after the end of the document");
+      }
+      return false;
+    }
+    return true;
+  }
+
+
+  /**
+   * Reads the next event of the document.
+   *
+   * @return the event.
+   * @throws IOException              if it fails to read the input.
+   * @throws IllegalArgumentException if the document is not a valid JSON.
+   */
+  public Event next() throws IOException, IllegalArgumentException {
+    if (this.done) {
+      throw invalid("Unexpected content after the end of the document");
+    }
+    skipWhitespace();
+    int c = read();
+    if (c == -1) {
+      throw invalid("Unexpected end of the document");
+    }
+
+    if (this.expectKey) {
+      if (c == '}' && !this.afterComma) {
+        return endContainer(IN_OBJECT, Event.END_OBJECT);
+      }
+      if (c != '"') {
+        throw invalid("Expected a key");
+      }
+      readString();
+      skipWhitespace();
+      if (read() != ':') {
+        throw invalid("Expected ':'");
+      }
+      this.expectKey = false;
+      this.expectValue = true;
+      return Event.KEY_NAME;
+    }
+
+    if (!this.expectValue) {
+      byte container = this.stack[this.depth - 1];
+      if (c == ',') {
+        this.afterComma = true;
+        if (container == IN_OBJECT) {
+          this.expectKey = true;
+        } else {
+          this.expectValue = true;
+        }
+        return next();
+      }
+      if (c == '}' && container == IN_OBJECT) {
+        return endContainer(IN_OBJECT, Event.END_OBJECT);
+      }
+      if (c == ']' && container == IN_ARRAY) {
+        return endContainer(IN_ARRAY, Event.END_ARRAY);
+      }
+      throw invalid("Expected ',' or the end of the " + (container == IN_OBJECT ? "object"
+              : "array"));
+    }
+
+    if (c == ']' && this.depth > 0 && this.stack[this.depth - 1] == IN_ARRAY
+            && !this.afterComma) {
+      return endContainer(IN_ARRAY, Event.END_ARRAY);
+    }
+    this.afterComma = false;
+    switch (c) {
+      case '{':
+        push(IN_OBJECT);
+        this.expectValue = false;
+        this.expectKey = true;
+        return Event.START_OBJECT;
+      case '[':
+        push(IN_ARRAY);
+        return Event.START_ARRAY;
+      case '"':
+        readString();
+        return endValue(Event.VALUE_STRING);
+      case 't':
+        readLiteral("true");
+        return endValue(Event.VALUE_TRUE);
+      case 'f':
+        readLiteral("false");
+        return endValue(Event.VALUE_FALSE);
+      case 'n':
+        readLiteral("null");
+        return endValue(Event.VALUE_NULL);
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          readNumber(c);
+          return endValue(Event.VALUE_NUMBER);
+        }
+        throw invalid("Unexpected character '" + (char) c + "'");
+    }
+  }
+
+
+  /**
+   * Returns the text of the last key name or value read. A string is returned without its quotes
+   * and with its escaped characters replaced, and a number as it is written in the document.
+   *
+   * @return the text of the last token.
+   */
+  public String getString() {
+    return this.token.toString();
+  }
+
+
+  /**
+   * Skips the value that starts with an event that was just read, along with everything in it if
+   * it is an object or an array.
+   *
+   * @param event the event that was just read.
+   * @throws IOException              if it fails to read the input.
+   * @throws IllegalArgumentException if the document is not a valid JSON.
+   */
+  public void skipValue(Event event) throws IOException, IllegalArgumentException {
+    if (event != Event.START_OBJECT && event != Event.START_ARRAY) {
+      return;
+    }
+    int target = this.depth - 1;
+    while (this.depth > target) {
+      next();
+    }
+  }
+
+
+  private Event endValue(Event event) {
+    this.expectValue = false;
+    if (this.depth == 0) {
+      this.done = true;
+    }
+    return event;
+  }
+
+
+  private Event endContainer(byte container, Event event) {
+    if (this.depth == 0 || this.stack[this.depth - 1] != container) {
+      throw invalid("Unexpected end of " + (container == IN_OBJECT ? "object" : "array"));
+    }
+    this.depth--;
+    this.expectKey = false;
+    this.afterComma = false;
+    return endValue(event);
+  }
+
+
+  private void push(byte container) {
+    if (this.depth == this.stack.length) {
+      this.stack = Arrays.copyOf(this.stack, this.depth * 2);
+    }
+    this.stack[this.depth++] = container;
+  }
+
+
+  private void readString() throws IOException {
+    this.token.setLength(0);
+    while (true) {
+      int start = this.position;
+      while (this.position < this.limit) {
+        char c = this.buffer[this.position];
+        if (c == '"' || c == '\\' || c < 0x20) {
+          break;
+        }
+        this.position++;
+      }
+      this.token.append(this.buffer, start, this.position - start);
+      if (this.position >= this.limit) {
+        if (!fill()) {
+          throw invalid("Unterminated string");
+        }
+        continue;
+      }
+      char c = this.buffer[this.position++];
+      if (c == '"') {
+        return;
+      } else if (c == '\\') {
+        readEscape();
+      } else {
+        throw invalid("Unescaped control character in a string");
+      }
+    }
+  }
+
+
+  private void readEscape() throws IOException {
+    int c = read();
+    switch (c) {
+      case '"':
+      case '\\':
+      case '/':
+        this.token.append((char) c);
+        break;
+      case 'b':
+        this.token.append('\b');
+        break;
+      case 'f':
+        this.token.append('\f');
+        break;
+      case 'n':
+        this.token.append('\n');
+        break;
+      case 'r':
+        this.token.append('\r');
+        break;
+      case 't':
+        this.token.append('\t');
+        break;
+      case 'u':
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = Character.digit(read(), 16);
+          if (digit < 0) {
+            throw invalid("Invalid unicode escape");
+          }
+          code = code * 16 + digit;
+        }
+        this.token.append((char) code);
+        break;
+      default:
+        throw invalid("Invalid escape character");
+    }
+  }
+
+
+  private void readNumber(int first) throws IOException {
+    this.token.setLength(0);
+    this.token.append((char) first);
+    int c = first;
+    if (c == '-') {
+      c = appendRead();
+      if (c < '0' || c > '9') {
+        throw invalid("Invalid number");
+      }
+    }
+    if (c != '0') {
+      readDigits();
+    }
+    if (peek() == '.') {
+      appendRead();
+      if (readDigits() == 0) {
+        throw invalid("Invalid number");
+      }
+    }
+    if (peek() == 'e' || peek() == 'E') {
+      appendRead();
+      if (peek() == '+' || peek() == '-') {
+        appendRead();
+      }
+      if (readDigits() == 0) {
+        throw invalid("Invalid number");
+      }
+    }
+  }
+
+
+  private int readDigits() throws IOException {
+    int count = 0;
+    while (peek() >= '0' && peek() <= '9') {
+      appendRead();
+      count++;
+    }
+    return count;
+  }
+
+
+  private int appendRead() throws IOException {
+    int c = read();
+    if (c != -1) {
+      this.token.append((char) c);
+    }
+    return c;
+  }
+
+
+  private void readLiteral(String literal) throws IOException {
+    for (int i = 1; i < literal.length(); i++) {
+      if (read() != literal.charAt(i)) {
+        throw invalid("Invalid literal");
+      }
+    }
+    this.token.setLength(0);
+    this.token.append(literal);
+  }
+
+
+  private void skipWhitespace() throws IOException {
+    int c;
+    while ((c = peek()) == ' ' || c == '\n' || c == '\r' || c == '\t') {
+      this.position++;
+    }
+  }
+
+
+  private int peek() throws IOException {
+    if (this.position >= this.limit && !fill()) {
+      return -1;
+    }
+    return this.buffer[this.position];
+  }
+
+
+  private int read() throws IOException {
+    if (this.position >= this.limit && !fill()) {
+      return -1;
+    }
+    return this.buffer[this.position++];
+  }
+
+
+  private boolean fill() throws IOException {
+    this.offset += this.limit;
+    this.position = 0;
+    this.limit = 0;
+    int count = this.reader.read(this.buffer, 0, this.buffer.length);
+    if (count <= 0) {
+      return false;
+    }
+    this.limit = count;
+    return true;
+  }
+
+
+  private IllegalArgumentException invalid(String message) {
+    return new IllegalArgumentException(message + " at character " + (this.offset + this.position)
+            + ".");
+  }
+}
@@ -0,0 +1,256 @@
+package jsonparser;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * The JSONWriter class writes a JSON document to a Writer as it is built, one token at a time, so
+ * that saving a JSONArray does not first build its whole JSON string in memory. Objects and arrays
+ * are started and ended explicitly, and the commas between their members are added by the writer.
+ * A JSONObject or a JSONArray can also be written as a value, one member at a time.
+ *
+ * <p>Strings are written in quotes with their quotes, backslashes and control characters escaped.
+ * Numbers and booleans are written as they are, except for the numbers that JSON has no notation
+ * for, such as NaN, which are written as strings.
+ */
+public class JSONWriter implements Closeable, Flushable {
+
+  private static final byte IN_OBJECT = 1;
+  private static final byte IN_ARRAY = 2;
+
+  private final Writer writer;
+  private byte[] stack;
+  private boolean[] empty;
+  private int depth;
+  private boolean afterName;
+
+
+  /**
+   * A constructor of the JSONWriter class. The tokens are written to the writer as they are
+   * added, so the writer should be buffered.
+   *
+   * @param writer the output to write the JSON document to.
+   */
+  public JSONWriter(Writer writer) {
+    this.writer = writer;
+    this.stack = new byte[16];
+    this.empty = new boolean[16];
+  }
+
+
+  /**
+   * Starts an object.
+   *
+   * @return this writer.
+   * @throws IOException if it fails to write.
+   */
+  public JSONWriter beginObject() throws IOException {
+    beforeValue();
+    this.writer.write('{');
+    push(IN_OBJECT);
+    return this;
+  }
+
+
+  /**
+   * Ends the current object.
+   *
+   * @return this writer.
+   * @throws IOException if it fails to write.
+   */
+  public JSONWriter endObject() throws IOException {
+    pop(IN_OBJECT);
+    this.writer.write('}');
+    return this;
+  }
+
+
+  /**
+   * Starts an array.
+   *
+   * @return this writer.
+   * @throws IOException if it fails to write.
+   */
+  public JSONWriter beginArray() throws IOException {
+    beforeValue();
+    this.writer.write('[');
+    push(IN_ARRAY);
+    return this;
+  }
+
+
+  /**
+   * Ends the current array.
+   *
+   * @return this writer.
+   * @throws IOException if it fails to write.
+   */
+  public JSONWriter endArray() throws IOException {
+    pop(IN_ARRAY);
+    this.writer.write(']');
+    return this;
+  }
+
+
+  /**
+   * Writes the key of the next member of the current object.
+   *
+   * @param key the key.
+   * @return this writer.
+   * @throws IOException if it fails to write.
+   */
+  public JSONWriter name(String key) throws IOException {
+    if (this.depth == 0 || this.stack[this.depth - 1] != IN_OBJECT || this.afterName) {
+      throw new IllegalStateException("A key can only be written in an object.");
+    }
+    separate();
+    writeString(key);
+    this.writer.write(':');
+    this.afterName = true;
+    return this;
+  }
+
+
+  /**
+   * Writes a value: a JSONObject or a JSONArray with all of its members, a number, a boolean, null
+   * or, for any other object, its String.
+   *
+   * @param value the value.
+   * @return this writer.
+   * @throws IOException if it fails to write.
+   */
+  public JSONWriter value(Object value) throws IOException {
+    if (value instanceof JSONObject) {
+      JSONObject jsonObject = (JSONObject) value;
+      beginObject();
+      for (String key : jsonObject.keySet()) {
+        name(key).value(jsonObject.get(key));
+      }
+      return endObject();
+    } else if (value instanceof JSONArray) {
+      JSONArray jsonArray = (JSONArray) value;
+      beginArray();
+      for (int i = 0; i < jsonArray.size(); i++) {
+        value(jsonArray.get(i));
+      }
+      return endArray();
+    }
+
+    beforeValue();
+    if (value == null || value instanceof Boolean) {
+      this.writer.write(String.valueOf(value));
+    } else if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      if (Double.isNaN(number) || Double.isInfinite(number)) {
+        writeString(String.valueOf(value));
+      } else {
+        this.writer.write(String.valueOf(value));
+      }
+    } else if (value instanceof Number) {
+      this.writer.write(String.valueOf(value));
+    } else {
+      writeString(String.valueOf(value));
+    }
+    return this;
+  }
+
+
+  /**
+   * Writes what was buffered by the underlying writer.
+   *
+   * @throws IOException if it fails to write.
+   */
+  @Override
+  public void flush() throws IOException {
+    this.writer.flush();
+  }
+
+
+  /**
+   * Closes the underlying writer. Every object and array must be ended before.
+   *
+   * @throws IOException if it fails to write.
+   */
+  @Override
+  public void close() throws IOException {
+    this.writer.close();
+    if (this.depth != 0) {
+      throw new IllegalStateException("The JSON document is not complete.");
+    }
+  }
+
+
+  private void beforeValue() throws IOException {
+    if (this.depth > 0) {
+      if (this.stack[this.depth - 1] == IN_OBJECT) {
+        if (!this.afterName) {
+          throw new IllegalStateException("A value in an object needs a key.");
+        }
+        this.afterName = false;
+      } else {
+        separate();
+      }
+    }
+  }
+
+
+  private void separate() throws IOException {
+    if (this.empty[this.depth - 1]) {
+      this.empty[this.depth - 1] = false;
+    } else {
+      this.writer.write(',');
+    }
+  }
+
+
+  private void push(byte container) {
+    if (this.depth == this.stack.length) {
+      this.stack = Arrays.copyOf(this.stack, this.depth * 2);
+      this.empty = Arrays.copyOf(this.empty, this.depth * 2);
+    }
+    this.stack[this.depth] = container;
+    this.empty[this.depth] = true;
+    this.depth++;
+  }
+
+
+  private void pop(byte container) {
+    if (this.depth == 0 || this.stack[this.depth - 1] != container || this.afterName) {
+      throw new IllegalStateException("Nothing to end.");
+    }
+    this.depth--;
+  }
+
+
+  private void writeString(String value) throws IOException {
+    this.writer.write('"');
+    int start = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      String escape;
+      if (c == '"') {
+        escape = "\\\"";
+      } else if (c == '\\') {
+        escape = "\\\\";
+      } else if (c == '\n') {
+        escape = "\\n";
+      } else if (c == '\r') {
+        escape = "\\r";
+      } else if (c == '\t') {
+        escape = "\\t";
+      } else if (c < 0x20) {
+        escape = String.format("\\u%04x", (int) c);
+      } else {
+        continue;
+      }
+      this.writer.write(value, start, i - start);
+      this.writer.write(escape);
+      start = i + 1;
+    }
+    this.writer.write(value, start, value.length() - start);
+    this.writer.write('"');
+  }
+}
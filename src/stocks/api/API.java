@@ -17,4 +17,22 @@ public interface API {
    * @throws IOException  if it fails to call the URL.
    */
   String[] getTickerData(String stockSymbol) throws IOException;
+
+  /**
+   * Returns the complete ticker data for a particular symbol as a series of closing prices, parsed
+   * while the data is read instead of being held in memory as text.
+   * @param stockSymbol   the stock name, for which we want to fetch the data.
+   * @return              the closing prices of the symbol, newest first.
+   * @throws IOException  if it fails to call the URL.
+   */
+  TickerSeries getTickerSeries(String stockSymbol) throws IOException;
+
+  /**
+   * Returns the ticker data of the most recent trading days for a particular symbol as a series of
+   * closing prices.
+   * @param stockSymbol   the stock name, for which we want to fetch the data.
+   * @return              the recent closing prices of the symbol, newest first.
+   * @throws IOException  if it fails to call the URL.
+   */
+  TickerSeries getRecentTickerSeries(String stockSymbol) throws IOException;
 }
@@ -3,6 +3,7 @@ package stocks.api;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 
 
 /**
@@ -29,30 +30,60 @@ public class APIImpl implements API {
    */
   @Override
   public String[] getTickerData(String stockSymbol) throws IOException {
+    try (InputStream in = openStream(stockSymbol, "full")) {
+      String output = new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+      String[] ticker_data = output.split("\n");
+      return ticker_data;
+    }
+  }
+
+
+  /**
+   * Returns the complete ticker data for a particular symbol as a series of closing prices.
+   * @param stockSymbol   the stock name, for which we want to fetch the data.
+   * @return              the closing prices of the symbol, newest first.
+   * @throws IOException  if it fails to call the URL.
+   */
+  @Override
+  public TickerSeries getTickerSeries(String stockSymbol) throws IOException {
+    return getTickerSeries(stockSymbol, "full");
+  }
+
+
+  /**
+   * Returns the ticker data of the latest 100 trading days for a particular symbol as a series of
+   * closing prices.
+   * @param stockSymbol   the stock name, for which we want to fetch the data.
+   * @return              the recent closing prices of the symbol, newest first.
+   * @throws IOException  if it fails to call the URL.
+   */
+  @Override
+  public TickerSeries getRecentTickerSeries(String stockSymbol) throws IOException {
+    return getTickerSeries(stockSymbol, "compact");
+  }
+
+
+  private TickerSeries getTickerSeries(String stockSymbol, String outputSize) throws IOException {
+    try (InputStream in = openStream(stockSymbol, outputSize)) {
+      return TickerSeries.read(in);
+    }
+  }
+
+
+  private InputStream openStream(String stockSymbol, String outputSize) throws IOException {
     URL url;
-    InputStream in;
 
     try {
       url = new URL("https://www.alphavantage"
               + ".co/query?function=TIME_SERIES_DAILY"
-              + "&outputsize=full"
+              + "&outputsize=" + outputSize
               + "&symbol=" + stockSymbol
               + "&datatype=json"
               + "&apikey=" + this.apiKey
               + "&datatype=csv");
-      in = url.openStream();
+      return url.openStream();
     } catch (IOException e) {
       throw new IOException("Incorrect call to the AlphaVantage API.");
     }
-
-    StringBuilder output = new StringBuilder();
-    int b;
-
-    while ((b = in.read()) != -1) {
-      output.append((char) b);
-    }
-
-    String[] ticker_data = output.toString().split("\n");
-    return ticker_data;
   }
 }
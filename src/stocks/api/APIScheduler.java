@@ -0,0 +1,405 @@
+package stocks.api;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Schedules the calls to an API within its call quota. The Alpha Vantage API allows only a few
+ * calls per minute for a key, so calls are admitted through a token bucket that refills at the
+ * allowed rate. Waiting calls are kept in two lanes: interactive calls, made for an action of the
+ * user, are always admitted before background calls, such as refreshing the prices of a portfolio
+ * that was just opened. A background call that an interactive caller comes to depend on can be
+ * promoted to the interactive lane, so that the caller does not wait behind the background work.
+ *
+ * <p>If the API answers a call with a call frequency note instead of ticker data, the quota was
+ * used up elsewhere. The bucket is emptied, all calls are held back for a backoff period that
+ * doubles with every throttled attempt, and the throttled call is put back at the front of its
+ * lane.
+ *
+ * <p>The rate of the default scheduler is read from the 'stocks.api.callsPerMinute' system
+ * property, and defaults to 5 calls per minute.
+ */
+public class APIScheduler implements API {
+  public static final String CALLS_PER_MINUTE_PROPERTY = "stocks.api.callsPerMinute";
+  public static final int DEFAULT_CALLS_PER_MINUTE = 5;
+  static final int MAX_RETRIES = 3;
+  private static final long MAX_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+  private static APIScheduler defaultScheduler;
+
+  private final API api;
+  private final int capacity;
+  private final long nanosPerToken;
+  private final Clock clock;
+  private final ReentrantLock lock;
+  private final Condition changed;
+  private final Deque<Ticket> interactiveLane;
+  private final Deque<Ticket> backgroundLane;
+  private double tokens;
+  private long lastRefill;
+  private long blockedUntil;
+  private long throttledCount;
+
+  /**
+   * A constructor of the APIScheduler class. The bucket starts full, so the first calls of a burst
+   * are admitted immediately.
+   *
+   * @param api            the API to call.
+   * @param callsPerMinute the number of calls allowed per minute.
+   * @throws IllegalArgumentException if the number of calls is not positive.
+   */
+  public APIScheduler(API api, int callsPerMinute) throws IllegalArgumentException {
+    this(api, callsPerMinute, new Clock() {
+      @Override
+      public long nanoTime() {
+        return System.nanoTime();
+      }
+
+      @Override
+      public void await(Condition condition, long nanos) throws InterruptedException {
+        condition.awaitNanos(nanos);
+      }
+    });
+  }
+
+
+  /**
+   * A constructor of the APIScheduler class that reads the time from a clock, so that the waits
+   * of the scheduler can be tested without sleeping.
+   *
+   * @param api            the API to call.
+   * @param callsPerMinute the number of calls allowed per minute.
+   * @param clock          the source of the time and of the timed waits.
+   * @throws IllegalArgumentException if the number of calls is not positive.
+   */
+  APIScheduler(API api, int callsPerMinute, Clock clock) throws IllegalArgumentException {
+    if (callsPerMinute <= 0) {
+      throw new IllegalArgumentException("The number of calls per minute must be positive.");
+    }
+    this.api = api;
+    this.capacity = callsPerMinute;
+    this.nanosPerToken = TimeUnit.MINUTES.toNanos(1) / callsPerMinute;
+    this.clock = clock;
+    this.lock = new ReentrantLock();
+    this.changed = this.lock.newCondition();
+    this.interactiveLane = new ArrayDeque<>();
+    this.backgroundLane = new ArrayDeque<>();
+    this.tokens = callsPerMinute;
+    this.lastRefill = clock.nanoTime();
+    this.blockedUntil = this.lastRefill;
+  }
+
+
+  /**
+   * Returns the scheduler of the Alpha Vantage API shared by the whole program, as the call quota
+   * belongs to the API key and not to a model.
+   *
+   * @return the default scheduler.
+   */
+  public static synchronized APIScheduler getDefault() {
+    if (defaultScheduler == null) {
+      defaultScheduler = new APIScheduler(new APIImpl(), configuredCallsPerMinute());
+    }
+    return defaultScheduler;
+  }
+
+
+  /**
+   * Returns a new view of this scheduler whose calls wait in the background lane, behind every
+   * interactive call, until the view is promoted. A view is meant for one background task, so that
+   * promoting it does not promote other background work.
+   *
+   * @return the background view of the API.
+   */
+  public BackgroundAPI background() {
+    return new BackgroundAPI();
+  }
+
+
+  /**
+   * Checks if a message returned by the API instead of ticker data says that the call quota is
+   * used up.
+   *
+   * @param message the message returned by the API, may be null.
+   * @return true if the call was throttled, else false.
+   */
+  public static boolean isThrottleMessage(String message) {
+    if (message == null) {
+      return false;
+    }
+    String text = message.toLowerCase();
+    return text.contains("call frequency") || text.contains("rate limit");
+  }
+
+
+  /**
+   * Returns the number of calls that the API has throttled so far.
+   *
+   * @return the throttled call count.
+   */
+  public long getThrottledCount() {
+    this.lock.lock();
+    try {
+      return this.throttledCount;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+
+  /**
+   * Returns the number of calls waiting for their turn in either lane.
+   *
+   * @return the waiting call count.
+   */
+  public int getWaitingCount() {
+    this.lock.lock();
+    try {
+      return this.interactiveLane.size() + this.backgroundLane.size();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+
+  @Override
+  public String[] getTickerData(String stockSymbol) throws IOException {
+    return call(null, () -> this.api.getTickerData(stockSymbol));
+  }
+
+
+  @Override
+  public TickerSeries getTickerSeries(String stockSymbol) throws IOException {
+    return call(null, () -> this.api.getTickerSeries(stockSymbol));
+  }
+
+
+  @Override
+  public TickerSeries getRecentTickerSeries(String stockSymbol) throws IOException {
+    return call(null, () -> this.api.getRecentTickerSeries(stockSymbol));
+  }
+
+
+  /**
+   * Waits for the turn of a call, makes it, and makes it again after a backoff if it is throttled.
+   * The result of the last attempt is returned if the call is still throttled after the retries.
+   */
+  private <T> T call(BackgroundAPI view, Call<T> call) throws IOException {
+    Ticket ticket = new Ticket(view);
+    boolean retry = false;
+    long backoff = this.nanosPerToken;
+    for (int attempt = 0; ; attempt++) {
+      acquire(ticket, retry);
+      T result = call.run();
+      if (!isThrottled(result) || attempt == MAX_RETRIES) {
+        return result;
+      }
+      throttled(backoff);
+      backoff = Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+      retry = true;
+    }
+  }
+
+
+  /**
+   * Waits until a call is at the front of its lane, no interactive call is waiting ahead of a
+   * background call, the backoff period is over and a token is available, and takes the token. The
+   * lane of the call is looked up on every check, as a background call can be promoted while it
+   * waits.
+   */
+  private void acquire(Ticket ticket, boolean retry) throws IOException {
+    this.lock.lock();
+    try {
+      ticket.lane = ticket.view == null || ticket.view.promoted
+              ? this.interactiveLane : this.backgroundLane;
+      if (retry) {
+        ticket.lane.addFirst(ticket);
+      } else {
+        ticket.lane.addLast(ticket);
+      }
+      while (true) {
+        long now = this.clock.nanoTime();
+        refill(now);
+        boolean turn = ticket.lane.peekFirst() == ticket
+                && (ticket.lane == this.interactiveLane || this.interactiveLane.isEmpty());
+        if (turn && now - this.blockedUntil >= 0 && this.tokens >= 1) {
+          this.tokens -= 1;
+          ticket.lane.removeFirst();
+          this.changed.signalAll();
+          return;
+        }
+        long wait = Math.max(this.blockedUntil - now,
+                (long) ((1 - Math.min(this.tokens, 1)) * this.nanosPerToken));
+        try {
+          if (turn && wait > 0) {
+            this.clock.await(this.changed, wait);
+          } else {
+            this.changed.await();
+          }
+        } catch (InterruptedException e) {
+          ticket.lane.remove(ticket);
+          this.changed.signalAll();
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting to call the AlphaVantage API.");
+        }
+      }
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+
+  private void refill(long now) {
+    this.tokens = Math.min(this.capacity,
+            this.tokens + (double) (now - this.lastRefill) / this.nanosPerToken);
+    this.lastRefill = now;
+  }
+
+
+  private void throttled(long backoff) {
+    this.lock.lock();
+    try {
+      long now = this.clock.nanoTime();
+      this.tokens = 0;
+      this.lastRefill = now;
+      if (now + backoff - this.blockedUntil > 0) {
+        this.blockedUntil = now + backoff;
+      }
+      this.throttledCount++;
+      this.changed.signalAll();
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+
+  private static boolean isThrottled(Object result) {
+    if (result instanceof TickerSeries) {
+      TickerSeries series = (TickerSeries) result;
+      return series.size() == 0 && isThrottleMessage(series.getMessage());
+    } else if (result instanceof String[]) {
+      String[] lines = (String[]) result;
+      return lines.length <= 5 && isThrottleMessage(String.join("\n", lines));
+    }
+    return false;
+  }
+
+
+  static int configuredCallsPerMinute() {
+    String value = System.getProperty(CALLS_PER_MINUTE_PROPERTY);
+    if (value != null) {
+      try {
+        int callsPerMinute = Integer.parseInt(value.trim());
+        if (callsPerMinute > 0) {
+          return callsPerMinute;
+        }
+      } catch (NumberFormatException ignored) {
+      }
+      System.out.println("Invalid " + CALLS_PER_MINUTE_PROPERTY + ", using the default API rate.");
+    }
+    return DEFAULT_CALLS_PER_MINUTE;
+  }
+
+
+  /**
+   * The source of the time of a scheduler.
+   */
+  interface Clock {
+
+    /**
+     * Returns the current time, as System.nanoTime does.
+     *
+     * @return the current time in nanoseconds.
+     */
+    long nanoTime();
+
+    /**
+     * Waits on a condition of the scheduler lock for at most a number of nanoseconds.
+     *
+     * @param condition the condition to wait on, whose lock is held.
+     * @param nanos     the longest time to wait.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    void await(Condition condition, long nanos) throws InterruptedException;
+  }
+
+
+  /**
+   * A call to the API.
+   */
+  private interface Call<T> {
+    T run() throws IOException;
+  }
+
+
+  /**
+   * A call waiting for its turn, and the lane it waits in.
+   */
+  private static final class Ticket {
+    private final BackgroundAPI view;
+    private Deque<Ticket> lane;
+
+    private Ticket(BackgroundAPI view) {
+      this.view = view;
+    }
+  }
+
+
+  /**
+   * A view of the scheduler whose calls wait in the background lane until it is promoted.
+   */
+  public final class BackgroundAPI implements API {
+    private boolean promoted;
+
+    private BackgroundAPI() {
+      this.promoted = false;
+    }
+
+    /**
+     * Moves the calls of this view to the back of the interactive lane, for instance because the
+     * user is now waiting for their result. The calls made through this view afterwards wait in
+     * the interactive lane as well.
+     */
+    public void promote() {
+      lock.lock();
+      try {
+        if (this.promoted) {
+          return;
+        }
+        this.promoted = true;
+        for (Iterator<Ticket> tickets = backgroundLane.iterator(); tickets.hasNext(); ) {
+          Ticket ticket = tickets.next();
+          if (ticket.view == this) {
+            tickets.remove();
+            ticket.lane = interactiveLane;
+            interactiveLane.addLast(ticket);
+          }
+        }
+        changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public String[] getTickerData(String stockSymbol) throws IOException {
+      return call(this, () -> api.getTickerData(stockSymbol));
+    }
+
+    @Override
+    public TickerSeries getTickerSeries(String stockSymbol) throws IOException {
+      return call(this, () -> api.getTickerSeries(stockSymbol));
+    }
+
+    @Override
+    public TickerSeries getRecentTickerSeries(String stockSymbol) throws IOException {
+      return call(this, () -> api.getRecentTickerSeries(stockSymbol));
+    }
+  }
+}
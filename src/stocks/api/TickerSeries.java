@@ -0,0 +1,221 @@
+package stocks.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+
+/**
+ * The daily closing prices of a symbol as returned by the API, kept as two parallel primitive
+ * arrays: the trading days as epoch days and the closing prices. The rows are in the order of the
+ * API response, which is newest first for the Alpha Vantage API.
+ *
+ * <p>If the API does not return ticker data, for instance for an invalid symbol or when the call
+ * limit is reached, the series is empty and holds the message returned by the API.
+ */
+public final class TickerSeries {
+  private static final int CLOSE_COLUMN = 4;
+  private static final int INITIAL_CAPACITY = 256;
+
+  private int[] days;
+  private double[] closes;
+  private int size;
+  private final StringBuilder message;
+
+  private TickerSeries() {
+    this.days = new int[INITIAL_CAPACITY];
+    this.closes = new double[INITIAL_CAPACITY];
+    this.size = 0;
+    this.message = new StringBuilder();
+  }
+
+
+  /**
+   * Parses a ticker data response of 'timestamp,open,high,low,close,volume' rows as it is read
+   * from the stream. The date and the close of each row are parsed straight into the arrays, so the
+   * response is never held in memory as a whole.
+   *
+   * @param in the response stream. It is not closed.
+   * @return the parsed series.
+   * @throws IOException if it fails to read the stream.
+   */
+  public static TickerSeries read(InputStream in) throws IOException {
+    TickerSeries series = new TickerSeries();
+    byte[] buffer = new byte[8192];
+    char[] field = new char[64];
+    int fieldLength = 0;
+    int column = 0;
+    int line = 0;
+    int day = 0;
+    boolean valid = true;
+    boolean csv = true;
+
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      for (int i = 0; i < read; i++) {
+        char c = (char) (buffer[i] & 0xff);
+        if (line == 0 || !csv) {
+          if (c == '\n' && line == 0) {
+            csv = series.readHeader();
+            line++;
+          } else if (c != '\r') {
+            series.message.append(c);
+          }
+          continue;
+        }
+
+        if (c == ',' || c == '\n') {
+          if (column == 0) {
+            day = parseDay(field, fieldLength);
+            valid = day != Integer.MIN_VALUE;
+          } else if (column == CLOSE_COLUMN && valid) {
+            try {
+              series.add(day, Double.parseDouble(new String(field, 0, fieldLength)));
+            } catch (NumberFormatException e) {
+              valid = false;
+            }
+          }
+          fieldLength = 0;
+          column++;
+          if (c == '\n') {
+            column = 0;
+            valid = true;
+            line++;
+          }
+        } else if (c != '\r' && fieldLength < field.length) {
+          field[fieldLength++] = c;
+        }
+      }
+    }
+    if (line == 0) {
+      series.readHeader();
+    } else if (csv && column == CLOSE_COLUMN && valid) {
+      try {
+        series.add(day, Double.parseDouble(new String(field, 0, fieldLength)));
+      } catch (NumberFormatException ignored) {
+      }
+    }
+    return series;
+  }
+
+
+  /**
+   * Returns the number of rows in the series.
+   *
+   * @return the number of (date, price) rows.
+   */
+  public int size() {
+    return this.size;
+  }
+
+
+  /**
+   * Returns the trading day of a row.
+   *
+   * @param index the row, between 0 and size() - 1.
+   * @return the trading day as an epoch day.
+   */
+  public int getDay(int index) {
+    return this.days[index];
+  }
+
+
+  /**
+   * Returns the closing price of a row.
+   *
+   * @param index the row, between 0 and size() - 1.
+   * @return the closing price on that trading day.
+   */
+  public double getClose(int index) {
+    return this.closes[index];
+  }
+
+
+  /**
+   * Returns a copy of the trading days, one for each row.
+   *
+   * @return the trading days as epoch days.
+   */
+  public int[] getDays() {
+    return Arrays.copyOf(this.days, this.size);
+  }
+
+
+  /**
+   * Returns a copy of the closing prices, one for each row.
+   *
+   * @return the closing prices.
+   */
+  public double[] getCloses() {
+    return Arrays.copyOf(this.closes, this.size);
+  }
+
+
+  /**
+   * Returns the message that the API returned instead of ticker data.
+   *
+   * @return the message, or null if the API returned ticker data.
+   */
+  public String getMessage() {
+    String text = this.message.toString().trim();
+    return text.isEmpty() ? null : text;
+  }
+
+
+  /**
+   * Checks if the first line of the response, read into the message, is the header of the ticker
+   * data. If it is, the message is cleared, else the rest of the response is added to it.
+   */
+  private boolean readHeader() {
+    boolean header = this.message.toString().trim().startsWith("timestamp");
+    if (header) {
+      this.message.setLength(0);
+    } else {
+      this.message.append('\n');
+    }
+    return header;
+  }
+
+
+  private void add(int day, double close) {
+    if (this.size == this.days.length) {
+      this.days = Arrays.copyOf(this.days, this.size * 2);
+      this.closes = Arrays.copyOf(this.closes, this.size * 2);
+    }
+    this.days[this.size] = day;
+    this.closes[this.size] = close;
+    this.size++;
+  }
+
+
+  private static int parseDay(char[] field, int length) {
+    if (length != 10 || field[4] != '-' || field[7] != '-') {
+      return Integer.MIN_VALUE;
+    }
+    int year = digits(field, 0, 4);
+    int month = digits(field, 5, 7);
+    int dayOfMonth = digits(field, 8, 10);
+    if (year < 0 || month < 0 || dayOfMonth < 0) {
+      return Integer.MIN_VALUE;
+    }
+    try {
+      return (int) LocalDate.of(year, month, dayOfMonth).toEpochDay();
+    } catch (DateTimeException e) {
+      return Integer.MIN_VALUE;
+    }
+  }
+
+
+  private static int digits(char[] field, int from, int to) {
+    int value = 0;
+    for (int i = from; i < to; i++) {
+      if (field[i] < '0' || field[i] > '9') {
+        return -1;
+      }
+      value = value * 10 + (field[i] - '0');
+    }
+    return value;
+  }
+}
@@ -136,6 +136,23 @@ public interface Feature {
   void getComposition(String portfolioName, String year, String month, String date);
 
 
+  /**
+   * Implements the tax lots of an existing portfolio functionality.
+   */
+  void taxLots();
+
+
+  /**
+   * Gets the tax lots of a portfolio.
+   *
+   * @param portfolioName   the portfolio name as input by the user.
+   * @param year            the year as input by the user.
+   * @param month           the month as input by the user.
+   * @param date            the date as input by the user.
+   */
+  void getTaxLots(String portfolioName, String year, String month, String date);
+
+
   /**
    * Implements the cost value basis functionality.
    */
@@ -271,6 +271,12 @@ public class StocksController implements StocksControllerInterface {
           break;
 
         case 8:
+          // Tax lots of a portfolio
+          jsonName = getExistingPortfolioNameHelper(stocksModelFlexible, userName);
+          taxLotHelper(stocksModelFlexible, jsonName, userName);
+          break;
+
+        case 9:
           // Exit
           return;
 
@@ -353,6 +359,7 @@ public class StocksController implements StocksControllerInterface {
     String[] stockDatesArray;
     double[] stockQuantitiesArray;
 
+    stocksModel.prefetchPortfolio(userName, jsonName);
     getOngoingStrategyUpToDate(userName, jsonName);
 
     while (true) {
@@ -689,6 +696,53 @@ public class StocksController implements StocksControllerInterface {
   }
 
 
+  /**
+   * A tax lot helper. Gets the tax lots of a flexible portfolio on a date.
+   *
+   * @param stocksModel an object of the stocks model interface.
+   * @param jsonName    the portfolio name, as input by the user.
+   * @param userName    the username, as input by the user.
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  private void taxLotHelper(StocksModelInterface stocksModel, String jsonName, String userName)
+          throws IOException {
+    getOngoingStrategyUpToDate(userName, jsonName);
+
+    String date = getDateHelper("TAX LOT", false);
+
+    JSONArray lotsData = stocksModel.getTaxLotReport(date, userName, jsonName);
+    if (lotsData != null && lotsData.size() != 0) {
+      String[] stockNameArray = new String[lotsData.size()];
+      String[] buyDateArray = new String[lotsData.size()];
+      String[] quantityArray = new String[lotsData.size()];
+      String[] priceArray = new String[lotsData.size()];
+      String[] costArray = new String[lotsData.size()];
+      String[] openQuantityArray = new String[lotsData.size()];
+      String[] realizedGainArray = new String[lotsData.size()];
+      String[] unrealizedGainArray = new String[lotsData.size()];
+      for (int i = 0; i < lotsData.size(); i++) {
+        JSONObject temp = (JSONObject) lotsData.get(i);
+        stockNameArray[i] = (String) temp.get("stock_name");
+        buyDateArray[i] = (String) temp.get("transaction_date");
+        quantityArray[i] = (String) temp.get("quantity");
+        priceArray[i] = (String) temp.get("price");
+        costArray[i] = (String) temp.get("cost");
+        openQuantityArray[i] = (String) temp.get("open_quantity");
+        realizedGainArray[i] = (String) temp.get("realized_gain");
+        unrealizedGainArray[i] = temp.get("unrealized_gain") == null ? "NA"
+                : (String) temp.get("unrealized_gain");
+      }
+      stocksView.taxLotHeader();
+      stocksView.printTaxLots(stockNameArray, buyDateArray, quantityArray, priceArray,
+              costArray, openQuantityArray, realizedGainArray, unrealizedGainArray,
+              lotsData.size());
+    } else {
+      stocksView.printMessage(
+              "NO DATA AVAILABLE IN THE PORTFOLIO ON OR BEFORE DATE: " + date + ".");
+    }
+  }
+
+
   /**
    * A portfolio performance helper. Gets the portfolio performance for a flexible performance.
    *
@@ -21,6 +21,7 @@ import stocks.view.StocksViewGUIInterface;
  */
 public class StocksControllerGUI implements Feature, StocksControllerInterface {
 
+  private static final int LINE_CHART_POINTS = 120;
   private final StocksModelInterface stocksModel;
   private final StocksViewGUIInterface stocksView;
   private List<String> stockNamesList;
@@ -187,6 +188,11 @@ public class StocksControllerGUI implements Feature, StocksControllerInterface {
     stockQuantitiesList = new ArrayList<>();
     stockCommissionsList = new ArrayList<>();
     boolean flag = true;
+    try {
+      stocksModel.prefetchPortfolio(userName, portfolioName);
+    } catch (IOException e) {
+      stocksView.printMessage("RUNTIME ERROR ENCOUNTERED");
+    }
     getOngoingStrategyUpToDate(userName, portfolioName);
 
     if (operation.equals("SELL")) {
@@ -576,6 +582,76 @@ public class StocksControllerGUI implements Feature, StocksControllerInterface {
   }
 
 
+  /**
+   * Implements the tax lots of an existing portfolio functionality.
+   */
+  @Override
+  public void taxLots() {
+    getOngoingStrategyUpToDate(userName, portfolioName);
+    stocksView.taxLots();
+    stocksView.taxLotsFeatures(this);
+  }
+
+
+  /**
+   * Gets the tax lots of a portfolio.
+   *
+   * @param portfolioName the portfolio name as input by the user.
+   * @param year          the year as input by the user.
+   * @param month         the month as input by the user.
+   * @param date          the date as input by the user.
+   */
+  @Override
+  public void getTaxLots(String portfolioName, String year, String month, String date) {
+    getOngoingStrategyUpToDate(userName, portfolioName);
+    try {
+      if (stocksModel.checkValidFileNameForExamination(portfolioName, userName)) {
+
+        if (stocksModel.checkValidYear(year) && stocksModel.checkValidMonth(month)
+                && stocksModel.checkValidDate(date, month, year)) {
+
+          String lotDate = String.format("%d-%02d-%02d", Integer.parseInt(year),
+                  Integer.parseInt(month), Integer.parseInt(date));
+
+          JSONArray lotsData = stocksModel.getTaxLotReport(lotDate, userName, portfolioName);
+          if (lotsData != null && lotsData.size() != 0) {
+            Object[][] rows = new Object[lotsData.size()][8];
+            Object[] cols = {"STOCK NAME", "BUY DATE", "QUANTITY", "BUY PRICE", "COST",
+                "OPEN QUANTITY", "REALIZED GAIN", "UNREALIZED GAIN"};
+            for (int i = 0; i < lotsData.size(); i++) {
+              JSONObject temp = (JSONObject) lotsData.get(i);
+              rows[i][0] = temp.get("stock_name");
+              rows[i][1] = temp.get("transaction_date");
+              rows[i][2] = temp.get("quantity");
+              rows[i][3] = temp.get("price");
+              rows[i][4] = temp.get("cost");
+              rows[i][5] = temp.get("open_quantity");
+              rows[i][6] = temp.get("realized_gain");
+              rows[i][7] = temp.get("unrealized_gain") == null ? "NA"
+                      : temp.get("unrealized_gain");
+            }
+
+            stocksView.displayComposition(rows, cols);
+            stocksView.displayTaxLotsFeatures(this);
+
+          } else {
+            stocksView.printMessage(
+                    "NO DATA AVAILABLE IN THE PORTFOLIO ON OR BEFORE DATE: " + lotDate + ".");
+          }
+        } else {
+          stocksView.printMessage("INVALID DATE. PLEASE RE-ENTER A VALID DATE.");
+        }
+      } else {
+        stocksView.printMessage(
+                "INVALID PORTFOLIO NAME. THE PORTFOLIO DOES NOT EXIST. PLEASE RE-ENTER A VALID "
+                        + "PORTFOLIO NAME.");
+      }
+    } catch (IOException e) {
+      stocksView.printMessage("RUNTIME ERROR ENCOUNTERED");
+    }
+  }
+
+
   /**
    * Implements the cost value basis functionality.
    */
@@ -744,9 +820,10 @@ public class StocksControllerGUI implements Feature, StocksControllerInterface {
 
           if (beginDate.compareTo(finishDate) < 0) {
             JSONArray stocksDataArray = stocksModel.getPortfolioFromJson(userName, portfolioName);
-            Map<String, Double> performanceMap = stocksModel.portfolioPerformance(stocksDataArray,
-                    begin,
-                    finish);
+            Map<String, Double> performanceMap = chartType.equals("LINE")
+                    ? stocksModel.portfolioPerformanceDownsampled(stocksDataArray, begin, finish,
+                    LINE_CHART_POINTS)
+                    : stocksModel.portfolioPerformance(stocksDataArray, begin, finish);
             if (performanceMap != null) {
               if (chartType.equals("BAR")) {
                 stocksView.displayPortfolioPerformance(performanceMap, portfolioName, begin, finish,
@@ -0,0 +1,214 @@
+package stocks.model;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of the PriceSeries interface backed by two parallel primitive arrays, one for
+ * the trading days and one for the closing prices.
+ */
+class ArrayPriceSeries implements PriceSeries {
+  private final int[] days;
+  private final double[] closes;
+  private final int size;
+  private final int coveredThrough;
+
+  /**
+   * A constructor of the ArrayPriceSeries class. The arrays are used as is and must not be
+   * modified afterwards.
+   *
+   * @param days   the trading days as epoch days, sorted in ascending order.
+   * @param closes the closing price for each trading day.
+   * @param size   the number of valid entries in the arrays.
+   */
+  ArrayPriceSeries(int[] days, double[] closes, int size) {
+    this(days, closes, size, Integer.MIN_VALUE);
+  }
+
+
+  private ArrayPriceSeries(int[] days, double[] closes, int size, int coveredThrough) {
+    this.days = days;
+    this.closes = closes;
+    this.size = size;
+    this.coveredThrough = coveredThrough;
+  }
+
+
+  /**
+   * Returns a series with the same prices, which is known to be complete through a day. Used for
+   * freshly fetched data, which is complete up to the day it was fetched.
+   *
+   * @param coveredThrough the last day for which the series is complete.
+   * @return the series with its coverage set.
+   */
+  ArrayPriceSeries withCoverage(int coveredThrough) {
+    return new ArrayPriceSeries(this.days, this.closes, this.size, coveredThrough);
+  }
+
+
+  /**
+   * Builds a series from ticker data stored as 'yyyy-MM-dd,price;' pairs, which is the format of
+   * the local cache and of the bundled stock data. The pairs may be in any order; the Alpha Vantage
+   * data is stored newest first.
+   *
+   * @param tickerData the ticker data.
+   * @return the parsed series.
+   * @throws IllegalArgumentException if a date or a price can not be parsed.
+   */
+  static ArrayPriceSeries parseCsv(CharSequence tickerData) throws IllegalArgumentException {
+    int capacity = 0;
+    for (int i = 0; i < tickerData.length(); i++) {
+      if (tickerData.charAt(i) == ';') {
+        capacity++;
+      }
+    }
+    int[] days = new int[capacity + 1];
+    double[] closes = new double[capacity + 1];
+    int size = 0;
+
+    int start = 0;
+    int length = tickerData.length();
+    while (start < length) {
+      int end = start;
+      while (end < length && tickerData.charAt(end) != ';') {
+        end++;
+      }
+      int comma = start;
+      while (comma < end && tickerData.charAt(comma) != ',') {
+        comma++;
+      }
+      if (comma < end) {
+        days[size] = EpochDays.parse(tickerData, start);
+        closes[size] = Double.parseDouble(tickerData.subSequence(comma + 1, end).toString().trim());
+        size++;
+      }
+      start = end + 1;
+    }
+    return sorted(days, closes, size);
+  }
+
+
+  /**
+   * Builds a series from parallel arrays in any order. Newest-first data is reversed in place, and
+   * anything else is sorted by day.
+   *
+   * @param days   the trading days as epoch days.
+   * @param closes the closing price for each trading day.
+   * @param size   the number of valid entries in the arrays.
+   * @return the series in ascending order of day.
+   */
+  static ArrayPriceSeries sorted(int[] days, double[] closes, int size) {
+    boolean ascending = true;
+    boolean descending = true;
+    for (int i = 1; i < size; i++) {
+      ascending &= days[i - 1] < days[i];
+      descending &= days[i - 1] > days[i];
+    }
+    if (!ascending && descending) {
+      for (int i = 0, j = size - 1; i < j; i++, j--) {
+        int day = days[i];
+        days[i] = days[j];
+        days[j] = day;
+        double close = closes[i];
+        closes[i] = closes[j];
+        closes[j] = close;
+      }
+    } else if (!ascending) {
+      long[] keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = ((long) days[i] << 32) | i;
+      }
+      Arrays.sort(keys);
+      int[] sortedDays = new int[size];
+      double[] sortedCloses = new double[size];
+      int n = 0;
+      for (int i = 0; i < size; i++) {
+        int day = (int) (keys[i] >> 32);
+        if (n > 0 && sortedDays[n - 1] == day) {
+          continue;
+        }
+        sortedDays[n] = day;
+        sortedCloses[n] = closes[(int) keys[i]];
+        n++;
+      }
+      return new ArrayPriceSeries(sortedDays, sortedCloses, n);
+    }
+    return new ArrayPriceSeries(days, closes, size);
+  }
+
+
+  /**
+   * Merges a newer window of prices into an older series. The older prices up to the first day of
+   * the newer window are kept, and the newer window is appended after them, so a day that is in
+   * both takes its price from the newer window.
+   *
+   * @param older the older series.
+   * @param newer the newer window of prices.
+   * @return the merged series in ascending order of day.
+   */
+  static ArrayPriceSeries merge(PriceSeries older, PriceSeries newer) {
+    int kept = newer.size() == 0 ? older.size() : older.ceilingIndex(newer.firstDay());
+    if (kept == -1) {
+      kept = older.size();
+    }
+    int size = kept + newer.size();
+    int[] days = new int[size];
+    double[] closes = new double[size];
+    for (int i = 0; i < kept; i++) {
+      days[i] = older.getDay(i);
+      closes[i] = older.getClose(i);
+    }
+    for (int i = 0; i < newer.size(); i++) {
+      days[kept + i] = newer.getDay(i);
+      closes[kept + i] = newer.getClose(i);
+    }
+    return new ArrayPriceSeries(days, closes, size);
+  }
+
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+
+  @Override
+  public int getDay(int index) {
+    return this.days[index];
+  }
+
+
+  @Override
+  public double getClose(int index) {
+    return this.closes[index];
+  }
+
+
+  @Override
+  public int coveredThrough() {
+    return Math.max(lastDay(), this.coveredThrough);
+  }
+
+
+  @Override
+  public int indexOf(int epochDay) {
+    int index = Arrays.binarySearch(this.days, 0, this.size, epochDay);
+    return index >= 0 ? index : -1;
+  }
+
+
+  @Override
+  public int floorIndex(int epochDay) {
+    int index = Arrays.binarySearch(this.days, 0, this.size, epochDay);
+    return index >= 0 ? index : -index - 2;
+  }
+
+
+  @Override
+  public int ceilingIndex(int epochDay) {
+    int index = Arrays.binarySearch(this.days, 0, this.size, epochDay);
+    if (index >= 0) {
+      return index;
+    }
+    return -index - 1 < this.size ? -index - 1 : -1;
+  }
+}
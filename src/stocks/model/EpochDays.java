@@ -0,0 +1,85 @@
+package stocks.model;
+
+import java.time.LocalDate;
+
+/**
+ * Converts between the 'yyyy-MM-dd' date strings used throughout the model and epoch days, i.e.
+ * the number of days since 1970-01-01. Epoch days are plain ints, which lets the price series be
+ * stored in primitive arrays and compared without any Date or Calendar objects.
+ */
+final class EpochDays {
+
+  private EpochDays() {
+  }
+
+
+  /**
+   * Parses a 'yyyy-MM-dd' date string to its epoch day.
+   *
+   * @param date the date string.
+   * @return the number of days since 1970-01-01.
+   * @throws IllegalArgumentException if the string is not a valid 'yyyy-MM-dd' date.
+   */
+  static int parse(CharSequence date) throws IllegalArgumentException {
+    return parse(date, 0);
+  }
+
+
+  /**
+   * Parses a 'yyyy-MM-dd' date starting at an offset of a character sequence, without creating
+   * any intermediate strings. Used when scanning the cached ticker data.
+   *
+   * @param text   the text which contains the date.
+   * @param offset the index of the first character of the date.
+   * @return the number of days since 1970-01-01.
+   * @throws IllegalArgumentException if the characters are not a valid 'yyyy-MM-dd' date.
+   */
+  static int parse(CharSequence text, int offset) throws IllegalArgumentException {
+    if (offset < 0 || offset + 10 > text.length() || text.charAt(offset + 4) != '-'
+            || text.charAt(offset + 7) != '-') {
+      throw new IllegalArgumentException("Failed to parse date.");
+    }
+    int year = digits(text, offset, 4);
+    int month = digits(text, offset + 5, 2);
+    int day = digits(text, offset + 8, 2);
+    try {
+      return (int) LocalDate.of(year, month, day).toEpochDay();
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Failed to parse date.");
+    }
+  }
+
+
+  /**
+   * Formats an epoch day as a 'yyyy-MM-dd' date string.
+   *
+   * @param epochDay the number of days since 1970-01-01.
+   * @return the date string.
+   */
+  static String format(int epochDay) {
+    return LocalDate.ofEpochDay(epochDay).toString();
+  }
+
+
+  /**
+   * Returns the epoch day of the current date.
+   *
+   * @return the number of days since 1970-01-01 for today.
+   */
+  static int today() {
+    return (int) LocalDate.now().toEpochDay();
+  }
+
+
+  private static int digits(CharSequence text, int offset, int count) {
+    int value = 0;
+    for (int i = offset; i < offset + count; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        throw new IllegalArgumentException("Failed to parse date.");
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+}
@@ -0,0 +1,451 @@
+package stocks.model;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A group of files that are replaced or deleted together, so that a crash never leaves a file half
+ * written. Every file is first written in full to a temporary file next to it. On commit, the
+ * temporary files are forced to the disk, the replacements are recorded in a write-ahead log that
+ * is forced to the disk once, and only then are the temporary files renamed over the files they
+ * replace. A reader sees either the old or the new version of a file.
+ *
+ * <p>Transactions that commit at the same time share a single sync of the log: the first one to
+ * sync covers the records of every transaction appended before it. The log is emptied whenever no
+ * transaction is in progress.
+ *
+ * <p>On startup, recover replays the replacements of the transactions that were committed but
+ * not recorded as applied, and deletes the temporary files of the transactions that were not
+ * committed. A transaction that is closed without being committed deletes its temporary files.
+ * The record that a transaction was applied is not forced to the disk, so recover may see an
+ * applied transaction again: its renames are skipped, since their temporary files are gone, and a
+ * file is only deleted again if it still has the size and modification time it had at commit, so
+ * that a newer file of the same name, such as a new journal, is never deleted. A transaction that
+ * fails to apply deletes its temporary files and is recorded as applied as far as it got, so it is
+ * never replayed over a later write.
+ *
+ * <p>If the commit record cannot be forced to the disk, it may still reach the disk later, so the
+ * transaction is recorded as aborted before its temporary files are deleted; otherwise recover
+ * would replay its deletes without its renames. If the abort cannot be forced either, the
+ * temporary files are kept, so that recover applies either all of the transaction or none of it.
+ */
+final class FileTransaction implements AutoCloseable {
+  static final String LOG_PATH = "res/users/transactions.wal";
+  static final String TEMP_SUFFIX = ".txn";
+
+  private static final AtomicLong IDS = new AtomicLong(System.currentTimeMillis() * 1000);
+  private static final Object LOG_LOCK = new Object();
+  private static final Object SYNC_LOCK = new Object();
+  private static LogOpener logOpener = logFile -> FileChannel.open(logFile,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  private static FileChannel log;
+  private static long appended;
+  private static long synced;
+  private static int inProgress;
+  private static boolean recovered;
+
+  private final long id;
+  private final List<Path[]> moves;
+  private final List<Path> deletes;
+  private boolean started;
+  private boolean finished;
+
+  /**
+   * Writes the content of a file.
+   */
+  interface Content {
+    /**
+     * Writes the content to a writer.
+     *
+     * @param writer the writer of the file.
+     * @throws IOException if it fails to write.
+     */
+    void writeTo(Writer writer) throws IOException;
+  }
+
+  /**
+   * Opens the write-ahead log for appending.
+   */
+  interface LogOpener {
+    /**
+     * Opens the log file.
+     *
+     * @param logFile the path of the log.
+     * @return the channel the records are appended to.
+     * @throws IOException if it fails to open the log.
+     */
+    FileChannel open(Path logFile) throws IOException;
+  }
+
+  /**
+   * A constructor of the FileTransaction class. Starts an empty transaction.
+   */
+  FileTransaction() {
+    this.id = IDS.incrementAndGet();
+    this.moves = new ArrayList<>();
+    this.deletes = new ArrayList<>();
+  }
+
+
+  /**
+   * Writes the new content of a file to a temporary file. The file is replaced on commit.
+   *
+   * @param path    the path of the file.
+   * @param content writes the content of the file.
+   * @throws IOException if it fails to write the temporary file.
+   */
+  void write(String path, Content content) throws IOException {
+    Path temp = Path.of(path + "." + this.id + TEMP_SUFFIX);
+    begin();
+    record("temp\t" + this.id + "\t" + temp + "\n", 0);
+    this.moves.add(new Path[]{temp, Path.of(path)});
+    try (Writer writer = new BufferedWriter(new FileWriter(temp.toFile()))) {
+      content.writeTo(writer);
+    }
+  }
+
+
+  /**
+   * Deletes a file on commit.
+   *
+   * @param path the path of the file.
+   */
+  void delete(String path) {
+    begin();
+    this.deletes.add(Path.of(path));
+  }
+
+
+  /**
+   * Makes the writes and the deletes of the transaction durable, and then applies them.
+   *
+   * @throws IOException if it fails to commit, in which case the files are left as they were, or
+   *                     to apply a committed transaction, in which case the renames and deletes
+   *                     that were not applied are dropped.
+   */
+  void commit() throws IOException {
+    if (this.finished) {
+      throw new IllegalStateException("The transaction is already finished.");
+    }
+    for (Path[] move : this.moves) {
+      try (FileChannel channel = FileChannel.open(move[0], StandardOpenOption.WRITE)) {
+        channel.force(false);
+      }
+    }
+
+    StringBuilder records = new StringBuilder();
+    for (Path[] move : this.moves) {
+      records.append("move\t").append(this.id).append('\t').append(move[0]).append('\t')
+              .append(move[1]).append('\n');
+    }
+    for (Path path : this.deletes) {
+      File file = path.toFile();
+      records.append("delete\t").append(this.id).append('\t').append(path).append('\t')
+              .append(file.exists() ? file.length() : -1).append('\t')
+              .append(file.lastModified()).append('\n');
+    }
+    records.append("commit\t").append(this.id).append('\n');
+    begin();
+    try {
+      sync(record(records.toString(), 1));
+    } catch (IOException e) {
+      abort(e);
+      throw e;
+    }
+
+    this.finished = true;
+    try {
+      apply(this.moves, this.deletes);
+      record("done\t" + this.id + "\n", 0);
+    } catch (IOException e) {
+      try {
+        for (Path[] move : this.moves) {
+          Files.deleteIfExists(move[0]);
+        }
+        sync(record("done\t" + this.id + "\n", 1));
+      } catch (IOException ex) {
+        e.addSuppressed(ex);
+      }
+      throw e;
+    } finally {
+      end();
+    }
+  }
+
+
+  /**
+   * Records that a transaction whose commit record may have reached the log was not committed.
+   * The abort starts on a new line, in case the commit records were only partly written. If the
+   * abort cannot be forced to the disk, the transaction is finished without deleting its temporary
+   * files.
+   */
+  private void abort(IOException failure) {
+    try {
+      sync(record("\nabort\t" + this.id + "\n", 1));
+    } catch (IOException e) {
+      failure.addSuppressed(e);
+      this.finished = true;
+      end();
+    }
+  }
+
+
+  /**
+   * Deletes the temporary files of a transaction that was not committed. Does nothing once the
+   * transaction is committed.
+   */
+  @Override
+  public void close() {
+    if (this.finished) {
+      return;
+    }
+    this.finished = true;
+    for (Path[] move : this.moves) {
+      try {
+        Files.deleteIfExists(move[0]);
+      } catch (IOException ignored) {
+        // Deleted by the next recovery.
+      }
+    }
+    end();
+  }
+
+
+  /**
+   * Replaces a single file atomically.
+   *
+   * @param path    the path of the file.
+   * @param content writes the content of the file.
+   * @throws IOException if it fails to write the file, in which case the file is left as it was.
+   */
+  static void writeFile(String path, Content content) throws IOException {
+    try (FileTransaction transaction = new FileTransaction()) {
+      transaction.write(path, content);
+      transaction.commit();
+    }
+  }
+
+
+  /**
+   * Applies the transactions that were committed but not fully applied before the program
+   * stopped, and deletes the temporary files of the transactions that were not committed. Only
+   * runs once, before the first transaction of the program.
+   */
+  static void recover() {
+    synchronized (LOG_LOCK) {
+      if (recovered) {
+        return;
+      }
+      recovered = true;
+      replay(Path.of(LOG_PATH));
+    }
+  }
+
+
+  /**
+   * Applies the committed transactions of a log and deletes the temporary files of the others,
+   * then deletes the log.
+   *
+   * @param logFile the write-ahead log.
+   * @return the number of transactions that were applied again.
+   */
+  static int replay(Path logFile) {
+    if (!Files.exists(logFile)) {
+      return 0;
+    }
+    try {
+      String content = Files.readString(logFile, StandardCharsets.UTF_8);
+      Map<String, List<Path[]>> moves = new LinkedHashMap<>();
+      Map<String, List<String[]>> deletes = new LinkedHashMap<>();
+      Map<String, List<Path>> temps = new LinkedHashMap<>();
+      Set<String> committed = new LinkedHashSet<>();
+      Set<String> applied = new LinkedHashSet<>();
+      Set<String> aborted = new LinkedHashSet<>();
+      int start = 0;
+      int end;
+      while ((end = content.indexOf('\n', start)) >= 0) {
+        String[] fields = content.substring(start, end).split("\t");
+        start = end + 1;
+        if (fields[0].equals("temp") && fields.length == 3) {
+          temps.computeIfAbsent(fields[1], id -> new ArrayList<>()).add(Path.of(fields[2]));
+        } else if (fields[0].equals("move") && fields.length == 4) {
+          moves.computeIfAbsent(fields[1], id -> new ArrayList<>())
+                  .add(new Path[]{Path.of(fields[2]), Path.of(fields[3])});
+        } else if (fields[0].equals("delete") && fields.length == 5) {
+          deletes.computeIfAbsent(fields[1], id -> new ArrayList<>()).add(fields);
+        } else if (fields[0].equals("commit") && fields.length == 2) {
+          committed.add(fields[1]);
+        } else if (fields[0].equals("done") && fields.length == 2) {
+          applied.add(fields[1]);
+        } else if (fields[0].equals("abort") && fields.length == 2) {
+          aborted.add(fields[1]);
+        }
+      }
+
+      int replayed = 0;
+      committed.removeAll(applied);
+      committed.removeAll(aborted);
+      for (String id : committed) {
+        List<Path[]> redo = new ArrayList<>();
+        for (Path[] move : moves.getOrDefault(id, new ArrayList<>())) {
+          if (Files.exists(move[0])) {
+            redo.add(move);
+          }
+        }
+        List<Path> unchanged = new ArrayList<>();
+        for (String[] delete : deletes.getOrDefault(id, new ArrayList<>())) {
+          File file = new File(delete[2]);
+          if (file.exists() && file.length() == Long.parseLong(delete[3])
+                  && file.lastModified() == Long.parseLong(delete[4])) {
+            unchanged.add(file.toPath());
+          }
+        }
+        apply(redo, unchanged);
+        replayed++;
+      }
+      for (Map.Entry<String, List<Path>> entry : temps.entrySet()) {
+        if (!committed.contains(entry.getKey()) && !applied.contains(entry.getKey())) {
+          for (Path temp : entry.getValue()) {
+            Files.deleteIfExists(temp);
+          }
+        }
+      }
+      Files.delete(logFile);
+      if (replayed > 0) {
+        System.out.println("Recovered " + replayed + " interrupted writes.");
+      }
+      return replayed;
+    } catch (IOException | RuntimeException e) {
+      System.out.println("Unable to recover the interrupted writes.");
+      return 0;
+    }
+  }
+
+
+  /**
+   * Closes the write-ahead log, so that the next record opens it again with an opener. Used by
+   * tests to make the log fail.
+   *
+   * @param opener opens the log from now on.
+   */
+  static void setLogOpener(LogOpener opener) {
+    synchronized (LOG_LOCK) {
+      logOpener = opener;
+      if (log != null) {
+        try {
+          log.close();
+        } catch (IOException ignored) {
+          // The log is opened again on the next record.
+        }
+        log = null;
+      }
+    }
+  }
+
+
+  private void begin() {
+    if (this.finished) {
+      throw new IllegalStateException("The transaction is already finished.");
+    }
+    if (!this.started) {
+      this.started = true;
+      synchronized (LOG_LOCK) {
+        inProgress++;
+      }
+    }
+  }
+
+
+  private void end() {
+    if (!this.started) {
+      return;
+    }
+    synchronized (LOG_LOCK) {
+      inProgress--;
+      if (inProgress == 0 && log != null) {
+        try {
+          log.truncate(0);
+        } catch (IOException ignored) {
+          // The records are applied again by the next recovery, which is harmless.
+        }
+      }
+    }
+  }
+
+
+  private static long record(String records, int count) throws IOException {
+    synchronized (LOG_LOCK) {
+      recover();
+      if (log == null) {
+        Path logFile = Path.of(LOG_PATH);
+        Files.createDirectories(logFile.toAbsolutePath().getParent());
+        log = logOpener.open(logFile);
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+      while (buffer.hasRemaining()) {
+        log.write(buffer);
+      }
+      appended += count;
+      return appended;
+    }
+  }
+
+
+  private static void sync(long sequence) throws IOException {
+    synchronized (SYNC_LOCK) {
+      if (synced >= sequence) {
+        return;
+      }
+      long covered;
+      FileChannel channel;
+      synchronized (LOG_LOCK) {
+        covered = appended;
+        channel = log;
+      }
+      channel.force(false);
+      synced = covered;
+    }
+  }
+
+
+  private static void apply(List<Path[]> moves, List<Path> deletes) throws IOException {
+    Set<Path> directories = new LinkedHashSet<>();
+    for (Path[] move : moves) {
+      try {
+        Files.move(move[0], move[1], StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        Files.move(move[0], move[1], StandardCopyOption.REPLACE_EXISTING);
+      }
+      directories.add(move[1].toAbsolutePath().getParent());
+    }
+    for (Path path : deletes) {
+      Files.deleteIfExists(path);
+      directories.add(path.toAbsolutePath().getParent());
+    }
+    for (Path directory : directories) {
+      try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+        channel.force(true);
+      } catch (IOException ignored) {
+        // Not every platform can sync a directory.
+      }
+    }
+  }
+}
@@ -0,0 +1,294 @@
+package stocks.model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Running aggregates of a flexible portfolio, kept up to date as transactions are written, so that
+ * the cost basis can be found without reading and scanning the portfolio. The quantity held of a
+ * stock is answered by the tax lots of the portfolio alone. The header is saved next to the
+ * portfolio, in a '.holdings' file, along with the size and modification time of the portfolio
+ * file it matches; a header that does not match its portfolio is built again from the
+ * transactions. The size of the journal of the portfolio is saved
+ * as well, since transactions are appended to the journal rather than to the portfolio file.
+ *
+ * <p>Every aggregate keeps its total over all the transactions, summed in the order of the
+ * portfolio, and a checkpoint on every transaction date of the total of the transactions on or
+ * before that date. A query on or after the last transaction date returns the total, and an earlier
+ * date is found by a binary search over the checkpoints. A transaction written before the last
+ * date is the last one of the portfolio, so it is added to the checkpoints from its date on, and a
+ * checkpoint is inserted for its date if there is none. Either way the result is summed in the
+ * same order as a scan of the portfolio.
+ *
+ * <p>The headers of the portfolios used most recently are kept in memory; the others are read
+ * again from their '.holdings' file.
+ */
+class HoldingsHeader {
+  static final String EXTENSION = ".holdings";
+  private static final String MAGIC = "holdings3";
+  static final int MAX_PORTFOLIOS = 32;
+  private static final Map<String, HoldingsHeader> HEADERS = Collections.synchronizedMap(
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, HoldingsHeader> eldest) {
+              return size() > MAX_PORTFOLIOS;
+            }
+          });
+
+  private PortfolioSnapshotCache.Source source;
+  private final Checkpoints costBasis;
+
+  private HoldingsHeader(PortfolioSnapshotCache.Source source) {
+    this.source = source;
+    this.costBasis = new Checkpoints();
+  }
+
+
+  /**
+   * Returns the header of a version of a portfolio, from memory or from its '.holdings' file.
+   *
+   * @param source the portfolio file and the version of it that the header must match.
+   * @return the header, or null if there is none for that version of the portfolio.
+   */
+  static HoldingsHeader find(PortfolioSnapshotCache.Source source) {
+    HoldingsHeader header = HEADERS.get(source.getPath());
+    if (header != null && header.source.sameVersion(source)) {
+      return header;
+    }
+    if (!source.isFile()) {
+      return null;
+    }
+    header = read(headerFile(source.getPath()), source);
+    if (header != null) {
+      HEADERS.put(source.getPath(), header);
+    }
+    return header;
+  }
+
+
+  /**
+   * Builds the header of a portfolio from its transactions and saves it next to the portfolio.
+   *
+   * @param source the portfolio file and the version of it that was read.
+   * @param table  the transactions read from that version of the portfolio.
+   * @return the header.
+   */
+  static HoldingsHeader build(PortfolioSnapshotCache.Source source, TransactionTable table) {
+    HoldingsHeader header = new HoldingsHeader(source);
+    for (int i = 0; i < table.size(); i++) {
+      header.add(table.getOperation(i), table.getDay(i), table.getQuantity(i),
+              table.getPrice(i), table.getCommission(i));
+    }
+    if (source.exists()) {
+      header.save(source);
+    }
+    return header;
+  }
+
+
+  /**
+   * Adds a transaction that was appended to the portfolio. The header has to be saved once the
+   * portfolio is written.
+   *
+   * @param operation  the operation, BUY or SELL.
+   * @param day        the transaction date as an epoch day.
+   * @param quantity   the quantity.
+   * @param price      the price.
+   * @param commission the commission.
+   */
+  synchronized void add(byte operation, int day, double quantity, double price,
+          double commission) {
+    if (operation == TransactionTable.BUY) {
+      this.costBasis.add(day, commission + price * quantity);
+    } else if (operation == TransactionTable.SELL) {
+      this.costBasis.add(day, commission);
+    }
+  }
+
+
+  /**
+   * Saves the header next to the portfolio, for the version of the portfolio that was written. The
+   * header is written to a temporary file that then replaces the old header, so a header is never
+   * read half written; it is not forced to the disk, since a lost header is built again. A header
+   * that can not be saved, or of a portfolio that is not kept in a file, is only kept in memory.
+   *
+   * @param source the portfolio file and the version of it that was written.
+   */
+  synchronized void save(PortfolioSnapshotCache.Source source) {
+    this.source = source;
+    HEADERS.put(source.getPath(), this);
+    if (!source.isFile()) {
+      return;
+    }
+    Path file = headerFile(source.getPath());
+    Path temp = Path.of(file + "." + Thread.currentThread().getId() + ".tmp");
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+        writer.write(MAGIC + "," + source.getLength() + "," + source.getLastModified() + ","
+                + source.getJournalLength() + "\n");
+        this.costBasis.write(writer, "cost");
+      }
+      try {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      System.out.println("Unable to save the holdings of " + source.getPath() + ".");
+    }
+  }
+
+
+  /**
+   * Returns the cost basis of the portfolio on a date.
+   *
+   * @param day the date as an epoch day.
+   * @return the cost basis, or NaN if the portfolio has to be scanned.
+   */
+  synchronized double getCostBasis(int day) {
+    return this.costBasis.valueOn(day);
+  }
+
+
+  private static Path headerFile(String portfolioPath) {
+    return Path.of(portfolioPath + EXTENSION);
+  }
+
+
+  private static HoldingsHeader read(Path file, PortfolioSnapshotCache.Source source) {
+    if (!Files.exists(file)) {
+      return null;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(file)) {
+      String[] fields = reader.readLine().split(",");
+      if (fields.length != 4 || !fields[0].equals(MAGIC)
+              || Long.parseLong(fields[1]) != source.getLength()
+              || Long.parseLong(fields[2]) != source.getLastModified()
+              || Long.parseLong(fields[3]) != source.getJournalLength()) {
+        return null;
+      }
+      HoldingsHeader header = new HoldingsHeader(source);
+      String line;
+      while ((line = reader.readLine()) != null) {
+        fields = line.split(",");
+        if (fields[0].equals("cost")) {
+          header.costBasis.read(reader, fields, 1);
+        } else {
+          return null;
+        }
+      }
+      return header;
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+
+  /**
+   * The running total of one aggregate, with a checkpoint on every transaction date.
+   */
+  private static final class Checkpoints {
+    private boolean usable = true;
+    private int lastDay = Integer.MIN_VALUE;
+    private double total;
+    private int size;
+    private int[] days = new int[4];
+    private double[] totals = new double[4];
+
+    /**
+     * Adds the amount of a transaction appended to the portfolio. On or after the last date this
+     * sets or appends the checkpoint of its date. An earlier date gets a checkpoint of the total
+     * before it plus the amount, and the amount is added to every later checkpoint, which is where
+     * a scan of the portfolio adds it.
+     */
+    private void add(int day, double amount) {
+      if (Double.isNaN(amount)) {
+        this.usable = false;
+      }
+      this.total += amount;
+      this.lastDay = Math.max(this.lastDay, day);
+      int index = after(day - 1);
+      if (index == this.size || this.days[index] != day) {
+        if (this.size == this.days.length) {
+          this.days = Arrays.copyOf(this.days, this.size * 2);
+          this.totals = Arrays.copyOf(this.totals, this.size * 2);
+        }
+        System.arraycopy(this.days, index, this.days, index + 1, this.size - index);
+        System.arraycopy(this.totals, index, this.totals, index + 1, this.size - index);
+        this.days[index] = day;
+        this.totals[index] = index == 0 ? 0 : this.totals[index - 1];
+        this.size++;
+      }
+      if (index == this.size - 1) {
+        this.totals[index] = this.total;
+        return;
+      }
+      for (int i = index; i < this.size; i++) {
+        this.totals[i] += amount;
+      }
+    }
+
+    private double valueOn(int day) {
+      if (!this.usable) {
+        return Double.NaN;
+      } else if (day >= this.lastDay) {
+        return this.total;
+      }
+      int index = after(day);
+      return index == 0 ? 0 : this.totals[index - 1];
+    }
+
+    /**
+     * Returns the index of the first checkpoint after a date, or the number of checkpoints if
+     * there is none.
+     */
+    private int after(int day) {
+      int low = 0;
+      int high = this.size - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (this.days[mid] <= day) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+
+    private void write(BufferedWriter writer, String name) throws IOException {
+      writer.write(name + "," + this.usable + "," + this.lastDay + "," + this.total + ","
+              + this.size + "\n");
+      for (int i = 0; i < this.size; i++) {
+        writer.write(this.days[i] + "," + this.totals[i] + "\n");
+      }
+    }
+
+    private void read(BufferedReader reader, String[] fields, int from) throws IOException {
+      this.usable = Boolean.parseBoolean(fields[from]);
+      this.lastDay = Integer.parseInt(fields[from + 1]);
+      this.total = Double.parseDouble(fields[from + 2]);
+      int count = Integer.parseInt(fields[from + 3]);
+      this.size = 0;
+      for (int i = 0; i < count; i++) {
+        String[] checkpoint = reader.readLine().split(",");
+        if (this.size == this.days.length) {
+          this.days = Arrays.copyOf(this.days, this.size * 2);
+          this.totals = Arrays.copyOf(this.totals, this.size * 2);
+        }
+        this.days[this.size] = Integer.parseInt(checkpoint[0]);
+        this.totals[this.size] = Double.parseDouble(checkpoint[1]);
+        this.size++;
+      }
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package stocks.model;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import jsonparser.JSONArray;
+import jsonparser.JSONParser;
+import jsonparser.JSONWriter;
+
+/**
+ * The repository that keeps every portfolio in a JSON file named after it, in the 'flexible' or
+ * the 'inflexible' directory of its user. The transactions added to a flexible portfolio are
+ * appended to its journal, and the file is written again with all of them once the journal has
+ * grown past it. Whole files are replaced in a file transaction.
+ */
+class JsonDirectoryRepository implements PortfolioRepository {
+  static final String USERS_DIRECTORY = "res/users";
+
+  private final String directory;
+
+  /**
+   * A constructor of the JsonDirectoryRepository class.
+   */
+  JsonDirectoryRepository() {
+    this(USERS_DIRECTORY);
+  }
+
+
+  /**
+   * A constructor of the JsonDirectoryRepository class that reads the portfolios from the user
+   * directories in a given directory.
+   *
+   * @param directory the directory of the user directories.
+   */
+  JsonDirectoryRepository(String directory) {
+    this.directory = directory;
+  }
+
+
+  @Override
+  public boolean exists(String userName, String kind, String name) {
+    return new File(path(userName, kind, name)).exists();
+  }
+
+
+  @Override
+  public PortfolioSnapshotCache.Source getSource(String userName, String kind, String name) {
+    return PortfolioSnapshotCache.Source.of(path(userName, kind, name));
+  }
+
+
+  @Override
+  public JSONArray load(String userName, String kind, String name) throws IOException {
+    String path = path(userName, kind, name);
+    PortfolioSnapshotCache.Source source = PortfolioSnapshotCache.Source.of(path);
+    JSONArray jsonArray;
+    try (Reader file = new FileReader(path)) {
+      jsonArray = new JSONParser().parse(file);
+    }
+    if (kind.equals(FLEXIBLE)) {
+      PortfolioJournal.replay(path, jsonArray);
+    }
+    TransactionTable.load(jsonArray, source);
+    return jsonArray;
+  }
+
+
+  @Override
+  public void append(String userName, String kind, String name, JSONArray jsonArray, int from)
+          throws IOException {
+    String path = path(userName, kind, name);
+    PortfolioJournal.append(path, jsonArray, from);
+    if (PortfolioJournal.needsCompaction(path)) {
+      writeSnapshot(path, load(userName, kind, name));
+    }
+  }
+
+
+  @Override
+  public void write(String userName, String kind, String name, JSONArray jsonArray)
+          throws IOException {
+    writeSnapshot(path(userName, kind, name), jsonArray);
+  }
+
+
+  /**
+   * Writes a whole portfolio to its file and drops its journal, whose transactions are then part
+   * of the file, in one transaction. The file is replaced only once it is completely written.
+   *
+   * @param path      the path of the portfolio file.
+   * @param jsonArray the transactions of the portfolio.
+   * @throws IOException if it fails to write the file, in which case it is left as it was.
+   */
+  private static void writeSnapshot(String path, JSONArray jsonArray) throws IOException {
+    try (FileTransaction transaction = new FileTransaction()) {
+      transaction.write(path, out -> {
+        JSONWriter writer = new JSONWriter(out);
+        writer.beginObject().name("stocks").beginArray();
+        for (int i = 0; i < jsonArray.size(); i++) {
+          writer.value(jsonArray.get(i));
+        }
+        writer.endArray().endObject();
+      });
+      transaction.delete(path + PortfolioJournal.EXTENSION);
+      transaction.commit();
+    }
+  }
+
+
+  private String path(String userName, String kind, String name) {
+    return this.directory + "/" + userName + "/" + kind + "/" + name;
+  }
+}
@@ -0,0 +1,569 @@
+package stocks.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An embedded key/value store in a single file of fixed-size pages. The keys are kept sorted in a
+ * B+tree: the internal pages hold separator keys and the numbers of their child pages, and the
+ * leaf pages hold the entries and the number of the next leaf, so that every key with a prefix is
+ * read with one descent and a walk along the leaves. Keys are compared as unsigned bytes.
+ * <ol>
+ * <li>page 0 - magic number, version, page count and root page, 4 bytes each.</li>
+ * <li>leaf page - type, entry count (2 bytes), next leaf (4 bytes), then for every entry the key
+ * and the value, each preceded by its length (2 bytes).</li>
+ * <li>internal page - type, key count (2 bytes), first child (4 bytes), then for every key the
+ * key, preceded by its length, and the child to its right.</li>
+ * </ol>
+ * Pages are read through a memory mapping of the file and kept in a bounded, least recently used
+ * buffer pool. Removing keys does not merge pages; the space is reused by later keys of the same
+ * range.
+ *
+ * <p>The pages changed by a batch of puts and removes are only written on commit. They are first
+ * appended to a write-ahead log next to the store and the log is forced to the disk once, and only
+ * then are they written to the store. The store itself is forced to the disk, and the log emptied,
+ * once the log has grown past CHECKPOINT_LENGTH. On open, the complete batches in the log are
+ * written to the store again, so a crash never leaves a batch half applied.
+ */
+final class PageStore implements Closeable {
+  static final int PAGE_SIZE = 4096;
+  static final int MAX_ENTRY_SIZE = PAGE_SIZE / 4;
+  static final int POOL_PAGES = 1024;
+  static final long CHECKPOINT_LENGTH = 4 * 1024 * 1024;
+  static final String LOG_EXTENSION = ".wal";
+
+  private static final int MAGIC = 0x50475354;
+  private static final int VERSION = 1;
+  private static final int COMMIT_MAGIC = 0x434f4d54;
+  private static final byte LEAF = 1;
+  private static final byte INTERNAL = 2;
+  private static final int NODE_HEADER = 7;
+
+  private final FileChannel channel;
+  private final FileChannel log;
+  private final Map<Integer, byte[]> pool;
+  private final Map<Integer, byte[]> dirty;
+  private MappedByteBuffer map;
+  private int mappedPages;
+  private int pageCount;
+  private int rootPage;
+
+  private PageStore(FileChannel channel, FileChannel log) {
+    this.channel = channel;
+    this.log = log;
+    this.pool = new LinkedHashMap<>(64, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+        return size() > POOL_PAGES;
+      }
+    };
+    this.dirty = new HashMap<>();
+  }
+
+
+  /**
+   * Opens a store, creating it if it does not exist, and applies the batches that were committed
+   * to its log but not written to the store.
+   *
+   * @param file the path of the store.
+   * @return the store.
+   * @throws IOException if it fails to open the store, or the file is not a store.
+   */
+  static PageStore open(Path file) throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+    FileChannel log = FileChannel.open(Path.of(file + LOG_EXTENSION), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+    PageStore store = new PageStore(channel, log);
+    try {
+      store.recover();
+      if (channel.size() == 0) {
+        store.pageCount = 2;
+        store.rootPage = 1;
+        store.dirty.put(1, new Node(LEAF).encode());
+        store.commit();
+      } else {
+        ByteBuffer header = store.page(0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+          throw new IOException(file + " is not a page store.");
+        }
+        store.pageCount = header.getInt(8);
+        store.rootPage = header.getInt(12);
+      }
+    } catch (IOException | RuntimeException e) {
+      store.close();
+      throw e;
+    }
+    return store;
+  }
+
+
+  /**
+   * Returns the value of a key.
+   *
+   * @param key the key.
+   * @return the value, or null if the key is not in the store.
+   * @throws IOException if it fails to read the store.
+   */
+  synchronized byte[] get(byte[] key) throws IOException {
+    Node leaf = findLeaf(key);
+    int index = leaf.search(key);
+    return index >= 0 ? leaf.values.get(index) : null;
+  }
+
+
+  /**
+   * Returns every entry whose key starts with a prefix, in order of key.
+   *
+   * @param prefix the prefix of the keys.
+   * @return the keys and the values, as pairs.
+   * @throws IOException if it fails to read the store.
+   */
+  synchronized List<byte[][]> scan(byte[] prefix) throws IOException {
+    List<byte[][]> entries = new ArrayList<>();
+    Node leaf = findLeaf(prefix);
+    int index = leaf.lowerBound(prefix);
+    while (true) {
+      for (; index < leaf.keys.size(); index++) {
+        byte[] key = leaf.keys.get(index);
+        if (!startsWith(key, prefix)) {
+          return entries;
+        }
+        entries.add(new byte[][]{key, leaf.values.get(index)});
+      }
+      if (leaf.link == 0) {
+        return entries;
+      }
+      leaf = node(leaf.link);
+      index = 0;
+    }
+  }
+
+
+  /**
+   * Sets the value of a key. The change is written on commit.
+   *
+   * @param key   the key.
+   * @param value the value.
+   * @throws IOException              if it fails to read the store.
+   * @throws IllegalArgumentException if the key and the value are larger than MAX_ENTRY_SIZE.
+   */
+  synchronized void put(byte[] key, byte[] value) throws IOException, IllegalArgumentException {
+    if (key.length + value.length + 4 > MAX_ENTRY_SIZE) {
+      throw new IllegalArgumentException("The entry is too large for the page store.");
+    }
+    Object[] split = insert(this.rootPage, key, value);
+    if (split != null) {
+      Node root = new Node(INTERNAL);
+      root.link = this.rootPage;
+      root.keys.add((byte[]) split[0]);
+      root.children.add((Integer) split[1]);
+      this.rootPage = allocate(root);
+    }
+  }
+
+
+  /**
+   * Removes every key that starts with a prefix. The change is written on commit.
+   *
+   * @param prefix the prefix of the keys.
+   * @return the number of keys removed.
+   * @throws IOException if it fails to read the store.
+   */
+  synchronized int removePrefix(byte[] prefix) throws IOException {
+    int removed = 0;
+    int pageNumber = findLeafPage(prefix);
+    Node leaf = node(pageNumber);
+    int index = leaf.lowerBound(prefix);
+    while (true) {
+      int end = index;
+      while (end < leaf.keys.size() && startsWith(leaf.keys.get(end), prefix)) {
+        end++;
+      }
+      boolean last = end < leaf.keys.size() || leaf.link == 0;
+      if (end > index) {
+        leaf.keys.subList(index, end).clear();
+        leaf.values.subList(index, end).clear();
+        this.dirty.put(pageNumber, leaf.encode());
+        removed += end - index;
+      }
+      if (last) {
+        return removed;
+      }
+      pageNumber = leaf.link;
+      leaf = node(pageNumber);
+      index = 0;
+    }
+  }
+
+
+  /**
+   * Makes the puts and the removes since the last commit durable and writes them to the store.
+   *
+   * @throws IOException if it fails to write the log or the store.
+   */
+  synchronized void commit() throws IOException {
+    if (this.dirty.isEmpty()) {
+      return;
+    }
+    ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE).order(ByteOrder.BIG_ENDIAN);
+    header.putInt(MAGIC).putInt(VERSION).putInt(this.pageCount).putInt(this.rootPage);
+    this.dirty.put(0, header.array());
+
+    ByteBuffer batch = ByteBuffer.allocate(4 + this.dirty.size() * (4 + PAGE_SIZE) + 12)
+            .order(ByteOrder.BIG_ENDIAN);
+    batch.putInt(this.dirty.size());
+    for (Map.Entry<Integer, byte[]> entry : this.dirty.entrySet()) {
+      batch.putInt(entry.getKey()).put(entry.getValue());
+    }
+    CRC32 crc = new CRC32();
+    crc.update(batch.array(), 0, batch.position());
+    batch.putLong(crc.getValue()).putInt(COMMIT_MAGIC);
+    batch.flip();
+    this.log.position(this.log.size());
+    while (batch.hasRemaining()) {
+      this.log.write(batch);
+    }
+    this.log.force(false);
+
+    writePages(this.dirty);
+    this.pool.putAll(this.dirty);
+    this.dirty.clear();
+    if (this.log.size() > CHECKPOINT_LENGTH) {
+      this.channel.force(false);
+      this.log.truncate(0);
+    }
+  }
+
+
+  /**
+   * Drops the puts and the removes since the last commit.
+   *
+   * @throws IOException if it fails to read the store.
+   */
+  synchronized void rollback() throws IOException {
+    this.dirty.clear();
+    if (this.channel.size() > 0) {
+      ByteBuffer header = page(0);
+      this.pageCount = header.getInt(8);
+      this.rootPage = header.getInt(12);
+    }
+  }
+
+
+  /**
+   * Forces the store to the disk and closes it. The puts and the removes that were not committed
+   * are dropped.
+   *
+   * @throws IOException if it fails to close the store.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      this.channel.force(false);
+      this.log.truncate(0);
+    } finally {
+      this.channel.close();
+      this.log.close();
+    }
+  }
+
+
+  private Object[] insert(int pageNumber, byte[] key, byte[] value) throws IOException {
+    Node node = node(pageNumber);
+    if (node.type == LEAF) {
+      int index = node.search(key);
+      if (index >= 0) {
+        node.values.set(index, value);
+      } else {
+        node.keys.add(-index - 1, key);
+        node.values.add(-index - 1, value);
+      }
+    } else {
+      int child = node.childIndex(key);
+      Object[] split = insert(node.child(child), key, value);
+      if (split == null) {
+        return null;
+      }
+      node.keys.add(child, (byte[]) split[0]);
+      node.children.add(child, (Integer) split[1]);
+    }
+    if (node.size() <= PAGE_SIZE) {
+      this.dirty.put(pageNumber, node.encode());
+      return null;
+    }
+
+    Node right = new Node(node.type);
+    int half = node.splitIndex();
+    byte[] separator;
+    if (node.type == LEAF) {
+      right.keys.addAll(node.keys.subList(half, node.keys.size()));
+      right.values.addAll(node.values.subList(half, node.values.size()));
+      node.keys.subList(half, node.keys.size()).clear();
+      node.values.subList(half, node.values.size()).clear();
+      right.link = node.link;
+      separator = right.keys.get(0);
+      int rightPage = allocate(right);
+      node.link = rightPage;
+      this.dirty.put(pageNumber, node.encode());
+      return new Object[]{separator, rightPage};
+    }
+    separator = node.keys.get(half);
+    right.link = node.children.get(half);
+    right.keys.addAll(node.keys.subList(half + 1, node.keys.size()));
+    right.children.addAll(node.children.subList(half + 1, node.children.size()));
+    node.keys.subList(half, node.keys.size()).clear();
+    node.children.subList(half, node.children.size()).clear();
+    int rightPage = allocate(right);
+    this.dirty.put(pageNumber, node.encode());
+    return new Object[]{separator, rightPage};
+  }
+
+
+  private Node findLeaf(byte[] key) throws IOException {
+    return node(findLeafPage(key));
+  }
+
+
+  private int findLeafPage(byte[] key) throws IOException {
+    int page = this.rootPage;
+    Node node = node(page);
+    while (node.type == INTERNAL) {
+      page = node.child(node.childIndex(key));
+      node = node(page);
+    }
+    return page;
+  }
+
+
+  private int allocate(Node node) {
+    int pageNumber = this.pageCount++;
+    this.dirty.put(pageNumber, node.encode());
+    return pageNumber;
+  }
+
+
+  private Node node(int pageNumber) throws IOException {
+    return Node.decode(page(pageNumber));
+  }
+
+
+  private ByteBuffer page(int pageNumber) throws IOException {
+    byte[] bytes = this.dirty.get(pageNumber);
+    if (bytes == null) {
+      bytes = this.pool.get(pageNumber);
+    }
+    if (bytes == null) {
+      bytes = new byte[PAGE_SIZE];
+      if (pageNumber >= this.mappedPages) {
+        remap();
+      }
+      if (pageNumber < this.mappedPages) {
+        this.map.get(pageNumber * PAGE_SIZE, bytes);
+      } else {
+        throw new IOException("Page " + pageNumber + " is past the end of the page store.");
+      }
+      this.pool.put(pageNumber, bytes);
+    }
+    return ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+  }
+
+
+  private void remap() throws IOException {
+    int pages = (int) (this.channel.size() / PAGE_SIZE);
+    if (pages > this.mappedPages) {
+      this.map = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) pages * PAGE_SIZE);
+      this.mappedPages = pages;
+    }
+  }
+
+
+  private void writePages(Map<Integer, byte[]> pages) throws IOException {
+    for (Map.Entry<Integer, byte[]> entry : pages.entrySet()) {
+      ByteBuffer buffer = ByteBuffer.wrap(entry.getValue());
+      long position = (long) entry.getKey() * PAGE_SIZE;
+      while (buffer.hasRemaining()) {
+        position += this.channel.write(buffer, position);
+      }
+    }
+  }
+
+
+  /**
+   * Writes the complete batches in the log to the store again, and empties the log. A batch that
+   * was not completely written, or does not match its checksum, and every batch after it, are
+   * dropped.
+   */
+  private void recover() throws IOException {
+    long size = this.log.size();
+    if (size == 0) {
+      return;
+    }
+    ByteBuffer content = ByteBuffer.allocate((int) size).order(ByteOrder.BIG_ENDIAN);
+    while (content.hasRemaining() && this.log.read(content, content.position()) > 0) {
+      continue;
+    }
+    content.flip();
+    while (content.remaining() >= 4) {
+      int start = content.position();
+      int count = content.getInt();
+      long length = 4L + count * (4L + PAGE_SIZE);
+      if (count <= 0 || start + length + 12 > content.limit()) {
+        break;
+      }
+      CRC32 crc = new CRC32();
+      crc.update(content.array(), start, (int) length);
+      content.position((int) (start + length));
+      if (content.getLong() != crc.getValue() || content.getInt() != COMMIT_MAGIC) {
+        break;
+      }
+      Map<Integer, byte[]> pages = new LinkedHashMap<>();
+      content.position(start + 4);
+      for (int i = 0; i < count; i++) {
+        int pageNumber = content.getInt();
+        byte[] bytes = new byte[PAGE_SIZE];
+        content.get(bytes);
+        pages.put(pageNumber, bytes);
+      }
+      content.position((int) (start + length + 12));
+      writePages(pages);
+    }
+    this.channel.force(false);
+    this.log.truncate(0);
+  }
+
+
+  private static boolean startsWith(byte[] key, byte[] prefix) {
+    return key.length >= prefix.length
+            && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+  }
+
+
+  /**
+   * A page of the B+tree, decoded. In a leaf, link is the next leaf, or 0 for the last leaf; in an
+   * internal page, link is the first child and children holds the child to the right of every key.
+   */
+  private static final class Node {
+    private final byte type;
+    private int link;
+    private final List<byte[]> keys = new ArrayList<>();
+    private final List<byte[]> values = new ArrayList<>();
+    private final List<Integer> children = new ArrayList<>();
+
+    private Node(byte type) {
+      this.type = type;
+    }
+
+    private static Node decode(ByteBuffer page) {
+      Node node = new Node(page.get(0));
+      int count = page.getShort(1) & 0xffff;
+      node.link = page.getInt(3);
+      page.position(NODE_HEADER);
+      for (int i = 0; i < count; i++) {
+        node.keys.add(read(page));
+        if (node.type == LEAF) {
+          node.values.add(read(page));
+        } else {
+          node.children.add(page.getInt());
+        }
+      }
+      return node;
+    }
+
+    private static byte[] read(ByteBuffer page) {
+      byte[] bytes = new byte[page.getShort() & 0xffff];
+      page.get(bytes);
+      return bytes;
+    }
+
+    private byte[] encode() {
+      ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE).order(ByteOrder.BIG_ENDIAN);
+      page.put(this.type).putShort((short) this.keys.size()).putInt(this.link);
+      for (int i = 0; i < this.keys.size(); i++) {
+        page.putShort((short) this.keys.get(i).length).put(this.keys.get(i));
+        if (this.type == LEAF) {
+          page.putShort((short) this.values.get(i).length).put(this.values.get(i));
+        } else {
+          page.putInt(this.children.get(i));
+        }
+      }
+      return page.array();
+    }
+
+    private int size() {
+      int size = NODE_HEADER;
+      for (int i = 0; i < this.keys.size(); i++) {
+        size += entrySize(i);
+      }
+      return size;
+    }
+
+    private int entrySize(int index) {
+      return 2 + this.keys.get(index).length
+              + (this.type == LEAF ? 2 + this.values.get(index).length : 4);
+    }
+
+    /**
+     * Returns the index of the first entry of the right half of a page that overflowed, chosen so
+     * that the entries before it hold at most half of the bytes. Since no entry is larger than a
+     * quarter of a page, both halves then fit in a page, whatever the sizes of the entries.
+     */
+    private int splitIndex() {
+      int half = (size() - NODE_HEADER) / 2;
+      int bytes = 0;
+      int index = 0;
+      while (index < this.keys.size() - 1 && bytes + entrySize(index) <= half) {
+        bytes += entrySize(index);
+        index++;
+      }
+      return Math.max(index, 1);
+    }
+
+    private int search(byte[] key) {
+      int low = 0;
+      int high = this.keys.size() - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int compare = Arrays.compareUnsigned(this.keys.get(mid), key);
+        if (compare < 0) {
+          low = mid + 1;
+        } else if (compare > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -(low + 1);
+    }
+
+    private int lowerBound(byte[] key) {
+      int index = search(key);
+      return index >= 0 ? index : -index - 1;
+    }
+
+    private int childIndex(byte[] key) {
+      int index = search(key);
+      return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private int child(int index) {
+      return index == 0 ? this.link : this.children.get(index - 1);
+    }
+  }
+}
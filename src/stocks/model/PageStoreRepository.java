@@ -0,0 +1,270 @@
+package stocks.model;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+import jsonparser.JSONParser;
+import jsonparser.JSONWriter;
+
+/**
+ * The repository that keeps all the portfolios in a single page store file. Every transaction is
+ * an entry of the store, keyed by its user, the kind and the name of its portfolio, its date and
+ * its position in the portfolio, so the transactions of a portfolio are next to each other in the
+ * store, ordered by date, and are read with a single scan. The value of an entry is the JSON object
+ * of the transaction. A catalog entry per portfolio holds its version, which is increased by every
+ * write, and its number of transactions.
+ *
+ * <p>Adding transactions to a portfolio only writes the pages of the new entries and of its
+ * catalog entry; nothing has to be compacted.
+ *
+ * <p>When a store without any portfolio is opened, the JSON portfolios in the user directories
+ * next to the store file are imported into it once, in a single commit, so that switching to the
+ * page store keeps the portfolios written before. The JSON files are left as they are, and are not
+ * read again once the store has a portfolio.
+ */
+class PageStoreRepository implements PortfolioRepository {
+  static final String STORE_PATH = "res/users/portfolios.db";
+  private static final byte CATALOG = 'C';
+  private static final byte ROW = 'R';
+
+  private final String storePath;
+  private PageStore store;
+
+  /**
+   * A constructor of the PageStoreRepository class. The store is opened when it is first used.
+   *
+   * @param storePath the path of the page store file.
+   */
+  PageStoreRepository(String storePath) {
+    this.storePath = storePath;
+  }
+
+
+  @Override
+  public synchronized boolean exists(String userName, String kind, String name) {
+    try {
+      return store().get(catalogKey(userName, kind, name)) != null;
+    } catch (IOException e) {
+      System.out.println("Unable to open the page store.");
+      return false;
+    }
+  }
+
+
+  @Override
+  public synchronized PortfolioSnapshotCache.Source getSource(String userName, String kind,
+          String name) {
+    long[] catalog = null;
+    try {
+      catalog = readCatalog(userName, kind, name);
+    } catch (IOException e) {
+      System.out.println("Unable to open the page store.");
+    }
+    return PortfolioSnapshotCache.Source.of(sourcePath(userName, kind, name),
+            catalog == null ? 0 : catalog[0], catalog == null ? 0 : catalog[1]);
+  }
+
+
+  @Override
+  public synchronized JSONArray load(String userName, String kind, String name)
+          throws IOException {
+    long[] catalog = readCatalog(userName, kind, name);
+    if (catalog == null) {
+      throw new FileNotFoundException(sourcePath(userName, kind, name));
+    }
+    List<byte[][]> entries = store().scan(rowPrefix(userName, kind, name));
+    Object[] rows = new Object[entries.size()];
+    JSONParser jsonParser = new JSONParser();
+    for (byte[][] entry : entries) {
+      int position = ByteBuffer.wrap(entry[0], entry[0].length - 4, 4).getInt();
+      if (position < 0 || position >= rows.length) {
+        throw new IOException("The page store is corrupted.");
+      }
+      try {
+        rows[position] = jsonParser.parseObject(new String(entry[1], StandardCharsets.UTF_8));
+      } catch (IllegalArgumentException e) {
+        throw new IOException("The page store is corrupted.", e);
+      }
+    }
+
+    JSONArray jsonArray = new JSONArray();
+    for (Object row : rows) {
+      jsonArray.add(row);
+    }
+    TransactionTable.load(jsonArray, PortfolioSnapshotCache.Source.of(
+            sourcePath(userName, kind, name), catalog[0], catalog[1]));
+    return jsonArray;
+  }
+
+
+  @Override
+  public synchronized void append(String userName, String kind, String name, JSONArray jsonArray,
+          int from) throws IOException {
+    long[] catalog = readCatalog(userName, kind, name);
+    if (catalog == null) {
+      throw new FileNotFoundException(sourcePath(userName, kind, name));
+    }
+    PageStore pages = store();
+    try {
+      int position = (int) catalog[1];
+      for (int i = from; i < jsonArray.size(); i++) {
+        putRow(pages, userName, kind, name, position++, (JSONObject) jsonArray.get(i));
+      }
+      putCatalog(pages, userName, kind, name, catalog[0] + 1, position);
+      pages.commit();
+    } catch (IOException | RuntimeException e) {
+      pages.rollback();
+      throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+    }
+  }
+
+
+  @Override
+  public synchronized void write(String userName, String kind, String name, JSONArray jsonArray)
+          throws IOException {
+    long[] catalog = readCatalog(userName, kind, name);
+    PageStore pages = store();
+    try {
+      pages.removePrefix(rowPrefix(userName, kind, name));
+      for (int i = 0; i < jsonArray.size(); i++) {
+        putRow(pages, userName, kind, name, i, (JSONObject) jsonArray.get(i));
+      }
+      putCatalog(pages, userName, kind, name, catalog == null ? 1 : catalog[0] + 1,
+              jsonArray.size());
+      pages.commit();
+    } catch (IOException | RuntimeException e) {
+      pages.rollback();
+      throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+    }
+  }
+
+
+  private PageStore store() throws IOException {
+    if (this.store == null) {
+      PageStore pages = PageStore.open(Path.of(this.storePath));
+      try {
+        if (pages.scan(new byte[]{CATALOG}).isEmpty()) {
+          importJsonPortfolios(pages);
+        }
+      } catch (IOException e) {
+        pages.close();
+        throw e;
+      }
+      this.store = pages;
+    }
+    return this.store;
+  }
+
+
+  /**
+   * Copies every JSON portfolio in the user directories next to the store file into the store, as
+   * the JSON repository reads it, along with its journal. A portfolio that can not be read is
+   * reported and left out.
+   *
+   * @param pages the store, without any portfolio.
+   * @throws IOException if the portfolios could not be written to the store.
+   */
+  private void importJsonPortfolios(PageStore pages) throws IOException {
+    File directory = Path.of(this.storePath).toAbsolutePath().getParent().toFile();
+    File[] users = directory.listFiles(File::isDirectory);
+    if (users == null) {
+      return;
+    }
+    Arrays.sort(users);
+    JsonDirectoryRepository json = new JsonDirectoryRepository(directory.getPath());
+    int imported = 0;
+    try {
+      for (File user : users) {
+        for (String kind : new String[]{FLEXIBLE, INFLEXIBLE}) {
+          String[] names = new File(user, kind).list((dir, name) -> name.endsWith(".json"));
+          if (names == null) {
+            continue;
+          }
+          Arrays.sort(names);
+          for (String name : names) {
+            JSONArray jsonArray;
+            try {
+              jsonArray = json.load(user.getName(), kind, name);
+            } catch (IOException | RuntimeException e) {
+              System.out.println("Unable to import " + user.getName() + "/" + kind + "/" + name
+                      + ".");
+              continue;
+            }
+            for (int i = 0; i < jsonArray.size(); i++) {
+              putRow(pages, user.getName(), kind, name, i, (JSONObject) jsonArray.get(i));
+            }
+            putCatalog(pages, user.getName(), kind, name, 1, jsonArray.size());
+            imported++;
+          }
+        }
+      }
+      if (imported > 0) {
+        pages.commit();
+      }
+    } catch (IOException | RuntimeException e) {
+      pages.rollback();
+      throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+    }
+  }
+
+
+  private long[] readCatalog(String userName, String kind, String name) throws IOException {
+    byte[] value = store().get(catalogKey(userName, kind, name));
+    if (value == null) {
+      return null;
+    }
+    String[] fields = new String(value, StandardCharsets.UTF_8).split(",");
+    return new long[]{Long.parseLong(fields[0]), Long.parseLong(fields[1])};
+  }
+
+
+  private void putCatalog(PageStore pages, String userName, String kind, String name,
+          long version, long count) throws IOException {
+    pages.put(catalogKey(userName, kind, name),
+            (version + "," + count).getBytes(StandardCharsets.UTF_8));
+  }
+
+
+  private void putRow(PageStore pages, String userName, String kind, String name, int position,
+          JSONObject row) throws IOException {
+    StringWriter out = new StringWriter();
+    new JSONWriter(out).value(row);
+    byte[] prefix = rowPrefix(userName, kind, name);
+    byte[] date = String.valueOf(row.get("transaction_date")).getBytes(StandardCharsets.UTF_8);
+    ByteBuffer key = ByteBuffer.allocate(prefix.length + date.length + 5);
+    key.put(prefix).put(date).put((byte) 0).putInt(position);
+    pages.put(key.array(), out.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+
+  private String sourcePath(String userName, String kind, String name) {
+    return this.storePath + "#" + userName + "/" + kind + "/" + name;
+  }
+
+
+  private static byte[] catalogKey(String userName, String kind, String name) {
+    return key(CATALOG, userName, kind, name);
+  }
+
+
+  private static byte[] rowPrefix(String userName, String kind, String name) {
+    return key(ROW, userName, kind, name);
+  }
+
+
+  private static byte[] key(byte type, String userName, String kind, String name) {
+    byte[] key = (userName + '\0' + kind + '\0' + name + '\0').getBytes(StandardCharsets.UTF_8);
+    byte[] typed = new byte[key.length + 1];
+    typed[0] = type;
+    System.arraycopy(key, 0, typed, 1, key.length);
+    return typed;
+  }
+}
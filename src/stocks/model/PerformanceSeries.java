@@ -0,0 +1,235 @@
+package stocks.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import jsonparser.JSONArray;
+
+/**
+ * The value of a portfolio on every trading day of a range, for charts. The daily values of a
+ * portfolio read from a file are kept, so that showing the portfolio again, or a range inside or
+ * next to the one shown before, only values the trading days that were not valued yet. The kept
+ * values are dropped when the portfolio file changes or new prices are fetched.
+ *
+ * <p>A daily series over a long range has far more points than a chart can show. It is reduced to
+ * a number of points with the largest triangle three buckets algorithm, which keeps the first and
+ * the last point and, from every bucket of points in between, the point that forms the largest
+ * triangle with the point kept before it and the average of the next bucket. Peaks and troughs are
+ * kept, where taking every n-th point or the value at the end of every month would miss them.
+ */
+class PerformanceSeries {
+  private static final int MAX_PORTFOLIOS = 32;
+  private static final Map<String, PerformanceSeries> SERIES = Collections.synchronizedMap(
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PerformanceSeries> eldest) {
+              return size() > MAX_PORTFOLIOS;
+            }
+          });
+
+  private final PortfolioSnapshotCache.Source source;
+  private final long priceGeneration;
+  private final int from;
+  private final int to;
+  private final int[] days;
+  private final double[] values;
+
+  private PerformanceSeries(PortfolioSnapshotCache.Source source, long priceGeneration, int from,
+          int to, int[] days, double[] values) {
+    this.source = source;
+    this.priceGeneration = priceGeneration;
+    this.from = from;
+    this.to = to;
+    this.days = days;
+    this.values = values;
+  }
+
+
+  /**
+   * Returns the value of a portfolio on every trading day between two days. The days that could
+   * not be valued are left out.
+   *
+   * @param stocksDataArray the data in a portfolio.
+   * @param from            the first day as an epoch day.
+   * @param to              the last day as an epoch day.
+   * @param prices          looks up the price of a stock on a date.
+   * @return the daily series.
+   */
+  static PerformanceSeries daily(JSONArray stocksDataArray, int from, int to,
+          PortfolioValuation.PriceLookup prices) {
+    PortfolioSnapshotCache.Source source = TransactionTable.of(stocksDataArray).getSource();
+    long generation = PortfolioSnapshotCache.shared().getPriceGeneration();
+    PerformanceSeries cached = source == null ? null : SERIES.get(source.getPath());
+    if (cached != null && (!cached.source.sameVersion(source)
+            || cached.priceGeneration != generation)) {
+      cached = null;
+    }
+
+    PerformanceSeries series;
+    if (cached != null && cached.from <= from && cached.to >= to) {
+      series = cached;
+    } else {
+      PortfolioValuation valuation = new PortfolioValuation(stocksDataArray);
+      if (cached == null) {
+        series = compute(valuation, source, generation, from, to, prices);
+      } else {
+        series = cached;
+        if (from < series.from) {
+          series = join(compute(valuation, source, generation, from, series.from - 1, prices),
+                  series);
+        }
+        if (to > series.to) {
+          series = join(series, compute(valuation, source, generation, series.to + 1, to,
+                  prices));
+        }
+      }
+      if (source != null && series.isComplete()) {
+        SERIES.put(source.getPath(), series);
+      }
+    }
+    return series.slice(from, to);
+  }
+
+
+  /**
+   * Reduces the series to at most a number of points, keeping its shape.
+   *
+   * @param points the number of points to keep, at least 3.
+   * @return the reduced series, or this series if it has no more points than that.
+   */
+  PerformanceSeries downsample(int points) {
+    int size = size();
+    if (points < 3 || size <= points) {
+      return this;
+    }
+    int[] keptDays = new int[points];
+    double[] keptValues = new double[points];
+    keptDays[0] = this.days[0];
+    keptValues[0] = this.values[0];
+
+    double bucketSize = (double) (size - 2) / (points - 2);
+    int kept = 0;
+    for (int bucket = 0; bucket < points - 2; bucket++) {
+      int start = (int) (bucket * bucketSize) + 1;
+      int end = (int) ((bucket + 1) * bucketSize) + 1;
+      int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+
+      double averageDay = 0;
+      double averageValue = 0;
+      for (int i = end; i < nextEnd; i++) {
+        averageDay += this.days[i];
+        averageValue += this.values[i];
+      }
+      averageDay /= nextEnd - end;
+      averageValue /= nextEnd - end;
+
+      double largestArea = -1;
+      int largest = start;
+      for (int i = start; i < end; i++) {
+        double area = Math.abs((this.days[kept] - averageDay) * (this.values[i] - this.values[kept])
+                - (this.days[kept] - this.days[i]) * (averageValue - this.values[kept]));
+        if (area > largestArea) {
+          largestArea = area;
+          largest = i;
+        }
+      }
+      keptDays[bucket + 1] = this.days[largest];
+      keptValues[bucket + 1] = this.values[largest];
+      kept = largest;
+    }
+    keptDays[points - 1] = this.days[size - 1];
+    keptValues[points - 1] = this.values[size - 1];
+    return new PerformanceSeries(this.source, this.priceGeneration, this.from, this.to, keptDays,
+            keptValues);
+  }
+
+
+  /**
+   * Returns the number of points in the series.
+   *
+   * @return the number of (day, value) points.
+   */
+  int size() {
+    return this.days.length;
+  }
+
+
+  /**
+   * Returns the day of a point.
+   *
+   * @param index the point, between 0 and size() - 1.
+   * @return the trading day as an epoch day.
+   */
+  int getDay(int index) {
+    return this.days[index];
+  }
+
+
+  /**
+   * Returns the value of a point.
+   *
+   * @param index the point, between 0 and size() - 1.
+   * @return the value of the portfolio on that day.
+   */
+  double getValue(int index) {
+    return this.values[index];
+  }
+
+
+  private static PerformanceSeries compute(PortfolioValuation valuation,
+          PortfolioSnapshotCache.Source source, long generation, int from, int to,
+          PortfolioValuation.PriceLookup prices) {
+    TradingCalendar calendar = TradingCalendar.getDefault();
+    int[] days = new int[Math.max(0, calendar.countTradingDays(from, to))];
+    int day = calendar.ceilingTradingDay(from);
+    for (int i = 0; i < days.length; i++) {
+      days[i] = day;
+      day = calendar.nextTradingDay(day);
+    }
+    return new PerformanceSeries(source, generation, from, to, days,
+            valuation.valuesOn(days, prices));
+  }
+
+
+  private static PerformanceSeries join(PerformanceSeries first, PerformanceSeries second) {
+    int[] days = Arrays.copyOf(first.days, first.size() + second.size());
+    double[] values = Arrays.copyOf(first.values, days.length);
+    System.arraycopy(second.days, 0, days, first.size(), second.size());
+    System.arraycopy(second.values, 0, values, first.size(), second.size());
+    return new PerformanceSeries(first.source, first.priceGeneration, first.from, second.to, days,
+            values);
+  }
+
+
+  private boolean isComplete() {
+    for (double value : this.values) {
+      if (value == -1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  private PerformanceSeries slice(int from, int to) {
+    int count = 0;
+    for (int i = 0; i < size(); i++) {
+      if (this.days[i] >= from && this.days[i] <= to && this.values[i] != -1) {
+        count++;
+      }
+    }
+    int[] slicedDays = new int[count];
+    double[] slicedValues = new double[count];
+    count = 0;
+    for (int i = 0; i < size(); i++) {
+      if (this.days[i] >= from && this.days[i] <= to && this.values[i] != -1) {
+        slicedDays[count] = this.days[i];
+        slicedValues[count] = this.values[i];
+        count++;
+      }
+    }
+    return new PerformanceSeries(this.source, this.priceGeneration, from, to, slicedDays,
+            slicedValues);
+  }
+}
@@ -0,0 +1,254 @@
+package stocks.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import jsonparser.JSONArray;
+import jsonparser.JSONParser;
+import jsonparser.JSONWriter;
+
+/**
+ * The append-only journal of a flexible portfolio. Instead of reading, extending and writing the
+ * whole portfolio file for every BUY or SELL, the new transactions are appended to a '.journal'
+ * file next to it, one JSON object per line. The portfolio file is the compacted snapshot of the
+ * portfolio, and a reader replays the journal on top of it. Once the journal is larger than the
+ * snapshot, the whole portfolio is written to the snapshot again and the journal is dropped, so
+ * the cost of writing a transaction stays constant on average.
+ *
+ * <p>The first line of a journal names the version of the snapshot it extends, by its size and
+ * modification time. A journal whose snapshot was written again, for example by a compaction that
+ * was interrupted before the journal was dropped, is ignored, since its transactions are already
+ * in the snapshot. A last line that was not completely written is ignored as well, and cut off
+ * before the next transactions are appended.
+ *
+ * <p>How often the journal is forced to the disk is set by the sync policy, which is configured
+ * through the 'stocks.journal.sync' system property: always, periodic or never.
+ */
+final class PortfolioJournal {
+  static final String EXTENSION = ".journal";
+  static final long MIN_COMPACTION_LENGTH = 64 * 1024;
+  static final long SYNC_INTERVAL_MILLIS = 1000;
+  static final String SYNC_POLICY_PROPERTY = "stocks.journal.sync";
+  private static final String MAGIC = "journal";
+
+  /**
+   * When the journal is forced to the disk after transactions are appended to it.
+   * <ul>
+   * <li>ALWAYS - after every append, so a transaction that was written is never lost.</li>
+   * <li>PERIODIC - at most once every SYNC_INTERVAL_MILLIS; a crash may lose the transactions
+   * appended since the last sync.</li>
+   * <li>NEVER - left to the operating system.</li>
+   * </ul>
+   */
+  enum SyncPolicy {
+    ALWAYS, PERIODIC, NEVER
+  }
+
+  private static SyncPolicy syncPolicy = configuredSyncPolicy();
+  private static long lastSync;
+  private static long syncCount;
+
+  private PortfolioJournal() {
+  }
+
+
+  /**
+   * Returns the sync policy configured through the 'stocks.journal.sync' system property, or
+   * ALWAYS if it is not set or not a valid policy.
+   *
+   * @return the sync policy.
+   */
+  static SyncPolicy configuredSyncPolicy() {
+    String value = System.getProperty(SYNC_POLICY_PROPERTY);
+    if (value != null) {
+      for (SyncPolicy policy : SyncPolicy.values()) {
+        if (policy.name().equalsIgnoreCase(value.trim())) {
+          return policy;
+        }
+      }
+      System.out.println("Invalid " + SYNC_POLICY_PROPERTY + ", syncing every journal write.");
+    }
+    return SyncPolicy.ALWAYS;
+  }
+
+
+  /**
+   * Sets when the journals are forced to the disk.
+   *
+   * @param policy the sync policy.
+   */
+  static synchronized void setSyncPolicy(SyncPolicy policy) {
+    syncPolicy = policy;
+  }
+
+
+  /**
+   * Returns when the journals are forced to the disk.
+   *
+   * @return the sync policy.
+   */
+  static synchronized SyncPolicy getSyncPolicy() {
+    return syncPolicy;
+  }
+
+
+  /**
+   * Returns how many times a journal was forced to the disk.
+   *
+   * @return the number of syncs.
+   */
+  static synchronized long getSyncCount() {
+    return syncCount;
+  }
+
+
+  /**
+   * Appends transactions to the journal of a portfolio, starting the journal if there is none for
+   * the current snapshot of the portfolio.
+   *
+   * @param path            the path of the portfolio file.
+   * @param stocksDataArray the transactions.
+   * @param from            the index of the first transaction to append.
+   * @throws IOException if it fails to write the journal.
+   */
+  static synchronized void append(String path, JSONArray stocksDataArray, int from)
+          throws IOException {
+    StringWriter lines = new StringWriter();
+    for (int i = from; i < stocksDataArray.size(); i++) {
+      new JSONWriter(lines).value(stocksDataArray.get(i));
+      lines.write('\n');
+    }
+    String header = "";
+
+    try (FileChannel channel = FileChannel.open(journalFile(path), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      if (!extendsSnapshot(channel, new File(path))) {
+        File snapshot = new File(path);
+        channel.truncate(0);
+        header = MAGIC + "," + snapshot.length() + "," + snapshot.lastModified() + "\n";
+      } else {
+        channel.truncate(lastLineEnd(channel));
+      }
+      ByteBuffer buffer = ByteBuffer.wrap((header + lines).getBytes(StandardCharsets.UTF_8));
+      channel.position(channel.size());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      long now = System.currentTimeMillis();
+      if (syncPolicy == SyncPolicy.ALWAYS
+              || (syncPolicy == SyncPolicy.PERIODIC && now - lastSync >= SYNC_INTERVAL_MILLIS)) {
+        channel.force(false);
+        lastSync = now;
+        syncCount++;
+      }
+    }
+  }
+
+
+  /**
+   * Adds the transactions in the journal of a portfolio to the transactions read from its
+   * snapshot.
+   *
+   * @param path            the path of the portfolio file.
+   * @param stocksDataArray the transactions read from the portfolio file.
+   * @return the number of transactions added.
+   * @throws IOException if it fails to read the journal.
+   */
+  static int replay(String path, JSONArray stocksDataArray) throws IOException {
+    Path journal = journalFile(path);
+    if (!Files.exists(journal)) {
+      return 0;
+    }
+    String content = Files.readString(journal, StandardCharsets.UTF_8);
+    int end = content.indexOf('\n');
+    if (end < 0 || !matches(content.substring(0, end), new File(path))) {
+      return 0;
+    }
+
+    JSONParser jsonParser = new JSONParser();
+    int count = 0;
+    int start = end + 1;
+    while ((end = content.indexOf('\n', start)) >= 0) {
+      try {
+        stocksDataArray.add(jsonParser.parseObject(content.substring(start, end)));
+        count++;
+      } catch (IllegalArgumentException e) {
+        System.out.println("Skipping an invalid journal entry of " + path + ".");
+      }
+      start = end + 1;
+    }
+    return count;
+  }
+
+
+  /**
+   * Tells whether the journal of a portfolio has grown large enough for the portfolio to be
+   * written to its snapshot again.
+   *
+   * @param path the path of the portfolio file.
+   * @return true if the portfolio should be compacted.
+   */
+  static boolean needsCompaction(String path) {
+    long length = journalFile(path).toFile().length();
+    return length > Math.max(MIN_COMPACTION_LENGTH, new File(path).length());
+  }
+
+
+  private static boolean extendsSnapshot(FileChannel channel, File snapshot)
+          throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    channel.read(buffer, 0);
+    String head = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    int end = head.indexOf('\n');
+    return end >= 0 && matches(head.substring(0, end), snapshot);
+  }
+
+
+  /**
+   * Returns the length of the journal up to the end of its last complete line, searching back from
+   * its end, so that a line that was not completely written is cut off.
+   */
+  private static long lastLineEnd(FileChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4096);
+    long end = channel.size();
+    while (end > 0) {
+      long start = Math.max(0, end - buffer.capacity());
+      buffer.clear().limit((int) (end - start));
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, start + buffer.position()) < 0) {
+          break;
+        }
+      }
+      for (int i = buffer.position() - 1; i >= 0; i--) {
+        if (buffer.get(i) == '\n') {
+          return start + i + 1;
+        }
+      }
+      end = start;
+    }
+    return 0;
+  }
+
+
+  private static boolean matches(String header, File snapshot) {
+    String[] fields = header.split(",");
+    try {
+      return fields.length == 3 && fields[0].equals(MAGIC)
+              && Long.parseLong(fields[1]) == snapshot.length()
+              && Long.parseLong(fields[2]) == snapshot.lastModified();
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+
+  private static Path journalFile(String path) {
+    return Path.of(path + EXTENSION);
+  }
+}
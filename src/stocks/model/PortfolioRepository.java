@@ -0,0 +1,121 @@
+package stocks.model;
+
+import java.io.IOException;
+import jsonparser.JSONArray;
+
+/**
+ * Where the portfolios of the users are kept. A portfolio is named by its user, its kind, flexible
+ * or inflexible, and its name, and is read and written as the JSONArray of its transactions, in the
+ * order they were written. The model does not know how the transactions are laid out.
+ *
+ * <p>The repository is chosen through the 'stocks.storage' system property: 'json', the default,
+ * keeps every portfolio in a JSON file in the directory of its user, and 'pagestore' keeps all of
+ * them in a single page store file. All the models of the program share one repository.
+ */
+interface PortfolioRepository {
+  String STORAGE_PROPERTY = "stocks.storage";
+  String FLEXIBLE = "flexible";
+  String INFLEXIBLE = "inflexible";
+
+  /**
+   * Returns the repository configured through the 'stocks.storage' system property, or the JSON
+   * directory if it is not set or not a known repository.
+   *
+   * @return the shared repository.
+   */
+  static PortfolioRepository shared() {
+    return Shared.get();
+  }
+
+
+  /**
+   * Tells whether a portfolio exists.
+   *
+   * @param userName the username.
+   * @param kind     FLEXIBLE or INFLEXIBLE.
+   * @param name     the name of the portfolio.
+   * @return true if the portfolio exists, else false.
+   */
+  boolean exists(String userName, String kind, String name);
+
+
+  /**
+   * Returns the current version of a portfolio, which the caches and the holdings header of the
+   * portfolio are kept for. Called before the portfolio is read, so that a change made while it is
+   * read makes them miss.
+   *
+   * @param userName the username.
+   * @param kind     FLEXIBLE or INFLEXIBLE.
+   * @param name     the name of the portfolio.
+   * @return the source of the portfolio.
+   */
+  PortfolioSnapshotCache.Source getSource(String userName, String kind, String name);
+
+
+  /**
+   * Reads the transactions of a portfolio, stamped with the version of the portfolio that was
+   * read.
+   *
+   * @param userName the username.
+   * @param kind     FLEXIBLE or INFLEXIBLE.
+   * @param name     the name of the portfolio.
+   * @return the transactions of the portfolio.
+   * @throws IOException if the portfolio does not exist or can not be read.
+   */
+  JSONArray load(String userName, String kind, String name) throws IOException;
+
+
+  /**
+   * Adds transactions to the end of an existing portfolio, without writing the ones that are
+   * already in it.
+   *
+   * @param userName  the username.
+   * @param kind      FLEXIBLE or INFLEXIBLE.
+   * @param name      the name of the portfolio.
+   * @param jsonArray the transactions to add.
+   * @param from      the index of the first transaction to add.
+   * @throws IOException if it fails to write the transactions.
+   */
+  void append(String userName, String kind, String name, JSONArray jsonArray, int from)
+          throws IOException;
+
+
+  /**
+   * Writes a whole portfolio, replacing the one of the same name if there is one. The portfolio is
+   * replaced only once it is completely written.
+   *
+   * @param userName  the username.
+   * @param kind      FLEXIBLE or INFLEXIBLE.
+   * @param name      the name of the portfolio.
+   * @param jsonArray the transactions of the portfolio.
+   * @throws IOException if it fails to write the portfolio, in which case it is left as it was.
+   */
+  void write(String userName, String kind, String name, JSONArray jsonArray) throws IOException;
+
+
+  /**
+   * Holds the shared repository, which is only created, and the page store only opened, when it
+   * is first used.
+   */
+  final class Shared {
+    private static PortfolioRepository repository;
+
+    private Shared() {
+    }
+
+    private static synchronized PortfolioRepository get() {
+      if (repository == null) {
+        String value = System.getProperty(STORAGE_PROPERTY);
+        if (value != null && value.trim().equals("pagestore")) {
+          repository = new PageStoreRepository(PageStoreRepository.STORE_PATH);
+        } else {
+          if (value != null && !value.trim().equals("json")) {
+            System.out.println("Invalid " + STORAGE_PROPERTY + ", using the json storage.");
+          }
+          repository = new JsonDirectoryRepository();
+        }
+      }
+      return repository;
+    }
+  }
+}
@@ -0,0 +1,356 @@
+package stocks.model;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of the value and the cost basis of portfolios on dates, so
+ * that showing the same portfolio on the same date again does not value it again. Entries are
+ * keyed by the file a portfolio was loaded from and the date, and remember the size and the
+ * modification time of the file and the size of its journal, so an entry is not used once the
+ * portfolio has changed. Writing to a portfolio also drops its entries explicitly.
+ *
+ * <p>A value depends on the prices as well. Every time new prices are fetched, the price
+ * generation is increased and the values cached before are no longer used; the cost basis only
+ * depends on the portfolio and is kept.
+ *
+ * <p>All the models of the program share one cache, the same way they share one price store. When
+ * the program is run with the 'stocks.cache.statistics' system property set to true, the hits and
+ * the misses of the shared cache are printed when it exits.
+ */
+class PortfolioSnapshotCache {
+  static final int MAX_ENTRIES = 4096;
+  static final String STATISTICS_PROPERTY = "stocks.cache.statistics";
+  private static final PortfolioSnapshotCache SHARED = new PortfolioSnapshotCache(MAX_ENTRIES);
+
+  static {
+    if (Boolean.getBoolean(STATISTICS_PROPERTY)) {
+      Runtime.getRuntime().addShutdownHook(new Thread(
+              () -> System.out.println(SHARED.getStatistics())));
+    }
+  }
+
+  private final int maxEntries;
+  private final LinkedHashMap<String, Entry> entries;
+  private long priceGeneration;
+  private long hits;
+  private long misses;
+
+  /**
+   * A constructor of the PortfolioSnapshotCache class.
+   *
+   * @param maxEntries the number of (portfolio, date) entries kept.
+   * @throws IllegalArgumentException if the number of entries is not positive.
+   */
+  PortfolioSnapshotCache(int maxEntries) throws IllegalArgumentException {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("The snapshot cache size must be positive.");
+    }
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<>(64, 0.75f, true);
+  }
+
+
+  /**
+   * Returns the cache shared by all the models in the process.
+   *
+   * @return the shared cache.
+   */
+  static PortfolioSnapshotCache shared() {
+    return SHARED;
+  }
+
+
+  /**
+   * Returns the value of a portfolio on a date, if it was cached for the current version of the
+   * portfolio file and the current prices.
+   *
+   * @param source the file the portfolio was loaded from, or null if it was not loaded from a file.
+   * @param date   the date as input by the user.
+   * @return the cached value, or null if there is none.
+   */
+  synchronized Double getValue(Source source, String date) {
+    if (source == null) {
+      return null;
+    }
+    Entry entry = lookup(source, date);
+    if (entry == null || Double.isNaN(entry.value) || entry.generation != this.priceGeneration) {
+      this.misses++;
+      return null;
+    }
+    this.hits++;
+    return entry.value;
+  }
+
+
+  /**
+   * Caches the value of a portfolio on a date. The value is not cached if prices were fetched
+   * since it started to be computed.
+   *
+   * @param source     the file the portfolio was loaded from, or null if it was not loaded from a
+   *                   file.
+   * @param date       the date as input by the user.
+   * @param value      the value of the portfolio.
+   * @param generation the price generation read before the value was computed.
+   */
+  synchronized void putValue(Source source, String date, double value, long generation) {
+    if (source != null && generation == this.priceGeneration) {
+      Entry entry = entryFor(source, date);
+      entry.value = value;
+      entry.generation = generation;
+    }
+  }
+
+
+  /**
+   * Returns the cost basis of a portfolio on a date, if it was cached for the current version of
+   * the portfolio file.
+   *
+   * @param source the file the portfolio was loaded from, or null if it was not loaded from a file.
+   * @param date   the date as input by the user.
+   * @return the cached cost basis, or null if there is none.
+   */
+  synchronized Double getCostBasis(Source source, String date) {
+    if (source == null) {
+      return null;
+    }
+    Entry entry = lookup(source, date);
+    if (entry == null || Double.isNaN(entry.costBasis)) {
+      this.misses++;
+      return null;
+    }
+    this.hits++;
+    return entry.costBasis;
+  }
+
+
+  /**
+   * Caches the cost basis of a portfolio on a date.
+   *
+   * @param source    the file the portfolio was loaded from, or null if it was not loaded from a
+   *                  file.
+   * @param date      the date as input by the user.
+   * @param costBasis the cost basis of the portfolio.
+   */
+  synchronized void putCostBasis(Source source, String date, double costBasis) {
+    if (source != null) {
+      entryFor(source, date).costBasis = costBasis;
+    }
+  }
+
+
+  /**
+   * Drops every entry of a portfolio. Called when the portfolio is written.
+   *
+   * @param path the path of the portfolio file.
+   */
+  synchronized void invalidate(String path) {
+    this.entries.values().removeIf(entry -> entry.path.equals(path));
+  }
+
+
+  /**
+   * Returns the current price generation, to be passed to putValue.
+   *
+   * @return the price generation.
+   */
+  synchronized long getPriceGeneration() {
+    return this.priceGeneration;
+  }
+
+
+  /**
+   * Stops using the values cached so far. Called when new prices are fetched.
+   */
+  synchronized void invalidateValues() {
+    this.priceGeneration++;
+  }
+
+
+  /**
+   * Returns the number of lookups that found a cached snapshot.
+   *
+   * @return the hit count.
+   */
+  synchronized long getHitCount() {
+    return this.hits;
+  }
+
+
+  /**
+   * Returns the number of lookups that did not find a cached snapshot.
+   *
+   * @return the miss count.
+   */
+  synchronized long getMissCount() {
+    return this.misses;
+  }
+
+
+  /**
+   * Returns the share of the lookups that found a cached snapshot.
+   *
+   * @return the hit rate between 0 and 1, 0 if there was no lookup.
+   */
+  synchronized double getHitRate() {
+    long lookups = this.hits + this.misses;
+    return lookups == 0 ? 0 : (double) this.hits / lookups;
+  }
+
+
+  /**
+   * Describes the lookups of the cache so far, for the statistics printed on exit.
+   *
+   * @return the hits, the misses and the hit rate of the cache.
+   */
+  synchronized String getStatistics() {
+    return String.format("Portfolio snapshot cache: %d hits, %d misses, %.1f%% hit rate.",
+            getHitCount(), getMissCount(), getHitRate() * 100);
+  }
+
+
+  @Override
+  public synchronized String toString() {
+    return "PortfolioSnapshotCache[entries=" + this.entries.size() + "/" + this.maxEntries
+            + ", hits=" + this.hits + ", misses=" + this.misses + "]";
+  }
+
+
+  private Entry lookup(Source source, String date) {
+    Entry entry = this.entries.get(key(source.path, date));
+    if (entry != null && !entry.isCurrent(source)) {
+      this.entries.remove(key(source.path, date));
+      return null;
+    }
+    return entry;
+  }
+
+
+  private Entry entryFor(Source source, String date) {
+    String key = key(source.path, date);
+    Entry entry = this.entries.get(key);
+    if (entry == null || !entry.isCurrent(source)) {
+      entry = new Entry(source);
+      this.entries.put(key, entry);
+      Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+      while (this.entries.size() > this.maxEntries && iterator.hasNext()) {
+        iterator.next();
+        iterator.remove();
+      }
+    }
+    return entry;
+  }
+
+
+  private static String key(String path, String date) {
+    return path + '\n' + date;
+  }
+
+
+  /**
+   * The file a portfolio was loaded from, along with its size and modification time and the size
+   * of its journal at the time it was read. Transactions are appended to the journal, so its size
+   * grows with every write. A portfolio kept in the page store has no file; its version and its
+   * number of transactions take the place of the modification time and the size.
+   */
+  static final class Source {
+    private final String path;
+    private final long lastModified;
+    private final long length;
+    private final long journalLength;
+    private final boolean file;
+
+    private Source(String path, long lastModified, long length, long journalLength,
+            boolean file) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.length = length;
+      this.journalLength = journalLength;
+      this.file = file;
+    }
+
+    /**
+     * Reads the size and the modification time of a portfolio file and the size of its journal.
+     * Called before the file is read, so that a change made while it is read makes the snapshots
+     * miss.
+     *
+     * @param path the path of the portfolio file.
+     * @return the source of the portfolio.
+     */
+    static Source of(String path) {
+      File file = new File(path);
+      return new Source(path, file.lastModified(), file.length(),
+              new File(path + PortfolioJournal.EXTENSION).length(), true);
+    }
+
+    /**
+     * Returns the source of a portfolio that is not kept in a file.
+     *
+     * @param path    the name of the portfolio, unique in the program.
+     * @param version the version of the portfolio, increased by every write, or 0 if the
+     *                portfolio does not exist.
+     * @param length  the number of transactions of the portfolio.
+     * @return the source of the portfolio.
+     */
+    static Source of(String path, long version, long length) {
+      return new Source(path, version, length, 0, false);
+    }
+
+    String getPath() {
+      return this.path;
+    }
+
+    long getLastModified() {
+      return this.lastModified;
+    }
+
+    long getLength() {
+      return this.length;
+    }
+
+    long getJournalLength() {
+      return this.journalLength;
+    }
+
+    boolean exists() {
+      return this.lastModified != 0;
+    }
+
+    boolean isFile() {
+      return this.file;
+    }
+
+    boolean sameVersion(Source other) {
+      return this.path.equals(other.path) && this.lastModified == other.lastModified
+              && this.length == other.length && this.journalLength == other.journalLength;
+    }
+  }
+
+
+  /**
+   * The snapshots of one portfolio on one date. A snapshot that is not known is NaN.
+   */
+  private static final class Entry {
+    private final String path;
+    private final long lastModified;
+    private final long length;
+    private final long journalLength;
+    private double value = Double.NaN;
+    private long generation;
+    private double costBasis = Double.NaN;
+
+    private Entry(Source source) {
+      this.path = source.path;
+      this.lastModified = source.lastModified;
+      this.length = source.length;
+      this.journalLength = source.journalLength;
+    }
+
+    private boolean isCurrent(Source source) {
+      return this.lastModified == source.lastModified && this.length == source.length
+              && this.journalLength == source.journalLength;
+    }
+  }
+}
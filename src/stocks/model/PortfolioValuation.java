@@ -0,0 +1,186 @@
+package stocks.model;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import jsonparser.JSONArray;
+
+/**
+ * Values a portfolio on a series of dates in a single pass. The transactions are parsed once and
+ * sorted by date, and the dates are visited in ascending order while a pointer walks the
+ * transactions alongside them, keeping the quantity held of every stock. The value on a date is
+ * then the sum of the quantity held times the price on that date, one price per stock instead of
+ * one per transaction.
+ */
+class PortfolioValuation {
+  private final String[] stockSymbols;
+  private final int[] days;
+  private final int[] stockIndexes;
+  private final double[] quantities;
+
+  /**
+   * A constructor of the PortfolioValuation class. Parses and sorts the transactions of a
+   * portfolio.
+   *
+   * @param stocksDataArray the data in a portfolio.
+   */
+  PortfolioValuation(JSONArray stocksDataArray) {
+    TransactionTable table = TransactionTable.of(stocksDataArray);
+    int size = table.size();
+    long[] keys = new long[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = ((long) table.getDay(i) << 32) | i;
+    }
+    Arrays.sort(keys);
+
+    this.stockSymbols = new String[table.stockCount()];
+    for (int id = 0; id < this.stockSymbols.length; id++) {
+      this.stockSymbols[id] = table.getStockSymbol(id);
+    }
+    this.days = new int[size];
+    this.stockIndexes = new int[size];
+    this.quantities = new double[size];
+    for (int i = 0; i < size; i++) {
+      int row = (int) keys[i];
+      double quantity = table.getQuantity(row);
+      this.days[i] = (int) (keys[i] >> 32);
+      this.stockIndexes[i] = table.getStockId(row);
+      this.quantities[i] = table.getOperation(row) == TransactionTable.SELL ? -quantity : quantity;
+    }
+  }
+
+
+  /**
+   * Returns the value of the portfolio on each of a series of dates. A transaction counts towards
+   * the value on its own date. If the price of a stock held on a date can not be found, the value
+   * on that date is -1.
+   *
+   * @param valuationDays the dates as epoch days, in any order.
+   * @param prices        looks up the price of a stock on a date.
+   * @return the value on each date, in the order of the dates.
+   */
+  double[] valuesOn(int[] valuationDays, PriceLookup prices) {
+    long[] order = new long[valuationDays.length];
+    for (int i = 0; i < valuationDays.length; i++) {
+      order[i] = ((long) valuationDays[i] << 32) | i;
+    }
+    Arrays.sort(order);
+
+    double[] values = new double[valuationDays.length];
+    double[] held = new double[this.stockSymbols.length];
+    boolean[] traded = new boolean[this.stockSymbols.length];
+    int next = 0;
+    for (long key : order) {
+      int day = (int) (key >> 32);
+      while (next < this.days.length && this.days[next] <= day) {
+        held[this.stockIndexes[next]] += this.quantities[next];
+        traded[this.stockIndexes[next]] = true;
+        next++;
+      }
+      values[(int) key] = valueOn(day, held, traded, prices);
+    }
+    return values;
+  }
+
+
+  /**
+   * Values many portfolios on the same dates, in parallel on the common fork-join pool. The prices
+   * are looked up through the shared price store, so every series is loaded once however many
+   * portfolios hold the stock.
+   *
+   * @param portfolios    the data in each portfolio; a null portfolio is valued -1 on every date.
+   * @param valuationDays the dates as epoch days, in any order.
+   * @param prices        looks up the price of a stock on a date.
+   * @return the value of each portfolio on each date, one row per portfolio.
+   */
+  static double[][] valuesOf(JSONArray[] portfolios, int[] valuationDays, PriceLookup prices) {
+    double[][] values = new double[portfolios.length][];
+    ForkJoinPool.commonPool().invoke(new ValuationTask(portfolios, valuationDays, prices, values,
+            0, portfolios.length));
+    return values;
+  }
+
+
+  private double valueOn(int day, double[] held, boolean[] traded, PriceLookup prices) {
+    double value = 0;
+    for (int stock = 0; stock < this.stockSymbols.length; stock++) {
+      if (!traded[stock]) {
+        continue;
+      }
+      try {
+        Double price = prices.getPrice(this.stockSymbols[stock], day);
+        if (price == null || price == -1) {
+          return -1;
+        }
+        value += price * held[stock];
+      } catch (IllegalArgumentException | IOException e) {
+        System.out.println("Invalid API call for " + this.stockSymbols[stock]);
+        return -1;
+      }
+    }
+    return value;
+  }
+
+
+  /**
+   * Values a range of portfolios, splitting it in halves until a single portfolio is left.
+   */
+  private static final class ValuationTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final JSONArray[] portfolios;
+    private final int[] valuationDays;
+    private final PriceLookup prices;
+    private final double[][] values;
+    private final int from;
+    private final int to;
+
+    private ValuationTask(JSONArray[] portfolios, int[] valuationDays, PriceLookup prices,
+            double[][] values, int from, int to) {
+      this.portfolios = portfolios;
+      this.valuationDays = valuationDays;
+      this.prices = prices;
+      this.values = values;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.to - this.from > 1) {
+        int middle = (this.from + this.to) >>> 1;
+        invokeAll(new ValuationTask(this.portfolios, this.valuationDays, this.prices, this.values,
+                        this.from, middle),
+                new ValuationTask(this.portfolios, this.valuationDays, this.prices, this.values,
+                        middle, this.to));
+      } else if (this.to > this.from) {
+        JSONArray portfolio = this.portfolios[this.from];
+        if (portfolio == null) {
+          this.values[this.from] = new double[this.valuationDays.length];
+          Arrays.fill(this.values[this.from], -1);
+        } else {
+          this.values[this.from] = new PortfolioValuation(portfolio)
+                  .valuesOn(this.valuationDays, this.prices);
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Looks up the price of a stock on a date.
+   */
+  interface PriceLookup {
+
+    /**
+     * Returns the price of a stock on a date.
+     *
+     * @param stockSymbol the stock name.
+     * @param day         the date as an epoch day.
+     * @return the price, or null if there is none.
+     * @throws IOException if the url used to hit the API failed.
+     */
+    Double getPrice(String stockSymbol, int day) throws IOException;
+  }
+}
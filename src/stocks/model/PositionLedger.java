@@ -0,0 +1,259 @@
+package stocks.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+
+/**
+ * An index of the transactions in a portfolio by stock, used to compute the composition of the
+ * portfolio on any date. The transactions of each stock are kept in the order of the portfolio,
+ * and the running quantity, average price and last transaction date after each of them are
+ * precomputed. When the transactions of a stock are in order of date, which is the case for
+ * portfolios built by buying and selling over time and by investment strategies, the position on a
+ * date is found with one binary search. Otherwise the transactions of the stock up to the date are
+ * replayed.
+ *
+ * <p>The quantity and the average price are rounded to two decimals after every transaction, in
+ * the order of the portfolio, as the composition has always been computed.
+ */
+class PositionLedger {
+  private final Map<String, Position> positions;
+
+  /**
+   * A constructor of the PositionLedger class. Indexes every transaction of a portfolio.
+   *
+   * @param stocksDataArray the data in a portfolio.
+   */
+  PositionLedger(JSONArray stocksDataArray) {
+    TransactionTable table = TransactionTable.of(stocksDataArray);
+    this.positions = new LinkedHashMap<>();
+    for (int row = 0; row < table.size(); row++) {
+      String stockName = table.getStockSymbol(table.getStockId(row));
+      this.positions.computeIfAbsent(stockName, name -> new Position()).add(table, row,
+              (JSONObject) stocksDataArray.get(row));
+    }
+    for (Position position : this.positions.values()) {
+      position.index();
+    }
+  }
+
+
+  /**
+   * Returns the composition of the portfolio on a date: for every stock held on that date, the
+   * quantity, the first and last transaction dates, the price and commission of its first
+   * transaction and the average price.
+   *
+   * @param day the date as an epoch day.
+   * @return the stocks held on that date, in the order of their first transaction.
+   */
+  JSONArray getComposition(int day) {
+    List<Holding> holdings = new ArrayList<>();
+    for (Map.Entry<String, Position> entry : this.positions.entrySet()) {
+      Holding holding = entry.getValue().holdingOn(day);
+      if (holding != null) {
+        holding.stockName = entry.getKey();
+        holdings.add(holding);
+      }
+    }
+    holdings.sort((first, second) -> Integer.compare(first.firstIndex, second.firstIndex));
+
+    JSONArray composition = new JSONArray();
+    for (Holding holding : holdings) {
+      if (holding.quantity > 0) {
+        JSONObject temp = new JSONObject();
+        temp.put("stock_name", holding.stockName);
+        temp.put("quantity", String.valueOf(holding.quantity));
+        temp.put("transaction_date", holding.firstDate);
+        temp.put("price", String.valueOf(holding.price));
+        temp.put("last_transaction_date", holding.lastDate);
+        temp.put("avg_price", String.valueOf(holding.avgPrice));
+        temp.put("commission", String.valueOf(holding.commission));
+        composition.add(temp);
+      }
+    }
+    return composition;
+  }
+
+
+  /**
+   * Parses a transaction date. A date that can not be parsed is taken as today.
+   *
+   * @param date the date in the 'yyyy-MM-dd' format.
+   * @return the date as an epoch day.
+   */
+  static int parseDay(String date) {
+    try {
+      return EpochDays.parse(date);
+    } catch (IllegalArgumentException | NullPointerException e) {
+      System.out.println("Failed to parse the string date to date");
+      return EpochDays.today();
+    }
+  }
+
+
+  /**
+   * The transactions of one stock, in the order of the portfolio.
+   */
+  private static final class Position {
+    private int size;
+    private int[] fileIndexes = new int[4];
+    private int[] days = new int[4];
+    private String[] dates = new String[4];
+    private double[] quantities = new double[4];
+    private double[] prices = new double[4];
+    private boolean[] buys = new boolean[4];
+    private String[] commissions = new String[4];
+
+    private boolean ordered;
+    private double[] runningQuantity;
+    private double[] runningAvgPrice;
+    private int[] runningLastDate;
+
+    private void add(TransactionTable table, int row, JSONObject transaction) {
+      if (this.size == this.days.length) {
+        int capacity = this.size * 2;
+        this.fileIndexes = Arrays.copyOf(this.fileIndexes, capacity);
+        this.days = Arrays.copyOf(this.days, capacity);
+        this.dates = Arrays.copyOf(this.dates, capacity);
+        this.quantities = Arrays.copyOf(this.quantities, capacity);
+        this.prices = Arrays.copyOf(this.prices, capacity);
+        this.buys = Arrays.copyOf(this.buys, capacity);
+        this.commissions = Arrays.copyOf(this.commissions, capacity);
+      }
+      this.fileIndexes[this.size] = row;
+      this.days[this.size] = table.getDay(row);
+      this.dates[this.size] = (String) transaction.get("transaction_date");
+      this.quantities[this.size] = table.getQuantity(row);
+      this.prices[this.size] = table.getPrice(row);
+      this.buys[this.size] = table.getOperation(row) == TransactionTable.BUY;
+      this.commissions[this.size] = (String) transaction.get("commission");
+      this.size++;
+    }
+
+    /**
+     * Precomputes the running position after every transaction, if the transactions are in order
+     * of date.
+     */
+    private void index() {
+      this.ordered = true;
+      for (int i = 1; i < this.size; i++) {
+        if (this.days[i] < this.days[i - 1]) {
+          this.ordered = false;
+          return;
+        }
+      }
+      this.runningQuantity = new double[this.size];
+      this.runningAvgPrice = new double[this.size];
+      this.runningLastDate = new int[this.size];
+      Holding holding = start(0);
+      for (int i = 0; i < this.size; i++) {
+        if (i > 0) {
+          apply(holding, i);
+        }
+        this.runningQuantity[i] = holding.quantity;
+        this.runningAvgPrice[i] = holding.avgPrice;
+        this.runningLastDate[i] = holding.lastIndex;
+      }
+    }
+
+    private Holding holdingOn(int day) {
+      if (this.ordered) {
+        int count = upperBound(day);
+        if (count == 0) {
+          return null;
+        }
+        Holding holding = start(0);
+        holding.quantity = this.runningQuantity[count - 1];
+        holding.avgPrice = this.runningAvgPrice[count - 1];
+        holding.lastIndex = this.runningLastDate[count - 1];
+        holding.lastDate = this.dates[holding.lastIndex];
+        return holding;
+      }
+
+      int anchor = 0;
+      while (anchor < this.size && this.days[anchor] > day) {
+        anchor++;
+      }
+      if (anchor == this.size) {
+        return null;
+      }
+      Holding holding = start(anchor);
+      for (int i = anchor + 1; i < this.size; i++) {
+        if (this.days[i] <= day) {
+          apply(holding, i);
+        }
+      }
+      holding.lastDate = this.dates[holding.lastIndex];
+      return holding;
+    }
+
+    private Holding start(int anchor) {
+      Holding holding = new Holding();
+      holding.anchor = anchor;
+      holding.firstIndex = this.fileIndexes[anchor];
+      holding.quantity = this.quantities[anchor];
+      holding.price = this.prices[anchor];
+      holding.avgPrice = this.prices[anchor];
+      holding.commission = this.commissions[anchor];
+      holding.firstDate = this.dates[anchor];
+      holding.lastIndex = anchor;
+      return holding;
+    }
+
+    private void apply(Holding holding, int i) {
+      int anchorDay = this.days[holding.anchor];
+      if (this.days[i] < anchorDay) {
+        holding.firstDate = this.dates[i];
+      } else if (this.days[i] > anchorDay) {
+        holding.lastIndex = i;
+      }
+
+      if (this.buys[i]) {
+        double oldQuantity = holding.quantity;
+        holding.quantity += this.quantities[i];
+        holding.quantity = Math.round(holding.quantity * 100.0) / 100.0;
+        holding.avgPrice = ((holding.avgPrice * oldQuantity)
+                + (this.prices[i] * this.quantities[i])) / holding.quantity;
+        holding.avgPrice = Math.round(holding.avgPrice * 100.0) / 100.0;
+      } else {
+        holding.quantity -= this.quantities[i];
+        holding.quantity = Math.round(holding.quantity * 100.0) / 100.0;
+      }
+    }
+
+    private int upperBound(int day) {
+      int low = 0;
+      int high = this.size - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (this.days[mid] <= day) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+  }
+
+
+  /**
+   * The position in one stock on a date.
+   */
+  private static final class Holding {
+    private String stockName;
+    private int anchor;
+    private int firstIndex;
+    private double quantity;
+    private double price;
+    private double avgPrice;
+    private String commission;
+    private String firstDate;
+    private String lastDate;
+    private int lastIndex;
+  }
+}
@@ -0,0 +1,58 @@
+package stocks.model;
+
+/**
+ * Decides whether a price lookup can be answered from a locally cached price series, or needs the
+ * API. A series covers every date from before the stock was listed up to its covered-through day,
+ * and any later dates that are not trading days, for instance the weekend after a Friday fetch or
+ * a market holiday.
+ * A date inside that range without a price is a day on which the stock did not trade, which is
+ * answered locally instead of downloading the complete history again.
+ */
+final class PriceCoverage {
+
+  private PriceCoverage() {
+  }
+
+
+  /**
+   * Checks if a series covers a date.
+   *
+   * @param series the price series, or null if there is no local data.
+   * @param day    the date as an epoch day.
+   * @return true if the series has every trading day up to the date, else false.
+   */
+  static boolean covers(PriceSeries series, int day) {
+    if (series == null || series.size() == 0) {
+      return false;
+    }
+    return TradingCalendar.getDefault().countTradingDays(series.coveredThrough() + 1, day) == 0;
+  }
+
+
+  /**
+   * Returns the price on a date that a series covers. A date on which the stock did not trade
+   * resolves to the price of the next trading day, as getPrice has always done, or to the last
+   * closing price if the series has no later trading day yet.
+   *
+   * @param series             the price series.
+   * @param day                the date as an epoch day.
+   * @param lastValidPriceFlag set to true when computing the last valid price, in which case a day
+   *                           without trading resolves to -1.
+   * @return the price, or -1 for a day without trading if the flag is set.
+   */
+  static Double resolve(PriceSeries series, int day, boolean lastValidPriceFlag) {
+    int index = series.indexOf(day);
+    if (index != -1) {
+      return series.getClose(index);
+    }
+    if (lastValidPriceFlag) {
+      return (double) -1;
+    }
+    index = series.ceilingIndex(day);
+    if (index != -1 && series.getDay(index) <= series.coveredThrough()) {
+      return series.getClose(index);
+    }
+    index = series.floorIndex(day);
+    return index == -1 ? null : series.getClose(index);
+  }
+}
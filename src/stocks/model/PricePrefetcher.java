@@ -0,0 +1,113 @@
+package stocks.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the price series of a set of symbols in the background, on a bounded pool of daemon
+ * threads, so that they are already resident in the price store when a portfolio is valued. A
+ * symbol that is already queued or being loaded is not queued again; the caller waits for the
+ * load that is already pending instead.
+ *
+ * <p>All the models of the program share one prefetcher, the same way they share one price store.
+ */
+class PricePrefetcher {
+  static final int DEFAULT_THREADS = Math.max(2,
+          Math.min(8, Runtime.getRuntime().availableProcessors()));
+  private static final PricePrefetcher SHARED = new PricePrefetcher(DEFAULT_THREADS);
+
+  private final ExecutorService executor;
+  private final ConcurrentMap<String, CompletableFuture<Void>> pending;
+
+  /**
+   * A constructor of the PricePrefetcher class.
+   *
+   * @param threads the number of symbols that are loaded at the same time.
+   */
+  PricePrefetcher(int threads) {
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "price-prefetch-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.pending = new ConcurrentHashMap<>();
+  }
+
+
+  /**
+   * Returns the prefetcher shared by all the models in the process.
+   *
+   * @return the shared prefetcher.
+   */
+  static PricePrefetcher shared() {
+    return SHARED;
+  }
+
+
+  /**
+   * Queues the symbols to be loaded in the background and returns immediately. A symbol that fails
+   * to load is skipped; the valuation that needs it loads it again and reports the error.
+   *
+   * @param stockSymbols the stock names.
+   * @param loader       loads or refreshes the price series of one symbol.
+   * @return a future that completes when all the symbols are loaded, including the ones whose
+   *         load was already pending.
+   */
+  CompletableFuture<Void> prefetch(Collection<String> stockSymbols, Loader loader) {
+    List<CompletableFuture<Void>> loads = new ArrayList<>();
+    for (String stockSymbol : stockSymbols) {
+      CompletableFuture<Void> load = new CompletableFuture<>();
+      CompletableFuture<Void> running = this.pending.putIfAbsent(stockSymbol, load);
+      if (running != null) {
+        loads.add(running);
+        continue;
+      }
+      loads.add(load);
+      this.executor.execute(() -> {
+        try {
+          loader.load(stockSymbol);
+        } catch (IOException | RuntimeException ignored) {
+          // The valuation loads the symbol again and reports the error.
+        } finally {
+          this.pending.remove(stockSymbol, load);
+          load.complete(null);
+        }
+      });
+    }
+    return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]));
+  }
+
+
+  /**
+   * Returns the number of symbols that are queued or being loaded.
+   *
+   * @return the number of pending symbols.
+   */
+  int getPendingCount() {
+    return this.pending.size();
+  }
+
+
+  /**
+   * Loads or refreshes the price series of a symbol.
+   */
+  interface Loader {
+
+    /**
+     * Loads the price series of a symbol into the price store.
+     *
+     * @param stockSymbol the stock name.
+     * @throws IOException if it fails to read or fetch the data.
+     */
+    void load(String stockSymbol) throws IOException;
+  }
+}
@@ -0,0 +1,135 @@
+package stocks.model;
+
+/**
+ * A daily closing price series for a single stock symbol. The trading days are stored in
+ * ascending order as epoch days, so that a price can be found with a binary search instead of
+ * scanning the ticker data.
+ */
+interface PriceSeries {
+
+  /**
+   * Returns the number of trading days in the series.
+   *
+   * @return the number of (date, price) records.
+   */
+  int size();
+
+
+  /**
+   * Returns the trading day at an index of the series.
+   *
+   * @param index the index, between 0 and size() - 1.
+   * @return the trading day as an epoch day.
+   */
+  int getDay(int index);
+
+
+  /**
+   * Returns the closing price at an index of the series.
+   *
+   * @param index the index, between 0 and size() - 1.
+   * @return the closing price on that trading day.
+   */
+  double getClose(int index);
+
+
+  /**
+   * Returns the index of a trading day in the series.
+   *
+   * @param epochDay the day to look up.
+   * @return the index of the day, or -1 if the series has no price on that day.
+   */
+  default int indexOf(int epochDay) {
+    int low = 0;
+    int high = size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int day = getDay(mid);
+      if (day < epochDay) {
+        low = mid + 1;
+      } else if (day > epochDay) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+
+  /**
+   * Returns the index of the last trading day on or before a day, which is the day itself if the
+   * series has a price on that day.
+   *
+   * @param epochDay the day to look up.
+   * @return the index of the trading day, or -1 if the series starts after the day.
+   */
+  default int floorIndex(int epochDay) {
+    int low = 0;
+    int high = size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (getDay(mid) <= epochDay) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+
+  /**
+   * Returns the index of the first trading day on or after a day, which is the day itself if the
+   * series has a price on that day.
+   *
+   * @param epochDay the day to look up.
+   * @return the index of the trading day, or -1 if the series ends before the day.
+   */
+  default int ceilingIndex(int epochDay) {
+    int low = 0;
+    int high = size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (getDay(mid) < epochDay) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low < size() ? low : -1;
+  }
+
+
+  /**
+   * Returns the first trading day in the series.
+   *
+   * @return the first trading day, or Integer.MAX_VALUE if the series is empty.
+   */
+  default int firstDay() {
+    return size() == 0 ? Integer.MAX_VALUE : getDay(0);
+  }
+
+
+  /**
+   * Returns the last trading day in the series.
+   *
+   * @return the last trading day, or Integer.MIN_VALUE if the series is empty.
+   */
+  default int lastDay() {
+    return size() == 0 ? Integer.MIN_VALUE : getDay(size() - 1);
+  }
+
+
+  /**
+   * Returns the last day for which the series is known to be complete. A series fetched on a
+   * Saturday, for instance, is complete through that Saturday even though its last trading day is
+   * the Friday before. A date on or before this day that has no price was not a trading day for
+   * the stock, and there is no need to call the API for it.
+   *
+   * @return the covered-through day, which is never before the last trading day.
+   */
+  default int coveredThrough() {
+    return lastDay();
+  }
+}
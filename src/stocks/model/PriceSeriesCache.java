@@ -0,0 +1,204 @@
+package stocks.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of price series. Every entry is weighted by the length of
+ * its series, so a memory budget holds many short histories or a few long ones. The cache keeps
+ * hit, miss and eviction counters to tune the budget.
+ *
+ * <p>The budget of the shared cache is read from the 'stocks.priceCache.maxBytes' system
+ * property, and defaults to 64 MB.
+ */
+class PriceSeriesCache {
+  static final String MAX_BYTES_PROPERTY = "stocks.priceCache.maxBytes";
+  static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  private static final int ENTRY_OVERHEAD = 64;
+
+  private final long maxBytes;
+  private final LinkedHashMap<String, Entry> entries;
+  private long currentBytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * A constructor of the PriceSeriesCache class.
+   *
+   * @param maxBytes the memory budget of the cache, in bytes.
+   * @throws IllegalArgumentException if the budget is not positive.
+   */
+  PriceSeriesCache(long maxBytes) throws IllegalArgumentException {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("The price cache budget must be positive.");
+    }
+    this.maxBytes = maxBytes;
+    this.entries = new LinkedHashMap<>(64, 0.75f, true);
+  }
+
+
+  /**
+   * Returns the memory budget configured through the 'stocks.priceCache.maxBytes' system
+   * property, or the default budget if it is not set or not a valid number.
+   *
+   * @return the memory budget in bytes.
+   */
+  static long configuredMaxBytes() {
+    String value = System.getProperty(MAX_BYTES_PROPERTY);
+    if (value != null) {
+      try {
+        long maxBytes = Long.parseLong(value.trim());
+        if (maxBytes > 0) {
+          return maxBytes;
+        }
+      } catch (NumberFormatException ignored) {
+      }
+      System.out.println("Invalid " + MAX_BYTES_PROPERTY + ", using the default price cache size.");
+    }
+    return DEFAULT_MAX_BYTES;
+  }
+
+
+  /**
+   * Returns the entry cached for a key and marks it as the most recently used.
+   *
+   * @param key the cache key.
+   * @return the cached entry, or null if the key is not cached.
+   */
+  synchronized Entry get(String key) {
+    Entry entry = this.entries.get(key);
+    if (entry == null) {
+      this.misses++;
+    } else {
+      this.hits++;
+    }
+    return entry;
+  }
+
+
+  /**
+   * Caches an entry, evicting the least recently used entries until the cache is within its
+   * budget again. An entry that alone exceeds the budget is still cached, as the only entry.
+   *
+   * @param key   the cache key.
+   * @param entry the entry to cache.
+   */
+  synchronized void put(String key, Entry entry) {
+    Entry previous = this.entries.put(key, entry);
+    if (previous != null) {
+      this.currentBytes -= previous.weight();
+    }
+    this.currentBytes += entry.weight();
+
+    Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+    while (this.currentBytes > this.maxBytes && iterator.hasNext()) {
+      Map.Entry<String, Entry> eldest = iterator.next();
+      if (eldest.getKey().equals(key)) {
+        continue;
+      }
+      this.currentBytes -= eldest.getValue().weight();
+      iterator.remove();
+      this.evictions++;
+    }
+  }
+
+
+  /**
+   * Removes the entry for a key.
+   *
+   * @param key the cache key.
+   */
+  synchronized void remove(String key) {
+    Entry previous = this.entries.remove(key);
+    if (previous != null) {
+      this.currentBytes -= previous.weight();
+    }
+  }
+
+
+  /**
+   * Returns the number of lookups that found a cached entry.
+   *
+   * @return the hit count.
+   */
+  synchronized long getHitCount() {
+    return this.hits;
+  }
+
+
+  /**
+   * Returns the number of lookups that did not find a cached entry.
+   *
+   * @return the miss count.
+   */
+  synchronized long getMissCount() {
+    return this.misses;
+  }
+
+
+  /**
+   * Returns the number of entries evicted to stay within the budget.
+   *
+   * @return the eviction count.
+   */
+  synchronized long getEvictionCount() {
+    return this.evictions;
+  }
+
+
+  /**
+   * Returns the total weight of the cached entries.
+   *
+   * @return the weight in bytes.
+   */
+  synchronized long getCurrentBytes() {
+    return this.currentBytes;
+  }
+
+
+  @Override
+  public synchronized String toString() {
+    return "PriceSeriesCache[entries=" + this.entries.size() + ", bytes=" + this.currentBytes
+            + "/" + this.maxBytes + ", hits=" + this.hits + ", misses=" + this.misses
+            + ", evictions=" + this.evictions + "]";
+  }
+
+
+  /**
+   * A cached price series, along with the size and modification time of the file it was loaded
+   * from. A series of null marks a symbol for which there is no data.
+   */
+  static final class Entry {
+    private final PriceSeries series;
+    private final long lastModified;
+    private final long length;
+
+    /**
+     * A constructor of the Entry class.
+     *
+     * @param series       the cached series, or null if there is no data for the key.
+     * @param lastModified the modification time of the source file, 0 if not loaded from a file.
+     * @param length       the length of the source file, 0 if not loaded from a file.
+     */
+    Entry(PriceSeries series, long lastModified, long length) {
+      this.series = series;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+
+    PriceSeries getSeries() {
+      return this.series;
+    }
+
+    boolean isCurrent(long lastModified, long length) {
+      return this.lastModified == lastModified && this.length == length;
+    }
+
+    private long weight() {
+      int size = this.series == null ? 0 : this.series.size();
+      return ENTRY_OVERHEAD + (long) size * PriceSeriesFile.RECORD_SIZE;
+    }
+  }
+}
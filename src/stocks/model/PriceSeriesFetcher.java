@@ -0,0 +1,187 @@
+package stocks.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import stocks.api.API;
+import stocks.api.APIScheduler;
+import stocks.api.TickerSeries;
+
+/**
+ * Fetches the ticker data of a symbol from the API, saves it to the local price cache and keeps the
+ * parsed series in the price store. If the local cache is only missing the last few trading days,
+ * only the recent window is requested and appended to the cache file; the complete history is
+ * downloaded and the file rewritten only if the recent window does not reach the cached data.
+ *
+ * <p>Fetches are single-flight: if a symbol is requested while a fetch for it is already running,
+ * the request waits for that fetch and shares its result, so that the data is downloaded and the
+ * cache file written only once. If the running fetch calls the API in the background lane of the
+ * scheduler and the request does not, the fetch is promoted to the interactive lane, so that the
+ * request does not wait behind background work.
+ *
+ * <p>Every fetched series makes the portfolio values cached so far stale.
+ *
+ * <p>All the models of the program share one fetcher, the same way they share one price store.
+ */
+class PriceSeriesFetcher {
+  static final int COMPACT_TRADING_DAYS = 100;
+  private static final PriceSeriesFetcher SHARED = new PriceSeriesFetcher(
+          PriceSeriesStore.shared());
+
+  private final PriceSeriesStore store;
+  private final ConcurrentMap<String, Flight> inFlight;
+
+  /**
+   * A constructor of the PriceSeriesFetcher class.
+   *
+   * @param store the store that keeps the fetched series.
+   */
+  PriceSeriesFetcher(PriceSeriesStore store) {
+    this.store = store;
+    this.inFlight = new ConcurrentHashMap<>();
+  }
+
+
+  /**
+   * Returns the fetcher shared by all the models in the process.
+   *
+   * @return the shared fetcher.
+   */
+  static PriceSeriesFetcher shared() {
+    return SHARED;
+  }
+
+
+  /**
+   * Fetches the price series of a symbol, or waits for the fetch of the symbol that is already
+   * running. A running fetch in the background is promoted if this request is not in the
+   * background.
+   *
+   * @param api         the API to call if no fetch of the symbol is running.
+   * @param stockSymbol the stock name.
+   * @return the price series returned by the API.
+   * @throws IOException              if the URL for the API is invalid.
+   * @throws IllegalArgumentException if the API does not return data for the symbol.
+   */
+  PriceSeries fetch(API api, String stockSymbol) throws IOException, IllegalArgumentException {
+    Flight flight = new Flight(api);
+    Flight running = this.inFlight.putIfAbsent(stockSymbol, flight);
+    if (running != null) {
+      if (running.api instanceof APIScheduler.BackgroundAPI
+              && !(api instanceof APIScheduler.BackgroundAPI)) {
+        ((APIScheduler.BackgroundAPI) running.api).promote();
+      }
+      return await(running.result);
+    }
+
+    try {
+      PriceSeries series = load(api, stockSymbol);
+      flight.result.complete(series);
+      return series;
+    } catch (IOException | RuntimeException e) {
+      flight.result.completeExceptionally(e);
+      throw e;
+    } finally {
+      this.inFlight.remove(stockSymbol, flight);
+    }
+  }
+
+
+  /**
+   * Returns the number of fetches that are running.
+   *
+   * @return the number of symbols being fetched.
+   */
+  int getInFlightCount() {
+    return this.inFlight.size();
+  }
+
+
+  private PriceSeries load(API api, String stockSymbol) throws IOException {
+    Path file = PriceSeriesStore.localCacheFile(stockSymbol).toPath();
+    PriceSeries cached;
+    try {
+      cached = this.store.getLocal(stockSymbol);
+    } catch (IOException e) {
+      cached = null;
+    }
+
+    if (cached != null && cached.size() > 0 && TradingCalendar.getDefault()
+            .countTradingDays(cached.lastDay(), EpochDays.today()) <= COMPACT_TRADING_DAYS) {
+      PriceSeries recent = parse(api.getRecentTickerSeries(stockSymbol));
+      if (recent.size() > 0 && recent.firstDay() <= cached.lastDay()) {
+        int unchanged = cached.ceilingIndex(recent.firstDay());
+        PriceSeries merged = ArrayPriceSeries.merge(cached, recent)
+                .withCoverage(EpochDays.today() - 1);
+        try {
+          if (!PriceSeriesFile.append(file, merged, unchanged)) {
+            PriceSeriesFile.write(file, merged);
+          }
+        } catch (IOException ex) {
+          System.out.println(ex);
+        }
+        this.store.putLocal(stockSymbol, merged);
+        PortfolioSnapshotCache.shared().invalidateValues();
+        return merged;
+      }
+    }
+
+    PriceSeries series = parse(api.getTickerSeries(stockSymbol))
+            .withCoverage(EpochDays.today() - 1);
+    try {
+      PriceSeriesFile.write(file, series);
+    } catch (IOException ex) {
+      System.out.println(ex);
+    }
+
+    this.store.putLocal(stockSymbol, series);
+    PortfolioSnapshotCache.shared().invalidateValues();
+    return series;
+  }
+
+
+  private static ArrayPriceSeries parse(TickerSeries tickerSeries) {
+    if (tickerSeries.size() == 0 && APIScheduler.isThrottleMessage(tickerSeries.getMessage())) {
+      throw new IllegalArgumentException("Error Message: The AlphaVantage API call limit has been "
+              + "reached. Please retry later.");
+    } else if (tickerSeries.size() == 0) {
+      throw new IllegalArgumentException("Error Message: Invalid API call. Please retry or "
+              + "visit the documentation (https://www.alphavantage.co/documentation/)"
+              + " for TIME_SERIES_DAILY.");
+    }
+    return ArrayPriceSeries.sorted(tickerSeries.getDays(), tickerSeries.getCloses(),
+            tickerSeries.size());
+  }
+
+
+  private static PriceSeries await(CompletableFuture<PriceSeries> running) throws IOException {
+    try {
+      return running.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw e;
+    }
+  }
+
+
+  /**
+   * A running fetch: the API it calls and its result.
+   */
+  private static final class Flight {
+    private final API api;
+    private final CompletableFuture<PriceSeries> result;
+
+    private Flight(API api) {
+      this.api = api;
+      this.result = new CompletableFuture<>();
+    }
+  }
+}
@@ -0,0 +1,354 @@
+package stocks.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes the binary price cache format. A price cache file is a fixed-width, sorted
+ * table of trading days and closing prices:
+ * <ol>
+ * <li>header - magic number, version, first day, last day, record count and the day the data is
+ * complete through, 4 bytes each. Version 1 files have no covered-through field.</li>
+ * <li>records - an epoch day (4 bytes) followed by the closing price (8 bytes), in ascending
+ * order of day.</li>
+ * </ol>
+ * Files are read through a memory mapping, so a lookup only touches the pages that the binary
+ * search visits, instead of reading and splitting the whole ticker history.
+ */
+final class PriceSeriesFile {
+  static final String EXTENSION = ".bin";
+  static final int MAGIC = 0x53545053;
+  static final int VERSION = 2;
+  static final int HEADER_SIZE = 24;
+  private static final int VERSION_1_HEADER_SIZE = 20;
+  static final int RECORD_SIZE = 12;
+
+  private PriceSeriesFile() {
+  }
+
+
+  /**
+   * Memory maps a price cache file and returns it as a price series.
+   *
+   * @param file the price cache file.
+   * @return the series backed by the mapped file.
+   * @throws IOException if the file can not be read or is not a valid price cache file.
+   */
+  static PriceSeries map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_SIZE) {
+        throw new IOException("Invalid price cache file " + file + ".");
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.BIG_ENDIAN);
+      int headerSize = readHeaderSize(buffer, file);
+      int count = buffer.getInt(16);
+      if (count < 0 || channel.size() < headerSize + (long) count * RECORD_SIZE) {
+        throw new IOException("Truncated price cache file " + file + ".");
+      }
+      return new MappedPriceSeries(buffer, headerSize, count);
+    }
+  }
+
+
+  /**
+   * Reads a price cache file from a stream fully into memory. Used for the price cache files that
+   * are bundled on the classpath, which can not be memory mapped.
+   *
+   * @param bytes the contents of the price cache file.
+   * @return the series read from the bytes.
+   * @throws IOException if the bytes are not a valid price cache file.
+   */
+  static ArrayPriceSeries read(byte[] bytes) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+    if (bytes.length < HEADER_SIZE) {
+      throw new IOException("Invalid price cache data.");
+    }
+    int headerSize = readHeaderSize(buffer, null);
+    int count = buffer.getInt(16);
+    if (count < 0 || bytes.length < headerSize + (long) count * RECORD_SIZE) {
+      throw new IOException("Truncated price cache data.");
+    }
+    int[] days = new int[count];
+    double[] closes = new double[count];
+    for (int i = 0; i < count; i++) {
+      days[i] = buffer.getInt(headerSize + i * RECORD_SIZE);
+      closes[i] = buffer.getDouble(headerSize + i * RECORD_SIZE + 4);
+    }
+    ArrayPriceSeries series = new ArrayPriceSeries(days, closes, count);
+    return headerSize == HEADER_SIZE ? series.withCoverage(buffer.getInt(20)) : series;
+  }
+
+
+  /**
+   * Writes a series to a price cache file. The data is written to a temporary file first and then
+   * moved over the target, so readers that have mapped the old file are never affected.
+   *
+   * @param file   the price cache file.
+   * @param series the series to write.
+   * @throws IOException if it fails to write the file.
+   */
+  static void write(Path file, PriceSeries series) throws IOException {
+    int count = series.size();
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * RECORD_SIZE)
+            .order(ByteOrder.BIG_ENDIAN);
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(count == 0 ? 0 : series.firstDay());
+    buffer.putInt(count == 0 ? 0 : series.lastDay());
+    buffer.putInt(count);
+    buffer.putInt(count == 0 ? 0 : series.coveredThrough());
+    for (int i = 0; i < count; i++) {
+      buffer.putInt(series.getDay(i));
+      buffer.putDouble(series.getClose(i));
+    }
+    buffer.flip();
+
+    Path directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temp = directory.resolve(file.getFileName() + "." + Thread.currentThread().getId()
+            + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    try {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+
+  /**
+   * Appends the new records of a series to the price cache file it extends, instead of writing the
+   * whole file again. Only the records past the end of the file are written; the records already
+   * in the file are never written again, since readers may have them mapped. If a record of the
+   * series that is already in the file has changed, nothing is written and the file has to be
+   * replaced with write instead.
+   *
+   * <p>The new records are written and forced to the disk first. The record count, which makes
+   * them visible to a reader that maps the file, is written next, and the day the series is
+   * complete through last, so a reader never sees a count that includes records which are not
+   * written yet, nor a covered-through day that its records do not reach.
+   *
+   * @param file      the price cache file.
+   * @param series    the series that extends the file.
+   * @param unchanged the number of leading records of the series that are known to be in the file;
+   *                  the records between it and the end of the file are compared.
+   * @return true if the records were appended, false if the file is not a version 2 price cache
+   *         file that the series extends, in which case it must be written with write.
+   * @throws IOException if it fails to write the file.
+   */
+  static boolean append(Path file, PriceSeries series, int unchanged) throws IOException {
+    int count = series.size();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+      while (header.hasRemaining()) {
+        if (channel.read(header, header.position()) == -1) {
+          return false;
+        }
+      }
+      if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+        return false;
+      }
+      int fileCount = header.getInt(16);
+      if (unchanged < 0 || unchanged > fileCount || count < fileCount
+              || channel.size() < HEADER_SIZE + (long) fileCount * RECORD_SIZE) {
+        return false;
+      }
+
+      ByteBuffer existing = ByteBuffer.allocate((fileCount - unchanged) * RECORD_SIZE)
+              .order(ByteOrder.BIG_ENDIAN);
+      long position = HEADER_SIZE + (long) unchanged * RECORD_SIZE;
+      while (existing.hasRemaining()) {
+        if (channel.read(existing, position + existing.position()) == -1) {
+          return false;
+        }
+      }
+      for (int i = unchanged; i < fileCount; i++) {
+        int offset = (i - unchanged) * RECORD_SIZE;
+        if (existing.getInt(offset) != series.getDay(i)
+                || Double.compare(existing.getDouble(offset + 4), series.getClose(i)) != 0) {
+          return false;
+        }
+      }
+
+      ByteBuffer records = ByteBuffer.allocate((count - fileCount) * RECORD_SIZE)
+              .order(ByteOrder.BIG_ENDIAN);
+      for (int i = fileCount; i < count; i++) {
+        records.putInt(series.getDay(i));
+        records.putDouble(series.getClose(i));
+      }
+      records.flip();
+      position = HEADER_SIZE + (long) fileCount * RECORD_SIZE;
+      while (records.hasRemaining()) {
+        position += channel.write(records, position);
+      }
+      channel.force(false);
+
+      writeInt(channel, 16, count);
+      writeInt(channel, 8, count == 0 ? 0 : series.firstDay());
+      writeInt(channel, 12, count == 0 ? 0 : series.lastDay());
+      writeInt(channel, 20, count == 0 ? 0 : series.coveredThrough());
+    }
+    return true;
+  }
+
+
+  private static void writeInt(FileChannel channel, long position, int value)
+          throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN).putInt(0, value);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + buffer.position());
+    }
+  }
+
+
+  /**
+   * Converts a ticker data file in the old 'yyyy-MM-dd,price;' format to a price cache file.
+   *
+   * @param csvFile the old ticker data file.
+   * @param binFile the price cache file to write.
+   * @return the converted series.
+   * @throws IOException if it fails to read, parse or write the files.
+   */
+  static PriceSeries convert(Path csvFile, Path binFile) throws IOException {
+    PriceSeries series;
+    try {
+      series = ArrayPriceSeries.parseCsv(Files.readString(csvFile).replace("\n", "")
+              .replace("\r", ""));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Failed to parse " + csvFile + ".");
+    }
+    write(binFile, series);
+    return series;
+  }
+
+
+  /**
+   * Converts every '.csv' ticker data file in a directory to a price cache file next to it. The
+   * original files are kept, as they remain the fallback for older versions of the program.
+   *
+   * @param directory the directory with the ticker data, for instance 'res/stock_data/'.
+   * @return the number of files converted.
+   * @throws IOException if the directory can not be listed.
+   */
+  static int convertDirectory(Path directory) throws IOException {
+    File[] files = directory.toFile().listFiles((dir, name) -> name.endsWith(".csv"));
+    if (files == null) {
+      throw new IOException("Failed to list " + directory + ".");
+    }
+    int converted = 0;
+    for (File csv : files) {
+      String name = csv.getName();
+      Path bin = directory.resolve(name.substring(0, name.length() - 4) + EXTENSION);
+      try {
+        convert(csv.toPath(), bin);
+        converted++;
+      } catch (IOException e) {
+        System.out.println(e.getMessage());
+      }
+    }
+    return converted;
+  }
+
+
+  /**
+   * Converts the ticker data in a directory from the old '.csv' format to price cache files.
+   *
+   * @param args the directory to convert. Defaults to 'res/stock_data/'.
+   */
+  public static void main(String[] args) {
+    Path directory = Path.of(args.length > 0 ? args[0] : "res/stock_data/");
+    try {
+      System.out.println("Converted " + convertDirectory(directory) + " files in " + directory);
+    } catch (IOException e) {
+      System.out.println(e.getMessage());
+    }
+  }
+
+
+  private static int readHeaderSize(ByteBuffer buffer, Path file) throws IOException {
+    String source = file == null ? "data" : "file " + file;
+    if (buffer.limit() < VERSION_1_HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Invalid price cache " + source + ".");
+    }
+    int version = buffer.getInt(4);
+    if (version == 1) {
+      return VERSION_1_HEADER_SIZE;
+    } else if (version == VERSION && buffer.limit() >= HEADER_SIZE) {
+      return HEADER_SIZE;
+    }
+    throw new IOException("Unsupported price cache " + source + ".");
+  }
+
+
+  /**
+   * A price series that reads its records straight from a memory mapped price cache file. The
+   * header is read once, when the file is mapped, so records appended to the file later do not
+   * change the series. The first and the last day are read from the records themselves, so a file
+   * whose header is being updated by an append is still read consistently.
+   */
+  private static final class MappedPriceSeries implements PriceSeries {
+    private final ByteBuffer buffer;
+    private final int headerSize;
+    private final int size;
+    private final int firstDay;
+    private final int lastDay;
+    private final int coveredThrough;
+
+    private MappedPriceSeries(ByteBuffer buffer, int headerSize, int size) {
+      this.buffer = buffer;
+      this.headerSize = headerSize;
+      this.size = size;
+      this.firstDay = size == 0 ? Integer.MAX_VALUE : buffer.getInt(headerSize);
+      this.lastDay = size == 0 ? Integer.MIN_VALUE
+              : buffer.getInt(headerSize + (size - 1) * RECORD_SIZE);
+      this.coveredThrough = headerSize < HEADER_SIZE ? this.lastDay
+              : Math.max(this.lastDay, buffer.getInt(20));
+    }
+
+    @Override
+    public int size() {
+      return this.size;
+    }
+
+    @Override
+    public int getDay(int index) {
+      return this.buffer.getInt(this.headerSize + index * RECORD_SIZE);
+    }
+
+    @Override
+    public double getClose(int index) {
+      return this.buffer.getDouble(this.headerSize + index * RECORD_SIZE + 4);
+    }
+
+    @Override
+    public int firstDay() {
+      return this.firstDay;
+    }
+
+    @Override
+    public int lastDay() {
+      return this.lastDay;
+    }
+
+    @Override
+    public int coveredThrough() {
+      return this.coveredThrough;
+    }
+  }
+}
@@ -0,0 +1,234 @@
+package stocks.model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the parsed price series for each stock symbol in memory, so that the ticker data of a
+ * symbol is read and parsed at most once instead of on every price lookup. It serves two sources:
+ * <ol>
+ * <li>bundled - the stock data shipped on the classpath under '/stock_data/'.</li>
+ * <li>local - the local cache written to 'res/stock_data/' after calling the API.</li>
+ * </ol>
+ * The local cache is kept in the binary format of PriceSeriesFile and is memory mapped. Ticker
+ * data in the old '.csv' format is converted the first time it is read. A local series is
+ * re-read only if the file on disk has changed since it was loaded.
+ *
+ * <p>The loaded series are kept in a bounded PriceSeriesCache. All the models of the program share
+ * one store, so the flexible and the inflexible models never load the same symbol twice. A series
+ * is read under a lock of its own symbol and source, so different symbols are read in parallel
+ * while the same symbol is only read once.
+ */
+class PriceSeriesStore {
+  private static final String LOCAL_CACHE_DIRECTORY = "res/stock_data/";
+  static final int LAST_BUNDLED_DAY = EpochDays.parse("2022-10-31");
+  private static final String BUNDLED_PREFIX = "bundled:";
+  private static final String LOCAL_PREFIX = "local:";
+  private static final PriceSeriesStore SHARED = new PriceSeriesStore(
+          new PriceSeriesCache(PriceSeriesCache.configuredMaxBytes()));
+
+  private final PriceSeriesCache cache;
+  private final ConcurrentMap<String, Object> locks;
+
+  /**
+   * A constructor of the PriceSeriesStore class. Initializes the store with no series loaded.
+   *
+   * @param cache the cache that keeps the loaded series.
+   */
+  PriceSeriesStore(PriceSeriesCache cache) {
+    this.cache = cache;
+    this.locks = new ConcurrentHashMap<>();
+  }
+
+
+  /**
+   * Returns the store shared by all the models in the process.
+   *
+   * @return the shared store.
+   */
+  static PriceSeriesStore shared() {
+    return SHARED;
+  }
+
+
+  /**
+   * Returns the cache that keeps the loaded series, for instance to read its hit and miss counts.
+   *
+   * @return the price series cache.
+   */
+  PriceSeriesCache getCache() {
+    return this.cache;
+  }
+
+
+  /**
+   * Returns the series for a symbol from the stock data bundled on the classpath. The bundled data
+   * is complete through the day it was collected, 2022-10-31.
+   *
+   * @param stockSymbol the stock name.
+   * @return the bundled series, or null if there is no bundled data for the symbol.
+   * @throws IOException if it fails to read the bundled data.
+   */
+  PriceSeries getBundled(String stockSymbol) throws IOException {
+    synchronized (lockFor(BUNDLED_PREFIX + stockSymbol)) {
+      return readBundled(stockSymbol);
+    }
+  }
+
+
+  /**
+   * Returns the series for a symbol from the local cache in 'res/stock_data/'.
+   *
+   * @param stockSymbol the stock name.
+   * @return the cached series, or null if the symbol has not been cached locally.
+   * @throws IOException if it fails to read the local cache.
+   */
+  PriceSeries getLocal(String stockSymbol) throws IOException {
+    synchronized (lockFor(LOCAL_PREFIX + stockSymbol)) {
+      return readLocal(stockSymbol);
+    }
+  }
+
+
+  /**
+   * Replaces the local series of a symbol after its cache file has been rewritten, so that the
+   * freshly fetched data does not have to be parsed again.
+   *
+   * @param stockSymbol the stock name.
+   * @param series      the series that was written to the local cache.
+   */
+  void putLocal(String stockSymbol, PriceSeries series) {
+    synchronized (lockFor(LOCAL_PREFIX + stockSymbol)) {
+      this.cache.put(LOCAL_PREFIX + stockSymbol, entryFor(series, localCacheFile(stockSymbol)));
+    }
+  }
+
+
+  private PriceSeries readBundled(String stockSymbol) throws IOException {
+    PriceSeriesCache.Entry entry = this.cache.get(BUNDLED_PREFIX + stockSymbol);
+    if (entry != null) {
+      return entry.getSeries();
+    }
+    ArrayPriceSeries series = null;
+    try (InputStream input = PriceSeriesStore.class
+            .getResourceAsStream("/stock_data/" + stockSymbol + PriceSeriesFile.EXTENSION)) {
+      if (input != null) {
+        series = PriceSeriesFile.read(input.readAllBytes());
+      }
+    }
+    if (series == null) {
+      try (InputStream input = PriceSeriesStore.class
+              .getResourceAsStream("/stock_data/" + stockSymbol + ".csv")) {
+        if (input != null) {
+          try (BufferedReader reader = new BufferedReader(new InputStreamReader(input))) {
+            series = parse(reader);
+          }
+        }
+      }
+    }
+    if (series != null) {
+      series = series.withCoverage(LAST_BUNDLED_DAY);
+    }
+    this.cache.put(BUNDLED_PREFIX + stockSymbol, new PriceSeriesCache.Entry(series, 0, 0));
+    return series;
+  }
+
+
+  private PriceSeries readLocal(String stockSymbol) throws IOException {
+    String key = LOCAL_PREFIX + stockSymbol;
+    File localCache = localCacheFile(stockSymbol);
+    if (!localCache.exists()) {
+      File legacyCache = legacyCacheFile(stockSymbol);
+      if (!legacyCache.exists()) {
+        this.cache.remove(key);
+        return null;
+      }
+      PriceSeriesCache.Entry entry = this.cache.get(key);
+      if (entry != null && entry.isCurrent(legacyCache.lastModified(), legacyCache.length())) {
+        return entry.getSeries();
+      }
+      PriceSeries series;
+      try {
+        series = PriceSeriesFile.convert(legacyCache.toPath(), localCache.toPath());
+      } catch (IOException e) {
+        System.out.println(e.getMessage());
+        try {
+          series = ArrayPriceSeries.parseCsv(Files.readString(legacyCache.toPath()));
+        } catch (IllegalArgumentException ex) {
+          throw new IOException("Failed to parse the local cache for " + stockSymbol + ".");
+        }
+        this.cache.put(key, entryFor(series, legacyCache));
+        return series;
+      }
+      this.cache.put(key, entryFor(series, localCache));
+      return series;
+    }
+
+    PriceSeriesCache.Entry entry = this.cache.get(key);
+    if (entry != null && entry.isCurrent(localCache.lastModified(), localCache.length())) {
+      return entry.getSeries();
+    }
+    PriceSeries series = PriceSeriesFile.map(localCache.toPath());
+    this.cache.put(key, entryFor(series, localCache));
+    return series;
+  }
+
+
+  /**
+   * Returns the local price cache file of a symbol.
+   *
+   * @param stockSymbol the stock name.
+   * @return the binary price cache file in 'res/stock_data/'.
+   */
+  static File localCacheFile(String stockSymbol) {
+    return Path.of(LOCAL_CACHE_DIRECTORY + stockSymbol + PriceSeriesFile.EXTENSION).toFile();
+  }
+
+
+  /**
+   * Returns the local cache file of a symbol in the old 'yyyy-MM-dd,price;' format. It is only
+   * read when there is no binary price cache file for the symbol yet.
+   *
+   * @param stockSymbol the stock name.
+   * @return the '.csv' file in 'res/stock_data/'.
+   */
+  static File legacyCacheFile(String stockSymbol) {
+    return Path.of(LOCAL_CACHE_DIRECTORY + stockSymbol + ".csv").toFile();
+  }
+
+
+  private Object lockFor(String key) {
+    return this.locks.computeIfAbsent(key, name -> new Object());
+  }
+
+
+  private static ArrayPriceSeries parse(BufferedReader reader) throws IOException {
+    StringBuilder builder = new StringBuilder();
+    char[] buffer = new char[8192];
+    int read;
+    while ((read = reader.read(buffer)) != -1) {
+      for (int i = 0; i < read; i++) {
+        if (buffer[i] != '\n' && buffer[i] != '\r') {
+          builder.append(buffer[i]);
+        }
+      }
+    }
+    try {
+      return ArrayPriceSeries.parseCsv(builder);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Failed to parse the stock data.");
+    }
+  }
+
+
+  private static PriceSeriesCache.Entry entryFor(PriceSeries series, File file) {
+    return new PriceSeriesCache.Entry(series, file.lastModified(), file.length());
+  }
+}
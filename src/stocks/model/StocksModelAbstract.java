@@ -10,11 +10,9 @@ import java.time.temporal.TemporalAdjusters;
 import java.util.Map;
 import jsonparser.JSONArray;
 import jsonparser.JSONObject;
-import jsonparser.JSONParser;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
@@ -29,10 +27,11 @@ import java.util.Base64;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import stocks.api.API;
-import stocks.api.APIImpl;
+import stocks.api.APIScheduler;
 
 
 /**
@@ -41,25 +40,63 @@ import stocks.api.APIImpl;
  * implements all the methods in the stocks model interface.
  */
 abstract class StocksModelAbstract implements StocksModelInterface {
+  static final int MAX_INSTALLMENT_ROWS = 2048;
+
   private List<String> validSymbols;
   private List<String> csvStockSymbols;
   private List<String> validSellSymbols;
   private final int encryptionKey;
+  private final APIScheduler apiScheduler;
   private final API callAlphaVantageAPI;
+  private final PriceSeriesStore priceStore;
+  private final TradingCalendar tradingCalendar;
+  private final PriceSeriesFetcher priceFetcher;
+  private final PricePrefetcher pricePrefetcher;
+  private final PortfolioSnapshotCache snapshotCache;
+  private final PortfolioRepository repository;
 
   /**
    * A constructor of the StocksModel class. It initializes the class variables <ol>
    * <li>validSymbols - Stores the valid stock names from a CSV.</li>
    * <li>csvStockSymbols - Stores the stock names for which the ticker data is stored locally.</li>
    * <li>key - The encryption and decryption key.</li>
+   * <li>apiScheduler - The scheduler of the API call quota, shared by all the models.</li>
+   * <li>callAlphaVantageAPI - The API, called through the scheduler for the user.</li>
+   * <li>priceStore - The price series store shared by all the models.</li>
+   * <li>tradingCalendar - The exchange calendar of weekends and market holidays.</li>
+   * <li>priceFetcher - The single-flight fetcher of ticker data shared by all the models.</li>
+   * <li>pricePrefetcher - The background loader of price data shared by all the models.</li>
+   * <li>snapshotCache - The cache of portfolio values and cost bases shared by all the models.</li>
+   * <li>repository - Where the portfolios are kept, shared by all the models.</li>
    * </ol>
+   * Writes that were interrupted when the program last stopped are recovered first.
    */
   public StocksModelAbstract() {
+    this(APIScheduler.getDefault(), PortfolioRepository.shared());
+  }
+
+
+  /**
+   * A constructor of the StocksModelAbstract class that calls the API through a given scheduler
+   * and keeps the portfolios in a given repository, instead of the shared ones.
+   *
+   * @param apiScheduler the scheduler of the API calls.
+   * @param repository   where the portfolios are kept.
+   */
+  StocksModelAbstract(APIScheduler apiScheduler, PortfolioRepository repository) {
     this.validSymbols = new ArrayList<>();
     this.csvStockSymbols = new ArrayList<>();
     this.validSellSymbols = new ArrayList<>();
     this.encryptionKey = 4;
-    this.callAlphaVantageAPI = new APIImpl();
+    this.apiScheduler = apiScheduler;
+    this.callAlphaVantageAPI = this.apiScheduler;
+    this.priceStore = PriceSeriesStore.shared();
+    this.tradingCalendar = TradingCalendar.getDefault();
+    this.priceFetcher = PriceSeriesFetcher.shared();
+    this.pricePrefetcher = PricePrefetcher.shared();
+    this.snapshotCache = PortfolioSnapshotCache.shared();
+    FileTransaction.recover();
+    this.repository = repository;
   }
 
 
@@ -271,11 +308,7 @@ abstract class StocksModelAbstract implements StocksModelInterface {
    */
   @Override
   public boolean checkValidFileName(String jsonName, String userName) {
-    File file = new File("res/users/" + userName + "/inflexible/" + jsonName);
-    if (this instanceof StocksModelFlexible) {
-      file = new File("res/users/" + userName + "/flexible/" + jsonName);
-    }
-    return !file.exists();
+    return !this.repository.exists(userName, kind(), jsonName);
   }
 
 
@@ -290,11 +323,7 @@ abstract class StocksModelAbstract implements StocksModelInterface {
    */
   @Override
   public boolean checkValidFileNameForExamination(String jsonName, String userName) {
-    File file = new File("res/users/" + userName + "/inflexible/" + jsonName);
-    if (this instanceof StocksModelFlexible) {
-      file = new File("res/users/" + userName + "/flexible/" + jsonName);
-    }
-    return file.exists();
+    return this.repository.exists(userName, kind(), jsonName);
   }
 
 
@@ -435,16 +464,11 @@ abstract class StocksModelAbstract implements StocksModelInterface {
       return false;
     }
 
-    Date inputDate;
-    Calendar cal = Calendar.getInstance();
     try {
-      inputDate = new SimpleDateFormat("yyyy-MM-dd").parse(buyDate);
-    } catch (ParseException e) {
+      return this.tradingCalendar.isTradingDay(EpochDays.parse(buyDate));
+    } catch (IllegalArgumentException e) {
       throw new RuntimeException(e);
     }
-    cal.setTime(inputDate);
-    int day = cal.get(Calendar.DAY_OF_WEEK);
-    return !(day == Calendar.SATURDAY || day == Calendar.SUNDAY);
   }
 
 
@@ -468,11 +492,25 @@ abstract class StocksModelAbstract implements StocksModelInterface {
           double[] stockQuantitiesArray, double[] commissionsArray, String operation) {
     int n = stockNamesArray.length;
 
-    JSONObject jsonObject = new JSONObject();
+    String kind = operation.equals("PORTFOLIO") ? PortfolioRepository.INFLEXIBLE
+            : PortfolioRepository.FLEXIBLE;
+    PortfolioSnapshotCache.Source source = this.repository.getSource(userName, kind, jsonFileName);
+
     JSONArray jsonArray = new JSONArray();
+    HoldingsHeader holdings = null;
+    TaxLotLedger ledger = null;
+    boolean appended = false;
 
     if (operation.equals("BUY") || operation.equals("SELL")) {
-      jsonArray = getPortfolioFromJson(userName, jsonFileName);
+      appended = source.exists();
+      if (appended) {
+        holdings = HoldingsHeader.find(source);
+        ledger = TaxLotLedger.find(source);
+      }
+      if (holdings == null) {
+        jsonArray = getPortfolioFromJson(userName, jsonFileName);
+        holdings = getHoldingsHeader(TransactionTable.of(jsonArray));
+      }
     }
 
     for (int i = 0; i < n; i++) {
@@ -492,18 +530,43 @@ abstract class StocksModelAbstract implements StocksModelInterface {
       }
       jsonArray.add(temp);
     }
-    jsonObject.put("stocks", jsonArray.toJSONString());
 
     try {
-      FileWriter file;
-      if (operation.equals("PORTFOLIO")) {
-        file = new FileWriter("res/users/" + userName + "/inflexible/" + jsonFileName);
-      } else {
-        file = new FileWriter("res/users/" + userName + "/flexible/" + jsonFileName);
+      try {
+        if (appended) {
+          this.repository.append(userName, kind, jsonFileName, jsonArray, jsonArray.size() - n);
+        } else {
+          this.repository.write(userName, kind, jsonFileName, jsonArray);
+        }
+      } finally {
+        this.snapshotCache.invalidate(source.getPath());
+      }
+      if (holdings != null || ledger != null) {
+        byte type = operation.equals("BUY") ? TransactionTable.BUY : TransactionTable.SELL;
+        for (int i = jsonArray.size() - n; i < jsonArray.size(); i++) {
+          JSONObject temp = (JSONObject) jsonArray.get(i);
+          Object price = temp.get("price");
+          String stockName = (String) temp.get("stock_name");
+          int day = PositionLedger.parseDay((String) temp.get("transaction_date"));
+          double stockPrice = price instanceof Double ? (Double) price : Double.NaN;
+          if (holdings != null) {
+            holdings.add(type, day, (Double) temp.get("quantity"), stockPrice,
+                    (Double) temp.get("commission"));
+          }
+          if (ledger != null) {
+            ledger.add(type, stockName, day, (Double) temp.get("quantity"), stockPrice,
+                    (Double) temp.get("commission"));
+          }
+        }
+        PortfolioSnapshotCache.Source written =
+                this.repository.getSource(userName, kind, jsonFileName);
+        if (holdings != null) {
+          holdings.save(written);
+        }
+        if (ledger != null) {
+          ledger.setSource(written);
+        }
       }
-
-      file.write(jsonObject.toJSONString(false));
-      file.close();
     } catch (IOException ex) {
       System.out.println("Unable to open the file.");
       return false;
@@ -512,6 +575,34 @@ abstract class StocksModelAbstract implements StocksModelInterface {
   }
 
 
+  /**
+   * Returns the holdings header of a flexible portfolio that was read from a file, building it from
+   * the transactions if there is none for the version of the portfolio that was read.
+   *
+   * @param table the transactions of the portfolio.
+   * @return the header, or null if the portfolio is not flexible or was not read from a file.
+   */
+  private HoldingsHeader getHoldingsHeader(TransactionTable table) {
+    PortfolioSnapshotCache.Source source = table.getSource();
+    if (source == null || !(this instanceof StocksModelFlexible)) {
+      return null;
+    }
+    HoldingsHeader header = HoldingsHeader.find(source);
+    return header != null ? header : HoldingsHeader.build(source, table);
+  }
+
+
+  /**
+   * Returns the kind of the portfolios of the model in the repository.
+   *
+   * @return FLEXIBLE or INFLEXIBLE.
+   */
+  private String kind() {
+    return this instanceof StocksModelFlexible ? PortfolioRepository.FLEXIBLE
+            : PortfolioRepository.INFLEXIBLE;
+  }
+
+
   /**
    * Gets or reads the stock data from an existing JSON. This is used to examine the portfolio and
    * to get the value of the portfolio on a certain date. It returns the data in the JSON as a
@@ -523,16 +614,9 @@ abstract class StocksModelAbstract implements StocksModelInterface {
    */
   @Override
   public JSONArray getPortfolioFromJson(String userName, String jsonFileName) {
-    JSONParser jsonParser = new JSONParser();
     JSONArray jsonArray = new JSONArray();
     try {
-      FileReader file = null;
-      if (this instanceof StocksModelInflexible) {
-        file = new FileReader("res/users/" + userName + "/inflexible/" + jsonFileName);
-      } else if (this instanceof StocksModelFlexible) {
-        file = new FileReader("res/users/" + userName + "/flexible/" + jsonFileName);
-      }
-      jsonArray = jsonParser.parse(file);
+      jsonArray = this.repository.load(userName, kind(), jsonFileName);
     } catch (IOException ex) {
       if (this instanceof StocksModelInflexible) {
         System.out.println("File does not exist.");
@@ -555,97 +639,16 @@ abstract class StocksModelAbstract implements StocksModelInterface {
   @Override
   public JSONArray getCompositionHelper(String date, String userName, String jsonFileName) {
     JSONArray jsonArray = getPortfolioFromJson(userName, jsonFileName);
-    JSONArray resultJsonArray = new JSONArray();
-    List<String> processedStocks = new ArrayList<>();
-
-    for (int index = 0; index < jsonArray.size(); index++) {
-      JSONObject existingObject = (JSONObject) jsonArray.get(index);
-      String stockName = (String) existingObject.get("stock_name");
-      String transactionDateString = (String) existingObject.get("transaction_date");
-      double totalQuantity = Double.parseDouble((String) existingObject.get("quantity"));
-      double oldQuantity;
-      double price = Double.parseDouble((String) existingObject.get("price"));
-      String lastTransactionDateString = transactionDateString;
-      String firstTransactionDateString = transactionDateString;
-      double avgPrice = price;
-      String commission = (String) existingObject.get("commission");
-      SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-      Date transactionDate = new Date();
-      Date userInputDate = new Date();
-      Date firstTransactionDate = new Date();
-      Date lasTransactionDate = new Date();
-      try {
-        transactionDate = dateFormat.parse(transactionDateString);
-        userInputDate = dateFormat.parse(date);
-        firstTransactionDate = transactionDate;
-        lasTransactionDate = transactionDate;
-      } catch (ParseException e) {
-        System.out.println("Failed to parse the string date to date");
-      }
-
-      if (transactionDate.compareTo(userInputDate) <= 0) {
-        if (!processedStocks.contains(stockName)) {
-          JSONObject temp = new JSONObject();
-
-          for (int i = 0; i < jsonArray.size(); i++) {
-            if (i != index) {
-              JSONObject newObject = (JSONObject) jsonArray.get(i);
-              String newStockName = (String) newObject.get("stock_name");
-              String newTransactionDateString = (String) newObject.get("transaction_date");
-              double newPrice = Double.parseDouble((String) newObject.get("price"));
-              double newQuantity = Double.parseDouble((String) newObject.get("quantity"));
-              String newOperation = (String) newObject.get("operation");
-              Date newTransactionDate = new Date();
-              try {
-                newTransactionDate = dateFormat.parse(newTransactionDateString);
-              } catch (ParseException e) {
-                System.out.println("Failed to parse the string date to date");
-              }
-
-              if (newTransactionDate.compareTo(userInputDate) <= 0 && newStockName.equals(
-                      stockName)) {
-
-                if (newTransactionDate.compareTo(firstTransactionDate) < 0) {
-                  firstTransactionDateString = newTransactionDateString;
-                } else if (newTransactionDate.compareTo(lasTransactionDate) > 0) {
-                  lastTransactionDateString = newTransactionDateString;
-                }
-
-                if (newOperation.equals("BUY")) {
-                  oldQuantity = totalQuantity;
-                  totalQuantity += newQuantity;
-                  totalQuantity = Math.round(totalQuantity * 100.0) / 100.0;
-                  avgPrice = ((avgPrice * oldQuantity) + (newPrice * newQuantity)) / totalQuantity;
-                  avgPrice = Math.round(avgPrice * 100.0) / 100.0;
-                } else {
-                  totalQuantity -= newQuantity;
-                  totalQuantity = Math.round(totalQuantity * 100.0) / 100.0;
-                }
-              }
-            }
-
-          }
-          processedStocks.add(stockName);
-          if (totalQuantity > 0) {
-            temp.put("stock_name", stockName);
-            temp.put("quantity", String.valueOf(totalQuantity));
-            temp.put("transaction_date", firstTransactionDateString);
-            temp.put("price", String.valueOf(price));
-            temp.put("last_transaction_date", lastTransactionDateString);
-            temp.put("avg_price", String.valueOf(avgPrice));
-            temp.put("commission", String.valueOf(commission));
-            resultJsonArray.add(temp);
-          }
-        }
-      }
-
-    }
-    return resultJsonArray;
+    return new PositionLedger(jsonArray).getComposition(PositionLedger.parseDay(date));
   }
 
 
   /**
    * The getPrice method is used to determine the closing price of a stock on a particular date.
+   * The ticker data of a symbol is parsed once into a price series, and the price is then found by
+   * a binary search over the trading days. A date that the local data already covers but that has
+   * no price, such as a weekend or a holiday, is resolved locally as a day without trading. The
+   * API is only called for dates after the locally covered range.
    *
    * @param stockSymbol the stock name as input by the user.
    * @param date        the buying date as input by the user.
@@ -656,57 +659,43 @@ abstract class StocksModelAbstract implements StocksModelInterface {
   @Override
   public Double getPrice(String stockSymbol, String date, boolean lastValidPriceFlag)
           throws IOException {
-    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-    File localCache = new File("res/stock_data/" + stockSymbol + ".csv");
-    Calendar buyDate = Calendar.getInstance();
-    Calendar lastCSVDate = Calendar.getInstance();
-    Double get_price;
-
+    int day;
     try {
-      buyDate.setTime(dateFormat.parse(date));
-      lastCSVDate.setTime(dateFormat.parse("2022-10-31"));
-    } catch (ParseException e) {
+      day = EpochDays.parse(date);
+    } catch (IllegalArgumentException e) {
       System.out.println("Failed to parse date.");
+      return getPriceHelper(stockSymbol, date, lastValidPriceFlag);
     }
 
-    if (this.csvStockSymbols.contains(stockSymbol) && buyDate.compareTo(lastCSVDate) <= 0) {
-      try (
-              InputStream input = this.getClass()
-                      .getResourceAsStream("/stock_data/" + stockSymbol + ".csv");
-              InputStreamReader inputReader = new InputStreamReader(Objects.requireNonNull(input));
-              BufferedReader reader = new BufferedReader(inputReader)
-      ) {
-        List<String> tickerArray = readFromResource(reader, ";");
-        for (String s : tickerArray) {
-          String[] date_price = s.split(",");
-          if (date_price[0].equals(date)) {
-            return Double.valueOf(date_price[1]);
-          }
-        }
+    if (this.csvStockSymbols.contains(stockSymbol) && day <= PriceSeriesStore.LAST_BUNDLED_DAY) {
+      PriceSeries series = this.priceStore.getBundled(stockSymbol);
+      if (series != null && series.indexOf(day) != -1) {
+        return series.getClose(series.indexOf(day));
       }
     }
 
-    if (localCache.exists()) {
-      String tickerData;
-      Path file = Path.of("res/stock_data/" + stockSymbol + ".csv");
-      tickerData = Files.readString(file);
-      String[] tickerArray = tickerData.split(";");
-      for (String s : tickerArray) {
-        String[] date_price = s.split(",");
-        if (date_price[0].equals(date)) {
-          return Double.valueOf(date_price[1]);
-        }
+    PriceSeries series = this.priceStore.getLocal(stockSymbol);
+    if (series != null && series.indexOf(day) != -1) {
+      return series.getClose(series.indexOf(day));
+    }
+
+    if (PriceCoverage.covers(series, day)) {
+      return PriceCoverage.resolve(series, day, lastValidPriceFlag);
+    }
+    if (this.csvStockSymbols.contains(stockSymbol) && day <= PriceSeriesStore.LAST_BUNDLED_DAY) {
+      PriceSeries bundled = this.priceStore.getBundled(stockSymbol);
+      if (PriceCoverage.covers(bundled, day)) {
+        return PriceCoverage.resolve(bundled, day, lastValidPriceFlag);
       }
     }
 
-    get_price = getPriceHelper(stockSymbol, date, lastValidPriceFlag);
-    return get_price;
+    return getPriceHelper(stockSymbol, date, lastValidPriceFlag);
   }
 
 
   /**
-   * Acts as a helper method for the getPrice function. It calls the API and saves the data to a csv
-   * for future reference.
+   * Acts as a helper method for the getPrice function. It calls the API and saves the data to the
+   * local price cache for future reference.
    *
    * @param stockSymbol the stock name as input by the user.
    * @param date        the date as input by the function.
@@ -716,30 +705,24 @@ abstract class StocksModelAbstract implements StocksModelInterface {
    */
   @Override
   public Double getPriceHelper(String stockSymbol, String date, boolean flag) throws IOException {
-    Map<String, Double> date_price = callAPI(stockSymbol);
-    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-    Calendar buyDate = Calendar.getInstance();
-    Calendar currentDate = Calendar.getInstance();
-
+    PriceSeries series = fetchSeries(stockSymbol);
+    int day;
     try {
-      buyDate.setTime(dateFormat.parse(date));
-    } catch (ParseException e) {
+      day = EpochDays.parse(date);
+    } catch (IllegalArgumentException e) {
       System.out.println("Failed to parse date.");
+      return flag ? (double) -1 : null;
     }
 
-    Double get_price = date_price.get(date);
-    if (get_price == null) {
-      if (flag) {
-        return (double) -1;
-      }
+    if (series.indexOf(day) == -1 && flag) {
+      return (double) -1;
     }
 
-    while (get_price == null && buyDate.compareTo(currentDate) < 0) {
-      buyDate.add(Calendar.DATE, 1);
-      date = dateFormat.format(buyDate.getTime());
-      get_price = date_price.get(date);
+    int index = series.ceilingIndex(day);
+    if (index == -1 || series.getDay(index) > EpochDays.today()) {
+      return null;
     }
-    return get_price;
+    return series.getClose(index);
   }
 
 
@@ -753,30 +736,26 @@ abstract class StocksModelAbstract implements StocksModelInterface {
    */
   @Override
   public Map<String, Double> callAPI(String stockSymbol) throws IOException {
-    String[] ticker_data = callAlphaVantageAPI.getTickerData(stockSymbol);
-    if (ticker_data.length == 3) {
-      throw new IllegalArgumentException("Error Message: Invalid API call. Please retry or "
-              + "visit the documentation (https://www.alphavantage.co/documentation/)"
-              + " for TIME_SERIES_DAILY.");
-    }
-
+    PriceSeries series = fetchSeries(stockSymbol);
     Map<String, Double> date_price = new LinkedHashMap<>();
-    for (int i = 1; i < ticker_data.length; i++) {
-      String[] parts = ticker_data[i].split(",");
-      date_price.put(parts[0], Double.valueOf(parts[4]));
+    for (int i = series.size() - 1; i >= 0; i--) {
+      date_price.put(EpochDays.format(series.getDay(i)), series.getClose(i));
     }
+    return date_price;
+  }
 
-    File localCache = new File("res/stock_data/" + stockSymbol + ".csv");
-    try (BufferedWriter bf = new BufferedWriter(new FileWriter(localCache))) {
-      for (Map.Entry<String, Double> entry : date_price.entrySet()) {
-        bf.write(entry.getKey() + "," + entry.getValue() + ";");
-      }
-      bf.flush();
-    } catch (IOException ex) {
-      System.out.println(ex);
-    }
 
-    return date_price;
+  /**
+   * Calls the API for the complete ticker data of a symbol, saves it to the local cache and keeps
+   * the parsed series in the price store. Concurrent calls for the same symbol share one fetch.
+   * Acts as a helper for callAPI and getPriceHelper.
+   *
+   * @param stockSymbol the stock name as input by the user.
+   * @return the price series returned by the API.
+   * @throws IOException if the URL for the API is invalid.
+   */
+  private PriceSeries fetchSeries(String stockSymbol) throws IOException {
+    return this.priceFetcher.fetch(callAlphaVantageAPI, stockSymbol);
   }
 
 
@@ -790,15 +769,10 @@ abstract class StocksModelAbstract implements StocksModelInterface {
   @Override
   public double getLastValidPrice(String stockName) {
     double getPrice = -1;
-    Calendar currentDate = Calendar.getInstance();
-    DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-    String date = dateFormat.format(currentDate.getTime());
     try {
-      getPrice = getPrice(stockName, date, true);
-      while (getPrice == -1.0) {
-        currentDate.add(Calendar.DATE, -1);
-        date = dateFormat.format(currentDate.getTime());
-        getPrice = getPrice(stockName, date, true);
+      Double price = getPriceOnOrBefore(stockName, EpochDays.format(EpochDays.today()));
+      if (price != null) {
+        getPrice = price;
       }
     } catch (IllegalArgumentException | IOException e) {
       System.out.println(e);
@@ -808,6 +782,217 @@ abstract class StocksModelAbstract implements StocksModelInterface {
   }
 
 
+  /**
+   * Returns the closing price of a stock on the last trading day on or before a date. For example,
+   * the price on or before a Saturday is the closing price of the preceding Friday.
+   *
+   * @param stockSymbol the stock name as input by the user.
+   * @param date        the date as input by the user.
+   * @return the closing price, or null if the stock has no price on or before that date.
+   * @throws IOException if the url used to hit the API failed.
+   */
+  @Override
+  public Double getPriceOnOrBefore(String stockSymbol, String date) throws IOException {
+    return resolvePrice(stockSymbol, date, true);
+  }
+
+
+  /**
+   * Returns the closing price of a stock on the first trading day on or after a date. For example,
+   * the price on or after a Saturday is the closing price of the following Monday.
+   *
+   * @param stockSymbol the stock name as input by the user.
+   * @param date        the date as input by the user.
+   * @return the closing price, or null if the stock has no price on or after that date.
+   * @throws IOException if the url used to hit the API failed.
+   */
+  @Override
+  public Double getPriceOnOrAfter(String stockSymbol, String date) throws IOException {
+    return resolvePrice(stockSymbol, date, false);
+  }
+
+
+  /**
+   * Starts loading the price series of every stock in a portfolio on the shared prefetcher, so
+   * that the first valuation of the portfolio finds them in the price store. A series that is not
+   * complete through yesterday is refreshed from the API, behind any call made for the user. If the
+   * user asks for the price of a stock while it is still waiting, the refresh is promoted.
+   *
+   * @param userName the username as input by the user.
+   * @param jsonName the portfolio name as input by the user.
+   */
+  @Override
+  public void prefetchPortfolio(String userName, String jsonName) {
+    if (!this.repository.exists(userName, kind(), jsonName)) {
+      return;
+    }
+    JSONArray stocksDataArray = getPortfolioFromJson(userName, jsonName);
+    LinkedHashSet<String> stockSymbols = new LinkedHashSet<>();
+    for (int i = 0; i < stocksDataArray.size(); i++) {
+      stockSymbols.add((String) ((JSONObject) stocksDataArray.get(i)).get("stock_name"));
+    }
+    this.pricePrefetcher.prefetch(stockSymbols, stockSymbol -> {
+      if (!PriceCoverage.covers(getCachedSeries(stockSymbol), EpochDays.today() - 1)) {
+        this.priceFetcher.fetch(this.apiScheduler.background(), stockSymbol);
+      }
+    });
+  }
+
+
+  /**
+   * Gets the tax lots of a portfolio on a specific date. Every purchase opens a lot and every sale
+   * closes the oldest open lots of the stock first. For every lot opened on or before the date,
+   * the report has the quantity still open, the gain realized on the shares sold from it and the
+   * unrealized gain of the open shares at the closing price on or before that date.
+   *
+   * @param date         the date as input by the user.
+   * @param userName     username as input by the user.
+   * @param jsonFileName jsonName as input by the user.
+   * @return jsonArray with one object per lot.
+   */
+  @Override
+  public JSONArray getTaxLotReport(String date, String userName, String jsonFileName) {
+    return getTaxLotLedger(userName, jsonFileName).getLotReport(PositionLedger.parseDay(date),
+            (stockSymbol, day) -> getPriceOnOrBefore(stockSymbol, EpochDays.format(day)));
+  }
+
+
+  /**
+   * Returns the tax lots of a portfolio, from memory if they were kept for the current version of
+   * the portfolio, else by reading the portfolio.
+   *
+   * @param userName     the username.
+   * @param jsonFileName the portfolio name.
+   * @return the ledger of the portfolio.
+   */
+  private TaxLotLedger getTaxLotLedger(String userName, String jsonFileName) {
+    TaxLotLedger ledger = TaxLotLedger.find(
+            this.repository.getSource(userName, kind(), jsonFileName));
+    return ledger != null ? ledger
+            : TaxLotLedger.build(TransactionTable.of(getPortfolioFromJson(userName, jsonFileName)));
+  }
+
+
+  /**
+   * Gets the total value of many portfolios on many dates at once, for reports. Every portfolio is
+   * read once, the price series of all their stocks are loaded once on the shared prefetcher, and
+   * the portfolios are then valued in parallel on the common fork-join pool.
+   *
+   * @param userNames the username of each portfolio.
+   * @param jsonNames the name of each portfolio.
+   * @param dates     the dates to value the portfolios on.
+   * @return the value of each portfolio on each date, one row per portfolio and one column per
+   *         date. -1 if a portfolio does not exist or could not be valued on a date.
+   */
+  @Override
+  public double[][] getPortfolioValues(String[] userNames, String[] jsonNames, String[] dates) {
+    int[] days = new int[dates.length];
+    boolean[] validDays = new boolean[dates.length];
+    int lastDay = Integer.MIN_VALUE;
+    for (int i = 0; i < dates.length; i++) {
+      try {
+        days[i] = EpochDays.parse(dates[i]);
+        validDays[i] = true;
+        lastDay = Math.max(lastDay, days[i]);
+      } catch (IllegalArgumentException e) {
+        System.out.println("Failed to parse date.");
+      }
+    }
+
+    JSONArray[] portfolios = new JSONArray[userNames.length];
+    LinkedHashSet<String> stockSymbols = new LinkedHashSet<>();
+    for (int i = 0; i < userNames.length; i++) {
+      if (!this.repository.exists(userNames[i], kind(), jsonNames[i])) {
+        continue;
+      }
+      portfolios[i] = getPortfolioFromJson(userNames[i], jsonNames[i]);
+      TransactionTable table = TransactionTable.of(portfolios[i]);
+      for (int id = 0; id < table.stockCount(); id++) {
+        stockSymbols.add(table.getStockSymbol(id));
+      }
+    }
+
+    int coveredDay = lastDay;
+    this.pricePrefetcher.prefetch(stockSymbols, stockSymbol -> {
+      if (!PriceCoverage.covers(getCachedSeries(stockSymbol), coveredDay)) {
+        this.priceFetcher.fetch(this.callAlphaVantageAPI, stockSymbol);
+      }
+    }).join();
+
+    double[][] values = PortfolioValuation.valuesOf(portfolios, days,
+            (stockSymbol, day) -> getPrice(stockSymbol, EpochDays.format(day), false));
+    for (double[] row : values) {
+      for (int i = 0; i < dates.length; i++) {
+        if (!validDays[i]) {
+          row[i] = -1;
+        }
+      }
+    }
+    return values;
+  }
+
+
+  /**
+   * Resolves the price on the nearest trading day before or after a date with a single floor or
+   * ceiling search over the price series. The API is called at most once, and only if the locally
+   * available series does not cover the date.
+   *
+   * @param stockSymbol the stock name.
+   * @param date        the date.
+   * @param onOrBefore  true for the last trading day on or before the date, false for the first
+   *                    trading day on or after the date.
+   * @return the closing price, or null if there is no such trading day.
+   * @throws IOException if the url used to hit the API failed.
+   */
+  private Double resolvePrice(String stockSymbol, String date, boolean onOrBefore)
+          throws IOException {
+    int day;
+    try {
+      day = EpochDays.parse(date);
+    } catch (IllegalArgumentException e) {
+      System.out.println("Failed to parse date.");
+      return null;
+    }
+
+    PriceSeries series = getCachedSeries(stockSymbol);
+    if (!PriceCoverage.covers(series, day)) {
+      series = fetchSeries(stockSymbol);
+    }
+    int index = onOrBefore ? series.floorIndex(day) : series.ceilingIndex(day);
+    return index == -1 ? null : series.getClose(index);
+  }
+
+
+  /**
+   * Returns the price series of a symbol that is available without calling the API. The local cache
+   * is preferred, as it is refreshed from the API, and the bundled data is the fallback.
+   *
+   * @param stockSymbol the stock name.
+   * @return the series, or null if there is no local data for the symbol.
+   * @throws IOException if it fails to read the local data.
+   */
+  private PriceSeries getCachedSeries(String stockSymbol) throws IOException {
+    PriceSeries series = this.priceStore.getLocal(stockSymbol);
+    if (series == null && this.csvStockSymbols.contains(stockSymbol)) {
+      series = this.priceStore.getBundled(stockSymbol);
+    }
+    return series;
+  }
+
+
+  /**
+   * Sets a calendar to the start of an epoch day. Acts as a helper for portfolioPerformance.
+   *
+   * @param calendar the calendar to set.
+   * @param day      the epoch day.
+   */
+  private static void setDay(Calendar calendar, int day) {
+    LocalDate date = LocalDate.ofEpochDay(day);
+    calendar.clear();
+    calendar.set(date.getYear(), date.getMonthValue() - 1, date.getDayOfMonth());
+  }
+
+
   /**
    * Get the total portfolio value on a particular day, as entered by the user. Multiplying the
    * quantity by the buying price for each stock in a portfolio, gives the total value of that
@@ -819,41 +1004,50 @@ abstract class StocksModelAbstract implements StocksModelInterface {
    */
   @Override
   public double getPortfolioValue(JSONArray stocksDataArray, String date) {
-    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-    Date currentDate = new Date();
-    Date transactionDate = new Date();
+    TransactionTable table = TransactionTable.of(stocksDataArray);
+    Double cached = this.snapshotCache.getValue(table.getSource(), date);
+    if (cached != null) {
+      return cached;
+    }
+    long priceGeneration = this.snapshotCache.getPriceGeneration();
+    int currentDay = PositionLedger.parseDay(date);
+    double[] prices = new double[table.stockCount()];
+    Arrays.fill(prices, Double.NaN);
     double portfolioValue = 0;
 
-    for (int i = 0; i < stocksDataArray.size(); i++) {
-      JSONObject temp = (JSONObject) stocksDataArray.get(i);
-      try {
-        currentDate = dateFormat.parse(date);
-        transactionDate = dateFormat.parse((String) temp.get("transaction_date"));
-      } catch (ParseException ex) {
-        System.out.println("Failed to parse the string date to date");
+    for (int i = 0; i < table.size(); i++) {
+      if (table.getDay(i) > currentDay) {
+        continue;
       }
-
-      if (currentDate.compareTo(transactionDate) >= 0) {
-        try {
-          double price = getPrice((String) temp.get("stock_name"), date, false);
-          if (price == -1) {
-            return -1;
-          }
-          if (temp.get("operation").equals("SELL")) {
-            portfolioValue -= price * Double.parseDouble((String) temp.get("quantity"));
-          } else {
-            portfolioValue += price * Double.parseDouble((String) temp.get("quantity"));
-          }
-        } catch (IllegalArgumentException | IOException e) {
-          System.out.println("Invalid API call for " + temp.get("stock_name"));
+      int stockId = table.getStockId(i);
+      try {
+        if (Double.isNaN(prices[stockId])) {
+          prices[stockId] = getPrice(table.getStockSymbol(stockId), date, false);
+        }
+        double price = prices[stockId];
+        if (price == -1) {
           return -1;
         }
+        double quantity = table.getQuantity(i);
+        if (Double.isNaN(quantity)) {
+          throw new IllegalArgumentException();
+        }
+        if (table.getOperation(i) == TransactionTable.SELL) {
+          portfolioValue -= price * quantity;
+        } else {
+          portfolioValue += price * quantity;
+        }
+      } catch (IllegalArgumentException | IOException e) {
+        System.out.println("Invalid API call for " + table.getStockSymbol(stockId));
+        return -1;
       }
     }
+    this.snapshotCache.putValue(table.getSource(), date, portfolioValue, priceGeneration);
     return portfolioValue;
   }
 
 
+
   /**
    * Sets the validSellSymbols list, that contains the stocks names in a particular portfolio that
    * can be sold by the user.
@@ -907,38 +1101,12 @@ abstract class StocksModelAbstract implements StocksModelInterface {
    */
   public boolean validSellOrderQuantity(String stockName, double quantity, String date,
           String userName, String jsonFileName) {
-    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-    JSONArray stocksDataArray = getPortfolioFromJson(userName, jsonFileName);
-    Date sellDate = new Date();
-    Date buyDate = new Date();
-
-    try {
-      sellDate = dateFormat.parse(date);
-    } catch (ParseException ex) {
-      System.out.println("Failed to parse the string date to date");
-    }
-
-    double totalStocksBought = 0;
-    for (int i = 0; i < stocksDataArray.size(); i++) {
-      JSONObject temp = (JSONObject) stocksDataArray.get(i);
-      try {
-        buyDate = dateFormat.parse((String) temp.get("transaction_date"));
-      } catch (ParseException ex) {
-        System.out.println("Failed to parse the string date to date");
-      }
-
-      if (sellDate.compareTo(buyDate) >= 0 && stockName.equals(temp.get("stock_name"))) {
-        if (temp.get("operation").equals("BUY")) {
-          totalStocksBought += Double.parseDouble((String) temp.get("quantity"));
-        } else if (temp.get("operation").equals("SELL")) {
-          totalStocksBought -= Double.parseDouble((String) temp.get("quantity"));
-        }
-      }
-    }
-    return totalStocksBought >= quantity;
+    int sellDay = PositionLedger.parseDay(date);
+    return getTaxLotLedger(userName, jsonFileName).getOpenQuantity(stockName, sellDay) >= quantity;
   }
 
 
+
   /**
    * Used to encrypt the username and password, so that the login credentials are not susceptible to
    * any attacks. The encrypted credentials are saved to the login_credentials file.
@@ -988,39 +1156,44 @@ abstract class StocksModelAbstract implements StocksModelInterface {
    */
   @Override
   public double getCostValueBasis(JSONArray stocksDataArray, String date) {
-    double costBasis = 0;
-    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-    Date transactionDate = new Date();
-    Date userInputDate = new Date();
-    for (int i = 0; i < stocksDataArray.size(); i++) {
-      JSONObject temp = (JSONObject) stocksDataArray.get(i);
-      String transactionDateString = (String) temp.get("transaction_date");
-
-      try {
-        transactionDate = dateFormat.parse(transactionDateString);
-        userInputDate = dateFormat.parse(date);
-      } catch (ParseException e) {
-        System.out.println("Failed to parse the string date to date");
+    TransactionTable table = TransactionTable.of(stocksDataArray);
+    Double cached = this.snapshotCache.getCostBasis(table.getSource(), date);
+    if (cached != null) {
+      return cached;
+    }
+    int userInputDay = PositionLedger.parseDay(date);
+    HoldingsHeader holdings = getHoldingsHeader(table);
+    double costBasis = holdings == null ? Double.NaN : holdings.getCostBasis(userInputDay);
+    if (!Double.isNaN(costBasis)) {
+      this.snapshotCache.putCostBasis(table.getSource(), date, costBasis);
+      return costBasis;
+    }
+    costBasis = 0;
+    for (int i = 0; i < table.size(); i++) {
+      if (table.getDay(i) > userInputDay) {
+        continue;
       }
-
-      if (transactionDate.compareTo(userInputDate) <= 0) {
-        try {
-          if (temp.get("operation").equals("BUY")) {
-            costBasis += Double.parseDouble((String) temp.get("commission"))
-                    + Double.parseDouble((String) temp.get("price")) * Double.parseDouble(
-                    (String) temp.get("quantity"));
-          } else if (temp.get("operation").equals("SELL")) {
-            costBasis += Double.parseDouble((String) temp.get("commission"));
-          }
-        } catch (IllegalArgumentException e) {
-          System.out.println("Invalid API call for " + temp.get("stock_name"));
+      if (table.getOperation(i) == TransactionTable.BUY) {
+        double cost = table.getCommission(i) + table.getPrice(i) * table.getQuantity(i);
+        if (Double.isNaN(cost)) {
+          System.out.println("Invalid API call for " + table.getStockSymbol(table.getStockId(i)));
+        } else {
+          costBasis += cost;
+        }
+      } else if (table.getOperation(i) == TransactionTable.SELL) {
+        if (Double.isNaN(table.getCommission(i))) {
+          System.out.println("Invalid API call for " + table.getStockSymbol(table.getStockId(i)));
+        } else {
+          costBasis += table.getCommission(i);
         }
       }
     }
+    this.snapshotCache.putCostBasis(table.getSource(), date, costBasis);
     return costBasis;
   }
 
 
+
   /**
    * Calculate the portfolio performance for a give portfolio over a time range. The portfolio
    * performance is either daily, weekly, monthly or yearly depending on the start date and the end
@@ -1043,6 +1216,8 @@ abstract class StocksModelAbstract implements StocksModelInterface {
 
     double minimum = 0;
     double maximum = 0;
+    List<String> keys = new ArrayList<>();
+    List<Integer> valuationDays = new ArrayList<>();
 
     try {
       startDate.setTime(dateFormat.parse(begin));
@@ -1055,21 +1230,18 @@ abstract class StocksModelAbstract implements StocksModelInterface {
       // Date as the key
 
       DateFormat keyFormatter = new SimpleDateFormat("dd MMM yyyy");
+      int lastDay = EpochDays.parse(dateFormat.format(endDate.getTime()));
       while (startDate.before(endDate) || startDate.equals(endDate)) {
-        String date = dateFormat.format(startDate.getTime());
-        double value = getPortfolioValue(stocksDataArray, date);
-        while (value == -1) {
-          startDate.add(Calendar.DATE, 1);
-          date = dateFormat.format(startDate.getTime());
-          value = getPortfolioValue(stocksDataArray, date);
+        int day = this.tradingCalendar.ceilingTradingDay(
+                EpochDays.parse(dateFormat.format(startDate.getTime())));
+        if (day > lastDay) {
+          break;
         }
+        setDay(startDate, day);
         String dateKey = keyFormatter.format(startDate.getTime());
         startDate.add(Calendar.DATE, 1);
-        if (value > 0) {
-          minimum = Math.min(minimum, value);
-        }
-        maximum = Math.max(maximum, value);
-        portfolioPerformance.put(dateKey, value);
+        keys.add(dateKey);
+        valuationDays.add(day);
       }
 
 
@@ -1080,20 +1252,15 @@ abstract class StocksModelAbstract implements StocksModelInterface {
       String date = firstFriday.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
       DateFormat keyFormatter = new SimpleDateFormat("dd MMM yyyy");
       while (startDate.before(endDate) || startDate.equals(endDate)) {
-        double value = getPortfolioValue(stocksDataArray, date);
-        while (value == -1) {
-          startDate.add(Calendar.DATE, -1);
-          date = dateFormat.format(startDate.getTime());
-          value = getPortfolioValue(stocksDataArray, date);
+        int day = this.tradingCalendar.floorTradingDay(EpochDays.parse(date));
+        if (day != EpochDays.parse(date)) {
+          setDay(startDate, day);
         }
         String dateKey = keyFormatter.format(startDate.getTime());
         startDate.add(Calendar.DATE, 7);
         date = dateFormat.format(startDate.getTime());
-        if (value > 0) {
-          minimum = Math.min(minimum, value);
-        }
-        maximum = Math.max(maximum, value);
-        portfolioPerformance.put(dateKey, value);
+        keys.add(dateKey);
+        valuationDays.add(day);
       }
 
     } else if (dateRange <= 1600) {
@@ -1137,20 +1304,12 @@ abstract class StocksModelAbstract implements StocksModelInterface {
         c.set(Calendar.DAY_OF_MONTH, c.getActualMaximum(Calendar.DAY_OF_MONTH));
         String lastValidDate = dateFormat.format(c.getTime());
 
-        double value = getPortfolioValue(stocksDataArray, lastValidDate);
-        while (value == -1) {
-          LocalDate newDate = LocalDate.parse(lastValidDate).minusDays(1);
-          value = getPortfolioValue(stocksDataArray, String.valueOf(newDate));
-          lastValidDate = String.valueOf(newDate);
-        }
+        int day = this.tradingCalendar.floorTradingDay(EpochDays.parse(lastValidDate));
 
         String monthKey = keyFormatter.format(convertedDate);
         startDate.add(Calendar.MONTH, 1);
-        if (value > 0) {
-          minimum = Math.min(minimum, value);
-        }
-        maximum = Math.max(maximum, value);
-        portfolioPerformance.put(monthKey, value);
+        keys.add(monthKey);
+        valuationDays.add(day);
       }
 
     } else {
@@ -1191,26 +1350,89 @@ abstract class StocksModelAbstract implements StocksModelInterface {
           flag = true;
         }
 
-        double value = getPortfolioValue(stocksDataArray, date);
-        while (value == -1) {
-          startDate.add(Calendar.DATE, -1);
-          date = dateFormat.format(startDate.getTime());
-          value = getPortfolioValue(stocksDataArray, date);
+        int day = this.tradingCalendar.floorTradingDay(EpochDays.parse(date));
+        if (day != EpochDays.parse(date)) {
+          setDay(startDate, day);
         }
         String dateKey = keyFormatter.format(startDate.getTime());
         startDate.add(Calendar.YEAR, 1);
-        if (value > 0) {
-          minimum = Math.min(minimum, value);
-        }
-        maximum = Math.max(maximum, value);
-        portfolioPerformance.put(dateKey, value);
+        keys.add(dateKey);
+        valuationDays.add(day);
+      }
+    }
+    double[] values = new PortfolioValuation(stocksDataArray).valuesOn(
+            valuationDays.stream().mapToInt(Integer::intValue).toArray(),
+            (stockSymbol, day) -> getPrice(stockSymbol, EpochDays.format(day), false));
+    for (int i = 0; i < values.length; i++) {
+      double value = values[i];
+      if (value == -1) {
+        continue;
+      }
+      if (value > 0) {
+        minimum = Math.min(minimum, value);
       }
+      maximum = Math.max(maximum, value);
+      portfolioPerformance.put(keys.get(i), value);
+    }
+    portfolioPerformance.put("portfolio_performance_scale", performanceScale(maximum));
+    return portfolioPerformance;
+  }
+
+
+  /**
+   * Calculate the portfolio performance for a give portfolio over a time range, as a line of at
+   * most a number of points. The value of the portfolio is computed on every trading day of the
+   * range and the daily values are reduced to the points that keep the shape of the line. The
+   * daily values are kept, so that showing a range inside or next to a range shown before only
+   * values the days that were not valued yet.
+   *
+   * @param stocksDataArray the data in a portfolio.
+   * @param begin           the start date.
+   * @param finish          the end date.
+   * @param points          the maximum number of points on the line.
+   * @return a map that contains the portfolio value for a corresponding key (day).
+   */
+  @Override
+  public Map<String, Double> portfolioPerformanceDownsampled(JSONArray stocksDataArray,
+          String begin, String finish, int points) {
+    int from;
+    int to;
+    try {
+      from = EpochDays.parse(begin);
+      to = Math.min(EpochDays.parse(finish), EpochDays.today());
+    } catch (IllegalArgumentException e) {
+      System.out.println("Failed to parse the string date to date");
+      return null;
     }
+
+    PerformanceSeries series = PerformanceSeries.daily(stocksDataArray, from, to,
+            (stockSymbol, day) -> getPrice(stockSymbol, EpochDays.format(day), false))
+            .downsample(points);
+    Map<String, Double> portfolioPerformance = new LinkedHashMap<>();
+    DateFormat keyFormatter = new SimpleDateFormat("dd MMM yyyy");
+    Calendar calendar = Calendar.getInstance();
+    double maximum = 0;
+    for (int i = 0; i < series.size(); i++) {
+      setDay(calendar, series.getDay(i));
+      portfolioPerformance.put(keyFormatter.format(calendar.getTime()), series.getValue(i));
+      maximum = Math.max(maximum, series.getValue(i));
+    }
+    portfolioPerformance.put("portfolio_performance_scale", performanceScale(maximum));
+    return portfolioPerformance;
+  }
+
+
+  /**
+   * Returns the value of one star in the performance chart, a round number close to a fiftieth of
+   * the largest value. Acts as a helper for portfolioPerformance.
+   *
+   * @param maximum the largest value in the chart.
+   * @return the scale.
+   */
+  private static double performanceScale(double maximum) {
     maximum /= 50;
     double roundMax = Math.pow(10, -Math.floor(Math.log10(maximum)));
-    double scale = Math.ceil(maximum * roundMax) / roundMax;
-    portfolioPerformance.put("portfolio_performance_scale", scale);
-    return portfolioPerformance;
+    return Math.ceil(maximum * roundMax) / roundMax;
   }
 
 
@@ -1269,29 +1491,20 @@ abstract class StocksModelAbstract implements StocksModelInterface {
         System.out.println("Failed to parse date.");
       }
 
+      List<String> batchNames = new ArrayList<>();
+      List<String> batchDates = new ArrayList<>();
+      List<Double> batchQuantities = new ArrayList<>();
+      List<Double> batchCommissions = new ArrayList<>();
       while (startDate.before(endDate) || startDate.equals(endDate)) {
-        int day = startDate.get(Calendar.DAY_OF_WEEK);
-        if (day == Calendar.SATURDAY) {
-          Calendar newDate = startDate;
-          newDate.add(Calendar.DATE, 2);
-          if (newDate.before(endDate) || newDate.equals(endDate)) {
-            startDate = newDate;
-          } else {
-            break;
-          }
-        } else if (day == Calendar.SUNDAY) {
-          Calendar newDate = startDate;
-          newDate.add(Calendar.DATE, 1);
-          if (newDate.before(endDate) || newDate.equals(endDate)) {
-            startDate = newDate;
-          } else {
-            break;
-          }
+        int day = this.tradingCalendar.ceilingTradingDay(
+                EpochDays.parse(dateFormat.format(startDate.getTime())));
+        if (day > EpochDays.parse(dateFormat.format(endDate.getTime()))) {
+          break;
         }
+        setDay(startDate, day);
 
         String date = dateFormat.format(startDate.getTime());
         double[] quantitiesArray = new double[stockNamesArray.length];
-        String[] buyDatesArray = new String[stockNamesArray.length];
         for (int i = 0; i < stockNamesArray.length; i++) {
           try {
             double stockPrice = getPrice(stockNamesArray[i], date, false);
@@ -1303,17 +1516,21 @@ abstract class StocksModelAbstract implements StocksModelInterface {
           } catch (IOException e) {
             System.out.println(e);
           }
-          buyDatesArray[i] = date;
+          batchNames.add(stockNamesArray[i]);
+          batchDates.add(date);
+          batchQuantities.add(quantitiesArray[i]);
+          batchCommissions.add(commissionArray[i]);
+        }
+        if (batchNames.size() >= MAX_INSTALLMENT_ROWS) {
+          writeInstallments(userName, jsonName, stockNamesArray.length, batchNames, batchDates,
+                  batchQuantities, batchCommissions);
         }
-        writePortfolioToJson(userName, jsonName, stockNamesArray, buyDatesArray, quantitiesArray,
-                commissionArray, "BUY");
         startDate.add(Calendar.DATE, interval);
       }
+      writeInstallments(userName, jsonName, stockNamesArray.length, batchNames, batchDates,
+              batchQuantities, batchCommissions);
 
       if (!endDateExists) {
-        File ongoingStrategies = new File(
-                "res/users/" + userName + "/flexible/ongoing_strategies.csv");
-
         String fileData;
         String newFileData = "";
         Path file = Path.of("res/users/" + userName + "/flexible/ongoing_strategies.csv");
@@ -1351,9 +1568,10 @@ abstract class StocksModelAbstract implements StocksModelInterface {
           System.out.println(e);
         }
 
-        try (BufferedWriter bf = new BufferedWriter(new FileWriter(ongoingStrategies))) {
-          bf.write(newFileData);
-          bf.flush();
+        String ongoingStrategies = newFileData;
+        try {
+          FileTransaction.writeFile("res/users/" + userName + "/flexible/ongoing_strategies.csv",
+                  out -> out.write(ongoingStrategies));
         } catch (IOException ex) {
           System.out.println(ex);
         }
@@ -1364,6 +1582,53 @@ abstract class StocksModelAbstract implements StocksModelInterface {
   }
 
 
+  /**
+   * Writes the installments of an investment strategy that were not written yet to the portfolio,
+   * all at once, and clears them. If they can not be written at once, for instance because the
+   * price of one of them can not be found, every installment is written on its own, so that only
+   * the installments that can not be written are left out, and each of those is reported.
+   *
+   * @param userName    the username.
+   * @param jsonName    the portfolio name.
+   * @param installment the number of rows of an installment, one per stock.
+   * @param names       the stock names of the installments.
+   * @param dates       the buying dates of the installments.
+   * @param quantities  the stock quantities of the installments.
+   * @param commissions the commissions of the installments.
+   */
+  private void writeInstallments(String userName, String jsonName, int installment,
+          List<String> names, List<String> dates, List<Double> quantities,
+          List<Double> commissions) {
+    if (!names.isEmpty() && !writeRows(userName, jsonName, names, dates, quantities,
+            commissions)) {
+      for (int from = 0; from < names.size(); from += installment) {
+        int to = Math.min(from + installment, names.size());
+        if (!writeRows(userName, jsonName, names.subList(from, to), dates.subList(from, to),
+                quantities.subList(from, to), commissions.subList(from, to))) {
+          System.out.println("Unable to write the installment of " + dates.get(from) + ".");
+        }
+      }
+    }
+    names.clear();
+    dates.clear();
+    quantities.clear();
+    commissions.clear();
+  }
+
+
+  private boolean writeRows(String userName, String jsonName, List<String> names,
+          List<String> dates, List<Double> quantities, List<Double> commissions) {
+    double[] quantitiesArray = new double[quantities.size()];
+    double[] commissionsArray = new double[commissions.size()];
+    for (int i = 0; i < quantitiesArray.length; i++) {
+      quantitiesArray[i] = quantities.get(i);
+      commissionsArray[i] = commissions.get(i);
+    }
+    return writePortfolioToJson(userName, jsonName, names.toArray(new String[0]),
+            dates.toArray(new String[0]), quantitiesArray, commissionsArray, "BUY");
+  }
+
+
   /**
    * Checks if a strategy is ongoing. Helps to refresh the portfolio to the current date. It is
    * possible that a strategy was declared 1 year ago, hence the portfolio needs to be refreshed to
@@ -1,5 +1,7 @@
 package stocks.model;
 
+import stocks.api.APIScheduler;
+
 /**
  * This is the implementation of an flexible portfolio, that extends the StocksModelAbstract
  * class, which in-turn is an implementation of the StocksModelInterface.
@@ -12,4 +14,16 @@ public class StocksModelFlexible extends StocksModelAbstract {
   public StocksModelFlexible() {
     super();
   }
+
+
+  /**
+   * A constructor of the StocksModelFlexible class that calls the API through a given scheduler
+   * and keeps the portfolios in a given repository.
+   *
+   * @param apiScheduler the scheduler of the API calls.
+   * @param repository   where the portfolios are kept.
+   */
+  StocksModelFlexible(APIScheduler apiScheduler, PortfolioRepository repository) {
+    super(apiScheduler, repository);
+  }
 }
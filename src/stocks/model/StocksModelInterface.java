@@ -336,6 +336,73 @@ public interface StocksModelInterface {
           throws IOException;
 
 
+  /**
+   * Returns the closing price of a stock on the last trading day on or before a date. For example,
+   * the price on or before a Saturday is the closing price of the preceding Friday.
+   *
+   * @param stockSymbol the stock name as input by the user.
+   * @param date        the date as input by the user.
+   * @return the closing price, or null if the stock has no price on or before that date.
+   * @throws IOException if the url used to hit the API failed.
+   */
+  Double getPriceOnOrBefore(String stockSymbol, String date) throws IOException;
+
+
+  /**
+   * Returns the closing price of a stock on the first trading day on or after a date. For example,
+   * the price on or after a Saturday is the closing price of the following Monday.
+   *
+   * @param stockSymbol the stock name as input by the user.
+   * @param date        the date as input by the user.
+   * @return the closing price, or null if the stock has no price on or after that date.
+   * @throws IOException if the url used to hit the API failed.
+   */
+  Double getPriceOnOrAfter(String stockSymbol, String date) throws IOException;
+
+
+  /**
+   * Starts loading the price data of every stock in a portfolio in the background, so that it is
+   * already available when the portfolio is valued. Returns without waiting for the data.
+   *
+   * @param userName the username as input by the user.
+   * @param jsonName the portfolio name as input by the user.
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  void prefetchPortfolio(String userName, String jsonName) throws IOException;
+
+
+  /**
+   * Gets the tax lots of a portfolio on a specific date. Every purchase opens a lot and every sale
+   * closes the oldest open lots of the stock first. For every lot opened on or before the date,
+   * the report has the quantity still open, the gain realized on the shares sold from it and the
+   * unrealized gain of the open shares at the price on that date.
+   *
+   * @param date         the date as input by the user.
+   * @param userName     username as input by the user.
+   * @param jsonFileName jsonName as input by the user.
+   * @return jsonArray with one object per lot.
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  JSONArray getTaxLotReport(String date, String userName, String jsonFileName)
+          throws IOException;
+
+
+  /**
+   * Gets the total value of many portfolios on many dates at once, for reports. The i-th portfolio
+   * is the portfolio jsonNames[i] of the user userNames[i]. The price data of every stock is loaded
+   * once for all the portfolios, and the portfolios are valued in parallel.
+   *
+   * @param userNames the username of each portfolio.
+   * @param jsonNames the name of each portfolio.
+   * @param dates     the dates to value the portfolios on.
+   * @return the value of each portfolio on each date, one row per portfolio and one column per
+   *         date. -1 if a portfolio does not exist or could not be valued on a date.
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  double[][] getPortfolioValues(String[] userNames, String[] jsonNames, String[] dates)
+          throws IOException;
+
+
   /**
    * To get the lastValidPrice on any particular day. For example, the lastValidPrice on a weekend
    * would be the last traded price. Thus return the last traded price.
@@ -450,6 +517,22 @@ public interface StocksModelInterface {
   Map<String, Double> portfolioPerformance(JSONArray stockDataArray, String begin, String finish)
           throws IOException;
 
+
+  /**
+   * Calculate the portfolio performance for a give portfolio over a time range, as a line of at
+   * most a number of points. The value is computed on every trading day of the range and reduced
+   * to the points that keep the shape of the line.
+   *
+   * @param stockDataArray the data in a portfolio.
+   * @param begin          the start date.
+   * @param finish         the end date.
+   * @param points         the maximum number of points on the line.
+   * @return a map that contains the portfolio value for a corresponding key (day).
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  Map<String, Double> portfolioPerformanceDownsampled(JSONArray stockDataArray, String begin,
+          String finish, int points) throws IOException;
+
   /**
    * Checks if a strategy is ongoing. Helps to refresh the portfolio to the current date. It is
    * possible that a strategy was declared 1 year ago, hence the portfolio needs to be refreshed to
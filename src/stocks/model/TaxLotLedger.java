@@ -0,0 +1,375 @@
+package stocks.model;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+
+/**
+ * The tax lots of a portfolio. Every BUY opens a lot, and every SELL closes the oldest open lots of
+ * the stock first, in first in, first out order. The cost of a lot includes the commission of its
+ * purchase, and the proceeds of a sale are net of the commission of the sale, both spread evenly
+ * over the shares.
+ *
+ * <p>The transactions of each stock are replayed once, in order of date, with the purchases of a
+ * day before its sales. The lots are kept in the order they were opened along with the running
+ * quantity bought, and the sales in the order they were made along with the running quantity sold,
+ * so that the quantity held on any date is found with two binary searches. A sale of more shares
+ * than are open only closes the open shares.
+ *
+ * <p>The sales close the lots in order, so every lot before the one closed last by the sales up to
+ * a date is fully closed on that date. Each match of a sale to a lot keeps the quantity closed and
+ * the gain realized on its lot so far, and each lot its totals, so the lots on a date are reported
+ * without going over the earlier sales again.
+ *
+ * <p>The ledger of a portfolio that was read from the repository is kept in memory for the version
+ * of the portfolio it was built from, the same way the holdings header is, and the transactions
+ * written to the portfolio afterwards are added to it. A transaction dated before the last
+ * transaction of its stock can not be added in order of date; the ledger is then dropped and built
+ * again from the portfolio when it is next needed. Only the ledgers of the portfolios used most
+ * recently are kept.
+ */
+class TaxLotLedger {
+  private static final double EPSILON = 1e-9;
+  static final int MAX_PORTFOLIOS = 32;
+  private static final Map<String, TaxLotLedger> LEDGERS = Collections.synchronizedMap(
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TaxLotLedger> eldest) {
+              return size() > MAX_PORTFOLIOS;
+            }
+          });
+
+  private final Map<String, Lots> lots;
+  private PortfolioSnapshotCache.Source source;
+
+  /**
+   * A constructor of the TaxLotLedger class. Replays every transaction of a portfolio.
+   *
+   * @param table the transactions of the portfolio.
+   */
+  private TaxLotLedger(TransactionTable table) {
+    this.source = table.getSource();
+    long[] order = new long[table.size()];
+    for (int i = 0; i < table.size(); i++) {
+      int sale = table.getOperation(i) == TransactionTable.SELL ? 1 : 0;
+      order[i] = ((long) table.getDay(i) << 32) | ((long) sale << 31) | i;
+    }
+    Arrays.sort(order);
+
+    this.lots = new LinkedHashMap<>();
+    for (int id = 0; id < table.stockCount(); id++) {
+      this.lots.put(table.getStockSymbol(id), new Lots());
+    }
+    for (long key : order) {
+      int row = (int) (key & Integer.MAX_VALUE);
+      Lots stockLots = this.lots.get(table.getStockSymbol(table.getStockId(row)));
+      if (table.getOperation(row) == TransactionTable.BUY) {
+        stockLots.buy(table.getDay(row), table.getQuantity(row), table.getPrice(row),
+                table.getCommission(row));
+      } else if (table.getOperation(row) == TransactionTable.SELL) {
+        stockLots.sell(table.getDay(row), table.getQuantity(row), table.getPrice(row),
+                table.getCommission(row));
+      }
+    }
+  }
+
+
+  /**
+   * Returns the ledger of a version of a portfolio, if it is kept in memory.
+   *
+   * @param source the portfolio and the version of it that the ledger must match.
+   * @return the ledger, or null if there is none for that version of the portfolio.
+   */
+  static TaxLotLedger find(PortfolioSnapshotCache.Source source) {
+    TaxLotLedger ledger = LEDGERS.get(source.getPath());
+    return ledger != null && ledger.source.sameVersion(source) ? ledger : null;
+  }
+
+
+  /**
+   * Builds the ledger of a portfolio from its transactions. The ledger of a portfolio that was read
+   * from the repository is kept in memory for the version that was read.
+   *
+   * @param table the transactions of the portfolio.
+   * @return the ledger.
+   */
+  static TaxLotLedger build(TransactionTable table) {
+    TaxLotLedger ledger = new TaxLotLedger(table);
+    if (ledger.source != null && ledger.source.exists()) {
+      LEDGERS.put(ledger.source.getPath(), ledger);
+    }
+    return ledger;
+  }
+
+
+  /**
+   * Adds a transaction that was appended to the portfolio. The ledger is dropped if the
+   * transaction is dated before the last transaction of its stock. The version of the portfolio
+   * has to be set once the portfolio is written.
+   *
+   * @param operation   the operation, BUY or SELL.
+   * @param stockSymbol the stock name.
+   * @param day         the transaction date as an epoch day.
+   * @param quantity    the quantity.
+   * @param price       the price.
+   * @param commission  the commission.
+   */
+  synchronized void add(byte operation, String stockSymbol, int day, double quantity,
+          double price, double commission) {
+    if (this.source == null) {
+      return;
+    }
+    Lots stockLots = this.lots.computeIfAbsent(stockSymbol, name -> new Lots());
+    if (operation == TransactionTable.BUY && stockLots.canBuy(day)) {
+      stockLots.buy(day, quantity, price, commission);
+    } else if (operation == TransactionTable.SELL && stockLots.canSell(day)) {
+      stockLots.sell(day, quantity, price, commission);
+    } else if (operation == TransactionTable.BUY || operation == TransactionTable.SELL) {
+      LEDGERS.remove(this.source.getPath(), this);
+      this.source = null;
+    }
+  }
+
+
+  /**
+   * Sets the version of the portfolio that the ledger matches, once the transactions added to it
+   * were written.
+   *
+   * @param source the portfolio and the version of it that was written.
+   */
+  synchronized void setSource(PortfolioSnapshotCache.Source source) {
+    if (this.source != null) {
+      this.source = source;
+    }
+  }
+
+
+  /**
+   * Returns the quantity of a stock held on a date.
+   *
+   * @param stockSymbol the stock name.
+   * @param day         the date as an epoch day.
+   * @return the quantity in the open lots of the stock.
+   */
+  synchronized double getOpenQuantity(String stockSymbol, int day) {
+    Lots stockLots = this.lots.get(stockSymbol);
+    return stockLots == null ? 0 : stockLots.bought(day) - stockLots.sold(day);
+  }
+
+
+  /**
+   * Returns the lots opened on or before a date: for every lot, the stock, its purchase date,
+   * quantity, price and cost, the quantity still open on the date, the gain realized on the shares
+   * sold from it and the unrealized gain of the open shares at the price on the date. The market
+   * price and the unrealized gain are missing for a stock whose price can not be found.
+   *
+   * @param day    the date as an epoch day.
+   * @param prices looks up the price of a stock on the date.
+   * @return the lots in the order of the first transaction of their stock and then of purchase.
+   */
+  synchronized JSONArray getLotReport(int day, PortfolioValuation.PriceLookup prices) {
+    JSONArray report = new JSONArray();
+    for (Map.Entry<String, Lots> entry : this.lots.entrySet()) {
+      Lots stockLots = entry.getValue();
+      int opened = upperBound(stockLots.days, stockLots.count, day);
+      if (opened == 0) {
+        continue;
+      }
+      int sales = upperBound(stockLots.saleDays, stockLots.saleCount, day);
+      int matches = sales == 0 ? 0 : stockLots.saleMatchEnds[sales - 1];
+      int lastClosed = matches == 0 ? -1 : stockLots.matchLots[matches - 1];
+
+      Double marketPrice = null;
+      if (stockLots.bought(day) - stockLots.sold(day) > EPSILON) {
+        try {
+          marketPrice = prices.getPrice(entry.getKey(), day);
+        } catch (IllegalArgumentException | IOException e) {
+          System.out.println("Invalid API call for " + entry.getKey());
+        }
+      }
+
+      for (int lot = 0; lot < opened; lot++) {
+        double closed = 0;
+        double realized = 0;
+        if (lot < lastClosed) {
+          closed = stockLots.closedTotals[lot];
+          realized = stockLots.realizedTotals[lot];
+        } else if (lot == lastClosed) {
+          closed = stockLots.matchClosed[matches - 1];
+          realized = stockLots.matchRealized[matches - 1];
+        }
+        double open = stockLots.quantities[lot] - closed;
+        JSONObject temp = new JSONObject();
+        temp.put("stock_name", entry.getKey());
+        temp.put("transaction_date", EpochDays.format(stockLots.days[lot]));
+        temp.put("quantity", String.valueOf(stockLots.quantities[lot]));
+        temp.put("price", String.valueOf(stockLots.prices[lot]));
+        temp.put("cost",
+                String.valueOf(round(stockLots.unitCosts[lot] * stockLots.quantities[lot])));
+        temp.put("open_quantity", String.valueOf(round(open)));
+        temp.put("realized_gain", String.valueOf(round(realized)));
+        if (marketPrice != null && marketPrice != -1) {
+          temp.put("market_price", String.valueOf(marketPrice));
+          temp.put("unrealized_gain",
+                  String.valueOf(round(open * (marketPrice - stockLots.unitCosts[lot]))));
+        }
+        report.add(temp);
+      }
+    }
+    return report;
+  }
+
+
+  private static double round(double value) {
+    return Math.round(value * 100.0) / 100.0;
+  }
+
+
+  private static int upperBound(int[] days, int size, int day) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (days[mid] <= day) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+
+  /**
+   * The lots and the sales of one stock, in order of date.
+   */
+  private static final class Lots {
+    private int count;
+    private int[] days = new int[4];
+    private double[] quantities = new double[4];
+    private double[] prices = new double[4];
+    private double[] unitCosts = new double[4];
+    private double[] boughtTotals = new double[4];
+    private double[] closedTotals = new double[4];
+    private double[] realizedTotals = new double[4];
+
+    private int saleCount;
+    private int[] saleDays = new int[4];
+    private double[] soldTotals = new double[4];
+    private int[] saleMatchEnds = new int[4];
+
+    private int matchCount;
+    private int[] matchLots = new int[4];
+    private double[] matchClosed = new double[4];
+    private double[] matchRealized = new double[4];
+
+    private int front;
+    private double frontClosed;
+
+    /**
+     * Tells whether a purchase on a day comes after every transaction of the stock, with the
+     * purchases of a day before its sales.
+     */
+    private boolean canBuy(int day) {
+      return (this.count == 0 || this.days[this.count - 1] <= day)
+              && (this.saleCount == 0 || this.saleDays[this.saleCount - 1] < day);
+    }
+
+    private boolean canSell(int day) {
+      return (this.count == 0 || this.days[this.count - 1] <= day)
+              && (this.saleCount == 0 || this.saleDays[this.saleCount - 1] <= day);
+    }
+
+    private void buy(int day, double quantity, double price, double commission) {
+      if (this.count == this.days.length) {
+        int capacity = this.count * 2;
+        this.days = Arrays.copyOf(this.days, capacity);
+        this.quantities = Arrays.copyOf(this.quantities, capacity);
+        this.prices = Arrays.copyOf(this.prices, capacity);
+        this.unitCosts = Arrays.copyOf(this.unitCosts, capacity);
+        this.boughtTotals = Arrays.copyOf(this.boughtTotals, capacity);
+        this.closedTotals = Arrays.copyOf(this.closedTotals, capacity);
+        this.realizedTotals = Arrays.copyOf(this.realizedTotals, capacity);
+      }
+      double fees = Double.isNaN(commission) ? 0 : commission;
+      this.days[this.count] = day;
+      this.quantities[this.count] = quantity;
+      this.prices[this.count] = price;
+      this.unitCosts[this.count] = price + fees / quantity;
+      this.boughtTotals[this.count] = (this.count == 0 ? 0 : this.boughtTotals[this.count - 1])
+              + quantity;
+      this.count++;
+    }
+
+    /**
+     * Closes the oldest open lots for a sale. The front of the queue of open lots is the first lot
+     * with shares left, and how many of its shares are already closed.
+     */
+    private void sell(int day, double quantity, double price, double commission) {
+      if (this.saleCount == this.saleDays.length) {
+        int capacity = this.saleCount * 2;
+        this.saleDays = Arrays.copyOf(this.saleDays, capacity);
+        this.soldTotals = Arrays.copyOf(this.soldTotals, capacity);
+        this.saleMatchEnds = Arrays.copyOf(this.saleMatchEnds, capacity);
+      }
+      double fees = Double.isNaN(commission) ? 0 : commission;
+      double unitProceeds = price - fees / quantity;
+
+      double remaining = quantity;
+      double sold = 0;
+      while (remaining > EPSILON && this.front < this.count) {
+        double available = this.quantities[this.front] - this.frontClosed;
+        double closed = Math.min(available, remaining);
+        double gain = closed * (unitProceeds - this.unitCosts[this.front]);
+        match(this.front, closed, gain);
+        remaining -= closed;
+        sold += closed;
+        if (available - closed <= EPSILON) {
+          this.front++;
+          this.frontClosed = 0;
+        } else {
+          this.frontClosed += closed;
+        }
+      }
+
+      double soldBefore = this.saleCount == 0 ? 0 : this.soldTotals[this.saleCount - 1];
+      this.saleDays[this.saleCount] = day;
+      this.soldTotals[this.saleCount] = soldBefore + sold;
+      this.saleMatchEnds[this.saleCount] = this.matchCount;
+      this.saleCount++;
+    }
+
+    /**
+     * Closes shares of a lot, and keeps the quantity closed and the gain realized on the lot so
+     * far.
+     */
+    private void match(int lot, double closed, double gain) {
+      if (this.matchCount == this.matchLots.length) {
+        int capacity = this.matchCount * 2;
+        this.matchLots = Arrays.copyOf(this.matchLots, capacity);
+        this.matchClosed = Arrays.copyOf(this.matchClosed, capacity);
+        this.matchRealized = Arrays.copyOf(this.matchRealized, capacity);
+      }
+      this.closedTotals[lot] += closed;
+      this.realizedTotals[lot] += gain;
+      this.matchLots[this.matchCount] = lot;
+      this.matchClosed[this.matchCount] = this.closedTotals[lot];
+      this.matchRealized[this.matchCount] = this.realizedTotals[lot];
+      this.matchCount++;
+    }
+
+    private double bought(int day) {
+      int lots = upperBound(this.days, this.count, day);
+      return lots == 0 ? 0 : this.boughtTotals[lots - 1];
+    }
+
+    private double sold(int day) {
+      int sales = upperBound(this.saleDays, this.saleCount, day);
+      return sales == 0 ? 0 : this.soldTotals[sales - 1];
+    }
+  }
+}
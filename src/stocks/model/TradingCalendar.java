@@ -0,0 +1,296 @@
+package stocks.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The exchange trading calendar. A day is a trading day if it is neither a weekend nor one of the
+ * configured market holidays. The trading days of every year are precomputed as a bitset, along
+ * with the running count of trading days at the start of every year, so that checking a day,
+ * finding the next or previous trading day and counting the trading days between two dates never
+ * have to probe one day at a time.
+ *
+ * <p>The default calendar reads the holidays from the 'holidays.csv' resource, which lists the
+ * days on which the market was closed as comma separated 'yyyy-MM-dd' dates.
+ */
+class TradingCalendar {
+  static final int FIRST_YEAR = 1970;
+  static final int LAST_YEAR = 2100;
+  private static final int WORDS_PER_YEAR = 6;
+
+  private static TradingCalendar defaultCalendar;
+
+  private final int firstDay;
+  private final int lastDay;
+  private final long[] bits;
+  private final int[] yearStartDay;
+  private final int[] countBeforeYear;
+
+  /**
+   * A constructor of the TradingCalendar class. It precomputes the trading days from 1970 to 2100.
+   *
+   * @param holidays the market holidays as epoch days. Holidays on weekends are ignored.
+   */
+  TradingCalendar(Collection<Integer> holidays) {
+    int years = LAST_YEAR - FIRST_YEAR + 1;
+    this.firstDay = (int) LocalDate.of(FIRST_YEAR, 1, 1).toEpochDay();
+    this.lastDay = (int) LocalDate.of(LAST_YEAR, 12, 31).toEpochDay();
+    this.bits = new long[years * WORDS_PER_YEAR];
+    this.yearStartDay = new int[years + 1];
+    this.countBeforeYear = new int[years + 1];
+
+    for (int year = 0; year <= years; year++) {
+      this.yearStartDay[year] = (int) LocalDate.of(FIRST_YEAR + year, 1, 1).toEpochDay();
+    }
+    for (int day = this.firstDay; day <= this.lastDay; day++) {
+      if (!isWeekend(day)) {
+        setBit(day, true);
+      }
+    }
+    for (int holiday : holidays) {
+      if (holiday >= this.firstDay && holiday <= this.lastDay) {
+        setBit(holiday, false);
+      }
+    }
+    for (int year = 0; year < years; year++) {
+      int count = 0;
+      for (int word = 0; word < WORDS_PER_YEAR; word++) {
+        count += Long.bitCount(this.bits[year * WORDS_PER_YEAR + word]);
+      }
+      this.countBeforeYear[year + 1] = this.countBeforeYear[year] + count;
+    }
+  }
+
+
+  /**
+   * Returns the default calendar, with the holidays read from the 'holidays.csv' resource. If the
+   * resource is missing, only weekends are treated as non-trading days.
+   *
+   * @return the default trading calendar.
+   */
+  static synchronized TradingCalendar getDefault() {
+    if (defaultCalendar == null) {
+      defaultCalendar = new TradingCalendar(readHolidays("/holidays.csv"));
+    }
+    return defaultCalendar;
+  }
+
+
+  /**
+   * Reads a list of holidays from a classpath resource of comma separated 'yyyy-MM-dd' dates.
+   *
+   * @param resource the resource name.
+   * @return the holidays as epoch days, empty if the resource can not be read.
+   */
+  static List<Integer> readHolidays(String resource) {
+    List<Integer> holidays = new ArrayList<>();
+    try (InputStream input = TradingCalendar.class.getResourceAsStream(resource)) {
+      if (input == null) {
+        return holidays;
+      }
+      BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        for (String date : line.split(",")) {
+          if (!date.isBlank()) {
+            holidays.add(EpochDays.parse(date.trim()));
+          }
+        }
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      System.out.println("Failed to read the holidays file.");
+    }
+    return holidays;
+  }
+
+
+  /**
+   * Checks if a date falls on a Saturday or a Sunday.
+   *
+   * @param day the date as an epoch day.
+   * @return true for a weekend, else false.
+   */
+  static boolean isWeekend(int day) {
+    int dayOfWeek = Math.floorMod(day + 3, 7);
+    return dayOfWeek >= 5;
+  }
+
+
+  /**
+   * Checks if the market is open on a day.
+   *
+   * @param day the day as an epoch day.
+   * @return true if the day is a trading day, else false.
+   */
+  boolean isTradingDay(int day) {
+    if (day < this.firstDay || day > this.lastDay) {
+      return !isWeekend(day);
+    }
+    int offset = offset(day);
+    return (this.bits[offset >>> 6] & (1L << (offset & 63))) != 0;
+  }
+
+
+  /**
+   * Returns the first trading day strictly after a day.
+   *
+   * @param day the day as an epoch day.
+   * @return the next trading day.
+   */
+  int nextTradingDay(int day) {
+    int next = day + 1;
+    while (next >= this.firstDay && next <= this.lastDay) {
+      int year = yearIndex(next);
+      int bit = next - this.yearStartDay[year];
+      for (int word = bit >>> 6; word < WORDS_PER_YEAR; word++) {
+        long bits = this.bits[year * WORDS_PER_YEAR + word];
+        if (word == bit >>> 6) {
+          bits &= -1L << (bit & 63);
+        }
+        if (bits != 0) {
+          return this.yearStartDay[year] + word * 64 + Long.numberOfTrailingZeros(bits);
+        }
+      }
+      next = this.yearStartDay[year + 1];
+    }
+    while (!isTradingDay(next)) {
+      next++;
+    }
+    return next;
+  }
+
+
+  /**
+   * Returns the last trading day strictly before a day.
+   *
+   * @param day the day as an epoch day.
+   * @return the previous trading day.
+   */
+  int previousTradingDay(int day) {
+    int previous = day - 1;
+    while (previous >= this.firstDay && previous <= this.lastDay) {
+      int year = yearIndex(previous);
+      int bit = previous - this.yearStartDay[year];
+      for (int word = bit >>> 6; word >= 0; word--) {
+        long bits = this.bits[year * WORDS_PER_YEAR + word];
+        if (word == bit >>> 6) {
+          bits &= -1L >>> (63 - (bit & 63));
+        }
+        if (bits != 0) {
+          return this.yearStartDay[year] + word * 64 + 63 - Long.numberOfLeadingZeros(bits);
+        }
+      }
+      previous = this.yearStartDay[year] - 1;
+    }
+    while (!isTradingDay(previous)) {
+      previous--;
+    }
+    return previous;
+  }
+
+
+  /**
+   * Returns the trading day on or before a day, which is the day itself if it is a trading day.
+   *
+   * @param day the day as an epoch day.
+   * @return the trading day on or before the day.
+   */
+  int floorTradingDay(int day) {
+    return isTradingDay(day) ? day : previousTradingDay(day);
+  }
+
+
+  /**
+   * Returns the trading day on or after a day, which is the day itself if it is a trading day.
+   *
+   * @param day the day as an epoch day.
+   * @return the trading day on or after the day.
+   */
+  int ceilingTradingDay(int day) {
+    return isTradingDay(day) ? day : nextTradingDay(day);
+  }
+
+
+  /**
+   * Counts the trading days between two days, both inclusive.
+   *
+   * @param from the first day as an epoch day.
+   * @param to   the last day as an epoch day.
+   * @return the number of trading days, 0 if the last day is before the first day.
+   */
+  int countTradingDays(int from, int to) {
+    if (to < from) {
+      return 0;
+    }
+    int count = 0;
+    int clippedFrom = Math.max(from, this.firstDay);
+    int clippedTo = Math.min(to, this.lastDay);
+    if (clippedFrom <= clippedTo) {
+      count += rank(clippedTo) - rank(clippedFrom - 1);
+    }
+    for (int day = from; day <= to && day < this.firstDay; day++) {
+      count += isTradingDay(day) ? 1 : 0;
+    }
+    for (int day = Math.max(from, this.lastDay + 1); day <= to; day++) {
+      count += isTradingDay(day) ? 1 : 0;
+    }
+    return count;
+  }
+
+
+  /**
+   * Returns the number of trading days from the start of the calendar up to a day, inclusive.
+   */
+  private int rank(int day) {
+    if (day < this.firstDay) {
+      return 0;
+    }
+    int year = yearIndex(day);
+    int bit = day - this.yearStartDay[year];
+    int count = this.countBeforeYear[year];
+    for (int word = 0; word < bit >>> 6; word++) {
+      count += Long.bitCount(this.bits[year * WORDS_PER_YEAR + word]);
+    }
+    long bits = this.bits[year * WORDS_PER_YEAR + (bit >>> 6)];
+    return count + Long.bitCount(bits & (-1L >>> (63 - (bit & 63))));
+  }
+
+
+  private void setBit(int day, boolean value) {
+    int offset = offset(day);
+    if (value) {
+      this.bits[offset >>> 6] |= 1L << (offset & 63);
+    } else {
+      this.bits[offset >>> 6] &= ~(1L << (offset & 63));
+    }
+  }
+
+
+  /**
+   * Returns the bit offset of a day: the index of its year times the bits per year, plus the day
+   * of the year.
+   */
+  private int offset(int day) {
+    int year = yearIndex(day);
+    return year * WORDS_PER_YEAR * 64 + (day - this.yearStartDay[year]);
+  }
+
+
+  private int yearIndex(int day) {
+    int last = this.yearStartDay.length - 2;
+    int year = (int) Math.max(0, Math.min(last, (long) (day - this.firstDay) * 400 / 146097));
+    while (year < last && this.yearStartDay[year + 1] <= day) {
+      year++;
+    }
+    while (year > 0 && this.yearStartDay[year] > day) {
+      year--;
+    }
+    return year;
+  }
+}
@@ -0,0 +1,274 @@
+package stocks.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+
+/**
+ * The transactions of a portfolio in typed columns, one array per field, so that the analytics of
+ * the model do not parse the strings of the JSON objects on every call. The stock names are
+ * replaced by ids into a table of the distinct names, the dates by epoch days and the operations by
+ * a byte. A number that can not be parsed is kept as NaN.
+ *
+ * <p>A table is built once for every portfolio that is loaded, stamped with the version of the
+ * portfolio that was read, and is kept for as long as the JSONArray of the portfolio is in use. The
+ * table remembers the values it was parsed from, and is only used again for a JSONArray that still
+ * holds exactly those values: adding, replacing or editing a transaction in the JSONArray makes the
+ * table be built again on the next lookup, without a version, since the JSONArray no longer matches
+ * the portfolio that was read.
+ */
+class TransactionTable {
+  static final byte OTHER = 0;
+  static final byte BUY = 1;
+  static final byte SELL = 2;
+  private static final String[] FIELDS = {"stock_name", "transaction_date", "quantity", "price",
+      "commission", "operation"};
+
+  private static final Map<JSONArray, TransactionTable> TABLES =
+          Collections.synchronizedMap(new WeakHashMap<>());
+
+  private final PortfolioSnapshotCache.Source source;
+  private final int size;
+  private final String[] stockSymbols;
+  private final int[] stockIds;
+  private final int[] days;
+  private final double[] quantities;
+  private final double[] prices;
+  private final double[] commissions;
+  private final byte[] operations;
+  private final Object[] values;
+
+  private TransactionTable(JSONArray stocksDataArray, PortfolioSnapshotCache.Source source) {
+    this.source = source;
+    this.size = stocksDataArray.size();
+    this.stockIds = new int[this.size];
+    this.days = new int[this.size];
+    this.quantities = new double[this.size];
+    this.prices = new double[this.size];
+    this.commissions = new double[this.size];
+    this.operations = new byte[this.size];
+    this.values = new Object[this.size * FIELDS.length];
+
+    Map<String, Integer> stockIndex = new LinkedHashMap<>();
+    for (int i = 0; i < this.size; i++) {
+      JSONObject temp = (JSONObject) stocksDataArray.get(i);
+      for (int field = 0; field < FIELDS.length; field++) {
+        this.values[i * FIELDS.length + field] = temp.get(FIELDS[field]);
+      }
+      String stockName = (String) temp.get("stock_name");
+      Integer id = stockIndex.get(stockName);
+      if (id == null) {
+        id = stockIndex.size();
+        stockIndex.put(stockName, id);
+      }
+      this.stockIds[i] = id;
+      this.days[i] = PositionLedger.parseDay((String) temp.get("transaction_date"));
+      this.quantities[i] = parseNumber(temp.get("quantity"));
+      this.prices[i] = parseNumber(temp.get("price"));
+      this.commissions[i] = parseNumber(temp.get("commission"));
+      Object operation = temp.get("operation");
+      this.operations[i] = "BUY".equals(operation) ? BUY : "SELL".equals(operation) ? SELL : OTHER;
+    }
+    this.stockSymbols = stockIndex.keySet().toArray(new String[0]);
+  }
+
+
+  /**
+   * Returns the table of a portfolio, building it if the portfolio has not been seen yet or has
+   * changed since its table was built.
+   *
+   * @param stocksDataArray the data in a portfolio.
+   * @return the table of the portfolio.
+   */
+  static TransactionTable of(JSONArray stocksDataArray) {
+    TransactionTable table = TABLES.get(stocksDataArray);
+    if (table == null || !table.matches(stocksDataArray)) {
+      table = new TransactionTable(stocksDataArray, null);
+      TABLES.put(stocksDataArray, table);
+    }
+    return table;
+  }
+
+
+  /**
+   * Builds the table of a portfolio that was just read from a file.
+   *
+   * @param stocksDataArray the data in the portfolio.
+   * @param source          the file the portfolio was read from.
+   * @return the table of the portfolio.
+   */
+  static TransactionTable load(JSONArray stocksDataArray, PortfolioSnapshotCache.Source source) {
+    TransactionTable table = new TransactionTable(stocksDataArray, source);
+    TABLES.put(stocksDataArray, table);
+    return table;
+  }
+
+
+  /**
+   * Returns the file the portfolio was read from. A table rebuilt after the portfolio was changed
+   * in memory no longer matches its file and has no source.
+   *
+   * @return the source of the portfolio, or null if it was not read from a file.
+   */
+  PortfolioSnapshotCache.Source getSource() {
+    return this.source;
+  }
+
+
+  /**
+   * Returns the number of transactions.
+   *
+   * @return the number of rows.
+   */
+  int size() {
+    return this.size;
+  }
+
+
+  /**
+   * Returns the number of distinct stocks.
+   *
+   * @return the number of stock ids.
+   */
+  int stockCount() {
+    return this.stockSymbols.length;
+  }
+
+
+  /**
+   * Returns the stock name of a stock id.
+   *
+   * @param stockId the id, between 0 and stockCount() - 1.
+   * @return the stock name.
+   */
+  String getStockSymbol(int stockId) {
+    return this.stockSymbols[stockId];
+  }
+
+
+  /**
+   * Returns the id of a stock name.
+   *
+   * @param stockSymbol the stock name.
+   * @return the id, or -1 if the portfolio has no transaction in that stock.
+   */
+  int findStockId(String stockSymbol) {
+    for (int id = 0; id < this.stockSymbols.length; id++) {
+      if (Objects.equals(this.stockSymbols[id], stockSymbol)) {
+        return id;
+      }
+    }
+    return -1;
+  }
+
+
+  /**
+   * Returns the stock id of a row.
+   *
+   * @param row the row, between 0 and size() - 1.
+   * @return the stock id.
+   */
+  int getStockId(int row) {
+    return this.stockIds[row];
+  }
+
+
+  /**
+   * Returns the transaction date of a row.
+   *
+   * @param row the row, between 0 and size() - 1.
+   * @return the date as an epoch day.
+   */
+  int getDay(int row) {
+    return this.days[row];
+  }
+
+
+  /**
+   * Returns the quantity of a row.
+   *
+   * @param row the row, between 0 and size() - 1.
+   * @return the quantity, or NaN.
+   */
+  double getQuantity(int row) {
+    return this.quantities[row];
+  }
+
+
+  /**
+   * Returns the price of a row.
+   *
+   * @param row the row, between 0 and size() - 1.
+   * @return the price, or NaN.
+   */
+  double getPrice(int row) {
+    return this.prices[row];
+  }
+
+
+  /**
+   * Returns the commission of a row.
+   *
+   * @param row the row, between 0 and size() - 1.
+   * @return the commission, or NaN if the row has none.
+   */
+  double getCommission(int row) {
+    return this.commissions[row];
+  }
+
+
+  /**
+   * Returns the operation of a row.
+   *
+   * @param row the row, between 0 and size() - 1.
+   * @return BUY, SELL or OTHER.
+   */
+  byte getOperation(int row) {
+    return this.operations[row];
+  }
+
+
+  /**
+   * Tells whether a portfolio still holds the values the table was built from. The values are
+   * compared by reference: the strings and numbers of a JSONObject can not change, so a value
+   * that is the same object is the same value, and a value that was put again is a new object.
+   *
+   * @param stocksDataArray the data in a portfolio.
+   * @return true if the table is the table of the portfolio, else false.
+   */
+  private boolean matches(JSONArray stocksDataArray) {
+    if (stocksDataArray.size() != this.size) {
+      return false;
+    }
+    for (int i = 0; i < this.size; i++) {
+      Object row = stocksDataArray.get(i);
+      if (!(row instanceof JSONObject)) {
+        return false;
+      }
+      for (int field = 0; field < FIELDS.length; field++) {
+        if (((JSONObject) row).get(FIELDS[field]) != this.values[i * FIELDS.length + field]) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+
+  private static double parseNumber(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    if (value instanceof String) {
+      try {
+        return Double.parseDouble((String) value);
+      } catch (NumberFormatException ignored) {
+      }
+    }
+    return Double.NaN;
+  }
+}
@@ -111,7 +111,8 @@ public class StocksView implements StocksViewInterface {
     this.out.append("\n5. COST VALUE BASIS");
     this.out.append("\n6. GET TOTAL VALUE OF A PORTFOLIO ON A DATE");
     this.out.append("\n7. PORTFOLIO PERFORMANCE OVER TIME");
-    this.out.append("\n8. EXIT");
+    this.out.append("\n8. TAX LOTS OF A PORTFOLIO");
+    this.out.append("\n9. EXIT");
     this.out.append("\nENTER YOUR CHOICE: ");
   }
 
@@ -330,6 +331,59 @@ public class StocksView implements StocksViewInterface {
   }
 
 
+  /**
+   * Prints the tax lot header. Basically, just the table headers.
+   *
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  @Override
+  public void taxLotHeader() throws IOException {
+    this.out.append(
+            "\n----------------------------------------------------------------------------------"
+                    + "----------------------------------------");
+    this.out.append(
+            String.format("\n%-10s%14s%14s%14s%14s%18s%18s%20s", "STOCK NAME", "BUY DATE",
+                    "QUANTITY", "BUY PRICE", "COST", "OPEN QUANTITY", "REALIZED GAIN",
+                    "UNREALIZED GAIN"));
+    this.out.append(
+            "\n----------------------------------------------------------------------------------"
+                    + "----------------------------------------");
+  }
+
+
+  /**
+   * Prints the tax lots of a portfolio on a date. Every lot is a purchase, along with the quantity
+   * of it still held, the gain realized on the shares of it that were sold and the unrealized gain
+   * of the shares still held.
+   *
+   * @param stockNamesArray     the names of the stocks.
+   * @param buyDatesArray       the buying dates.
+   * @param quantitiesArray     the quantities bought.
+   * @param buyPriceArray       the buy prices.
+   * @param costArray           the costs of the lots, commission included.
+   * @param openQuantityArray   the quantities still held.
+   * @param realizedGainArray   the realized gains.
+   * @param unrealizedGainArray the unrealized gains.
+   * @param size                the number of lots.
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  @Override
+  public void printTaxLots(String[] stockNamesArray, String[] buyDatesArray,
+          String[] quantitiesArray, String[] buyPriceArray, String[] costArray,
+          String[] openQuantityArray, String[] realizedGainArray, String[] unrealizedGainArray,
+          int size) throws IOException {
+    for (int i = 0; i < size; i++) {
+      this.out.append(
+              String.format("\n%-10s%14s%14s%14s%14s%18s%18s%20s", stockNamesArray[i],
+                      buyDatesArray[i], quantitiesArray[i], buyPriceArray[i], costArray[i],
+                      openQuantityArray[i], realizedGainArray[i], unrealizedGainArray[i]));
+    }
+    this.out.append(
+            "\n----------------------------------------------------------------------------------"
+                    + "----------------------------------------");
+  }
+
+
   /**
    * Prints the portfolio performance in a month wise manner. Gives a graphical representation of
    * the performance of the portfolio.
@@ -66,11 +66,13 @@ public class StocksViewGUI extends JFrame implements StocksViewGUIInterface {
   JButton costValueBasis;
   JButton totalPortfolioValue;
   JButton portfolioPerformance;
+  JButton taxLots;
   JButton next;
   JButton addAnother;
   JButton done;
   JButton back;
   JButton getComposition;
+  JButton getTaxLots;
   JButton mainMenu;
   JButton getCostValueBasis;
   JButton getTotalPortfolioValue;
@@ -275,6 +277,12 @@ public class StocksViewGUI extends JFrame implements StocksViewGUIInterface {
     compound = new CompoundBorder(line, margin);
     lineChart.setBorder(compound);
     lineChart.setActionCommand("lineChartButton");
+    taxLots = new JButton("Tax Lots of a Portfolio");
+    line = new LineBorder(Color.BLACK);
+    margin = new EmptyBorder(5, 15, 5, 15);
+    compound = new CompoundBorder(line, margin);
+    taxLots.setBorder(compound);
+    taxLots.setActionCommand("taxLotsButton");
     exit = new JButton("Exit");
     line = new LineBorder(Color.BLACK);
     margin = new EmptyBorder(5, 15, 5, 15);
@@ -292,6 +300,7 @@ public class StocksViewGUI extends JFrame implements StocksViewGUIInterface {
 
     panel3.add(portfolioPerformance);
     panel3.add(lineChart);
+    panel3.add(taxLots);
     panel3.add(exit);
 
     gridBagConstraints.gridx = 1;
@@ -325,6 +334,7 @@ public class StocksViewGUI extends JFrame implements StocksViewGUIInterface {
     totalPortfolioValue.addActionListener(e -> feature.totalPortfolioValue());
     portfolioPerformance.addActionListener(e -> feature.portfolioPerformance());
     lineChart.addActionListener(e -> feature.lineChart());
+    taxLots.addActionListener(e -> feature.taxLots());
     exit.addActionListener(e -> feature.exit());
   }
 
@@ -696,6 +706,118 @@ public class StocksViewGUI extends JFrame implements StocksViewGUIInterface {
   }
 
 
+  /**
+   * Prints the menu for the tax lots of a portfolio.
+   */
+  @Override
+  public void taxLots() {
+    this.getContentPane().removeAll();
+    JPanel panel1 = new JPanel();
+    panel1.setLayout(new FlowLayout());
+    panel1.setSize(1000, 700);
+
+    JPanel panel2 = new JPanel();
+    panel2.setLayout(new FlowLayout());
+    panel2.setSize(1000, 700);
+
+    JPanel panel3 = new JPanel();
+    panel3.setLayout(new FlowLayout());
+    panel3.setSize(1000, 700);
+
+    JLabel portfolioName = new JLabel("Portfolio Name");
+    portfolioName.setFont(new Font("Arial", Font.BOLD, 16));
+    portfolioName.setForeground(Color.black);
+    portfolioName.setBackground(Color.black);
+    panel1.add(portfolioName);
+    portfolioNameInput = new JTextField(10);
+    panel1.add(portfolioNameInput);
+
+    JLabel year = new JLabel("Year");
+    year.setFont(new Font("Arial", Font.BOLD, 16));
+    year.setForeground(Color.black);
+    year.setBackground(Color.black);
+    panel2.add(year);
+    yearInput = new JSpinner(new SpinnerNumberModel(Calendar.getInstance().get(Calendar.YEAR), 1999,
+            Calendar.getInstance().get(Calendar.YEAR), 1));
+    JSpinner.NumberEditor editor = new JSpinner.NumberEditor(yearInput, "#");
+    yearInput.setEditor(editor);
+    panel2.add(yearInput);
+
+    JLabel month = new JLabel("Month");
+    month.setFont(new Font("Arial", Font.BOLD, 16));
+    month.setForeground(Color.black);
+    month.setBackground(Color.black);
+    panel2.add(month);
+    monthInput = new JSpinner(new SpinnerNumberModel(1, 1, 12, 1));
+    panel2.add(monthInput);
+
+    JLabel date = new JLabel("Date");
+    date.setFont(new Font("Arial", Font.BOLD, 16));
+    date.setForeground(Color.black);
+    date.setBackground(Color.black);
+    panel2.add(date);
+    dateInput = new JSpinner(new SpinnerNumberModel(1, 1, 31, 1));
+    panel2.add(dateInput);
+
+    back = new JButton("Back");
+    Border line = new LineBorder(Color.BLACK);
+    Border margin = new EmptyBorder(5, 15, 5, 15);
+    Border compound = new CompoundBorder(line, margin);
+    back.setBorder(compound);
+    back.setActionCommand("back");
+    panel3.add(back);
+
+    getTaxLots = new JButton("Get Tax Lots");
+    line = new LineBorder(Color.BLACK);
+    margin = new EmptyBorder(5, 15, 5, 15);
+    compound = new CompoundBorder(line, margin);
+    getTaxLots.setBorder(compound);
+    getTaxLots.setActionCommand("getTaxLots");
+    panel3.add(getTaxLots);
+
+    gridBagConstraints.gridx = 1;
+    gridBagConstraints.gridy = 1;
+    this.add(panel1, gridBagConstraints);
+
+    gridBagConstraints.gridx = 1;
+    gridBagConstraints.gridy = 3;
+    this.add(panel2, gridBagConstraints);
+
+    gridBagConstraints.gridx = 1;
+    gridBagConstraints.gridy = 5;
+    this.add(panel3, gridBagConstraints);
+
+    this.setVisible(true);
+  }
+
+
+  /**
+   * The features for the tax lots menu. Helps communicate with the controller.
+   *
+   * @param feature an object of the controller.
+   */
+  @Override
+  public void taxLotsFeatures(Feature feature) {
+    back.addActionListener(e -> feature.backToMainMenu());
+    getTaxLots.addActionListener(e -> feature.getTaxLots(portfolioNameInput.getText(),
+            String.valueOf(((Number) this.yearInput.getValue()).intValue()),
+            String.valueOf(((Number) this.monthInput.getValue()).intValue()),
+            String.valueOf(((Number) this.dateInput.getValue()).intValue())));
+  }
+
+
+  /**
+   * The features for the print tax lots page. Helps communicate with the controller.
+   *
+   * @param feature an object of the controller.
+   */
+  @Override
+  public void displayTaxLotsFeatures(Feature feature) {
+    back.addActionListener(e -> feature.taxLots());
+    mainMenu.addActionListener(e -> feature.backToMainMenu());
+  }
+
+
   /**
    * Prints the menu for calculating cost value basis of a portfolio.
    */
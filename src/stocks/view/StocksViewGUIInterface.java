@@ -105,6 +105,29 @@ public interface StocksViewGUIInterface {
   void displayCompositionFeatures(Feature feature);
 
 
+  /**
+   * Prints the menu for the tax lots of a portfolio.
+   */
+  void taxLots();
+
+
+  /**
+   * The features for the tax lots menu. Helps communicate with the controller.
+   *
+   * @param feature an object of the controller.
+   */
+  void taxLotsFeatures(Feature feature);
+
+
+  /**
+   * The features for the print tax lots page, which is printed as the composition of a portfolio
+   * is. Helps communicate with the controller.
+   *
+   * @param feature an object of the controller.
+   */
+  void displayTaxLotsFeatures(Feature feature);
+
+
   /**
    * Prints the menu for calculating cost value basis of a portfolio.
    */
@@ -195,6 +195,35 @@ public interface StocksViewInterface {
   void printCostBasisValue(double costBasis, String date) throws IOException;
 
 
+  /**
+   * Prints the tax lot header. Basically, just the table headers.
+   *
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  void taxLotHeader() throws IOException;
+
+
+  /**
+   * Prints the tax lots of a portfolio on a date. Every lot is a purchase, along with the quantity
+   * of it still held, the gain realized on the shares of it that were sold and the unrealized gain
+   * of the shares still held.
+   *
+   * @param stockNamesArray     the names of the stocks.
+   * @param buyDatesArray       the buying dates.
+   * @param quantitiesArray     the quantities bought.
+   * @param buyPriceArray       the buy prices.
+   * @param costArray           the costs of the lots, commission included.
+   * @param openQuantityArray   the quantities still held.
+   * @param realizedGainArray   the realized gains.
+   * @param unrealizedGainArray the unrealized gains.
+   * @param size                the number of lots.
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  void printTaxLots(String[] stockNamesArray, String[] buyDatesArray, String[] quantitiesArray,
+          String[] buyPriceArray, String[] costArray, String[] openQuantityArray,
+          String[] realizedGainArray, String[] unrealizedGainArray, int size) throws IOException;
+
+
   /**
    * Prints the portfolio performance in a month wise manner. Gives a graphical representation of
    * the performance of the portfolio.
@@ -0,0 +1,202 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+import jsonparser.JSONParser;
+import jsonparser.JSONReader;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test class for the JSONParser and the JSONReader it reads documents with.
+ */
+public class JSONParserTest {
+  private static final String PORTFOLIO = "{\"stocks\":[{\"stock_name\":\"GOOG\","
+          + "\"transaction_date\":\"2022-10-03\",\"quantity\":\"10\",\"price\":\"100.5\","
+          + "\"commission\":\"1.5\",\"operation\":\"BUY\"},{\"stock_name\":\"AAPL\","
+          + "\"transaction_date\":\"2022-10-04\",\"quantity\":\"4\",\"price\":\"150\","
+          + "\"commission\":\"0\",\"operation\":\"SELL\"}]}";
+
+  private JSONParser jsonParser;
+
+  @Before
+  public void setUp() {
+    this.jsonParser = new JSONParser();
+  }
+
+  @Test
+  public void parseTest() throws IOException {
+    JSONArray stocks = this.jsonParser.parse(new StringReader(PORTFOLIO));
+    assertEquals(2, stocks.size());
+    JSONObject first = (JSONObject) stocks.get(0);
+    assertEquals("GOOG", first.get("stock_name"));
+    assertEquals("100.5", first.get("price"));
+    assertEquals("SELL", ((JSONObject) stocks.get(1)).get("operation"));
+  }
+
+  @Test
+  public void parseOtherKeysTest() throws IOException {
+    JSONArray stocks = this.jsonParser.parse(new StringReader("{\"owner\":{\"name\":[1,2,{}]},"
+            + "\"stocks\":[{\"stock_name\":\"GOOG\"}],\"note\":null}"));
+    assertEquals(1, stocks.size());
+    assertEquals(0, this.jsonParser.parse(new StringReader("{\"other\":[]}")).size());
+  }
+
+  @Test
+  public void parseInvalidTest() throws IOException {
+    assertEquals(0, this.jsonParser.parse(new StringReader("{\"stocks\":[{]}")).size());
+    assertEquals(0, this.jsonParser.parse(new StringReader("[]")).size());
+    assertEquals(0, this.jsonParser.parse(new StringReader(PORTFOLIO + "}")).size());
+    assertEquals(0, this.jsonParser.parse(new StringReader("")).size());
+  }
+
+  @Test
+  public void parseEscapedStringsTest() throws IOException {
+    JSONArray stocks = this.jsonParser.parse(new StringReader("{\"stocks\":[{\"stock_name\":"
+            + "\"A,B:\\\"C\\\"\\\\ \\u00e9\\n\",\"quantity\":-1.5e3}]}"));
+    JSONObject first = (JSONObject) stocks.get(0);
+    assertEquals("A,B:\"C\"\\ \u00e9\n", first.get("stock_name"));
+    assertEquals("-1.5e3", first.get("quantity"));
+  }
+
+  @Test
+  public void parseLargeDocumentTest() throws IOException {
+    StringBuilder document = new StringBuilder("{\"stocks\":[");
+    for (int i = 0; i < 5000; i++) {
+      document.append(i == 0 ? "" : ",").append("{\"stock_name\":\"S").append(i)
+              .append("\",\"quantity\":\"").append(i).append("\"}");
+    }
+    document.append("]}");
+    JSONArray stocks = this.jsonParser.parse(new OneCharReader(document.toString()));
+    assertEquals(5000, stocks.size());
+    assertEquals("S4999", ((JSONObject) stocks.get(4999)).get("stock_name"));
+  }
+
+  @Test
+  public void parseObjectTest() {
+    JSONObject jsonObject =
+            this.jsonParser.parseObject(" {\"a\":\"1\",\"b\":[\"x\",{\"c\":true}]} ");
+    assertEquals("1", jsonObject.get("a"));
+    JSONArray array = (JSONArray) jsonObject.get("b");
+    assertEquals("x", array.get(0));
+    assertEquals("true", ((JSONObject) array.get(1)).get("c"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseObjectNotAnObjectTest() {
+    this.jsonParser.parseObject("[\"a\"]");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseObjectTrailingContentTest() {
+    this.jsonParser.parseObject("{\"a\":\"1\"} x");
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void deprecatedMethodsTest() throws IOException {
+    assertEquals(0, this.jsonParser.getJsonArray().size());
+    this.jsonParser.getHashMap(PORTFOLIO);
+    assertEquals(2, this.jsonParser.getJsonArray().size());
+    assertEquals("AAPL", ((JSONObject) this.jsonParser.getJsonArray().get(1)).get("stock_name"));
+    try (FileReader file = new FileReader(portfolioFile())) {
+      assertEquals(2, this.jsonParser.parse(file).size());
+    }
+    try {
+      this.jsonParser.getHashMap("{\"stocks\":");
+      fail("An incomplete document was read.");
+    } catch (IllegalArgumentException e) {
+      assertEquals(2, this.jsonParser.getJsonArray().size());
+    }
+  }
+
+  @Test
+  public void readerEventsTest() throws IOException {
+    JSONReader reader = new JSONReader(new StringReader(
+            "{\"a\": [1, -0.5, \"s\", true, false, null], \"b\": {}}"));
+    List<String> events = new ArrayList<>();
+    while (reader.hasNext()) {
+      JSONReader.Event event = reader.next();
+      events.add(event == JSONReader.Event.START_OBJECT || event == JSONReader.Event.END_OBJECT
+              || event == JSONReader.Event.START_ARRAY || event == JSONReader.Event.END_ARRAY
+              ? event.name() : event.name() + ":" + reader.getString());
+    }
+    assertEquals(List.of("START_OBJECT", "KEY_NAME:a", "START_ARRAY", "VALUE_NUMBER:1",
+            "VALUE_NUMBER:-0.5", "VALUE_STRING:s", "VALUE_TRUE:true", "VALUE_FALSE:false",
+            "VALUE_NULL:null", "END_ARRAY", "KEY_NAME:b", "START_OBJECT", "END_OBJECT",
+            "END_OBJECT"), events);
+  }
+
+  @Test
+  public void readerSkipValueTest() throws IOException {
+    JSONReader reader = new JSONReader(new StringReader("[{\"a\":[1,[2]]},3]"));
+    assertEquals(JSONReader.Event.START_ARRAY, reader.next());
+    reader.skipValue(reader.next());
+    assertEquals(JSONReader.Event.VALUE_NUMBER, reader.next());
+    assertEquals("3", reader.getString());
+    assertEquals(JSONReader.Event.END_ARRAY, reader.next());
+    assertFalse(reader.hasNext());
+  }
+
+  @Test
+  public void readerInvalidDocumentsTest() throws IOException {
+    String[] documents = {"{\"a\" 1}", "{\"a\":1,}", "[1,]", "[1 2]", "{\"a\":01}", "[-]",
+      "[1.]", "[1e]", "[tru]", "[\"a\\x\"]", "[\"a\nb\"]", "[\"abc", "{\"a\":1]", "[1}",
+      "{1:2}", "[\"\\u12g4\"]", ""};
+    for (String document : documents) {
+      JSONReader reader = new JSONReader(new StringReader(document));
+      try {
+        while (reader.hasNext()) {
+          reader.next();
+        }
+        fail("An invalid document was read: " + document);
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage().contains("at character"));
+      }
+    }
+  }
+
+  private static File portfolioFile() throws IOException {
+    File file = File.createTempFile("portfolio", ".json");
+    file.deleteOnExit();
+    Files.writeString(file.toPath(), PORTFOLIO);
+    return file;
+  }
+
+  /**
+   * A reader that returns one character per read, so that every token spans reads.
+   */
+  private static final class OneCharReader extends Reader {
+    private final String text;
+    private int position;
+
+    private OneCharReader(String text) {
+      this.text = text;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+      if (this.position >= this.text.length()) {
+        return -1;
+      }
+      buffer[offset] = this.text.charAt(this.position++);
+      return 1;
+    }
+
+    @Override
+    public void close() {
+      // Nothing to close.
+    }
+  }
+}
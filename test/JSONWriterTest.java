@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+import jsonparser.JSONParser;
+import jsonparser.JSONWriter;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * A JUnit test class for the JSONWriter, checked against what the JSONParser reads back.
+ */
+public class JSONWriterTest {
+  private StringWriter out;
+  private JSONWriter writer;
+
+  @Before
+  public void setUp() {
+    this.out = new StringWriter();
+    this.writer = new JSONWriter(this.out);
+  }
+
+  @Test
+  public void valuesTest() throws IOException {
+    this.writer.beginArray().value("a").value(1).value(2.5).value(true).value(null)
+            .value(Double.NaN).value(Double.POSITIVE_INFINITY).beginObject().endObject()
+            .beginArray().endArray().endArray();
+    assertEquals("[\"a\",1,2.5,true,null,\"NaN\",\"Infinity\",{},[]]", this.out.toString());
+  }
+
+  @Test
+  public void escapeTest() throws IOException {
+    this.writer.beginObject().name("k\"ey").value("a\\b\"c\n\r\t\u0001,:").endObject();
+    assertEquals("{\"k\\\"ey\":\"a\\\\b\\\"c\\n\\r\\t\\u0001,:\"}", this.out.toString());
+  }
+
+  @Test
+  public void roundTripTest() throws IOException {
+    JSONArray stocks = new JSONArray();
+    for (int i = 0; i < 50; i++) {
+      JSONObject transaction = new JSONObject();
+      transaction.put("stock_name", i % 2 == 0 ? "GOOG" : "Tricky \"name\", with: \\ and é");
+      transaction.put("transaction_date", "2022-10-" + (10 + i % 20));
+      transaction.put("quantity", String.valueOf(i));
+      transaction.put("price", String.valueOf(100 + i * 0.25));
+      transaction.put("commission", "1.5");
+      transaction.put("operation", i % 3 == 0 ? "SELL" : "BUY");
+      stocks.add(transaction);
+    }
+    this.writer.beginObject().name("stocks").value(stocks).endObject();
+    this.writer.close();
+
+    JSONArray parsed = new JSONParser().parse(new StringReader(this.out.toString()));
+    assertEquals(stocks.size(), parsed.size());
+    for (int i = 0; i < stocks.size(); i++) {
+      JSONObject expected = (JSONObject) stocks.get(i);
+      JSONObject actual = (JSONObject) parsed.get(i);
+      assertEquals(expected.keySet(), actual.keySet());
+      for (String key : expected.keySet()) {
+        assertEquals(expected.get(key), actual.get(key));
+      }
+    }
+  }
+
+  @Test
+  public void nestedValueTest() throws IOException {
+    JSONObject inner = new JSONObject();
+    inner.put("list", new JSONArray());
+    JSONObject outer = new JSONObject();
+    outer.put("inner", inner);
+    outer.put("count", 3);
+    this.writer.value(outer);
+    JSONObject parsed = new JSONParser().parseObject(this.out.toString());
+    assertEquals("3", parsed.get("count"));
+    assertEquals(0, ((JSONArray) ((JSONObject) parsed.get("inner")).get("list")).size());
+  }
+
+  @Test
+  public void deepNestingTest() throws IOException {
+    for (int i = 0; i < 40; i++) {
+      this.writer.beginArray();
+    }
+    for (int i = 0; i < 40; i++) {
+      this.writer.endArray();
+    }
+    assertEquals("[".repeat(40) + "]".repeat(40), this.out.toString());
+  }
+
+  @Test
+  public void invalidDocumentsTest() throws IOException {
+    try {
+      this.writer.name("key");
+      fail("A key was written outside of an object.");
+    } catch (IllegalStateException e) {
+      assertEquals("", this.out.toString());
+    }
+    try {
+      new JSONWriter(new StringWriter()).beginObject().value("value");
+      fail("A value was written in an object without a key.");
+    } catch (IllegalStateException e) {
+      // The value needs a key.
+    }
+    try {
+      new JSONWriter(new StringWriter()).beginObject().name("a").name("b");
+      fail("Two keys were written in a row.");
+    } catch (IllegalStateException e) {
+      // The first key needs a value.
+    }
+    try {
+      new JSONWriter(new StringWriter()).beginArray().endObject();
+      fail("An array was ended as an object.");
+    } catch (IllegalStateException e) {
+      // The array is still open.
+    }
+    try {
+      new JSONWriter(new StringWriter()).beginObject().close();
+      fail("An incomplete document was closed.");
+    } catch (IllegalStateException e) {
+      // The object is still open.
+    }
+  }
+}
@@ -444,6 +444,89 @@ public class MockModel implements StocksModelInterface {
   }
 
 
+  /**
+   * Returns the closing price of a stock on the last trading day on or before a date.
+   *
+   * @param stockSymbol the stock name as input by the user.
+   * @param date        the date as input by the user.
+   * @return the closing price, or null if the stock has no price on or before that date.
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  @Override
+  public Double getPriceOnOrBefore(String stockSymbol, String date) throws IOException {
+    log.append("\n\ngetPriceOnOrBefore called with input stockName = ").append(stockSymbol)
+            .append(", date = ").append(date);
+    return null;
+  }
+
+
+  /**
+   * Returns the closing price of a stock on the first trading day on or after a date.
+   *
+   * @param stockSymbol the stock name as input by the user.
+   * @param date        the date as input by the user.
+   * @return the closing price, or null if the stock has no price on or after that date.
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  @Override
+  public Double getPriceOnOrAfter(String stockSymbol, String date) throws IOException {
+    log.append("\n\ngetPriceOnOrAfter called with input stockName = ").append(stockSymbol)
+            .append(", date = ").append(date);
+    return null;
+  }
+
+
+  /**
+   * Starts loading the price data of every stock in a portfolio in the background.
+   *
+   * @param userName the username as input by the user.
+   * @param jsonName the portfolio name as input by the user.
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  @Override
+  public void prefetchPortfolio(String userName, String jsonName) throws IOException {
+    log.append("\n\nprefetchPortfolio called with inputs userName = ").append(userName)
+            .append(" and jsonName = ").append(jsonName);
+  }
+
+
+  /**
+   * Gets the tax lots of a portfolio on a specific date.
+   *
+   * @param date         the date as input by the user.
+   * @param userName     username as input by the user.
+   * @param jsonFileName jsonName as input by the user.
+   * @return jsonArray with one object per lot.
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  @Override
+  public JSONArray getTaxLotReport(String date, String userName, String jsonFileName)
+          throws IOException {
+    log.append("\n\ngetTaxLotReport called with input date = ").append(date)
+            .append(", jsonName = ").append(jsonFileName).append(", userName = ").append(userName);
+    return null;
+  }
+
+
+  /**
+   * Gets the total value of many portfolios on many dates at once.
+   *
+   * @param userNames the username of each portfolio.
+   * @param jsonNames the name of each portfolio.
+   * @param dates     the dates to value the portfolios on.
+   * @return the value of each portfolio on each date.
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  @Override
+  public double[][] getPortfolioValues(String[] userNames, String[] jsonNames, String[] dates)
+          throws IOException {
+    log.append("\n\ngetPortfolioValues called with inputs userNames = ")
+            .append(Arrays.toString(userNames)).append(", jsonNames = ")
+            .append(Arrays.toString(jsonNames)).append(", dates = ").append(Arrays.toString(dates));
+    return null;
+  }
+
+
   /**
    * To get the lastValidPrice on any particular day. For example, the lastValidPrice on a weekend
    * would be the last traded price. Thus return the last traded price.
@@ -608,6 +691,28 @@ public class MockModel implements StocksModelInterface {
   }
 
 
+  /**
+   * Calculate the portfolio performance for a give portfolio over a time range, as a line of at
+   * most a number of points.
+   *
+   * @param stockDataArray the data in a portfolio.
+   * @param begin          the start date.
+   * @param finish         the end date.
+   * @param points         the maximum number of points on the line.
+   * @return a map that contains the portfolio value for a corresponding key (day).
+   * @throws IOException if it fails to append to the logger in the MockModel implementation.
+   */
+  @Override
+  public Map<String, Double> portfolioPerformanceDownsampled(JSONArray stockDataArray,
+          String begin, String finish, int points) throws IOException {
+    log.append("\n\nportfolioPerformanceDownsampled called with inputs ");
+    log.append("\n\nStart date = ").append(begin);
+    log.append("\n\nEnd date = ").append(finish);
+    log.append("\n\nPoints = ").append(String.valueOf(points));
+    return null;
+  }
+
+
   /**
    * Executes and builds the portfolio for an investment strategy, for instance, dollar cost
    * averaging.
@@ -106,6 +106,8 @@ public class StocksControllerTest {
             + "\n"
             + "checkValidFileName called with input jsonName = test.json and userName = admin\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = admin and jsonName = test.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = admin\n"
@@ -256,6 +258,8 @@ public class StocksControllerTest {
             + "\n"
             + "checkValidFileName called with input jsonName = sample.json and userName = admin\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = admin and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = admin\n"
@@ -374,6 +378,8 @@ public class StocksControllerTest {
             + "\n"
             + "checkValidFileName called with input jsonName = sample.json and userName = user\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = user and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = user\n"
@@ -568,6 +574,8 @@ public class StocksControllerTest {
             + "\n"
             + "checkValidFileName called with input jsonName = sample.json and userName = admin\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = admin and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = admin\n"
@@ -610,7 +618,7 @@ public class StocksControllerTest {
   @Test
   public void loginAndBuySharesTest() {
     StringReader in = new StringReader("1 admin admin 2 1 sample.json 2 AMZN 2022 10 31 100 1 "
-            + "TSLA 2022 10 28 100 4 8");
+            + "TSLA 2022 10 28 100 4 9");
     this.stocksController = new StocksController(this.stocksView, this.mockModel,
             this.mockModel, in, this.log);
     String expectedOutput = "\n"
@@ -625,6 +633,8 @@ public class StocksControllerTest {
             + "\n"
             + "validateLoginCredentials called with inputs username = admin and password = admin\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = admin and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = admin\n"
@@ -683,7 +693,7 @@ public class StocksControllerTest {
   @Test
   public void signUpAndBuySharesTest() {
     StringReader in = new StringReader("2 user user 2 1 sample.json 2 AMZN 2022 10 31 100 1 "
-            + "TSLA 2022 10 28 100 4 8");
+            + "TSLA 2022 10 28 100 4 9");
     this.stocksController = new StocksController(this.stocksView, this.mockModel,
             this.mockModel, in, this.log);
     String expectedOutput = "\n"
@@ -702,6 +712,8 @@ public class StocksControllerTest {
             + "\n"
             + "saveLoginCredentials called with inputs username = user and password = user\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = user and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = user\n"
@@ -760,7 +772,7 @@ public class StocksControllerTest {
   @Test
   public void buySharesInExistingFlexiblePortfolioTest() {
     StringReader in = new StringReader("1 admin admin 2 1 sample.json 2 AMZN 2022 10 31 100 1 "
-            + "TSLA 2022 10 28 100 4 1 sample.json 1 AAPL 2022 10 25 100 2 8");
+            + "TSLA 2022 10 28 100 4 1 sample.json 1 AAPL 2022 10 25 100 2 9");
     this.stocksController = new StocksController(this.stocksView, this.mockModel,
             this.mockModel, in, this.log);
     String expectedOutput = "\n"
@@ -775,6 +787,8 @@ public class StocksControllerTest {
             + "\n"
             + "validateLoginCredentials called with inputs username = admin and password = admin\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = admin and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = admin\n"
@@ -823,6 +837,8 @@ public class StocksControllerTest {
             + "\n"
             + "Commissions = [1.0, 4.0]\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = admin and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = admin\n"
@@ -867,7 +883,7 @@ public class StocksControllerTest {
   @Test
   public void loginBuySharesAndSellSharesTest() {
     StringReader in = new StringReader("1 admin admin 2 1 sample.json 2 AMZN 2022 10 28 100 1 "
-            + "TSLA 2022 10 28 100 4 2 sample.json 1 AMZN 2022 10 31 100 2 8");
+            + "TSLA 2022 10 28 100 4 2 sample.json 1 AMZN 2022 10 31 100 2 9");
     this.stocksController = new StocksController(this.stocksView, this.mockModel,
             this.mockModel, in, this.log);
     String expectedOutput = "\n"
@@ -882,6 +898,8 @@ public class StocksControllerTest {
             + "\n"
             + "validateLoginCredentials called with inputs username = admin and password = admin\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = admin and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = admin\n"
@@ -933,6 +951,8 @@ public class StocksControllerTest {
             + "checkValidFileNameForExamination called with input jsonName = sample.json and "
             + "userName = admin\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = admin and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = admin\n"
@@ -984,7 +1004,7 @@ public class StocksControllerTest {
   @Test
   public void signUpBuySharesAndSellSharesTest() {
     StringReader in = new StringReader("2 admin admin 2 1 sample.json 2 AMZN 2022 10 28 100 1 "
-            + "TSLA 2022 10 28 100 4 2 sample.json 1 AMZN 2022 10 31 100 2 8");
+            + "TSLA 2022 10 28 100 4 2 sample.json 1 AMZN 2022 10 31 100 2 9");
     this.stocksController = new StocksController(this.stocksView, this.mockModel,
             this.mockModel, in, this.log);
     String expectedOutput = "\n"
@@ -1003,6 +1023,8 @@ public class StocksControllerTest {
             + "\n"
             + "saveLoginCredentials called with inputs username = admin and password = admin\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = admin and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = admin\n"
@@ -1054,6 +1076,8 @@ public class StocksControllerTest {
             + "checkValidFileNameForExamination called with input jsonName = sample.json and "
             + "userName = admin\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = admin and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = admin\n"
@@ -1104,7 +1128,7 @@ public class StocksControllerTest {
 
   @Test
   public void examineCompositionFlexible() {
-    StringReader in = new StringReader("1 admin admin 2 4 sample.json 2022 11 01 8");
+    StringReader in = new StringReader("1 admin admin 2 4 sample.json 2022 11 01 9");
     this.stocksController = new StocksController(this.stocksView, this.mockModel,
             this.mockModel, in, this.log);
     String expectedOutput = "\n"
@@ -1147,7 +1171,7 @@ public class StocksControllerTest {
 
   @Test
   public void costValueBasisFlexible() {
-    StringReader in = new StringReader("1 admin admin 2 5 sample.json 2022 11 01 8");
+    StringReader in = new StringReader("1 admin admin 2 5 sample.json 2022 11 01 9");
     this.stocksController = new StocksController(this.stocksView, this.mockModel,
             this.mockModel, in, this.log);
     String expectedOutput = "\n"
@@ -1188,9 +1212,53 @@ public class StocksControllerTest {
     }
   }
 
+  @Test
+  public void taxLotsFlexible() {
+    StringReader in = new StringReader("1 admin admin 2 8 sample.json 2022 11 01 9");
+    this.stocksController = new StocksController(this.stocksView, this.mockModel,
+            this.mockModel, in, this.log);
+    String expectedOutput = "\n"
+            + "\n"
+            + "setValidSymbols called.\n"
+            + "\n"
+            + "setCSVSymbols called.\n"
+            + "\n"
+            + "setValidSymbols called.\n"
+            + "\n"
+            + "setCSVSymbols called.\n"
+            + "\n"
+            + "validateLoginCredentials called with inputs username = admin and password = admin\n"
+            + "\n"
+            + "checkValidFileNameForExamination called with input jsonName = sample.json and "
+            + "userName = admin\n"
+            + "\n"
+            + "isStrategyOngoing called with inputs\n"
+            + "\n"
+            + "userName = admin\n"
+            + "\n"
+            + "jsonName = sample.json\n"
+            + "\n"
+            + "checkValidYear called with input 2022\n"
+            + "\n"
+            + "checkValidMonth called with input 11\n"
+            + "\n"
+            + "checkValidDate called with input date = 01, month = 11 and year = 2022\n"
+            + "\n"
+            + "checkValidBuyDate called with input 2022-11-01\n"
+            + "\n"
+            + "getTaxLotReport called with input date = 2022-11-01, jsonName = sample.json, "
+            + "userName = admin";
+    try {
+      this.stocksController.run();
+      assertEquals(expectedOutput, log.toString());
+    } catch (IOException e) {
+      fail("Failed as the statements could not be appended to logger.");
+    }
+  }
+
   @Test
   public void getPortfolioValueFlexible() {
-    StringReader in = new StringReader("1 admin admin 2 6 sample.json 2022 11 01 8");
+    StringReader in = new StringReader("1 admin admin 2 6 sample.json 2022 11 01 9");
     this.stocksController = new StocksController(this.stocksView, this.mockModel,
             this.mockModel, in, this.log);
     String expectedOutput = "\n"
@@ -1235,7 +1303,7 @@ public class StocksControllerTest {
   public void getPortfolioPerformanceTest() {
     StringReader in = new StringReader("2 user user 2 1 sample.json 2 AMZN 2022 10 28 100 1 "
             + "TSLA 2022 10 28 100 4 2 sample.json 1 AMZN 2022 10 31 100 2 7 sample.json "
-            + "2022 01 01 2022 11 01 8");
+            + "2022 01 01 2022 11 01 9");
     this.stocksController = new StocksController(this.stocksView, this.mockModel,
             this.mockModel, in, this.log);
     String expectedOutput = "\n"
@@ -1254,6 +1322,8 @@ public class StocksControllerTest {
             + "\n"
             + "saveLoginCredentials called with inputs username = user and password = user\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = user and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = user\n"
@@ -1305,6 +1375,8 @@ public class StocksControllerTest {
             + "checkValidFileNameForExamination called with input jsonName = sample.json and "
             + "userName = user\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = user and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = user\n"
@@ -1393,7 +1465,7 @@ public class StocksControllerTest {
     StringReader in = new StringReader("2 user user 2 1 sample.json 2 AMZN 2022 10 28 100 1 "
             + "TSLA 2022 10 28 100 4 2 sample.json 1 AMZN 2022 10 31 100 2 4 sample.json "
             + "2022 11 01 5 sample.json 2022 11 01 6 sample.json 2022 11 01 7 "
-            + "sample.json 2022 01 01 2022 11 01 8");
+            + "sample.json 2022 01 01 2022 11 01 9");
     this.stocksController = new StocksController(this.stocksView, this.mockModel,
             this.mockModel, in, this.log);
     String expectedOutput = "\n"
@@ -1412,6 +1484,8 @@ public class StocksControllerTest {
             + "\n"
             + "saveLoginCredentials called with inputs username = user and password = user\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = user and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = user\n"
@@ -1463,6 +1537,8 @@ public class StocksControllerTest {
             + "checkValidFileNameForExamination called with input jsonName = sample.json and "
             + "userName = user\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = user and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = user\n"
@@ -1606,7 +1682,7 @@ public class StocksControllerTest {
   @Test
   public void fractionalSharesFlexible() {
     StringReader in = new StringReader("2 admin admin 2 1 sample.json 1 "
-            + "AMZN 2022 10 31 1.1 1 2 8");
+            + "AMZN 2022 10 31 1.1 1 2 9");
     this.stocksController = new StocksController(this.stocksView, this.mockModel,
             this.mockModel, in, this.log);
     String expectedOutput = "\n"
@@ -1625,6 +1701,8 @@ public class StocksControllerTest {
             + "\n"
             + "saveLoginCredentials called with inputs username = admin and password = admin\n"
             + "\n"
+            + "prefetchPortfolio called with inputs userName = admin and jsonName = sample.json\n"
+            + "\n"
             + "isStrategyOngoing called with inputs\n"
             + "\n"
             + "userName = admin\n"
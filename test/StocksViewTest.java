@@ -103,7 +103,8 @@ public class StocksViewTest {
               + "5. COST VALUE BASIS\n"
               + "6. GET TOTAL VALUE OF A PORTFOLIO ON A DATE\n"
               + "7. PORTFOLIO PERFORMANCE OVER TIME\n"
-              + "8. EXIT\n"
+              + "8. TAX LOTS OF A PORTFOLIO\n"
+              + "9. EXIT\n"
               + "ENTER YOUR CHOICE: ";
       assertEquals(expectedString, log.toString());
     } catch (IOException e) {
@@ -371,6 +372,44 @@ public class StocksViewTest {
     }
   }
 
+  @Test
+  public void taxLotHeaderTest() {
+    try {
+      stocksView.taxLotHeader();
+      String expectedString = "\n"
+              + "-------------------------------------------------------------------------------"
+              + "-------------------------------------------\n"
+              + "STOCK NAME      BUY DATE      QUANTITY     BUY PRICE          COST     "
+              + "OPEN QUANTITY     REALIZED GAIN     UNREALIZED GAIN\n"
+              + "-------------------------------------------------------------------------------"
+              + "-------------------------------------------";
+      assertEquals(expectedString, log.toString());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  public void printTaxLotsTest() {
+    try {
+      stocksView.printTaxLots(new String[]{"GOOG", "GOOG"},
+              new String[]{"2022-10-28", "2022-10-31"}, new String[]{"10.0", "5.0"},
+              new String[]{"96.58", "94.66"}, new String[]{"966.8", "473.3"},
+              new String[]{"4.0", "5.0"}, new String[]{"-3.15", "0.0"},
+              new String[]{"NA", "-2.5"}, 2);
+      String expectedString = "\n"
+              + "GOOG          2022-10-28          10.0         96.58         966.8               "
+              + "4.0             -3.15                  NA\n"
+              + "GOOG          2022-10-31           5.0         94.66         473.3               "
+              + "5.0               0.0                -2.5\n"
+              + "-------------------------------------------------------------------------------"
+              + "-------------------------------------------";
+      assertEquals(expectedString, log.toString());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
   @Test
   public void printPortfolioPerformanceTest() {
     try {
@@ -0,0 +1,334 @@
+package stocks.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the APIScheduler class against a fake API and a fake clock: the token bucket, the
+ * interactive and background lanes, and the backoff after a throttled call.
+ */
+public class APISchedulerTest {
+  private static final String THROTTLE_NOTE = "{\n    \"Note\": \"Thank you for using Alpha"
+          + " Vantage! Our standard API call frequency is 5 calls per minute and 500 calls per"
+          + " day.\"\n}";
+
+  private FakeClock clock;
+  private FakeAPI api;
+  private String callsPerMinute;
+
+  @Before
+  public void setUp() {
+    this.clock = new FakeClock();
+    this.api = new FakeAPI(this.clock);
+    this.callsPerMinute = System.getProperty(APIScheduler.CALLS_PER_MINUTE_PROPERTY);
+  }
+
+  @After
+  public void tearDown() {
+    if (this.callsPerMinute == null) {
+      System.clearProperty(APIScheduler.CALLS_PER_MINUTE_PROPERTY);
+    } else {
+      System.setProperty(APIScheduler.CALLS_PER_MINUTE_PROPERTY, this.callsPerMinute);
+    }
+  }
+
+  @Test
+  public void capacityTest() throws IOException {
+    this.clock.advanceOnWait = true;
+    APIScheduler scheduler = new APIScheduler(this.api, 5, this.clock);
+    for (int i = 0; i < 7; i++) {
+      assertEquals(1, scheduler.getTickerSeries("S" + i).size());
+    }
+    assertEquals(List.of("S0@0", "S1@0", "S2@0", "S3@0", "S4@0", "S5@12", "S6@24"),
+            this.api.calls);
+
+    // A long idle period fills the bucket up to the calls per minute, and not beyond.
+    this.clock.advance(TimeUnit.MINUTES.toNanos(10));
+    this.api.calls.clear();
+    for (int i = 0; i < 6; i++) {
+      scheduler.getTickerSeries("T" + i);
+    }
+    assertEquals(List.of("T0@624", "T1@624", "T2@624", "T3@624", "T4@624", "T5@636"),
+            this.api.calls);
+  }
+
+  @Test
+  public void refillTest() throws IOException {
+    this.clock.advanceOnWait = true;
+    APIScheduler scheduler = new APIScheduler(this.api, 5, this.clock);
+    for (int i = 0; i < 5; i++) {
+      scheduler.getTickerSeries("S" + i);
+    }
+    this.api.calls.clear();
+    this.clock.advance(TimeUnit.SECONDS.toNanos(30));
+    for (int i = 0; i < 3; i++) {
+      scheduler.getTickerSeries("R" + i);
+    }
+    assertEquals(List.of("R0@30", "R1@30", "R2@36"), this.api.calls);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidRateTest() {
+    new APIScheduler(this.api, 0, this.clock);
+  }
+
+  @Test
+  public void interactiveFirstTest() throws Exception {
+    APIScheduler scheduler = new APIScheduler(this.api, 1, this.clock);
+    scheduler.getTickerSeries("FIRST");
+    Thread first = start(() -> scheduler.background().getTickerSeries("B1"));
+    awaitWaiting(scheduler, 1);
+    Thread second = start(() -> scheduler.background().getTickerSeries("B2"));
+    awaitWaiting(scheduler, 2);
+    Thread interactive = start(() -> scheduler.getTickerSeries("I"));
+    awaitWaiting(scheduler, 3);
+
+    for (int calls = 2; calls <= 4; calls++) {
+      this.clock.advance(TimeUnit.MINUTES.toNanos(1));
+      awaitCalls(calls);
+    }
+    interactive.join();
+    first.join();
+    second.join();
+    assertEquals(List.of("FIRST@0", "I@60", "B1@120", "B2@180"), this.api.calls);
+  }
+
+  @Test
+  public void promoteTest() throws Exception {
+    APIScheduler scheduler = new APIScheduler(this.api, 1, this.clock);
+    scheduler.getTickerSeries("FIRST");
+    APIScheduler.BackgroundAPI firstView = scheduler.background();
+    APIScheduler.BackgroundAPI secondView = scheduler.background();
+    Thread first = start(() -> firstView.getTickerSeries("B1"));
+    awaitWaiting(scheduler, 1);
+    Thread second = start(() -> secondView.getTickerSeries("B2"));
+    awaitWaiting(scheduler, 2);
+    Thread interactive = start(() -> scheduler.getTickerSeries("I"));
+    awaitWaiting(scheduler, 3);
+    secondView.promote();
+
+    for (int calls = 2; calls <= 4; calls++) {
+      this.clock.advance(TimeUnit.MINUTES.toNanos(1));
+      awaitCalls(calls);
+    }
+    first.join();
+    second.join();
+    interactive.join();
+    assertEquals(List.of("FIRST@0", "I@60", "B2@120", "B1@180"), this.api.calls);
+
+    // The later calls of a promoted view wait in the interactive lane as well.
+    Thread background = start(() -> scheduler.background().getTickerSeries("B3"));
+    awaitWaiting(scheduler, 1);
+    Thread promoted = start(() -> secondView.getTickerSeries("B4"));
+    awaitWaiting(scheduler, 2);
+    for (int calls = 5; calls <= 6; calls++) {
+      this.clock.advance(TimeUnit.MINUTES.toNanos(1));
+      awaitCalls(calls);
+    }
+    background.join();
+    promoted.join();
+    assertEquals("B4@240", this.api.calls.get(4));
+    assertEquals("B3@300", this.api.calls.get(5));
+  }
+
+  @Test
+  public void isThrottleMessageTest() {
+    assertTrue(APIScheduler.isThrottleMessage(THROTTLE_NOTE));
+    assertTrue(APIScheduler.isThrottleMessage("Please consider the RATE LIMIT of your key."));
+    assertFalse(APIScheduler.isThrottleMessage("{\"Error Message\": \"Invalid API call.\"}"));
+    assertFalse(APIScheduler.isThrottleMessage(""));
+    assertFalse(APIScheduler.isThrottleMessage(null));
+  }
+
+  @Test
+  public void backoffTest() throws IOException {
+    this.clock.advanceOnWait = true;
+    this.api.throttled = 2;
+    APIScheduler scheduler = new APIScheduler(this.api, 5, this.clock);
+    TickerSeries series = scheduler.getTickerSeries("GOOG");
+    assertEquals(1, series.size());
+    assertNull(series.getMessage());
+    assertEquals(List.of("GOOG@0", "GOOG@12", "GOOG@36"), this.api.calls);
+    assertEquals(2, scheduler.getThrottledCount());
+
+    // The bucket refills while the calls are held back.
+    scheduler.getTickerSeries("AAPL");
+    assertEquals("AAPL@36", this.api.calls.get(3));
+  }
+
+  @Test
+  public void backoffTextTest() throws IOException {
+    this.clock.advanceOnWait = true;
+    this.api.throttled = 1;
+    APIScheduler scheduler = new APIScheduler(this.api, 5, this.clock);
+    String[] lines = scheduler.background().getTickerData("GOOG");
+    assertEquals("timestamp,open,high,low,close,volume", lines[0]);
+    assertEquals(List.of("GOOG@0", "GOOG@12"), this.api.calls);
+    assertEquals(1, scheduler.getThrottledCount());
+  }
+
+  @Test
+  public void giveUpTest() throws IOException {
+    this.clock.advanceOnWait = true;
+    this.api.throttled = Integer.MAX_VALUE;
+    APIScheduler scheduler = new APIScheduler(this.api, 1, this.clock);
+    TickerSeries series = scheduler.getTickerSeries("GOOG");
+    assertEquals(0, series.size());
+    assertTrue(APIScheduler.isThrottleMessage(series.getMessage()));
+    assertEquals(APIScheduler.MAX_RETRIES + 1, this.api.calls.size());
+    assertEquals(APIScheduler.MAX_RETRIES, scheduler.getThrottledCount());
+    // The backoff doubles from one token period, up to two minutes.
+    assertEquals(List.of("GOOG@0", "GOOG@60", "GOOG@180", "GOOG@300"), this.api.calls);
+  }
+
+  @Test
+  public void configuredRateTest() {
+    System.clearProperty(APIScheduler.CALLS_PER_MINUTE_PROPERTY);
+    assertEquals(APIScheduler.DEFAULT_CALLS_PER_MINUTE, APIScheduler.configuredCallsPerMinute());
+    System.setProperty(APIScheduler.CALLS_PER_MINUTE_PROPERTY, " 75 ");
+    assertEquals(75, APIScheduler.configuredCallsPerMinute());
+
+    PrintStream out = System.out;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(printed, true));
+    try {
+      for (String value : new String[]{"fast", "0", "-5", "", "2.5"}) {
+        System.setProperty(APIScheduler.CALLS_PER_MINUTE_PROPERTY, value);
+        assertEquals(APIScheduler.DEFAULT_CALLS_PER_MINUTE,
+                APIScheduler.configuredCallsPerMinute());
+      }
+    } finally {
+      System.setOut(out);
+    }
+    assertEquals(5, printed.toString().lines()
+            .filter(line -> line.startsWith("Invalid " + APIScheduler.CALLS_PER_MINUTE_PROPERTY))
+            .count());
+  }
+
+  private static Thread start(Call call) {
+    Thread thread = new Thread(() -> {
+      try {
+        call.run();
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  private static void awaitWaiting(APIScheduler scheduler, int count) throws InterruptedException {
+    for (int i = 0; i < 5000 && scheduler.getWaitingCount() != count; i++) {
+      Thread.sleep(1);
+    }
+    assertEquals(count, scheduler.getWaitingCount());
+  }
+
+  private void awaitCalls(int count) throws InterruptedException {
+    for (int i = 0; i < 5000 && this.api.calls.size() < count; i++) {
+      Thread.sleep(1);
+    }
+    if (this.api.calls.size() < count) {
+      fail("The API was called " + this.api.calls.size() + " times instead of " + count + ".");
+    }
+  }
+
+  private static TickerSeries series(String body) throws IOException {
+    return TickerSeries.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * A call made on another thread.
+   */
+  private interface Call {
+    void run() throws IOException;
+  }
+
+  /**
+   * A clock that only moves when the test moves it, or, if asked to, by the time a waiting call
+   * would have slept.
+   */
+  private static final class FakeClock implements APIScheduler.Clock {
+    private final AtomicLong now = new AtomicLong();
+    private volatile boolean advanceOnWait;
+
+    @Override
+    public long nanoTime() {
+      return this.now.get();
+    }
+
+    @Override
+    public void await(Condition condition, long nanos) throws InterruptedException {
+      if (this.advanceOnWait) {
+        this.now.addAndGet(nanos);
+      } else {
+        condition.awaitNanos(TimeUnit.MILLISECONDS.toNanos(1));
+      }
+    }
+
+    private void advance(long nanos) {
+      this.now.addAndGet(nanos);
+    }
+  }
+
+  /**
+   * An API that records the symbol and the time of every call, in seconds of the fake clock, and
+   * answers the first calls with a call frequency note.
+   */
+  private static final class FakeAPI implements API {
+    private final FakeClock clock;
+    private final List<String> calls;
+    private volatile int throttled;
+
+    private FakeAPI(FakeClock clock) {
+      this.clock = clock;
+      this.calls = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Override
+    public String[] getTickerData(String stockSymbol) {
+      return record(stockSymbol) ? THROTTLE_NOTE.split("\n")
+              : new String[]{"timestamp,open,high,low,close,volume",
+                "2022-10-03,1,2,0.5,1.5,100"};
+    }
+
+    @Override
+    public TickerSeries getTickerSeries(String stockSymbol) throws IOException {
+      return series(record(stockSymbol) ? THROTTLE_NOTE
+              : "timestamp,open,high,low,close,volume\n2022-10-03,1,2,0.5,1.5,100\n");
+    }
+
+    @Override
+    public TickerSeries getRecentTickerSeries(String stockSymbol) throws IOException {
+      return getTickerSeries(stockSymbol);
+    }
+
+    private synchronized boolean record(String stockSymbol) {
+      this.calls.add(stockSymbol + "@" + TimeUnit.NANOSECONDS.toSeconds(this.clock.nanoTime()));
+      if (this.throttled > 0) {
+        this.throttled--;
+        return true;
+      }
+      return false;
+    }
+  }
+}
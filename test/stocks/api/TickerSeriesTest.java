@@ -0,0 +1,110 @@
+package stocks.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the TickerSeries class, which parses the ticker data returned by the API into arrays of
+ * trading days and closing prices.
+ */
+public class TickerSeriesTest {
+  private static final String HEADER = "timestamp,open,high,low,close,volume\r\n";
+
+  @Test
+  public void csvTest() throws IOException {
+    TickerSeries series = read(HEADER
+            + "2022-10-04,140.1,141.2,139.0,140.5,1000\r\n"
+            + "2022-10-03,138.0,139.9,137.5,139.25,2000\r\n");
+    assertNull(series.getMessage());
+    assertEquals(2, series.size());
+    assertEquals(day("2022-10-04"), series.getDay(0));
+    assertEquals(140.5, series.getClose(0), 0);
+    assertEquals(day("2022-10-03"), series.getDay(1));
+    assertEquals(139.25, series.getClose(1), 0);
+    assertArrayEquals(new int[]{day("2022-10-04"), day("2022-10-03")}, series.getDays());
+    assertArrayEquals(new double[]{140.5, 139.25}, series.getCloses(), 0);
+  }
+
+  @Test
+  public void noTrailingNewlineTest() throws IOException {
+    TickerSeries series = read(HEADER
+            + "2022-10-04,140.1,141.2,139.0,140.5,1000\n"
+            + "2022-10-03,138.0,139.9,137.5,139.25");
+    assertEquals(2, series.size());
+    assertEquals(day("2022-10-03"), series.getDay(1));
+    assertEquals(139.25, series.getClose(1), 0);
+  }
+
+  @Test
+  public void invalidRowTest() throws IOException {
+    TickerSeries series = read(HEADER
+            + "2022-10-05,1,1,1,oops,1\n"
+            + "2022-02-30,1,1,1,2.5,1\n"
+            + "10/03/2022,1,1,1,3.5,1\n"
+            + "2022-10-04,1,1,1\n"
+            + "2022-10-03,1,1,1,4.5,1\n");
+    assertEquals(1, series.size());
+    assertEquals(day("2022-10-03"), series.getDay(0));
+    assertEquals(4.5, series.getClose(0), 0);
+  }
+
+  @Test
+  public void messageTest() throws IOException {
+    String note = "{\n    \"Note\": \"Thank you for using Alpha Vantage! Our standard API call"
+            + " frequency is 5 calls per minute and 500 calls per day.\"\n}";
+    TickerSeries series = read(note + "\n");
+    assertEquals(0, series.size());
+    assertEquals(note, series.getMessage());
+
+    series = read("{\"Error Message\": \"Invalid API call.\"}");
+    assertEquals(0, series.size());
+    assertEquals("{\"Error Message\": \"Invalid API call.\"}", series.getMessage());
+  }
+
+  @Test
+  public void emptyTest() throws IOException {
+    TickerSeries series = read("");
+    assertEquals(0, series.size());
+    assertNull(series.getMessage());
+    assertEquals(0, series.getDays().length);
+
+    series = read(HEADER);
+    assertEquals(0, series.size());
+    assertNull(series.getMessage());
+  }
+
+  @Test
+  public void growthTest() throws IOException {
+    int rows = 1000;
+    StringBuilder body = new StringBuilder(HEADER);
+    int first = day("2022-10-04");
+    for (int i = 0; i < rows; i++) {
+      body.append(LocalDate.ofEpochDay(first - i)).append(",1,2,0.5,").append(i + 0.25)
+              .append(",100\n");
+    }
+    TickerSeries series = read(body.toString());
+    assertEquals(rows, series.size());
+    int[] days = series.getDays();
+    double[] closes = series.getCloses();
+    assertEquals(rows, days.length);
+    for (int i = 0; i < rows; i++) {
+      assertEquals(first - i, days[i]);
+      assertEquals(i + 0.25, closes[i], 0);
+    }
+  }
+
+  private static TickerSeries read(String body) throws IOException {
+    return TickerSeries.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static int day(String date) {
+    return (int) LocalDate.parse(date).toEpochDay();
+  }
+}
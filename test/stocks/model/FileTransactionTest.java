@@ -0,0 +1,410 @@
+package stocks.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the FileTransaction class, and the recovery of the transactions that a crash interrupted
+ * from a write-ahead log.
+ */
+public class FileTransactionTest {
+  private Path directory;
+  private Path log;
+
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("transaction");
+    this.log = this.directory.resolve("transactions.wal");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileTransaction.setLogOpener(logFile -> FileChannel.open(logFile, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+    try (Stream<Path> files = Files.walk(this.directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void commitTest() throws IOException {
+    Path file = this.directory.resolve("portfolio.json");
+    Path journal = this.directory.resolve("portfolio.json.journal");
+    Files.writeString(file, "old");
+    Files.writeString(journal, "journal");
+    try (FileTransaction transaction = new FileTransaction()) {
+      transaction.write(file.toString(), writer -> writer.write("new"));
+      transaction.delete(journal.toString());
+      assertEquals("old", Files.readString(file));
+      transaction.commit();
+    }
+    assertEquals("new", Files.readString(file));
+    assertFalse(Files.exists(journal));
+    assertEquals(1, files());
+
+    FileTransaction.writeFile(file.toString(), writer -> writer.write("newer"));
+    assertEquals("newer", Files.readString(file));
+    assertEquals(1, files());
+  }
+
+  @Test
+  public void rollbackTest() throws IOException {
+    Path file = this.directory.resolve("portfolio.json");
+    Files.writeString(file, "old");
+    try (FileTransaction transaction = new FileTransaction()) {
+      transaction.write(file.toString(), writer -> writer.write("new"));
+      assertEquals(2, files());
+    }
+    assertEquals("old", Files.readString(file));
+    assertEquals(1, files());
+  }
+
+  @Test
+  public void failedWriteTest() throws IOException {
+    Path file = this.directory.resolve("portfolio.json");
+    Files.writeString(file, "old");
+    try {
+      FileTransaction.writeFile(file.toString(), writer -> {
+        writer.write("half");
+        throw new IOException("Disk full.");
+      });
+      fail("The write did not fail.");
+    } catch (IOException e) {
+      assertEquals("Disk full.", e.getMessage());
+    }
+    assertEquals("old", Files.readString(file));
+    assertEquals(1, files());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void finishedTest() throws IOException {
+    try (FileTransaction transaction = new FileTransaction()) {
+      transaction.write(this.directory.resolve("a.json").toString(), writer -> writer.write("a"));
+      transaction.commit();
+      transaction.write(this.directory.resolve("b.json").toString(), writer -> writer.write("b"));
+    }
+  }
+
+  @Test
+  public void failedCommitTest() throws IOException {
+    Path file = this.directory.resolve("portfolio.json");
+    Path journal = this.directory.resolve("portfolio.json.journal");
+    Files.writeString(file, "old");
+    Files.writeString(journal, "journal");
+    Path crashed = failCommit(file, journal, 1);
+    assertEquals("old", Files.readString(file));
+    assertTrue(Files.exists(journal));
+    assertEquals(3, files());
+
+    // The commit record reached the disk, but the transaction was aborted after it.
+    assertTrue(Files.readString(crashed).contains("commit\t"));
+    assertEquals(0, FileTransaction.replay(crashed));
+    assertEquals("old", Files.readString(file));
+    assertEquals("journal", Files.readString(journal));
+    assertEquals(2, files());
+  }
+
+  @Test
+  public void failedAbortTest() throws IOException {
+    Path file = this.directory.resolve("portfolio.json");
+    Path journal = this.directory.resolve("portfolio.json.journal");
+    Files.writeString(file, "old");
+    Files.writeString(journal, "journal");
+    Path crashed = failCommit(file, journal, 2);
+    assertEquals("old", Files.readString(file));
+    assertEquals(4, files());
+
+    // The abort was never forced, so a crash may lose it while the commit record reaches the
+    // disk. The temporary file was kept, so the transaction is then replayed as a whole.
+    String records = Files.readString(crashed);
+    assertTrue(records.contains("\nabort\t"));
+    Files.writeString(crashed, records.substring(0, records.indexOf("\nabort\t")));
+    assertEquals(1, FileTransaction.replay(crashed));
+    assertEquals("new", Files.readString(file));
+    assertFalse(Files.exists(journal));
+    assertEquals(1, files());
+  }
+
+  @Test
+  public void noLogTest() {
+    assertEquals(0, FileTransaction.replay(this.log));
+  }
+
+  @Test
+  public void replayCommittedMoveTest() throws IOException {
+    Path file = this.directory.resolve("portfolio.json");
+    Path temp = temp(file, 7);
+    Files.writeString(file, "old");
+    Files.writeString(temp, "new");
+    writeLog("temp\t7\t" + temp + "\n"
+            + "move\t7\t" + temp + "\t" + file + "\n"
+            + "commit\t7\n");
+    assertEquals(1, FileTransaction.replay(this.log));
+    assertEquals("new", Files.readString(file));
+    assertFalse(Files.exists(temp));
+    assertFalse(Files.exists(this.log));
+  }
+
+  @Test
+  public void replayUncommittedTest() throws IOException {
+    Path file = this.directory.resolve("portfolio.json");
+    Path temp = temp(file, 8);
+    Files.writeString(file, "old");
+    Files.writeString(temp, "ne");
+    writeLog("temp\t8\t" + temp + "\n"
+            + "move\t8\t" + temp + "\t" + file + "\n"
+            + "commit\t");
+    assertEquals(0, FileTransaction.replay(this.log));
+    assertEquals("old", Files.readString(file));
+    assertFalse(Files.exists(temp));
+    assertFalse(Files.exists(this.log));
+  }
+
+  @Test
+  public void replayAppliedTest() throws IOException {
+    Path file = this.directory.resolve("portfolio.json");
+    Path temp = temp(file, 9);
+    Files.writeString(file, "new");
+    writeLog("temp\t9\t" + temp + "\n"
+            + "move\t9\t" + temp + "\t" + file + "\n"
+            + "commit\t9\n"
+            + "done\t9\n");
+    assertEquals(0, FileTransaction.replay(this.log));
+    assertEquals("new", Files.readString(file));
+  }
+
+  @Test
+  public void replayDeleteTest() throws IOException {
+    Path file = this.directory.resolve("portfolio.json");
+    Path temp = temp(file, 10);
+    Path journal = this.directory.resolve("portfolio.json.journal");
+    Files.writeString(file, "old");
+    Files.writeString(temp, "new");
+    Files.writeString(journal, "journal");
+    File journalFile = journal.toFile();
+    writeLog("temp\t10\t" + temp + "\n"
+            + "move\t10\t" + temp + "\t" + file + "\n"
+            + "delete\t10\t" + journal + "\t" + journalFile.length() + "\t"
+            + journalFile.lastModified() + "\n"
+            + "commit\t10\n");
+    assertEquals(1, FileTransaction.replay(this.log));
+    assertEquals("new", Files.readString(file));
+    assertFalse(Files.exists(journal));
+  }
+
+  @Test
+  public void lostDoneTest() throws IOException {
+    Path file = this.directory.resolve("portfolio.json");
+    Path temp = temp(file, 11);
+    Path journal = this.directory.resolve("portfolio.json.journal");
+    Files.writeString(journal, "journal");
+    File journalFile = journal.toFile();
+    String deleted = "delete\t11\t" + journal + "\t" + journalFile.length() + "\t"
+            + journalFile.lastModified() + "\n";
+
+    // The transaction was applied, but its "done" record was lost, and a new journal was started.
+    Files.writeString(file, "new");
+    Files.writeString(journal, "new journal, longer");
+    writeLog("temp\t11\t" + temp + "\n"
+            + "move\t11\t" + temp + "\t" + file + "\n"
+            + deleted
+            + "commit\t11\n");
+    assertEquals(1, FileTransaction.replay(this.log));
+    assertEquals("new", Files.readString(file));
+    assertEquals("new journal, longer", Files.readString(journal));
+  }
+
+  @Test
+  public void replaySeveralTest() throws IOException {
+    Path first = this.directory.resolve("first.json");
+    Path second = this.directory.resolve("second.json");
+    Path firstTemp = temp(first, 12);
+    Path secondTemp = temp(second, 13);
+    Files.writeString(first, "old");
+    Files.writeString(second, "old");
+    Files.writeString(firstTemp, "new");
+    Files.writeString(secondTemp, "new");
+    writeLog("temp\t12\t" + firstTemp + "\n"
+            + "temp\t13\t" + secondTemp + "\n"
+            + "move\t12\t" + firstTemp + "\t" + first + "\n"
+            + "commit\t12\n"
+            + "invalid record\n"
+            + "move\t13\t" + secondTemp + "\t" + second + "\n");
+    assertEquals(1, FileTransaction.replay(this.log));
+    assertEquals("new", Files.readString(first));
+    assertEquals("old", Files.readString(second));
+    assertFalse(Files.exists(secondTemp));
+    assertEquals(2, files());
+  }
+
+  /**
+   * Commits a transaction through a log whose first syncs fail, and returns a copy of the log as
+   * a crash right after the failed commit would leave it, in the test directory. The truncation
+   * of the log is not forced, so the copy is taken before it.
+   */
+  private Path failCommit(Path file, Path journal, int failures) throws IOException {
+    int[] remaining = {failures};
+    Path crashed = this.directory.resolve("crashed.wal");
+    FileTransaction.setLogOpener(logFile -> new FailingChannel(logFile, remaining, crashed));
+    FileTransaction transaction = new FileTransaction();
+    try {
+      transaction.write(file.toString(), writer -> writer.write("new"));
+      transaction.delete(journal.toString());
+      transaction.commit();
+      fail("The commit did not fail.");
+    } catch (IOException e) {
+      assertEquals("Sync failed.", e.getMessage());
+    } finally {
+      transaction.close();
+    }
+    assertTrue(Files.exists(crashed));
+    return crashed;
+  }
+
+  private Path temp(Path file, long id) {
+    return Path.of(file + "." + id + FileTransaction.TEMP_SUFFIX);
+  }
+
+  private void writeLog(String records) throws IOException {
+    Files.writeString(this.log, records);
+  }
+
+  private long files() throws IOException {
+    try (Stream<Path> files = Files.list(this.directory)) {
+      return files.count();
+    }
+  }
+
+  /**
+   * A log channel whose first syncs fail, and that copies the log before it is truncated.
+   */
+  private static final class FailingChannel extends FileChannel {
+    private final Path logFile;
+    private final FileChannel channel;
+    private final int[] failures;
+    private final Path copy;
+
+    private FailingChannel(Path logFile, int[] failures, Path copy) throws IOException {
+      this.logFile = logFile;
+      this.channel = FileChannel.open(logFile, StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+      this.failures = failures;
+      this.copy = copy;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+      if (this.failures[0] > 0) {
+        this.failures[0]--;
+        throw new IOException("Sync failed.");
+      }
+      this.channel.force(metaData);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      return this.channel.read(dst);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+      return this.channel.read(dsts, offset, length);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      return this.channel.write(src);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+      return this.channel.write(srcs, offset, length);
+    }
+
+    @Override
+    public long position() throws IOException {
+      return this.channel.position();
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+      this.channel.position(newPosition);
+      return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+      return this.channel.size();
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+      if (!Files.exists(this.copy)) {
+        Files.copy(this.logFile, this.copy);
+      }
+      this.channel.truncate(size);
+      return this;
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target)
+            throws IOException {
+      return this.channel.transferTo(position, count, target);
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count)
+            throws IOException {
+      return this.channel.transferFrom(src, position, count);
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+      return this.channel.read(dst, position);
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+      return this.channel.write(src, position);
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+      return this.channel.map(mode, position, size);
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+      return this.channel.lock(position, size, shared);
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+      return this.channel.tryLock(position, size, shared);
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+      this.channel.close();
+    }
+  }
+}
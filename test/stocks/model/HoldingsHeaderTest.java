@@ -0,0 +1,175 @@
+package stocks.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import jsonparser.JSONArray;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static stocks.model.PortfolioFixture.portfolio;
+
+/**
+ * Tests the HoldingsHeader class, which keeps a checkpoint of the cost basis of a portfolio on
+ * every transaction date.
+ */
+public class HoldingsHeaderTest {
+  @Test
+  public void checkpointsTest() {
+    Random random = new Random(23);
+    for (int i = 0; i < 30; i++) {
+      JSONArray portfolio = portfolio(random, 1 + random.nextInt(60), true);
+      TransactionTable table = TransactionTable.of(portfolio);
+      HoldingsHeader header = HoldingsHeader.build(source("checkpoints" + i), table);
+      for (int day = EpochDays.parse("2021-12-25"); day < EpochDays.parse("2022-12-31");
+           day += 3) {
+        assertEquals(costBasis(table, day), header.getCostBasis(day), 0);
+      }
+    }
+  }
+
+  @Test
+  public void addTest() {
+    Random random = new Random(29);
+    JSONArray portfolio = portfolio(random, 40, true);
+    TransactionTable table = TransactionTable.of(portfolio);
+    HoldingsHeader header = HoldingsHeader.build(source("add"),
+            TransactionTable.of(new JSONArray()));
+    for (int i = 0; i < table.size(); i++) {
+      header.add(table.getOperation(i), table.getDay(i), table.getQuantity(i),
+              table.getPrice(i), table.getCommission(i));
+    }
+    for (int day = EpochDays.parse("2022-01-01"); day < EpochDays.parse("2022-12-31"); day++) {
+      assertEquals(costBasis(table, day), header.getCostBasis(day), 0);
+    }
+  }
+
+  @Test
+  public void outOfOrderTest() {
+    HoldingsHeader header = HoldingsHeader.build(source("unordered"),
+            TransactionTable.of(new JSONArray()));
+    int first = EpochDays.parse("2022-10-03");
+    header.add(TransactionTable.BUY, first, 10, 100, 1);
+    header.add(TransactionTable.BUY, first + 7, 5, 110, 1);
+    assertEquals(1001, header.getCostBasis(first + 1), 0);
+    header.add(TransactionTable.SELL, first + 2, 3, 105, 2);
+    header.add(TransactionTable.BUY, first - 4, 1, 90, 1);
+    header.add(TransactionTable.BUY, first + 7, 2, 111, 1);
+
+    assertEquals(0, header.getCostBasis(first - 5), 0);
+    assertEquals(91, header.getCostBasis(first - 1), 0);
+    assertEquals(1001 + 91, header.getCostBasis(first + 1), 0);
+    assertEquals(1001 + 2 + 91, header.getCostBasis(first + 2), 0);
+    assertEquals(1001 + 551 + 2 + 91 + 223, header.getCostBasis(first + 7), 0);
+  }
+
+  @Test
+  public void unorderedPortfolioTest() {
+    Random random = new Random(37);
+    for (int i = 0; i < 20; i++) {
+      JSONArray portfolio = portfolio(random, 1 + random.nextInt(80), true);
+      for (int j = portfolio.size() - 1; j > 0; j--) {
+        int other = random.nextInt(j + 1);
+        Object transaction = portfolio.get(j);
+        portfolio.set(j, portfolio.get(other));
+        portfolio.set(other, transaction);
+      }
+      TransactionTable table = TransactionTable.of(portfolio);
+      HoldingsHeader built = HoldingsHeader.build(source("unordered" + i), table);
+      HoldingsHeader added = HoldingsHeader.build(source("added" + i),
+              TransactionTable.of(new JSONArray()));
+      for (int j = 0; j < table.size(); j++) {
+        added.add(table.getOperation(j), table.getDay(j), table.getQuantity(j),
+                table.getPrice(j), table.getCommission(j));
+      }
+      for (int day = EpochDays.parse("2021-12-30"); day < EpochDays.parse("2023-01-10"); day++) {
+        assertEquals(costBasis(table, day), built.getCostBasis(day), 0);
+        assertEquals(costBasis(table, day), added.getCostBasis(day), 0);
+      }
+    }
+  }
+
+  @Test
+  public void unparsedNumberTest() {
+    HoldingsHeader header = HoldingsHeader.build(source("unparsed"),
+            TransactionTable.of(new JSONArray()));
+    int first = EpochDays.parse("2022-10-03");
+    header.add(TransactionTable.BUY, first, 10, Double.NaN, 1);
+    assertTrue(Double.isNaN(header.getCostBasis(first + 10)));
+    assertTrue(Double.isNaN(header.getCostBasis(first - 1)));
+  }
+
+  @Test
+  public void findTest() {
+    PortfolioSnapshotCache.Source source = source("find");
+    HoldingsHeader header = HoldingsHeader.build(source, TransactionTable.of(new JSONArray()));
+    assertSame(header, HoldingsHeader.find(PortfolioSnapshotCache.Source.of(
+            source.getPath(), 1, 0)));
+    assertNull(HoldingsHeader.find(PortfolioSnapshotCache.Source.of(source.getPath(), 2, 0)));
+  }
+
+  @Test
+  public void evictionTest() {
+    HoldingsHeader first = HoldingsHeader.build(source("evicted"),
+            TransactionTable.of(new JSONArray()));
+    for (int i = 0; i < HoldingsHeader.MAX_PORTFOLIOS - 1; i++) {
+      HoldingsHeader.build(source("kept" + i), TransactionTable.of(new JSONArray()));
+    }
+    assertSame(first, HoldingsHeader.find(source("evicted")));
+    HoldingsHeader.build(source("newest"), TransactionTable.of(new JSONArray()));
+    assertNull(HoldingsHeader.find(source("kept0")));
+    assertSame(first, HoldingsHeader.find(source("evicted")));
+  }
+
+  @Test
+  public void savedHeaderTest() throws IOException {
+    Path directory = Files.createTempDirectory("holdings");
+    File portfolio = directory.resolve("first.json").toFile();
+    File copy = directory.resolve("second.json").toFile();
+    try {
+      Files.writeString(portfolio.toPath(), "{\"stocks\":[]}");
+      Files.writeString(copy.toPath(), "{\"stocks\":[]}");
+      assertTrue(copy.setLastModified(portfolio.lastModified()));
+
+      TransactionTable table = TransactionTable.of(portfolio(new Random(31), 25, true));
+      HoldingsHeader.build(PortfolioSnapshotCache.Source.of(portfolio.getPath()), table);
+      Path saved = Path.of(portfolio.getPath() + HoldingsHeader.EXTENSION);
+      assertTrue(Files.exists(saved));
+
+      Files.copy(saved, Path.of(copy.getPath() + HoldingsHeader.EXTENSION));
+      HoldingsHeader read = HoldingsHeader.find(PortfolioSnapshotCache.Source.of(copy.getPath()));
+      for (int day = EpochDays.parse("2022-01-01"); day < EpochDays.parse("2022-12-31"); day++) {
+        assertEquals(costBasis(table, day), read.getCostBasis(day), 0);
+      }
+
+      Files.writeString(copy.toPath(), "{\"stocks\":[ ]}");
+      assertNull(HoldingsHeader.find(PortfolioSnapshotCache.Source.of(copy.getPath())));
+    } finally {
+      for (File file : directory.toFile().listFiles()) {
+        file.delete();
+      }
+      directory.toFile().delete();
+    }
+  }
+
+  private static PortfolioSnapshotCache.Source source(String name) {
+    return PortfolioSnapshotCache.Source.of("res/users/test.db#user/flexible/" + name, 1, 0);
+  }
+
+  private static double costBasis(TransactionTable table, int day) {
+    double costBasis = 0;
+    for (int i = 0; i < table.size(); i++) {
+      if (table.getDay(i) <= day) {
+        costBasis += table.getOperation(i) == TransactionTable.BUY
+                ? table.getCommission(i) + table.getPrice(i) * table.getQuantity(i)
+                : table.getCommission(i);
+      }
+    }
+    return costBasis;
+  }
+}
@@ -0,0 +1,161 @@
+package stocks.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static stocks.model.PortfolioFixture.assertSameTransactions;
+
+/**
+ * Tests the PageStoreRepository class, which keeps the portfolios of every user in a page store.
+ */
+public class PageStoreRepositoryTest {
+  private Path directory;
+  private PortfolioRepository repository;
+
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("page-store-repository");
+    this.repository = new PageStoreRepository(this.directory.resolve("portfolios.db").toString());
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(this.directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void writeAndLoadTest() throws IOException {
+    assertFalse(this.repository.exists("user", PortfolioRepository.FLEXIBLE, "p.json"));
+    assertFalse(this.repository.getSource("user", PortfolioRepository.FLEXIBLE, "p.json")
+            .exists());
+    JSONArray portfolio = portfolio(0, 5, true);
+    this.repository.write("user", PortfolioRepository.FLEXIBLE, "p.json", portfolio);
+    assertTrue(this.repository.exists("user", PortfolioRepository.FLEXIBLE, "p.json"));
+    assertFalse(this.repository.exists("user", PortfolioRepository.INFLEXIBLE, "p.json"));
+    assertFalse(this.repository.exists("other", PortfolioRepository.FLEXIBLE, "p.json"));
+
+    JSONArray loaded = this.repository.load("user", PortfolioRepository.FLEXIBLE, "p.json");
+    assertSameTransactions(portfolio, loaded);
+    PortfolioSnapshotCache.Source source =
+            this.repository.getSource("user", PortfolioRepository.FLEXIBLE, "p.json");
+    assertTrue(source.exists());
+    assertFalse(source.isFile());
+    assertTrue(TransactionTable.of(loaded).getSource().sameVersion(source));
+  }
+
+  @Test
+  public void appendTest() throws IOException {
+    this.repository.write("user", PortfolioRepository.FLEXIBLE, "p.json", portfolio(0, 3, false));
+    PortfolioSnapshotCache.Source before =
+            this.repository.getSource("user", PortfolioRepository.FLEXIBLE, "p.json");
+    this.repository.append("user", PortfolioRepository.FLEXIBLE, "p.json",
+            portfolio(0, 6, false), 3);
+    PortfolioSnapshotCache.Source after =
+            this.repository.getSource("user", PortfolioRepository.FLEXIBLE, "p.json");
+    assertFalse(before.sameVersion(after));
+    assertEquals(6, after.getLength());
+    assertSameTransactions(portfolio(0, 6, false),
+            this.repository.load("user", PortfolioRepository.FLEXIBLE, "p.json"));
+
+    this.repository.write("user", PortfolioRepository.FLEXIBLE, "p.json", portfolio(2, 4, false));
+    assertSameTransactions(portfolio(2, 4, false),
+            this.repository.load("user", PortfolioRepository.FLEXIBLE, "p.json"));
+  }
+
+  @Test
+  public void reopenTest() throws IOException {
+    this.repository.write("user", PortfolioRepository.FLEXIBLE, "p.json", portfolio(0, 40, false));
+    PortfolioRepository reopened =
+            new PageStoreRepository(this.directory.resolve("portfolios.db").toString());
+    assertSameTransactions(portfolio(0, 40, false),
+            reopened.load("user", PortfolioRepository.FLEXIBLE, "p.json"));
+  }
+
+  @Test
+  public void importTest() throws IOException {
+    PortfolioRepository json = new JsonDirectoryRepository(this.directory.toString());
+    Files.createDirectories(this.directory.resolve("user/flexible"));
+    Files.createDirectories(this.directory.resolve("user/inflexible"));
+    Files.createDirectories(this.directory.resolve("other/flexible"));
+    json.write("user", PortfolioRepository.FLEXIBLE, "p.json", portfolio(0, 4, false));
+    json.append("user", PortfolioRepository.FLEXIBLE, "p.json", portfolio(0, 6, false), 4);
+    json.write("user", PortfolioRepository.INFLEXIBLE, "q.json", portfolio(0, 2, true));
+    Files.writeString(this.directory.resolve("other/flexible/bad.json"), "{\"stocks\": [");
+    Files.writeString(this.directory.resolve("other/flexible/notes.txt"), "not a portfolio");
+    Files.createDirectories(this.directory.resolve("other/flexible/unreadable.json"));
+
+    PrintStream out = System.out;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+    try {
+      assertTrue(this.repository.exists("user", PortfolioRepository.FLEXIBLE, "p.json"));
+    } finally {
+      System.setOut(out);
+    }
+    assertEquals("File is not a valid JSON.\nUnable to import other/flexible/unreadable.json.",
+            printed.toString(StandardCharsets.UTF_8).trim().replace("\r\n", "\n"));
+    assertSameTransactions(portfolio(0, 6, false),
+            this.repository.load("user", PortfolioRepository.FLEXIBLE, "p.json"));
+    assertSameTransactions(portfolio(0, 2, true),
+            this.repository.load("user", PortfolioRepository.INFLEXIBLE, "q.json"));
+    assertEquals(0, this.repository.load("other", PortfolioRepository.FLEXIBLE, "bad.json")
+            .size());
+    assertFalse(this.repository.exists("other", PortfolioRepository.FLEXIBLE,
+            "unreadable.json"));
+    assertFalse(this.repository.exists("other", PortfolioRepository.FLEXIBLE, "notes.txt"));
+
+    // The portfolios are imported once: the JSON files are not read again.
+    json.write("user", PortfolioRepository.FLEXIBLE, "later.json", portfolio(0, 1, false));
+    this.repository.append("user", PortfolioRepository.FLEXIBLE, "p.json",
+            portfolio(0, 7, false), 6);
+    PortfolioRepository reopened =
+            new PageStoreRepository(this.directory.resolve("portfolios.db").toString());
+    assertFalse(reopened.exists("user", PortfolioRepository.FLEXIBLE, "later.json"));
+    assertSameTransactions(portfolio(0, 7, false),
+            reopened.load("user", PortfolioRepository.FLEXIBLE, "p.json"));
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void loadMissingTest() throws IOException {
+    this.repository.load("user", PortfolioRepository.FLEXIBLE, "missing.json");
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void appendMissingTest() throws IOException {
+    this.repository.append("user", PortfolioRepository.FLEXIBLE, "missing.json",
+            portfolio(0, 1, false), 0);
+  }
+
+  private static JSONArray portfolio(int from, int to, boolean reversed) {
+    JSONArray portfolio = new JSONArray();
+    for (int i = from; i < to; i++) {
+      int day = EpochDays.parse("2022-01-03") + (reversed ? to - i : i);
+      JSONObject transaction = new JSONObject();
+      transaction.put("stock_name", i % 2 == 0 ? "GOOG" : "AAPL");
+      transaction.put("transaction_date", EpochDays.format(day));
+      transaction.put("quantity", String.valueOf(1 + i));
+      transaction.put("price", String.valueOf(100 + i * 0.5));
+      transaction.put("commission", "1.5");
+      transaction.put("operation", i % 3 == 2 ? "SELL" : "BUY");
+      portfolio.add(transaction);
+    }
+    return portfolio;
+  }
+}
@@ -0,0 +1,239 @@
+package stocks.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the PageStore class, its B+tree and the recovery of its write-ahead log after a crash.
+ */
+public class PageStoreTest {
+  private Path directory;
+  private Path file;
+  private PageStore store;
+
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("page-store");
+    this.file = this.directory.resolve("portfolios.db");
+    this.store = PageStore.open(this.file);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    this.store.close();
+    try (Stream<Path> files = Files.walk(this.directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void emptyStoreTest() throws IOException {
+    assertNull(this.store.get(bytes("key")));
+    assertEquals(0, this.store.scan(bytes("")).size());
+    assertEquals(0, this.store.removePrefix(bytes("k")));
+  }
+
+  @Test
+  public void putGetScanTest() throws IOException {
+    TreeMap<String, String> expected = new TreeMap<>();
+    Random random = new Random(43);
+    for (int i = 0; i < 20000; i++) {
+      String key = "u" + random.nextInt(20) + "/" + String.format("%06d", random.nextInt(100000));
+      if (random.nextInt(300) == 0) {
+        String prefix = "u" + random.nextInt(20) + "/0" + random.nextInt(10);
+        Map<String, String> removed = expected.subMap(prefix, prefix + "\uffff");
+        assertEquals(removed.size(), this.store.removePrefix(bytes(prefix)));
+        removed.clear();
+      } else {
+        String value = "v" + i + "x".repeat(random.nextInt(200));
+        this.store.put(bytes(key), bytes(value));
+        expected.put(key, value);
+      }
+      if (i % 997 == 0) {
+        this.store.commit();
+      }
+    }
+    this.store.commit();
+    assertSameEntries(expected, this.store);
+
+    this.store.close();
+    this.store = PageStore.open(this.file);
+    assertSameEntries(expected, this.store);
+    assertNull(this.store.get(bytes("u1/")));
+  }
+
+  @Test
+  public void unsignedOrderTest() throws IOException {
+    this.store.put(new byte[]{'p', (byte) 0x80}, bytes("high"));
+    this.store.put(new byte[]{'p', 0x7f}, bytes("low"));
+    this.store.put(new byte[]{'p', 0}, bytes("zero"));
+    this.store.put(new byte[]{'q'}, bytes("other"));
+    List<byte[][]> entries = this.store.scan(bytes("p"));
+    assertEquals(3, entries.size());
+    assertArrayEquals(bytes("zero"), entries.get(0)[1]);
+    assertArrayEquals(bytes("low"), entries.get(1)[1]);
+    assertArrayEquals(bytes("high"), entries.get(2)[1]);
+  }
+
+  @Test
+  public void rollbackTest() throws IOException {
+    for (int i = 0; i < 500; i++) {
+      this.store.put(bytes("a/" + i), bytes("committed"));
+    }
+    this.store.commit();
+    for (int i = 0; i < 2000; i++) {
+      this.store.put(bytes("a/" + i), bytes("rolled back " + "x".repeat(100)));
+    }
+    this.store.removePrefix(bytes("a/1"));
+    this.store.rollback();
+    assertEquals(500, this.store.scan(bytes("a/")).size());
+    for (byte[][] entry : this.store.scan(bytes("a/"))) {
+      assertArrayEquals(bytes("committed"), entry[1]);
+    }
+
+    this.store.put(bytes("b"), bytes("uncommitted"));
+    this.store.close();
+    this.store = PageStore.open(this.file);
+    assertNull(this.store.get(bytes("b")));
+    assertEquals(500, this.store.scan(bytes("a/")).size());
+  }
+
+  @Test
+  public void maxEntryTest() throws IOException {
+    int valueSize = PageStore.MAX_ENTRY_SIZE - 4 - 8;
+    for (int i = 0; i < 200; i++) {
+      byte[] value = new byte[valueSize];
+      Arrays.fill(value, (byte) i);
+      this.store.put(bytes(String.format("key%05d", i)), value);
+    }
+    this.store.commit();
+    this.store.close();
+    this.store = PageStore.open(this.file);
+    List<byte[][]> entries = this.store.scan(bytes("key"));
+    assertEquals(200, entries.size());
+    for (int i = 0; i < 200; i++) {
+      assertEquals(valueSize, entries.get(i)[1].length);
+      assertEquals((byte) i, entries.get(i)[1][valueSize - 1]);
+    }
+    try {
+      this.store.put(bytes("key00000"), new byte[valueSize + 1]);
+      fail("An entry larger than a quarter of a page was put.");
+    } catch (IllegalArgumentException e) {
+      assertEquals(valueSize, this.store.get(bytes("key00000")).length);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void notAStoreTest() throws IOException {
+    Path other = this.directory.resolve("other.db");
+    Files.write(other, new byte[PageStore.PAGE_SIZE * 2]);
+    PageStore.open(other);
+  }
+
+  @Test
+  public void recoveryTest() throws IOException {
+    for (int batch = 0; batch < 3; batch++) {
+      for (int i = 0; i < 100; i++) {
+        this.store.put(bytes("k" + batch + "/" + i), bytes("v" + batch));
+      }
+      this.store.commit();
+    }
+    Path crashed = crash("torn.db");
+    try (FileChannel log = FileChannel.open(Path.of(crashed + PageStore.LOG_EXTENSION),
+            StandardOpenOption.WRITE)) {
+      log.truncate(log.size() - 100);
+    }
+
+    try (PageStore recovered = PageStore.open(crashed)) {
+      assertEquals(100, recovered.scan(bytes("k0/")).size());
+      assertEquals(100, recovered.scan(bytes("k1/")).size());
+      assertEquals(0, recovered.scan(bytes("k2/")).size());
+      assertEquals(0, Files.size(Path.of(crashed + PageStore.LOG_EXTENSION)));
+    }
+    try (PageStore reopened = PageStore.open(crashed)) {
+      assertEquals(100, reopened.scan(bytes("k1/")).size());
+    }
+  }
+
+  @Test
+  public void corruptBatchTest() throws IOException {
+    this.store.put(bytes("first"), bytes("1"));
+    this.store.commit();
+    this.store.put(bytes("second"), bytes("2"));
+    this.store.commit();
+    Path crashed = crash("corrupt.db");
+    Path log = Path.of(crashed + PageStore.LOG_EXTENSION);
+    try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      long position = channel.size() - 20;
+      ByteBuffer one = ByteBuffer.allocate(1);
+      channel.read(one, position);
+      one.put(0, (byte) (one.get(0) ^ 0xff));
+      one.rewind();
+      channel.write(one, position);
+    }
+
+    try (PageStore recovered = PageStore.open(crashed)) {
+      assertArrayEquals(bytes("1"), recovered.get(bytes("first")));
+      assertNull(recovered.get(bytes("second")));
+    }
+  }
+
+  /**
+   * Copies the store and its log as a crash would leave them: the log of every batch is on the
+   * disk, but the store is cut back to its first two pages and its first leaf is lost.
+   */
+  private Path crash(String name) throws IOException {
+    Path crashed = this.directory.resolve(name);
+    Files.copy(this.file, crashed);
+    Files.copy(Path.of(this.file + PageStore.LOG_EXTENSION),
+            Path.of(crashed + PageStore.LOG_EXTENSION));
+    try (FileChannel channel = FileChannel.open(crashed, StandardOpenOption.WRITE)) {
+      channel.truncate(PageStore.PAGE_SIZE * 2L);
+      channel.write(ByteBuffer.allocate(PageStore.PAGE_SIZE), PageStore.PAGE_SIZE);
+    }
+    return crashed;
+  }
+
+  private static void assertSameEntries(TreeMap<String, String> expected, PageStore store)
+          throws IOException {
+    for (int user = 0; user < 20; user++) {
+      String prefix = "u" + user + "/";
+      List<String> keys = new ArrayList<>(expected.subMap(prefix, prefix + "\uffff").keySet());
+      List<byte[][]> entries = store.scan(bytes(prefix));
+      assertEquals(keys.size(), entries.size());
+      for (int i = 0; i < keys.size(); i++) {
+        assertArrayEquals(bytes(keys.get(i)), entries.get(i)[0]);
+        assertArrayEquals(bytes(expected.get(keys.get(i))), entries.get(i)[1]);
+      }
+    }
+    for (Map.Entry<String, String> entry : expected.entrySet()) {
+      assertArrayEquals(bytes(entry.getValue()), store.get(bytes(entry.getKey())));
+    }
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+}
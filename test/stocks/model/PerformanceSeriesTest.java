@@ -0,0 +1,123 @@
+package stocks.model;
+
+import jsonparser.JSONArray;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static stocks.model.PortfolioFixture.transaction;
+
+/**
+ * Tests the PerformanceSeries class, which values a portfolio on every trading day of a range and
+ * downsamples the series for charts.
+ */
+public class PerformanceSeriesTest {
+  private JSONArray portfolio;
+  private int[] lookups;
+
+  @Before
+  public void setUp() {
+    this.portfolio = new JSONArray();
+    this.portfolio.add(transaction("GOOG", "2020-01-02", "10", "BUY"));
+    this.portfolio.add(transaction("GOOG", "2021-06-01", "4", "SELL"));
+    this.lookups = new int[1];
+  }
+
+  @Test
+  public void dailyTest() {
+    int from = EpochDays.parse("2021-05-20");
+    int to = EpochDays.parse("2021-06-10");
+    PerformanceSeries series = PerformanceSeries.daily(this.portfolio, from, to, this::price);
+    TradingCalendar calendar = TradingCalendar.getDefault();
+    assertEquals(calendar.countTradingDays(from, to), series.size());
+    for (int i = 0; i < series.size(); i++) {
+      int day = series.getDay(i);
+      assertTrue(calendar.isTradingDay(day));
+      assertTrue(i == 0 || day > series.getDay(i - 1));
+      assertEquals((day < EpochDays.parse("2021-06-01") ? 10 : 6) * price("GOOG", day),
+              series.getValue(i), 1e-9);
+    }
+  }
+
+  @Test
+  public void missingPricesTest() {
+    int from = EpochDays.parse("2021-01-01");
+    int to = EpochDays.parse("2021-01-31");
+    PerformanceSeries series = PerformanceSeries.daily(this.portfolio, from, to,
+        (stockSymbol, day) -> day % 2 == 0 ? null : 1.0);
+    assertTrue(series.size() > 0);
+    for (int i = 0; i < series.size(); i++) {
+      assertEquals(1, series.getDay(i) % 2);
+    }
+  }
+
+  @Test
+  public void keptSeriesTest() {
+    JSONArray loaded = new JSONArray();
+    loaded.add(this.portfolio.get(0));
+    loaded.add(this.portfolio.get(1));
+    TransactionTable.load(loaded, PortfolioSnapshotCache.Source.of(
+            "res/users/test.db#user/flexible/performance", 1, 2));
+    int from = EpochDays.parse("2021-03-01");
+    int to = EpochDays.parse("2021-03-31");
+    TradingCalendar calendar = TradingCalendar.getDefault();
+
+    PerformanceSeries.daily(loaded, from, to, this::price);
+    assertEquals(calendar.countTradingDays(from, to), this.lookups[0]);
+    this.lookups[0] = 0;
+    PerformanceSeries inside = PerformanceSeries.daily(loaded, from + 7, to - 7, this::price);
+    assertEquals(0, this.lookups[0]);
+    assertEquals(calendar.countTradingDays(from + 7, to - 7), inside.size());
+
+    PerformanceSeries extended = PerformanceSeries.daily(loaded, from - 10, to + 10,
+        this::price);
+    assertEquals(calendar.countTradingDays(from - 10, from - 1)
+            + calendar.countTradingDays(to + 1, to + 10), this.lookups[0]);
+    assertEquals(calendar.countTradingDays(from - 10, to + 10), extended.size());
+    for (int i = 0; i < extended.size(); i++) {
+      assertEquals(10 * price("GOOG", extended.getDay(i)), extended.getValue(i), 1e-9);
+    }
+  }
+
+  @Test
+  public void downsampleTest() {
+    PerformanceSeries series = PerformanceSeries.daily(this.portfolio,
+            EpochDays.parse("2021-08-01"), EpochDays.parse("2023-07-31"),
+        (stockSymbol, day) -> day == EpochDays.parse("2022-03-15") ? 5000.0
+                : day == EpochDays.parse("2022-09-14") ? 1.0 : 100 + (day % 7));
+    int size = series.size();
+    PerformanceSeries reduced = series.downsample(40);
+    assertEquals(40, reduced.size());
+    assertEquals(series.getDay(0), reduced.getDay(0));
+    assertEquals(series.getValue(0), reduced.getValue(0), 0);
+    assertEquals(series.getDay(size - 1), reduced.getDay(39));
+    assertEquals(series.getValue(size - 1), reduced.getValue(39), 0);
+
+    boolean peak = false;
+    boolean trough = false;
+    for (int i = 0; i < reduced.size(); i++) {
+      assertTrue(i == 0 || reduced.getDay(i) > reduced.getDay(i - 1));
+      peak |= reduced.getDay(i) == EpochDays.parse("2022-03-15");
+      trough |= reduced.getDay(i) == EpochDays.parse("2022-09-14");
+    }
+    assertTrue(peak);
+    assertTrue(trough);
+  }
+
+  @Test
+  public void downsampleSmallSeriesTest() {
+    PerformanceSeries series = PerformanceSeries.daily(this.portfolio,
+            EpochDays.parse("2021-08-01"), EpochDays.parse("2021-08-31"), this::price);
+    assertSame(series, series.downsample(series.size()));
+    assertSame(series, series.downsample(series.size() + 10));
+    assertSame(series, series.downsample(2));
+    assertEquals(3, series.downsample(3).size());
+  }
+
+  private Double price(String stockSymbol, int day) {
+    this.lookups[0]++;
+    return 50 + (day % 31) * 0.5;
+  }
+}
@@ -0,0 +1,101 @@
+package stocks.model;
+
+import java.util.Random;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Builds the transactions and the random portfolios that the tests of the model are run on, as
+ * they are read from a portfolio file, with every field a string.
+ */
+final class PortfolioFixture {
+  static final String[] STOCKS = {"GOOG", "AAPL", "MSFT", "AMZN"};
+
+  private PortfolioFixture() {
+  }
+
+
+  /**
+   * Returns a transaction.
+   *
+   * @param stockName  the stock name.
+   * @param date       the transaction date.
+   * @param quantity   the quantity.
+   * @param price      the price.
+   * @param commission the commission.
+   * @param operation  BUY or SELL.
+   * @return the transaction.
+   */
+  static JSONObject transaction(String stockName, String date, String quantity, String price,
+          String commission, String operation) {
+    JSONObject transaction = new JSONObject();
+    transaction.put("stock_name", stockName);
+    transaction.put("transaction_date", date);
+    transaction.put("quantity", quantity);
+    transaction.put("price", price);
+    transaction.put("commission", commission);
+    transaction.put("operation", operation);
+    return transaction;
+  }
+
+
+  /**
+   * Returns a transaction at a price of 10 without commission.
+   *
+   * @param stockName the stock name.
+   * @param date      the transaction date.
+   * @param quantity  the quantity.
+   * @param operation BUY or SELL.
+   * @return the transaction.
+   */
+  static JSONObject transaction(String stockName, String date, String quantity,
+          String operation) {
+    return transaction(stockName, date, quantity, "10", "0", operation);
+  }
+
+
+  /**
+   * Returns a random portfolio of the stocks in STOCKS, dated in 2022. A third of the transactions
+   * are sales, which may sell more shares than are held.
+   *
+   * @param random  the source of the transactions.
+   * @param size    the number of transactions.
+   * @param ordered true for transactions on increasing dates, one per day at most, else false for
+   *                transactions in any order.
+   * @return the portfolio.
+   */
+  static JSONArray portfolio(Random random, int size, boolean ordered) {
+    int day = EpochDays.parse("2022-01-01");
+    JSONArray portfolio = new JSONArray();
+    for (int i = 0; i < size; i++) {
+      day = ordered ? day + 1 + random.nextInt(8)
+              : EpochDays.parse("2022-01-01") + random.nextInt(365);
+      portfolio.add(transaction(STOCKS[random.nextInt(STOCKS.length)], EpochDays.format(day),
+              String.valueOf(1 + random.nextInt(20)),
+              String.valueOf(Math.round(random.nextDouble() * 50000) / 100.0),
+              String.valueOf(random.nextInt(5) * 0.5), random.nextInt(3) == 0 ? "SELL" : "BUY"));
+    }
+    return portfolio;
+  }
+
+
+  /**
+   * Checks that two portfolios have the same transactions in the same order.
+   *
+   * @param expected the expected transactions.
+   * @param actual   the transactions to check.
+   */
+  static void assertSameTransactions(JSONArray expected, JSONArray actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      JSONObject first = (JSONObject) expected.get(i);
+      JSONObject second = (JSONObject) actual.get(i);
+      assertEquals(first.keySet(), second.keySet());
+      for (String key : first.keySet()) {
+        assertEquals(first.get(key), second.get(key));
+      }
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package stocks.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static stocks.model.PortfolioFixture.assertSameTransactions;
+
+/**
+ * Tests the PortfolioJournal class, which appends the transactions of a flexible portfolio to a
+ * journal next to its snapshot, and the compaction of the journal by the JsonDirectoryRepository.
+ */
+public class PortfolioJournalTest {
+  private static final String USER = "journaltest";
+
+  private Path directory;
+  private String path;
+
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("journal");
+    this.path = this.directory.resolve("portfolio.json").toString();
+    Files.writeString(Path.of(this.path), "{\"stocks\":[]}");
+    Files.createDirectories(Path.of("res/users/" + USER + "/" + PortfolioRepository.FLEXIBLE));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    PortfolioJournal.setSyncPolicy(PortfolioJournal.SyncPolicy.ALWAYS);
+    delete(this.directory);
+    delete(Path.of("res/users/" + USER));
+  }
+
+  @Test
+  public void appendAndReplayTest() throws IOException {
+    JSONArray portfolio = portfolio(0, 5);
+    PortfolioJournal.append(this.path, portfolio, 2);
+    JSONArray replayed = portfolio(0, 2);
+    assertEquals(3, PortfolioJournal.replay(this.path, replayed));
+    assertSameTransactions(portfolio, replayed);
+
+    PortfolioJournal.append(this.path, portfolio(0, 7), 5);
+    replayed = portfolio(0, 2);
+    assertEquals(5, PortfolioJournal.replay(this.path, replayed));
+    assertSameTransactions(portfolio(0, 7), replayed);
+  }
+
+  @Test
+  public void noJournalTest() throws IOException {
+    JSONArray portfolio = portfolio(0, 2);
+    assertEquals(0, PortfolioJournal.replay(this.path, portfolio));
+    assertEquals(2, portfolio.size());
+    assertFalse(PortfolioJournal.needsCompaction(this.path));
+  }
+
+  @Test
+  public void rewrittenSnapshotTest() throws IOException {
+    PortfolioJournal.append(this.path, portfolio(0, 3), 0);
+    Files.writeString(Path.of(this.path), "{\"stocks\":[ ]}");
+    assertEquals(0, PortfolioJournal.replay(this.path, new JSONArray()));
+
+    PortfolioJournal.append(this.path, portfolio(0, 5), 3);
+    JSONArray replayed = portfolio(0, 3);
+    assertEquals(2, PortfolioJournal.replay(this.path, replayed));
+    assertSameTransactions(portfolio(0, 5), replayed);
+  }
+
+  @Test
+  public void tornLastLineTest() throws IOException {
+    PortfolioJournal.append(this.path, portfolio(0, 2), 0);
+    Files.writeString(Path.of(this.path + PortfolioJournal.EXTENSION),
+            "{\"stock_name\":\"GO", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    JSONArray replayed = new JSONArray();
+    assertEquals(2, PortfolioJournal.replay(this.path, replayed));
+    assertSameTransactions(portfolio(0, 2), replayed);
+
+    PortfolioJournal.setSyncPolicy(PortfolioJournal.SyncPolicy.NEVER);
+    assertEquals(PortfolioJournal.SyncPolicy.NEVER, PortfolioJournal.getSyncPolicy());
+    PortfolioJournal.append(this.path, portfolio(0, 3), 2);
+    assertEquals(4, Files.readAllLines(Path.of(this.path + PortfolioJournal.EXTENSION)).size());
+
+    // The torn line was cut off, so it is not reported on every load.
+    PrintStream out = System.out;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+    try {
+      replayed = new JSONArray();
+      assertEquals(3, PortfolioJournal.replay(this.path, replayed));
+    } finally {
+      System.setOut(out);
+    }
+    assertEquals("", printed.toString(StandardCharsets.UTF_8));
+    assertSameTransactions(portfolio(0, 3), replayed);
+  }
+
+  @Test
+  public void periodicSyncTest() throws IOException, InterruptedException {
+    PortfolioJournal.setSyncPolicy(PortfolioJournal.SyncPolicy.ALWAYS);
+    long syncs = PortfolioJournal.getSyncCount();
+    PortfolioJournal.append(this.path, portfolio(0, 1), 0);
+    PortfolioJournal.append(this.path, portfolio(0, 2), 1);
+    assertEquals(syncs + 2, PortfolioJournal.getSyncCount());
+
+    PortfolioJournal.setSyncPolicy(PortfolioJournal.SyncPolicy.PERIODIC);
+    Thread.sleep(PortfolioJournal.SYNC_INTERVAL_MILLIS);
+    PortfolioJournal.append(this.path, portfolio(0, 3), 2);
+    PortfolioJournal.append(this.path, portfolio(0, 4), 3);
+    PortfolioJournal.append(this.path, portfolio(0, 5), 4);
+    assertEquals(syncs + 3, PortfolioJournal.getSyncCount());
+    Thread.sleep(PortfolioJournal.SYNC_INTERVAL_MILLIS);
+    PortfolioJournal.append(this.path, portfolio(0, 6), 5);
+    assertEquals(syncs + 4, PortfolioJournal.getSyncCount());
+
+    PortfolioJournal.setSyncPolicy(PortfolioJournal.SyncPolicy.NEVER);
+    PortfolioJournal.append(this.path, portfolio(0, 7), 6);
+    assertEquals(syncs + 4, PortfolioJournal.getSyncCount());
+    JSONArray replayed = new JSONArray();
+    assertEquals(7, PortfolioJournal.replay(this.path, replayed));
+    assertSameTransactions(portfolio(0, 7), replayed);
+  }
+
+  @Test
+  public void configuredSyncPolicyTest() {
+    String previous = System.getProperty(PortfolioJournal.SYNC_POLICY_PROPERTY);
+    PrintStream out = System.out;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+    try {
+      System.clearProperty(PortfolioJournal.SYNC_POLICY_PROPERTY);
+      assertEquals(PortfolioJournal.SyncPolicy.ALWAYS, PortfolioJournal.configuredSyncPolicy());
+      System.setProperty(PortfolioJournal.SYNC_POLICY_PROPERTY, " Periodic ");
+      assertEquals(PortfolioJournal.SyncPolicy.PERIODIC, PortfolioJournal.configuredSyncPolicy());
+      System.setProperty(PortfolioJournal.SYNC_POLICY_PROPERTY, "never");
+      assertEquals(PortfolioJournal.SyncPolicy.NEVER, PortfolioJournal.configuredSyncPolicy());
+      assertEquals("", printed.toString(StandardCharsets.UTF_8));
+
+      System.setProperty(PortfolioJournal.SYNC_POLICY_PROPERTY, "sometimes");
+      assertEquals(PortfolioJournal.SyncPolicy.ALWAYS, PortfolioJournal.configuredSyncPolicy());
+      assertTrue(printed.toString(StandardCharsets.UTF_8)
+              .startsWith("Invalid " + PortfolioJournal.SYNC_POLICY_PROPERTY));
+    } finally {
+      System.setOut(out);
+      if (previous == null) {
+        System.clearProperty(PortfolioJournal.SYNC_POLICY_PROPERTY);
+      } else {
+        System.setProperty(PortfolioJournal.SYNC_POLICY_PROPERTY, previous);
+      }
+    }
+  }
+
+  @Test
+  public void needsCompactionTest() throws IOException {
+    JSONArray portfolio = portfolio(0, 10);
+    PortfolioJournal.append(this.path, portfolio, 0);
+    assertFalse(PortfolioJournal.needsCompaction(this.path));
+    int size = 10;
+    while (new File(this.path + PortfolioJournal.EXTENSION).length()
+            <= PortfolioJournal.MIN_COMPACTION_LENGTH) {
+      assertFalse(PortfolioJournal.needsCompaction(this.path));
+      PortfolioJournal.append(this.path, portfolio(0, size + 100), size);
+      size += 100;
+    }
+    assertTrue(PortfolioJournal.needsCompaction(this.path));
+    JSONArray replayed = new JSONArray();
+    assertEquals(size, PortfolioJournal.replay(this.path, replayed));
+    assertSameTransactions(portfolio(0, size), replayed);
+  }
+
+  @Test
+  public void compactionTest() throws IOException {
+    PortfolioRepository repository = new JsonDirectoryRepository();
+    String file = "res/users/" + USER + "/" + PortfolioRepository.FLEXIBLE + "/compact.json";
+    Path journal = Path.of(file + PortfolioJournal.EXTENSION);
+    repository.write(USER, PortfolioRepository.FLEXIBLE, "compact.json", portfolio(0, 3));
+    assertEquals(3, repository.load(USER, PortfolioRepository.FLEXIBLE, "compact.json").size());
+
+    int size = 3;
+    boolean compacted = false;
+    while (!compacted) {
+      repository.append(USER, PortfolioRepository.FLEXIBLE, "compact.json",
+              portfolio(0, size + 50), size);
+      size += 50;
+      JSONArray loaded = repository.load(USER, PortfolioRepository.FLEXIBLE, "compact.json");
+      assertSameTransactions(portfolio(0, size), loaded);
+      compacted = !Files.exists(journal);
+      assertTrue(size < 10000);
+    }
+    assertTrue(new File(file).length() > PortfolioJournal.MIN_COMPACTION_LENGTH);
+    assertEquals(0, PortfolioJournal.replay(file, new JSONArray()));
+
+    repository.append(USER, PortfolioRepository.FLEXIBLE, "compact.json",
+            portfolio(0, size + 1), size);
+    assertTrue(Files.exists(journal));
+    assertSameTransactions(portfolio(0, size + 1),
+            repository.load(USER, PortfolioRepository.FLEXIBLE, "compact.json"));
+  }
+
+  private static JSONArray portfolio(int from, int to) {
+    JSONArray portfolio = new JSONArray();
+    for (int i = from; i < to; i++) {
+      JSONObject transaction = new JSONObject();
+      transaction.put("stock_name", i % 3 == 0 ? "GOOG" : "AAPL");
+      transaction.put("transaction_date", EpochDays.format(EpochDays.parse("2022-01-03") + i));
+      transaction.put("quantity", String.valueOf(1 + i % 7));
+      transaction.put("price", String.valueOf(100 + i * 0.25));
+      transaction.put("commission", "1.5");
+      transaction.put("operation", i % 4 == 3 ? "SELL" : "BUY");
+      portfolio.add(transaction);
+    }
+    return portfolio;
+  }
+
+  private static void delete(Path root) throws IOException {
+    if (!Files.exists(root)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(root)) {
+      files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+    }
+  }
+}
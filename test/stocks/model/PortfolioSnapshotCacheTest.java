@@ -0,0 +1,133 @@
+package stocks.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the PortfolioSnapshotCache class, which caches the value and the cost basis of a portfolio
+ * on a date for one version of the portfolio.
+ */
+public class PortfolioSnapshotCacheTest {
+  private static final String PATH = "res/users/test.db#user/flexible/p";
+
+  private PortfolioSnapshotCache cache;
+  private PortfolioSnapshotCache.Source source;
+
+  @Before
+  public void setUp() {
+    this.cache = new PortfolioSnapshotCache(3);
+    this.source = PortfolioSnapshotCache.Source.of(PATH, 1, 4);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidSizeTest() {
+    new PortfolioSnapshotCache(0);
+  }
+
+  @Test
+  public void hitAndMissTest() {
+    assertNull(this.cache.getValue(this.source, "2022-10-03"));
+    this.cache.putValue(this.source, "2022-10-03", 125.5, this.cache.getPriceGeneration());
+    assertEquals(125.5, this.cache.getValue(this.source, "2022-10-03"), 0);
+    assertEquals(125.5, this.cache.getValue(PortfolioSnapshotCache.Source.of(PATH, 1, 4),
+            "2022-10-03"), 0);
+    assertNull(this.cache.getCostBasis(this.source, "2022-10-03"));
+    this.cache.putCostBasis(this.source, "2022-10-03", 80);
+    assertEquals(80, this.cache.getCostBasis(this.source, "2022-10-03"), 0);
+    assertEquals(125.5, this.cache.getValue(this.source, "2022-10-03"), 0);
+
+    assertEquals(4, this.cache.getHitCount());
+    assertEquals(2, this.cache.getMissCount());
+    assertEquals(4 / 6.0, this.cache.getHitRate(), 1e-12);
+    assertEquals("Portfolio snapshot cache: 4 hits, 2 misses, 66.7% hit rate.",
+            this.cache.getStatistics());
+  }
+
+  @Test
+  public void noSourceTest() {
+    this.cache.putValue(null, "2022-10-03", 1, this.cache.getPriceGeneration());
+    this.cache.putCostBasis(null, "2022-10-03", 1);
+    assertNull(this.cache.getValue(null, "2022-10-03"));
+    assertNull(this.cache.getCostBasis(null, "2022-10-03"));
+    assertEquals(0, this.cache.getHitCount() + this.cache.getMissCount());
+    assertEquals(0, this.cache.getHitRate(), 0);
+  }
+
+  @Test
+  public void newVersionTest() {
+    this.cache.putValue(this.source, "2022-10-03", 10, this.cache.getPriceGeneration());
+    this.cache.putCostBasis(this.source, "2022-10-03", 5);
+    PortfolioSnapshotCache.Source next = PortfolioSnapshotCache.Source.of(PATH, 2, 5);
+    assertFalse(this.source.sameVersion(next));
+    assertNull(this.cache.getValue(next, "2022-10-03"));
+    assertNull(this.cache.getCostBasis(this.source, "2022-10-03"));
+  }
+
+  @Test
+  public void invalidatePathTest() {
+    PortfolioSnapshotCache.Source other = PortfolioSnapshotCache.Source.of(PATH + "2", 1, 4);
+    this.cache.putCostBasis(this.source, "2022-10-03", 5);
+    this.cache.putCostBasis(other, "2022-10-03", 6);
+    this.cache.invalidate(PATH);
+    assertNull(this.cache.getCostBasis(this.source, "2022-10-03"));
+    assertEquals(6, this.cache.getCostBasis(other, "2022-10-03"), 0);
+  }
+
+  @Test
+  public void invalidateValuesTest() {
+    long generation = this.cache.getPriceGeneration();
+    this.cache.putValue(this.source, "2022-10-03", 10, generation);
+    this.cache.putCostBasis(this.source, "2022-10-03", 5);
+    this.cache.invalidateValues();
+    assertNull(this.cache.getValue(this.source, "2022-10-03"));
+    assertEquals(5, this.cache.getCostBasis(this.source, "2022-10-03"), 0);
+
+    this.cache.putValue(this.source, "2022-10-04", 11, generation);
+    assertNull(this.cache.getValue(this.source, "2022-10-04"));
+    this.cache.putValue(this.source, "2022-10-04", 12, this.cache.getPriceGeneration());
+    assertEquals(12, this.cache.getValue(this.source, "2022-10-04"), 0);
+  }
+
+  @Test
+  public void evictionTest() {
+    this.cache.putCostBasis(this.source, "2022-10-03", 3);
+    this.cache.putCostBasis(this.source, "2022-10-04", 4);
+    this.cache.putCostBasis(this.source, "2022-10-05", 5);
+    assertEquals(3, this.cache.getCostBasis(this.source, "2022-10-03"), 0);
+    this.cache.putCostBasis(this.source, "2022-10-06", 6);
+    assertNull(this.cache.getCostBasis(this.source, "2022-10-04"));
+    assertEquals(3, this.cache.getCostBasis(this.source, "2022-10-03"), 0);
+    assertEquals(5, this.cache.getCostBasis(this.source, "2022-10-05"), 0);
+    assertEquals(6, this.cache.getCostBasis(this.source, "2022-10-06"), 0);
+  }
+
+  @Test
+  public void fileSourceTest() throws IOException {
+    File file = File.createTempFile("portfolio", ".json");
+    try {
+      Files.writeString(file.toPath(), "{\"stocks\":[]}");
+      PortfolioSnapshotCache.Source first = PortfolioSnapshotCache.Source.of(file.getPath());
+      assertTrue(first.exists());
+      assertTrue(first.isFile());
+      assertTrue(first.sameVersion(PortfolioSnapshotCache.Source.of(file.getPath())));
+      this.cache.putCostBasis(first, "2022-10-03", 5);
+
+      Files.writeString(file.toPath(), "{\"stocks\":[ ]}");
+      PortfolioSnapshotCache.Source second = PortfolioSnapshotCache.Source.of(file.getPath());
+      assertFalse(first.sameVersion(second));
+      assertNull(this.cache.getCostBasis(second, "2022-10-03"));
+    } finally {
+      file.delete();
+    }
+    assertFalse(PortfolioSnapshotCache.Source.of(file.getPath()).exists());
+    assertFalse(PortfolioSnapshotCache.Source.of(PATH, 1, 4).isFile());
+  }
+}
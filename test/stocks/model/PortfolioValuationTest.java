@@ -0,0 +1,109 @@
+package stocks.model;
+
+import java.io.IOException;
+import java.util.Random;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static stocks.model.PortfolioFixture.portfolio;
+import static stocks.model.PortfolioFixture.transaction;
+
+/**
+ * Tests the PortfolioValuation class against valuing every transaction of a portfolio on every
+ * date, as the value of a portfolio was computed before.
+ */
+public class PortfolioValuationTest {
+  @Test
+  public void valuesOnTest() {
+    JSONArray portfolio = new JSONArray();
+    portfolio.add(transaction("GOOG", "2022-10-03", "10", "BUY"));
+    portfolio.add(transaction("AAPL", "2022-10-05", "4", "BUY"));
+    portfolio.add(transaction("GOOG", "2022-10-07", "3", "SELL"));
+    int[] days = {EpochDays.parse("2022-10-07"), EpochDays.parse("2022-10-02"),
+      EpochDays.parse("2022-10-04")};
+    double[] values = new PortfolioValuation(portfolio).valuesOn(days,
+        (stockSymbol, day) -> stockSymbol.equals("GOOG") ? 100.0 : 20.0);
+    assertEquals(7 * 100 + 4 * 20, values[0], 1e-9);
+    assertEquals(0, values[1], 0);
+    assertEquals(1000, values[2], 1e-9);
+  }
+
+  @Test
+  public void missingPriceTest() {
+    JSONArray portfolio = new JSONArray();
+    portfolio.add(transaction("GOOG", "2022-10-03", "10", "BUY"));
+    portfolio.add(transaction("AAPL", "2022-10-05", "4", "BUY"));
+    int[] days = {EpochDays.parse("2022-10-04"), EpochDays.parse("2022-10-05"),
+      EpochDays.parse("2022-10-06")};
+    double[] values = new PortfolioValuation(portfolio).valuesOn(days,
+        (stockSymbol, day) -> {
+          if (stockSymbol.equals("AAPL") && day == EpochDays.parse("2022-10-06")) {
+            throw new IOException("No price.");
+          }
+          return stockSymbol.equals("GOOG") ? 100.0 : day == EpochDays.parse("2022-10-05")
+                  ? -1 : null;
+        });
+    assertEquals(1000, values[0], 0);
+    assertEquals(-1, values[1], 0);
+    assertEquals(-1, values[2], 0);
+  }
+
+  @Test
+  public void matchesBaselineTest() {
+    Random random = new Random(17);
+    for (int i = 0; i < 100; i++) {
+      JSONArray portfolio = portfolio(random, 1 + random.nextInt(80), false);
+      int[] days = new int[1 + random.nextInt(40)];
+      for (int d = 0; d < days.length; d++) {
+        days[d] = EpochDays.parse("2021-12-20") + random.nextInt(400);
+      }
+      double[] values = new PortfolioValuation(portfolio).valuesOn(days,
+          PortfolioValuationTest::price);
+      for (int d = 0; d < days.length; d++) {
+        assertEquals(baselineValue(portfolio, days[d]), values[d], 1e-6);
+      }
+    }
+  }
+
+  @Test
+  public void valuesOfTest() {
+    Random random = new Random(19);
+    JSONArray[] portfolios = new JSONArray[9];
+    for (int i = 0; i < portfolios.length; i++) {
+      portfolios[i] = i == 4 ? null : portfolio(random, 1 + random.nextInt(50), false);
+    }
+    int[] days = {EpochDays.parse("2022-03-01"), EpochDays.parse("2022-01-15"),
+      EpochDays.parse("2022-12-31")};
+    double[][] values = PortfolioValuation.valuesOf(portfolios, days,
+        PortfolioValuationTest::price);
+    for (int i = 0; i < portfolios.length; i++) {
+      for (int d = 0; d < days.length; d++) {
+        assertEquals(i == 4 ? -1 : baselineValue(portfolios[i], days[d]), values[i][d], 1e-6);
+      }
+    }
+  }
+
+  /**
+   * The value as it was computed before: every transaction up to the date is valued at the price of
+   * its stock on that date.
+   */
+  private static double baselineValue(JSONArray stocksDataArray, int day) {
+    double portfolioValue = 0;
+    for (int i = 0; i < stocksDataArray.size(); i++) {
+      JSONObject temp = (JSONObject) stocksDataArray.get(i);
+      if (EpochDays.parse((String) temp.get("transaction_date")) <= day) {
+        double price = price((String) temp.get("stock_name"), day);
+        double quantity = Double.parseDouble((String) temp.get("quantity"));
+        portfolioValue += temp.get("operation").equals("SELL") ? -price * quantity
+                : price * quantity;
+      }
+    }
+    return portfolioValue;
+  }
+
+  private static Double price(String stockSymbol, int day) {
+    return 10 + stockSymbol.charAt(0) + (day % 97) * 0.37;
+  }
+}
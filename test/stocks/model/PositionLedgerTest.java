@@ -0,0 +1,148 @@
+package stocks.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static stocks.model.PortfolioFixture.portfolio;
+import static stocks.model.PortfolioFixture.transaction;
+
+/**
+ * Tests the PositionLedger class against the scan over every pair of transactions that the
+ * composition of a portfolio was computed with before.
+ */
+public class PositionLedgerTest {
+  private static final String[] FIELDS = {"stock_name", "quantity", "transaction_date", "price",
+    "last_transaction_date", "avg_price", "commission"};
+
+  @Test
+  public void singleStockTest() {
+    JSONArray portfolio = new JSONArray();
+    portfolio.add(transaction("GOOG", "2022-10-03", "10", "100.5", "1.5", "BUY"));
+    portfolio.add(transaction("GOOG", "2022-10-10", "5", "110.25", "1.5", "BUY"));
+    portfolio.add(transaction("GOOG", "2022-10-17", "12", "120", "1.5", "SELL"));
+    PositionLedger ledger = new PositionLedger(portfolio);
+
+    assertEquals(0, ledger.getComposition(EpochDays.parse("2022-10-02")).size());
+    JSONObject holding = (JSONObject) ledger.getComposition(EpochDays.parse("2022-10-12")).get(0);
+    assertEquals("15.0", holding.get("quantity"));
+    assertEquals("103.75", holding.get("avg_price"));
+    assertEquals("2022-10-03", holding.get("transaction_date"));
+    assertEquals("2022-10-10", holding.get("last_transaction_date"));
+    assertEquals("100.5", holding.get("price"));
+    holding = (JSONObject) ledger.getComposition(EpochDays.parse("2022-10-17")).get(0);
+    assertEquals("3.0", holding.get("quantity"));
+    assertEquals("2022-10-17", holding.get("last_transaction_date"));
+  }
+
+  @Test
+  public void soldOutTest() {
+    JSONArray portfolio = new JSONArray();
+    portfolio.add(transaction("AAPL", "2022-10-03", "4", "150", "1.5", "BUY"));
+    portfolio.add(transaction("MSFT", "2022-10-04", "2", "250", "1.5", "BUY"));
+    portfolio.add(transaction("AAPL", "2022-10-05", "4", "155", "1.5", "SELL"));
+    JSONArray composition = new PositionLedger(portfolio)
+            .getComposition(EpochDays.parse("2022-10-05"));
+    assertEquals(1, composition.size());
+    assertEquals("MSFT", ((JSONObject) composition.get(0)).get("stock_name"));
+  }
+
+  @Test
+  public void orderedPortfolioTest() {
+    Random random = new Random(3);
+    for (int i = 0; i < 50; i++) {
+      assertSameCompositions(portfolio(random, 1 + random.nextInt(60), true), random);
+    }
+  }
+
+  @Test
+  public void unorderedPortfolioTest() {
+    Random random = new Random(5);
+    for (int i = 0; i < 50; i++) {
+      assertSameCompositions(portfolio(random, 1 + random.nextInt(60), false), random);
+    }
+  }
+
+  private static void assertSameCompositions(JSONArray portfolio, Random random) {
+    PositionLedger ledger = new PositionLedger(portfolio);
+    int first = EpochDays.parse("2022-01-01");
+    for (int i = 0; i < 20; i++) {
+      int day = first - 5 + random.nextInt(380);
+      JSONArray expected = baselineComposition(portfolio, day);
+      JSONArray actual = ledger.getComposition(day);
+      assertEquals(expected.size(), actual.size());
+      for (int row = 0; row < expected.size(); row++) {
+        for (String field : FIELDS) {
+          assertEquals(field + " on " + EpochDays.format(day),
+                  ((JSONObject) expected.get(row)).get(field),
+                  ((JSONObject) actual.get(row)).get(field));
+        }
+      }
+    }
+  }
+
+  /**
+   * The composition as it was computed before the ledger: for the first transaction of every stock
+   * up to the date, every other transaction of the stock up to the date is applied to it.
+   */
+  private static JSONArray baselineComposition(JSONArray jsonArray, int day) {
+    JSONArray resultJsonArray = new JSONArray();
+    List<String> processedStocks = new ArrayList<>();
+    for (int index = 0; index < jsonArray.size(); index++) {
+      JSONObject existingObject = (JSONObject) jsonArray.get(index);
+      String stockName = (String) existingObject.get("stock_name");
+      String transactionDateString = (String) existingObject.get("transaction_date");
+      int transactionDay = EpochDays.parse(transactionDateString);
+      double totalQuantity = Double.parseDouble((String) existingObject.get("quantity"));
+      double price = Double.parseDouble((String) existingObject.get("price"));
+      String firstTransactionDateString = transactionDateString;
+      String lastTransactionDateString = transactionDateString;
+      double avgPrice = price;
+      if (transactionDay > day || processedStocks.contains(stockName)) {
+        continue;
+      }
+      for (int i = 0; i < jsonArray.size(); i++) {
+        JSONObject newObject = (JSONObject) jsonArray.get(i);
+        String newTransactionDateString = (String) newObject.get("transaction_date");
+        int newDay = EpochDays.parse(newTransactionDateString);
+        if (i == index || newDay > day || !newObject.get("stock_name").equals(stockName)) {
+          continue;
+        }
+        if (newDay < transactionDay) {
+          firstTransactionDateString = newTransactionDateString;
+        } else if (newDay > transactionDay) {
+          lastTransactionDateString = newTransactionDateString;
+        }
+        double newQuantity = Double.parseDouble((String) newObject.get("quantity"));
+        if (newObject.get("operation").equals("BUY")) {
+          double oldQuantity = totalQuantity;
+          totalQuantity += newQuantity;
+          totalQuantity = Math.round(totalQuantity * 100.0) / 100.0;
+          double newPrice = Double.parseDouble((String) newObject.get("price"));
+          avgPrice = ((avgPrice * oldQuantity) + (newPrice * newQuantity)) / totalQuantity;
+          avgPrice = Math.round(avgPrice * 100.0) / 100.0;
+        } else {
+          totalQuantity -= newQuantity;
+          totalQuantity = Math.round(totalQuantity * 100.0) / 100.0;
+        }
+      }
+      processedStocks.add(stockName);
+      if (totalQuantity > 0) {
+        JSONObject temp = new JSONObject();
+        temp.put("stock_name", stockName);
+        temp.put("quantity", String.valueOf(totalQuantity));
+        temp.put("transaction_date", firstTransactionDateString);
+        temp.put("price", String.valueOf(price));
+        temp.put("last_transaction_date", lastTransactionDateString);
+        temp.put("avg_price", String.valueOf(avgPrice));
+        temp.put("commission", String.valueOf(existingObject.get("commission")));
+        resultJsonArray.add(temp);
+      }
+    }
+    return resultJsonArray;
+  }
+}
@@ -0,0 +1,102 @@
+package stocks.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the PriceCoverage class, which decides whether a price lookup can be answered from a local
+ * price series without calling the API.
+ */
+public class PriceCoverageTest {
+  private static final String[] DATES = {"2022-11-17", "2022-11-18", "2022-11-21", "2022-11-22",
+      "2022-11-23", "2022-11-25"};
+
+  @Test
+  public void noSeriesTest() {
+    int day = EpochDays.parse("2022-11-21");
+    assertFalse(PriceCoverage.covers(null, day));
+    assertFalse(PriceCoverage.covers(new ArrayPriceSeries(new int[0], new double[0], 0), day));
+    assertFalse(PriceCoverage.covers(
+            new ArrayPriceSeries(new int[0], new double[0], 0).withCoverage(day), day));
+  }
+
+  @Test
+  public void coversTest() {
+    ArrayPriceSeries series = series(DATES);
+    assertTrue(PriceCoverage.covers(series, day("2022-11-01")));
+    assertTrue(PriceCoverage.covers(series, day("2022-11-20")));
+    assertTrue(PriceCoverage.covers(series, day("2022-11-25")));
+
+    // The series is complete through its last trading day, a Friday, so the weekend is covered.
+    assertTrue(PriceCoverage.covers(series, day("2022-11-26")));
+    assertTrue(PriceCoverage.covers(series, day("2022-11-27")));
+    assertFalse(PriceCoverage.covers(series, day("2022-11-28")));
+    assertFalse(PriceCoverage.covers(series, day("2022-12-31")));
+  }
+
+  @Test
+  public void holidayTest() {
+    // A series complete through the day before Thanksgiving also covers Thanksgiving.
+    ArrayPriceSeries series = series("2022-11-21", "2022-11-22", "2022-11-23");
+    assertTrue(PriceCoverage.covers(series, day("2022-11-24")));
+    assertFalse(PriceCoverage.covers(series, day("2022-11-25")));
+
+    // A series complete through a Saturday covers the weekend and the holiday that follows.
+    series = series("2022-12-22", "2022-12-23").withCoverage(day("2022-12-24"));
+    assertTrue(PriceCoverage.covers(series, day("2022-12-26")));
+    assertFalse(PriceCoverage.covers(series, day("2022-12-27")));
+  }
+
+  @Test
+  public void coveredThroughTest() {
+    ArrayPriceSeries series = series(DATES).withCoverage(day("2022-11-29"));
+    assertTrue(PriceCoverage.covers(series, day("2022-11-29")));
+    assertFalse(PriceCoverage.covers(series, day("2022-11-30")));
+  }
+
+  @Test
+  public void resolveTest() {
+    ArrayPriceSeries series = series(DATES);
+    assertEquals(102, PriceCoverage.resolve(series, day("2022-11-21"), false), 0);
+    assertEquals(102, PriceCoverage.resolve(series, day("2022-11-21"), true), 0);
+
+    // A weekend or a holiday resolves to the next trading day, or -1 for the last valid price.
+    assertEquals(102, PriceCoverage.resolve(series, day("2022-11-19"), false), 0);
+    assertEquals(-1, PriceCoverage.resolve(series, day("2022-11-19"), true), 0);
+    assertEquals(105, PriceCoverage.resolve(series, day("2022-11-24"), false), 0);
+    assertEquals(-1, PriceCoverage.resolve(series, day("2022-11-24"), true), 0);
+
+    // A date before the first record resolves to the first price.
+    assertEquals(100, PriceCoverage.resolve(series, day("2022-11-01"), false), 0);
+  }
+
+  @Test
+  public void noLaterTradingDayTest() {
+    // The weekend after the last trading day resolves to the last price.
+    ArrayPriceSeries series = series(DATES).withCoverage(day("2022-11-27"));
+    assertEquals(105, PriceCoverage.resolve(series, day("2022-11-26"), false), 0);
+    assertEquals(105, PriceCoverage.resolve(series, day("2022-11-27"), false), 0);
+    assertEquals(-1, PriceCoverage.resolve(series, day("2022-11-27"), true), 0);
+
+    ArrayPriceSeries empty = new ArrayPriceSeries(new int[0], new double[0], 0);
+    assertNull(PriceCoverage.resolve(empty, day("2022-11-27"), false));
+  }
+
+  private static ArrayPriceSeries series(String... dates) {
+    int[] days = new int[dates.length];
+    double[] closes = new double[dates.length];
+    for (int i = 0; i < dates.length; i++) {
+      days[i] = day(dates[i]);
+      closes[i] = 100 + i;
+    }
+    return new ArrayPriceSeries(days, closes, dates.length);
+  }
+
+  private static int day(String date) {
+    return EpochDays.parse(date);
+  }
+}
@@ -0,0 +1,77 @@
+package stocks.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the PricePrefetcher class, which loads the price series of many symbols in the background
+ * and loads a symbol only once while it is pending.
+ */
+public class PricePrefetcherTest {
+
+  @Test
+  public void prefetchTest() throws Exception {
+    PricePrefetcher prefetcher = new PricePrefetcher(2);
+    List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+    prefetcher.prefetch(List.of("A", "B", "C"), loaded::add).get(5, TimeUnit.SECONDS);
+    Collections.sort(loaded);
+    assertEquals(List.of("A", "B", "C"), loaded);
+    assertEquals(0, prefetcher.getPendingCount());
+
+    // A finished load is not shared with a later prefetch.
+    prefetcher.prefetch(List.of("A"), loaded::add).get(5, TimeUnit.SECONDS);
+    assertEquals(4, loaded.size());
+  }
+
+  @Test
+  public void failedLoadTest() throws Exception {
+    PricePrefetcher prefetcher = new PricePrefetcher(2);
+    prefetcher.prefetch(List.of("A", "B"), stockSymbol -> {
+      throw new IllegalArgumentException("Invalid API call.");
+    }).get(5, TimeUnit.SECONDS);
+    assertEquals(0, prefetcher.getPendingCount());
+  }
+
+  @Test
+  public void waitsForPendingLoadTest() throws Exception {
+    PricePrefetcher prefetcher = new PricePrefetcher(2);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch gate = new CountDownLatch(1);
+    List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+    CompletableFuture<Void> first = prefetcher.prefetch(List.of("A"), stockSymbol -> {
+      started.countDown();
+      try {
+        gate.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      loaded.add("first " + stockSymbol);
+    });
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    // A is still loading, so the second prefetch does not load it again but waits for it.
+    CompletableFuture<Void> second = prefetcher.prefetch(List.of("A", "B"),
+        stockSymbol -> loaded.add("second " + stockSymbol));
+    for (int i = 0; i < 5000 && !loaded.contains("second B"); i++) {
+      Thread.sleep(1);
+    }
+    assertEquals(List.of("second B"), loaded);
+    assertFalse(second.isDone());
+    assertEquals(1, prefetcher.getPendingCount());
+
+    gate.countDown();
+    second.get(5, TimeUnit.SECONDS);
+    first.get(5, TimeUnit.SECONDS);
+    assertEquals(List.of("second B", "first A"), loaded);
+    assertEquals(0, prefetcher.getPendingCount());
+  }
+}
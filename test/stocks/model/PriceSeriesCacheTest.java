@@ -0,0 +1,156 @@
+package stocks.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the PriceSeriesCache class, a least recently used cache of price series weighted by the
+ * length of each series.
+ */
+public class PriceSeriesCacheTest {
+  private String maxBytes;
+
+  @Before
+  public void setUp() {
+    this.maxBytes = System.getProperty(PriceSeriesCache.MAX_BYTES_PROPERTY);
+  }
+
+  @After
+  public void tearDown() {
+    if (this.maxBytes == null) {
+      System.clearProperty(PriceSeriesCache.MAX_BYTES_PROPERTY);
+    } else {
+      System.setProperty(PriceSeriesCache.MAX_BYTES_PROPERTY, this.maxBytes);
+    }
+  }
+
+  @Test
+  public void weightedEvictionTest() {
+    long small = weight(10);
+    PriceSeriesCache cache = new PriceSeriesCache(3 * small);
+    PriceSeriesCache.Entry first = entry(10);
+    cache.put("A", first);
+    cache.put("B", entry(10));
+    cache.put("C", entry(10));
+    assertEquals(3 * small, cache.getCurrentBytes());
+    assertEquals(0, cache.getEvictionCount());
+
+    // A was used last, so B is the least recently used entry.
+    assertSame(first, cache.get("A"));
+    cache.put("D", entry(10));
+    assertNull(cache.get("B"));
+    assertSame(first, cache.get("A"));
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals(3 * small, cache.getCurrentBytes());
+
+    // A long series takes the room of more than one short series.
+    cache.put("E", entry(20));
+    assertNull(cache.get("C"));
+    assertNull(cache.get("D"));
+    assertSame(first, cache.get("A"));
+    assertEquals(3, cache.getEvictionCount());
+    assertEquals(small + weight(20), cache.getCurrentBytes());
+  }
+
+  @Test
+  public void oversizedEntryTest() {
+    PriceSeriesCache cache = new PriceSeriesCache(weight(10));
+    cache.put("A", entry(5));
+    PriceSeriesCache.Entry large = entry(100);
+    cache.put("B", large);
+    assertSame(large, cache.get("B"));
+    assertNull(cache.get("A"));
+    assertEquals(weight(100), cache.getCurrentBytes());
+  }
+
+  @Test
+  public void replaceAndRemoveTest() {
+    PriceSeriesCache cache = new PriceSeriesCache(weight(100));
+    cache.put("A", entry(10));
+    cache.put("A", entry(30));
+    assertEquals(weight(30), cache.getCurrentBytes());
+    cache.put("B", new PriceSeriesCache.Entry(null, 0, 0));
+    assertEquals(weight(30) + weight(0), cache.getCurrentBytes());
+    cache.remove("A");
+    cache.remove("missing");
+    assertEquals(weight(0), cache.getCurrentBytes());
+    assertEquals(0, cache.getEvictionCount());
+  }
+
+  @Test
+  public void countersTest() {
+    PriceSeriesCache cache = new PriceSeriesCache(weight(10));
+    assertNull(cache.get("A"));
+    cache.put("A", entry(10));
+    cache.get("A");
+    cache.get("A");
+    assertNull(cache.get("B"));
+    cache.put("B", entry(10));
+    assertEquals(2, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(1, cache.getEvictionCount());
+    assertEquals("PriceSeriesCache[entries=1, bytes=" + weight(10) + "/" + weight(10)
+            + ", hits=2, misses=2, evictions=1]", cache.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidBudgetTest() {
+    new PriceSeriesCache(0);
+  }
+
+  @Test
+  public void configuredMaxBytesTest() {
+    PrintStream out = System.out;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+    try {
+      System.clearProperty(PriceSeriesCache.MAX_BYTES_PROPERTY);
+      assertEquals(PriceSeriesCache.DEFAULT_MAX_BYTES, PriceSeriesCache.configuredMaxBytes());
+      System.setProperty(PriceSeriesCache.MAX_BYTES_PROPERTY, "1048576");
+      assertEquals(1048576, PriceSeriesCache.configuredMaxBytes());
+      System.setProperty(PriceSeriesCache.MAX_BYTES_PROPERTY, " 4096 ");
+      assertEquals(4096, PriceSeriesCache.configuredMaxBytes());
+      assertEquals("", printed.toString(StandardCharsets.UTF_8));
+
+      for (String invalid : new String[]{"0", "-1", "64MB", "", "99999999999999999999"}) {
+        System.setProperty(PriceSeriesCache.MAX_BYTES_PROPERTY, invalid);
+        assertEquals(PriceSeriesCache.DEFAULT_MAX_BYTES, PriceSeriesCache.configuredMaxBytes());
+      }
+    } finally {
+      System.setOut(out);
+    }
+    assertEquals(5, printed.toString(StandardCharsets.UTF_8).split("\n").length);
+    for (String line : printed.toString(StandardCharsets.UTF_8).split("\n")) {
+      assertEquals("Invalid " + PriceSeriesCache.MAX_BYTES_PROPERTY
+              + ", using the default price cache size.", line.trim());
+    }
+  }
+
+  /**
+   * The weight of an entry with a series of a number of days, as the cache counts it.
+   */
+  private static long weight(int days) {
+    PriceSeriesCache cache = new PriceSeriesCache(Long.MAX_VALUE);
+    cache.put("key", days == 0 ? new PriceSeriesCache.Entry(null, 0, 0) : entry(days));
+    return cache.getCurrentBytes();
+  }
+
+  private static PriceSeriesCache.Entry entry(int days) {
+    int first = EpochDays.parse("2022-01-03");
+    int[] epochDays = new int[days];
+    double[] closes = new double[days];
+    for (int i = 0; i < days; i++) {
+      epochDays[i] = first + i;
+      closes[i] = 100 + i;
+    }
+    return new PriceSeriesCache.Entry(new ArrayPriceSeries(epochDays, closes, days), 0, 0);
+  }
+}
@@ -0,0 +1,212 @@
+package stocks.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import stocks.api.API;
+import stocks.api.APIScheduler;
+import stocks.api.TickerSeries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the PriceSeriesFetcher class, which shares one fetch of a symbol across the callers that
+ * ask for it at the same time.
+ */
+public class PriceSeriesFetcherTest {
+  private static final String[] SYMBOLS = {"FETCHA", "FETCHB", "FETCHC"};
+  private static final int CALLERS = 16;
+
+  private CountingAPI api;
+  private PriceSeriesFetcher fetcher;
+
+  @Before
+  public void setUp() {
+    this.api = new CountingAPI();
+    this.fetcher = new PriceSeriesFetcher(new PriceSeriesStore(new PriceSeriesCache(1 << 20)));
+  }
+
+  @After
+  public void tearDown() {
+    for (String stockSymbol : SYMBOLS) {
+      PriceSeriesStore.localCacheFile(stockSymbol).delete();
+    }
+  }
+
+  @Test
+  public void singleFlightTest() throws Exception {
+    this.api.gate = new CountDownLatch(1);
+    AtomicReferenceArray<Object> results = fetchConcurrently("FETCHA");
+    assertEquals(List.of("FETCHA"), this.api.calls);
+    PriceSeries series = (PriceSeries) results.get(0);
+    assertEquals(2, series.size());
+    assertEquals(1.5, series.getClose(series.size() - 1), 0);
+    for (int i = 0; i < CALLERS; i++) {
+      assertSame(series, results.get(i));
+    }
+    assertEquals(0, this.fetcher.getInFlightCount());
+
+    // A finished fetch is not shared with a later request.
+    this.fetcher.fetch(this.api, "FETCHA");
+    assertEquals(2, this.api.calls.size());
+  }
+
+  @Test
+  public void sharedFailureTest() throws Exception {
+    this.api.gate = new CountDownLatch(1);
+    this.api.failure = new IOException("Incorrect call to the AlphaVantage API.");
+    AtomicReferenceArray<Object> results = fetchConcurrently("FETCHA");
+    assertEquals(1, this.api.calls.size());
+    for (int i = 0; i < CALLERS; i++) {
+      assertSame(this.api.failure, results.get(i));
+    }
+    assertEquals(0, this.fetcher.getInFlightCount());
+
+    this.api.failure = null;
+    this.api.invalid = true;
+    this.api.gate = new CountDownLatch(1);
+    results = fetchConcurrently("FETCHA");
+    assertEquals(2, this.api.calls.size());
+    for (int i = 0; i < CALLERS; i++) {
+      assertTrue(results.get(i) instanceof IllegalArgumentException);
+      assertSame(results.get(0), results.get(i));
+    }
+    assertEquals(0, this.fetcher.getInFlightCount());
+  }
+
+  @Test
+  public void interactivePromotesBackgroundTest() throws Exception {
+    APIScheduler scheduler = new APIScheduler(this.api, 60);
+    for (int i = 0; i < 60; i++) {
+      scheduler.getTickerSeries("QUOTA");
+    }
+    this.api.calls.clear();
+
+    Thread first = start(() -> this.fetcher.fetch(scheduler.background(), "FETCHB"));
+    awaitWaiting(scheduler, 1);
+    Thread second = start(() -> this.fetcher.fetch(scheduler.background(), "FETCHC"));
+    awaitWaiting(scheduler, 2);
+
+    // The user asks for the symbol that is queued last in the background.
+    PriceSeries series = this.fetcher.fetch(scheduler, "FETCHC");
+    assertEquals(2, series.size());
+    assertEquals(List.of("FETCHC"), this.api.calls);
+    first.join();
+    second.join();
+    assertEquals(List.of("FETCHC", "FETCHB"), this.api.calls);
+    assertEquals(0, this.fetcher.getInFlightCount());
+  }
+
+  /**
+   * Fetches a symbol on many threads at once, and releases the API call only once every thread is
+   * waiting. Returns what each thread got: the series, or the exception it caught.
+   */
+  private AtomicReferenceArray<Object> fetchConcurrently(String stockSymbol) throws Exception {
+    AtomicReferenceArray<Object> results = new AtomicReferenceArray<>(CALLERS);
+    CountDownLatch ready = new CountDownLatch(CALLERS);
+    Thread[] threads = new Thread[CALLERS];
+    for (int i = 0; i < CALLERS; i++) {
+      int caller = i;
+      threads[i] = new Thread(() -> {
+        ready.countDown();
+        try {
+          results.set(caller, this.fetcher.fetch(this.api, stockSymbol));
+        } catch (IOException | RuntimeException e) {
+          results.set(caller, e);
+        }
+      });
+      threads[i].start();
+    }
+    ready.await();
+    for (Thread thread : threads) {
+      for (int i = 0; i < 5000 && thread.getState() != Thread.State.WAITING; i++) {
+        Thread.sleep(1);
+      }
+      assertEquals(Thread.State.WAITING, thread.getState());
+    }
+    assertEquals(1, this.fetcher.getInFlightCount());
+    this.api.gate.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return results;
+  }
+
+  private static Thread start(Fetch fetch) {
+    Thread thread = new Thread(() -> {
+      try {
+        fetch.run();
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  private static void awaitWaiting(APIScheduler scheduler, int count) throws InterruptedException {
+    for (int i = 0; i < 5000 && scheduler.getWaitingCount() != count; i++) {
+      Thread.sleep(1);
+    }
+    assertEquals(count, scheduler.getWaitingCount());
+  }
+
+  /**
+   * A fetch made on another thread.
+   */
+  private interface Fetch {
+    void run() throws IOException;
+  }
+
+  /**
+   * An API that records the symbol of every call and answers with two days of prices, after an
+   * optional gate opens. It can also fail, or answer with an error message instead of prices.
+   */
+  private static class CountingAPI implements API {
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+    private volatile CountDownLatch gate;
+    private volatile IOException failure;
+    private volatile boolean invalid;
+
+    @Override
+    public String[] getTickerData(String stockSymbol) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TickerSeries getTickerSeries(String stockSymbol) throws IOException {
+      this.calls.add(stockSymbol);
+      if (this.gate != null) {
+        try {
+          this.gate.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      if (this.failure != null) {
+        throw this.failure;
+      }
+      return TickerSeries.read(new ByteArrayInputStream((this.invalid
+              ? "{\"Error Message\": \"Invalid API call.\"}"
+              : "timestamp,open,high,low,close,volume\n"
+              + "2022-10-04,1,2,0.5,1.5,100\n2022-10-03,1,2,0.5,1.25,100\n")
+              .getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public TickerSeries getRecentTickerSeries(String stockSymbol) throws IOException {
+      return getTickerSeries(stockSymbol);
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package stocks.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the PriceSeriesFile class, which reads and writes the binary price cache files.
+ */
+public class PriceSeriesFileTest {
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("price-series-file");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(this.directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void writeAndMapTest() throws IOException {
+    Path file = this.directory.resolve("GOOG.bin");
+    PriceSeries series = series(0, 40).withCoverage(19100);
+    PriceSeriesFile.write(file, series);
+
+    PriceSeries mapped = PriceSeriesFile.map(file);
+    assertSameRecords(series, mapped);
+    assertEquals(series.firstDay(), mapped.firstDay());
+    assertEquals(series.lastDay(), mapped.lastDay());
+    assertEquals(19100, mapped.coveredThrough());
+
+    PriceSeries read = PriceSeriesFile.read(Files.readAllBytes(file));
+    assertSameRecords(series, read);
+    assertEquals(19100, read.coveredThrough());
+  }
+
+  @Test
+  public void writeEmptyTest() throws IOException {
+    Path file = this.directory.resolve("EMPTY.bin");
+    PriceSeriesFile.write(file, new ArrayPriceSeries(new int[0], new double[0], 0));
+    assertEquals(0, PriceSeriesFile.map(file).size());
+  }
+
+  @Test
+  public void appendTest() throws IOException {
+    Path file = this.directory.resolve("AMZN.bin");
+    PriceSeriesFile.write(file, series(0, 10));
+    PriceSeries before = PriceSeriesFile.map(file);
+    byte[] oldRecords = records(file, 10);
+
+    PriceSeries extended = series(0, 15).withCoverage(18100);
+    assertTrue(PriceSeriesFile.append(file, extended, 5));
+
+    assertSameRecords(series(0, 10), before);
+    assertArrayEquals(oldRecords, records(file, 10));
+    PriceSeries after = PriceSeriesFile.map(file);
+    assertSameRecords(extended, after);
+    assertEquals(extended.lastDay(), after.lastDay());
+    assertEquals(18100, after.coveredThrough());
+    assertEquals(HEADER + 15 * RECORD, Files.size(file));
+  }
+
+  @Test
+  public void appendChangedRecordTest() throws IOException {
+    Path file = this.directory.resolve("AAPL.bin");
+    PriceSeriesFile.write(file, series(0, 10));
+    byte[] bytes = Files.readAllBytes(file);
+
+    ArrayPriceSeries extended = series(0, 12);
+    int[] days = new int[12];
+    double[] closes = new double[12];
+    for (int i = 0; i < 12; i++) {
+      days[i] = extended.getDay(i);
+      closes[i] = extended.getClose(i);
+    }
+    closes[7] += 1;
+    assertFalse(PriceSeriesFile.append(file, new ArrayPriceSeries(days, closes, 12), 5));
+    assertArrayEquals(bytes, Files.readAllBytes(file));
+  }
+
+  @Test
+  public void appendShorterSeriesTest() throws IOException {
+    Path file = this.directory.resolve("TSLA.bin");
+    PriceSeriesFile.write(file, series(0, 10));
+    byte[] bytes = Files.readAllBytes(file);
+    assertFalse(PriceSeriesFile.append(file, series(0, 8), 0));
+    assertFalse(PriceSeriesFile.append(file, series(0, 12), 11));
+    assertArrayEquals(bytes, Files.readAllBytes(file));
+  }
+
+  @Test
+  public void appendVersionOneTest() throws IOException {
+    Path file = this.directory.resolve("MSFT.bin");
+    ByteBuffer buffer = ByteBuffer.allocate(20 + 2 * RECORD);
+    buffer.putInt(PriceSeriesFile.MAGIC).putInt(1).putInt(18000).putInt(18001).putInt(2);
+    buffer.putInt(18000).putDouble(10.5).putInt(18001).putDouble(11.5);
+    Files.write(file, buffer.array());
+
+    PriceSeries mapped = PriceSeriesFile.map(file);
+    assertEquals(2, mapped.size());
+    assertEquals(11.5, mapped.getClose(1), 0);
+    assertFalse(PriceSeriesFile.append(file, series(0, 3), 0));
+  }
+
+  @Test(expected = IOException.class)
+  public void mapTruncatedTest() throws IOException {
+    Path file = this.directory.resolve("CUT.bin");
+    PriceSeriesFile.write(file, series(0, 10));
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, java.util.Arrays.copyOf(bytes, bytes.length - 5));
+    PriceSeriesFile.map(file);
+  }
+
+  @Test
+  public void convertTest() throws IOException {
+    Path csv = this.directory.resolve("GOOG.csv");
+    Files.writeString(csv, "2022-10-31,94.66;2022-10-28,96.58;\n2022-10-27,92.6;");
+    Path bin = this.directory.resolve("GOOG.bin");
+    PriceSeries converted = PriceSeriesFile.convert(csv, bin);
+
+    PriceSeries mapped = PriceSeriesFile.map(bin);
+    assertSameRecords(converted, mapped);
+    assertEquals(3, mapped.size());
+    assertEquals(EpochDays.parse("2022-10-27"), mapped.getDay(0));
+    assertEquals(94.66, mapped.getClose(2), 0);
+  }
+
+  @Test(expected = IOException.class)
+  public void convertInvalidTest() throws IOException {
+    Path csv = this.directory.resolve("BAD.csv");
+    Files.writeString(csv, "2022-10-31,abc;");
+    PriceSeriesFile.convert(csv, this.directory.resolve("BAD.bin"));
+  }
+
+  @Test
+  public void convertDirectoryTest() throws IOException {
+    Files.writeString(this.directory.resolve("A.csv"), "2022-10-31,1.5;");
+    Files.writeString(this.directory.resolve("B.csv"), "2022-10-31,x;");
+    Files.writeString(this.directory.resolve("C.txt"), "2022-10-31,1.5;");
+    assertEquals(1, PriceSeriesFile.convertDirectory(this.directory));
+    assertTrue(Files.exists(this.directory.resolve("A.bin")));
+    assertFalse(Files.exists(this.directory.resolve("B.bin")));
+    assertFalse(Files.exists(this.directory.resolve("C.bin")));
+  }
+
+  private static final int HEADER = PriceSeriesFile.HEADER_SIZE;
+  private static final int RECORD = PriceSeriesFile.RECORD_SIZE;
+
+  private static ArrayPriceSeries series(int from, int to) {
+    int[] days = new int[to - from];
+    double[] closes = new double[to - from];
+    for (int i = from; i < to; i++) {
+      days[i - from] = 18000 + i + (i / 5) * 2;
+      closes[i - from] = 100 + i * 0.25;
+    }
+    return new ArrayPriceSeries(days, closes, to - from);
+  }
+
+  private static byte[] records(Path file, int count) throws IOException {
+    byte[] bytes = Files.readAllBytes(file);
+    return java.util.Arrays.copyOfRange(bytes, HEADER, HEADER + count * RECORD);
+  }
+
+  private static void assertSameRecords(PriceSeries expected, PriceSeries actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.getDay(i), actual.getDay(i));
+      assertEquals(expected.getClose(i), actual.getClose(i), 0);
+    }
+  }
+}
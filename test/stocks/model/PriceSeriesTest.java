@@ -0,0 +1,114 @@
+package stocks.model;
+
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the floor and ceiling searches of the PriceSeries interface, which find the nearest
+ * trading day before or after a date, against a scan over the series.
+ */
+public class PriceSeriesTest {
+  private static final String[] DATES = {"2022-11-17", "2022-11-18", "2022-11-21", "2022-11-22",
+      "2022-11-23", "2022-11-25", "2022-11-28", "2022-11-29", "2022-11-30"};
+
+  @Test
+  public void tradingDayTest() {
+    PriceSeries series = series(DATES);
+    for (int i = 0; i < DATES.length; i++) {
+      int day = EpochDays.parse(DATES[i]);
+      assertEquals(i, series.indexOf(day));
+      assertEquals(i, series.floorIndex(day));
+      assertEquals(i, series.ceilingIndex(day));
+    }
+  }
+
+  @Test
+  public void weekendTest() {
+    PriceSeries series = series(DATES);
+    for (String date : new String[]{"2022-11-19", "2022-11-20"}) {
+      int day = EpochDays.parse(date);
+      assertEquals(-1, series.indexOf(day));
+      assertEquals(1, series.floorIndex(day));
+      assertEquals(2, series.ceilingIndex(day));
+    }
+  }
+
+  @Test
+  public void holidayTest() {
+    PriceSeries series = series(DATES);
+    int thanksgiving = EpochDays.parse("2022-11-24");
+    assertEquals(-1, series.indexOf(thanksgiving));
+    assertEquals(4, series.floorIndex(thanksgiving));
+    assertEquals(5, series.ceilingIndex(thanksgiving));
+  }
+
+  @Test
+  public void outsideTest() {
+    PriceSeries series = series(DATES);
+    int before = EpochDays.parse("2022-11-16");
+    assertEquals(-1, series.floorIndex(before));
+    assertEquals(0, series.ceilingIndex(before));
+    assertEquals(-1, series.floorIndex(Integer.MIN_VALUE));
+
+    int after = EpochDays.parse("2022-12-01");
+    assertEquals(DATES.length - 1, series.floorIndex(after));
+    assertEquals(-1, series.ceilingIndex(after));
+    assertEquals(-1, series.ceilingIndex(Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void emptyTest() {
+    PriceSeries series = series();
+    int day = EpochDays.parse("2022-11-21");
+    assertEquals(-1, series.indexOf(day));
+    assertEquals(-1, series.floorIndex(day));
+    assertEquals(-1, series.ceilingIndex(day));
+
+    series = series("2022-11-21");
+    assertEquals(0, series.floorIndex(day));
+    assertEquals(0, series.ceilingIndex(day));
+    assertEquals(-1, series.floorIndex(day - 1));
+    assertEquals(-1, series.ceilingIndex(day + 1));
+  }
+
+  @Test
+  public void scanTest() {
+    Random random = new Random(4);
+    for (int test = 0; test < 200; test++) {
+      int size = random.nextInt(30);
+      int[] days = new int[size];
+      int day = EpochDays.parse("2022-01-01");
+      for (int i = 0; i < size; i++) {
+        day += 1 + random.nextInt(5);
+        days[i] = day;
+      }
+      PriceSeries series = new ArrayPriceSeries(days, new double[size], size);
+      for (int probe = EpochDays.parse("2022-01-01") - 2; probe <= day + 2; probe++) {
+        int floor = -1;
+        int ceiling = -1;
+        for (int i = 0; i < size; i++) {
+          if (days[i] <= probe) {
+            floor = i;
+          }
+          if (days[i] >= probe && ceiling == -1) {
+            ceiling = i;
+          }
+        }
+        assertEquals(floor, series.floorIndex(probe));
+        assertEquals(ceiling, series.ceilingIndex(probe));
+      }
+    }
+  }
+
+  private static PriceSeries series(String... dates) {
+    int[] days = new int[dates.length];
+    double[] closes = new double[dates.length];
+    for (int i = 0; i < dates.length; i++) {
+      days[i] = EpochDays.parse(dates[i]);
+      closes[i] = 100 + i;
+    }
+    return new ArrayPriceSeries(days, closes, dates.length);
+  }
+}
@@ -0,0 +1,328 @@
+package stocks.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import stocks.api.API;
+import stocks.api.APIScheduler;
+import stocks.api.TickerSeries;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static stocks.model.PortfolioFixture.transaction;
+
+/**
+ * Tests the StocksModelFlexible class on a portfolio repository in a temporary directory, with
+ * prices from local price series and from an API that records its calls.
+ */
+public class StocksModelFlexibleTest {
+  private static final String USER = "modeltest";
+  private static final String[] SYMBOLS = {"MODELA", "MODELB", "MODELC"};
+
+  private File directory;
+  private CountingRepository repository;
+  private FakeAPI api;
+  private StocksModelFlexible model;
+
+  @Before
+  public void setUp() throws IOException {
+    this.directory = Files.createTempDirectory("stocks-model").toFile();
+    this.repository = new CountingRepository(new PageStoreRepository(
+            new File(this.directory, "portfolios.db").getPath()));
+    this.api = new FakeAPI();
+    this.model = new StocksModelFlexible(new APIScheduler(this.api, 6000), this.repository);
+  }
+
+  @After
+  public void tearDown() {
+    for (String stockSymbol : SYMBOLS) {
+      PriceSeriesStore.localCacheFile(stockSymbol).delete();
+    }
+    File[] files = this.directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    this.directory.delete();
+  }
+
+  @Test
+  public void getPortfolioValuesTest() throws IOException {
+    int first = EpochDays.parse("2022-10-03");
+    int last = EpochDays.parse("2022-10-31");
+    writeLocalSeries("MODELA", first, last, 100, last);
+    this.api.prices.put("MODELB", series(first, last, 50));
+
+    JSONArray firstPortfolio = new JSONArray();
+    firstPortfolio.add(transaction("MODELA", "2022-10-03", "10", "BUY"));
+    firstPortfolio.add(transaction("MODELB", "2022-10-05", "5", "BUY"));
+    firstPortfolio.add(transaction("MODELA", "2022-10-10", "4", "SELL"));
+    this.repository.write(USER, "flexible", "first.json", firstPortfolio);
+    JSONArray secondPortfolio = new JSONArray();
+    secondPortfolio.add(transaction("MODELB", "2022-10-04", "2", "BUY"));
+    this.repository.write(USER, "flexible", "second.json", secondPortfolio);
+
+    String[] dates = {"2022-10-04", "2022-10-08", "2022-10-31", "2022-13-01"};
+    double[][] values = this.model.getPortfolioValues(new String[]{USER, USER, USER},
+            new String[]{"first.json", "second.json", "missing.json"}, dates);
+
+    // MODELA is covered locally, so only MODELB is fetched, and only once.
+    assertEquals(List.of("MODELB"), this.api.calls);
+    assertEquals(3, values.length);
+    assertEquals(10 * 101, values[0][0], 1e-9);
+    assertEquals(6 * 120 + 5 * 70, values[0][2], 1e-9);
+    assertEquals(2 * 51, values[1][0], 1e-9);
+    assertEquals(2 * 70, values[1][2], 1e-9);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(this.model.getPortfolioValue(firstPortfolio, dates[i]), values[0][i], 1e-9);
+      assertEquals(this.model.getPortfolioValue(secondPortfolio, dates[i]), values[1][i], 1e-9);
+    }
+    assertArrayEquals(new double[]{-1, -1}, new double[]{values[0][3], values[1][3]}, 0);
+    assertArrayEquals(new double[]{-1, -1, -1, -1}, values[2], 0);
+    assertEquals(1, this.api.calls.size());
+  }
+
+  @Test
+  public void multiYearStrategyTest() throws IOException {
+    int first = EpochDays.parse("2019-01-01");
+    int last = EpochDays.parse("2021-12-31");
+    for (int i = 0; i < SYMBOLS.length; i++) {
+      writeLocalSeries(SYMBOLS[i], first, last, 10 * (i + 1), last);
+    }
+    assertTrue(this.model.investmentStrategy("DOLLAR COST AVERAGING", "strategy.json", USER,
+            "2019-01-01", "2021-12-31", 1, 600, SYMBOLS.clone(), new double[]{50, 30, 20},
+            new double[]{1, 1, 1}, true));
+
+    // The installments are written a batch of MAX_INSTALLMENT_ROWS rows at a time.
+    List<Integer> tradingDays = new ArrayList<>();
+    TradingCalendar calendar = TradingCalendar.getDefault();
+    for (int day = calendar.ceilingTradingDay(first); day <= last;
+         day = calendar.ceilingTradingDay(day + 1)) {
+      tradingDays.add(day);
+    }
+    int rows = tradingDays.size() * SYMBOLS.length;
+    assertTrue(rows > StocksModelAbstract.MAX_INSTALLMENT_ROWS);
+    assertEquals((rows + StocksModelAbstract.MAX_INSTALLMENT_ROWS - 1)
+            / StocksModelAbstract.MAX_INSTALLMENT_ROWS, this.repository.writes);
+    assertTrue(this.api.calls.isEmpty());
+
+    JSONArray portfolio = this.repository.load(USER, "flexible", "strategy.json");
+    assertEquals(rows, portfolio.size());
+    for (int i = 0; i < rows; i++) {
+      JSONObject row = (JSONObject) portfolio.get(i);
+      assertEquals("BUY", row.get("operation"));
+      assertEquals(SYMBOLS[i % SYMBOLS.length], row.get("stock_name"));
+      assertEquals(EpochDays.format(tradingDays.get(i / SYMBOLS.length)),
+              row.get("transaction_date"));
+    }
+  }
+
+  @Test
+  public void unpricedInstallmentTest() throws IOException {
+    int first = EpochDays.parse("2022-10-03");
+    int covered = EpochDays.parse("2022-10-28");
+    writeLocalSeries("MODELA", first, covered, 100, covered);
+    writeLocalSeries("MODELB", first, covered, 50, covered);
+
+    // The last installment, on 2022-10-31, is after the local prices and the API fails.
+    PrintStream out = System.out;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(printed, true, StandardCharsets.UTF_8));
+    try {
+      assertTrue(this.model.investmentStrategy("DOLLAR COST AVERAGING", "strategy.json", USER,
+              "2022-10-03", "2022-10-31", 7, 1000, new String[]{"MODELA", "MODELB"},
+              new double[]{60, 40}, new double[]{0, 0}, true));
+    } finally {
+      System.setOut(out);
+    }
+    String output = printed.toString(StandardCharsets.UTF_8);
+    assertTrue(output.contains("Unable to write the installment of 2022-10-31."));
+    assertFalse(output.contains("Unable to write the installment of 2022-10-24."));
+    assertTrue(this.api.calls.contains("MODELA"));
+
+    // The other installments are still written, one at a time.
+    assertEquals(4, this.repository.writes);
+    JSONArray portfolio = this.repository.load(USER, "flexible", "strategy.json");
+    String[] dates = {"2022-10-03", "2022-10-10", "2022-10-17", "2022-10-24"};
+    assertEquals(2 * dates.length, portfolio.size());
+    for (int i = 0; i < portfolio.size(); i++) {
+      JSONObject row = (JSONObject) portfolio.get(i);
+      assertEquals(i % 2 == 0 ? "MODELA" : "MODELB", row.get("stock_name"));
+      assertEquals(dates[i / 2], row.get("transaction_date"));
+    }
+  }
+
+  @Test
+  public void priceOnOrBeforeAndAfterTest() throws IOException {
+    int first = EpochDays.parse("2022-11-17");
+    int covered = EpochDays.parse("2022-11-30");
+    writeLocalSeries("MODELA", first, covered, 100, covered);
+
+    // 2022-11-19 is a Saturday and 2022-11-24 is Thanksgiving.
+    assertEquals(101, this.model.getPriceOnOrBefore("MODELA", "2022-11-19"), 0);
+    assertEquals(102, this.model.getPriceOnOrAfter("MODELA", "2022-11-19"), 0);
+    assertEquals(104, this.model.getPriceOnOrBefore("MODELA", "2022-11-24"), 0);
+    assertEquals(105, this.model.getPriceOnOrAfter("MODELA", "2022-11-24"), 0);
+    assertEquals(103, this.model.getPriceOnOrBefore("MODELA", "2022-11-22"), 0);
+    assertEquals(103, this.model.getPriceOnOrAfter("MODELA", "2022-11-22"), 0);
+    assertNull(this.model.getPriceOnOrBefore("MODELA", "2022-11-01"));
+    assertEquals(100, this.model.getPriceOnOrAfter("MODELA", "2022-11-01"), 0);
+    assertNull(this.model.getPriceOnOrBefore("MODELA", "2022-13-01"));
+    assertTrue(this.api.calls.isEmpty());
+
+    // A date after the covered-through day is fetched once, and the new series answers it.
+    this.api.prices.put("MODELA", series(first, EpochDays.parse("2022-12-02"), 100));
+    assertEquals(110, this.model.getPriceOnOrBefore("MODELA", "2022-12-02"), 0);
+    assertEquals(List.of("MODELA"), this.api.calls);
+    assertEquals(110, this.model.getPriceOnOrBefore("MODELA", "2022-12-03"), 0);
+    assertNull(this.model.getPriceOnOrAfter("MODELA", "2022-12-03"));
+    assertEquals(1, this.api.calls.size());
+  }
+
+  @Test
+  public void weekendAndHolidayPriceTest() throws IOException {
+    int first = EpochDays.parse("2022-11-17");
+    int covered = EpochDays.parse("2022-11-27");
+    writeLocalSeries("MODELA", first, covered, 100, covered);
+
+    // 2022-11-19 is a Saturday and 2022-11-24 is Thanksgiving; neither calls the API.
+    assertEquals(102, this.model.getPrice("MODELA", "2022-11-19", false), 0);
+    assertEquals(-1, this.model.getPrice("MODELA", "2022-11-19", true), 0);
+    assertEquals(105, this.model.getPrice("MODELA", "2022-11-24", false), 0);
+    assertEquals(-1, this.model.getPrice("MODELA", "2022-11-24", true), 0);
+    assertEquals(105, this.model.getPrice("MODELA", "2022-11-26", false), 0);
+    assertEquals(104, this.model.getPriceOnOrBefore("MODELA", "2022-11-24"), 0);
+    assertEquals(105, this.model.getPriceOnOrBefore("MODELA", "2022-11-27"), 0);
+    assertTrue(this.api.calls.isEmpty());
+
+    // The first trading day after the covered-through day is not covered.
+    this.api.prices.put("MODELA", series(first, EpochDays.parse("2022-11-28"), 100));
+    assertEquals(106, this.model.getPrice("MODELA", "2022-11-28", false), 0);
+    assertEquals(List.of("MODELA"), this.api.calls);
+  }
+
+  /**
+   * Writes the local price series of a stock, with one close a trading day from a first to a last
+   * day, increasing by 1 from a base price, complete through a day.
+   */
+  private static void writeLocalSeries(String stockSymbol, int first, int last, double base,
+          int coveredThrough) throws IOException {
+    TickerSeries prices = series(first, last, base);
+    int size = prices.size();
+    int[] days = new int[size];
+    double[] closes = new double[size];
+    for (int i = 0; i < size; i++) {
+      days[i] = prices.getDay(size - 1 - i);
+      closes[i] = prices.getClose(size - 1 - i);
+    }
+    PriceSeriesFile.write(PriceSeriesStore.localCacheFile(stockSymbol).toPath(),
+            new ArrayPriceSeries(days, closes, size).withCoverage(coveredThrough));
+  }
+
+  /**
+   * Returns the ticker data of a stock as the API returns it, newest first, with one close a
+   * trading day from a first to a last day, increasing by 1 from a base price.
+   */
+  private static TickerSeries series(int first, int last, double base) throws IOException {
+    List<String> rows = new ArrayList<>();
+    double close = base;
+    for (int day = first; day <= last; day++) {
+      if (TradingCalendar.getDefault().isTradingDay(day)) {
+        rows.add(EpochDays.format(day) + ",1,1,1," + close + ",100\n");
+        close++;
+      }
+    }
+    Collections.reverse(rows);
+    return TickerSeries.read(new ByteArrayInputStream(
+            ("timestamp,open,high,low,close,volume\n" + String.join("", rows))
+                    .getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * A repository that counts the portfolios written to another repository, in full or appended.
+   */
+  private static class CountingRepository implements PortfolioRepository {
+    private final PortfolioRepository repository;
+    private int writes;
+
+    private CountingRepository(PortfolioRepository repository) {
+      this.repository = repository;
+    }
+
+    @Override
+    public boolean exists(String userName, String kind, String name) {
+      return this.repository.exists(userName, kind, name);
+    }
+
+    @Override
+    public PortfolioSnapshotCache.Source getSource(String userName, String kind, String name) {
+      return this.repository.getSource(userName, kind, name);
+    }
+
+    @Override
+    public JSONArray load(String userName, String kind, String name) throws IOException {
+      return this.repository.load(userName, kind, name);
+    }
+
+    @Override
+    public void append(String userName, String kind, String name, JSONArray jsonArray, int from)
+            throws IOException {
+      this.writes++;
+      this.repository.append(userName, kind, name, jsonArray, from);
+    }
+
+    @Override
+    public void write(String userName, String kind, String name, JSONArray jsonArray)
+            throws IOException {
+      this.writes++;
+      this.repository.write(userName, kind, name, jsonArray);
+    }
+  }
+
+  /**
+   * An API that records the symbol of every call and answers with the prices it was given, or
+   * fails for a stock it has no prices for.
+   */
+  private static class FakeAPI implements API {
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, TickerSeries> prices = new HashMap<>();
+
+    @Override
+    public String[] getTickerData(String stockSymbol) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TickerSeries getTickerSeries(String stockSymbol) throws IOException {
+      this.calls.add(stockSymbol);
+      TickerSeries series = this.prices.get(stockSymbol);
+      if (series == null) {
+        throw new IOException("Incorrect call to the AlphaVantage API.");
+      }
+      return series;
+    }
+
+    @Override
+    public TickerSeries getRecentTickerSeries(String stockSymbol) throws IOException {
+      return getTickerSeries(stockSymbol);
+    }
+  }
+}
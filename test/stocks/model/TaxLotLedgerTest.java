@@ -0,0 +1,280 @@
+package stocks.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static stocks.model.PortfolioFixture.STOCKS;
+import static stocks.model.PortfolioFixture.portfolio;
+import static stocks.model.PortfolioFixture.transaction;
+
+/**
+ * Tests the TaxLotLedger class, which matches the sales of a portfolio to its purchases in first
+ * in, first out order.
+ */
+public class TaxLotLedgerTest {
+  private static final String PATH = "res/users/test.db#user/flexible/";
+
+  @Test
+  public void fifoTest() {
+    JSONArray portfolio = new JSONArray();
+    portfolio.add(transaction("GOOG", "2022-10-03", "10", "100", "10", "BUY"));
+    portfolio.add(transaction("GOOG", "2022-10-04", "5", "110", "0", "BUY"));
+    portfolio.add(transaction("GOOG", "2022-10-05", "12", "120", "12", "SELL"));
+    TaxLotLedger ledger = TaxLotLedger.build(TransactionTable.of(portfolio));
+
+    assertEquals(0, ledger.getOpenQuantity("GOOG", EpochDays.parse("2022-10-02")), 0);
+    assertEquals(15, ledger.getOpenQuantity("GOOG", EpochDays.parse("2022-10-04")), 0);
+    assertEquals(3, ledger.getOpenQuantity("GOOG", EpochDays.parse("2022-10-05")), 1e-9);
+    assertEquals(0, ledger.getOpenQuantity("AAPL", EpochDays.parse("2022-10-05")), 0);
+
+    JSONArray report = ledger.getLotReport(EpochDays.parse("2022-10-05"),
+        (stockSymbol, day) -> 130.0);
+    assertEquals(2, report.size());
+    JSONObject first = (JSONObject) report.get(0);
+    assertEquals("2022-10-03", first.get("transaction_date"));
+    assertEquals("1010.0", first.get("cost"));
+    assertEquals("0.0", first.get("open_quantity"));
+    assertEquals("180.0", first.get("realized_gain"));
+    assertEquals("0.0", first.get("unrealized_gain"));
+    JSONObject second = (JSONObject) report.get(1);
+    assertEquals("3.0", second.get("open_quantity"));
+    assertEquals("18.0", second.get("realized_gain"));
+    assertEquals("130.0", second.get("market_price"));
+    assertEquals("60.0", second.get("unrealized_gain"));
+
+    report = ledger.getLotReport(EpochDays.parse("2022-10-04"), (stockSymbol, day) -> 105.0);
+    assertEquals("10.0", ((JSONObject) report.get(0)).get("open_quantity"));
+    assertEquals("0.0", ((JSONObject) report.get(0)).get("realized_gain"));
+    assertEquals("40.0", ((JSONObject) report.get(0)).get("unrealized_gain"));
+    assertEquals(1, ledger.getLotReport(EpochDays.parse("2022-10-03"),
+        (stockSymbol, day) -> 100.0).size());
+  }
+
+  @Test
+  public void sameDayTest() {
+    JSONArray portfolio = new JSONArray();
+    portfolio.add(transaction("AAPL", "2022-10-03", "4", "150", "0", "SELL"));
+    portfolio.add(transaction("AAPL", "2022-10-03", "10", "140", "0", "BUY"));
+    TaxLotLedger ledger = TaxLotLedger.build(TransactionTable.of(portfolio));
+    assertEquals(6, ledger.getOpenQuantity("AAPL", EpochDays.parse("2022-10-03")), 0);
+    JSONObject lot = (JSONObject) ledger.getLotReport(EpochDays.parse("2022-10-03"),
+        (stockSymbol, day) -> 140.0).get(0);
+    assertEquals("40.0", lot.get("realized_gain"));
+  }
+
+  @Test
+  public void oversoldTest() {
+    JSONArray portfolio = new JSONArray();
+    portfolio.add(transaction("MSFT", "2022-10-03", "5", "200", "0", "BUY"));
+    portfolio.add(transaction("MSFT", "2022-10-04", "20", "210", "0", "SELL"));
+    portfolio.add(transaction("MSFT", "2022-10-05", "2", "220", "0", "BUY"));
+    TaxLotLedger ledger = TaxLotLedger.build(TransactionTable.of(portfolio));
+    assertEquals(0, ledger.getOpenQuantity("MSFT", EpochDays.parse("2022-10-04")), 0);
+    assertEquals(2, ledger.getOpenQuantity("MSFT", EpochDays.parse("2022-10-05")), 0);
+    JSONObject lot = (JSONObject) ledger.getLotReport(EpochDays.parse("2022-10-05"),
+        (stockSymbol, day) -> 230.0).get(0);
+    assertEquals("50.0", lot.get("realized_gain"));
+  }
+
+  @Test
+  public void missingPriceTest() {
+    JSONArray portfolio = new JSONArray();
+    portfolio.add(transaction("GOOG", "2022-10-03", "5", "100", "0", "BUY"));
+    portfolio.add(transaction("AAPL", "2022-10-03", "5", "100", "0", "BUY"));
+    TaxLotLedger ledger = TaxLotLedger.build(TransactionTable.of(portfolio));
+    JSONArray report = ledger.getLotReport(EpochDays.parse("2022-10-03"),
+        (stockSymbol, day) -> {
+          if (stockSymbol.equals("GOOG")) {
+            throw new IOException("No price.");
+          }
+          return -1.0;
+        });
+    assertEquals(2, report.size());
+    assertNull(((JSONObject) report.get(0)).get("unrealized_gain"));
+    assertNull(((JSONObject) report.get(1)).get("market_price"));
+  }
+
+  @Test
+  public void matchesFifoQueueTest() {
+    Random random = new Random(37);
+    for (int i = 0; i < 40; i++) {
+      JSONArray portfolio = portfolio(random, 1 + random.nextInt(50), false);
+      TaxLotLedger ledger = TaxLotLedger.build(TransactionTable.of(portfolio));
+      for (int day = EpochDays.parse("2022-01-01"); day < EpochDays.parse("2023-01-01");
+           day += 11) {
+        JSONArray report = ledger.getLotReport(day, (stockSymbol, date) -> 100.0);
+        for (String stock : STOCKS) {
+          double open = 0;
+          for (int lot = 0; lot < report.size(); lot++) {
+            JSONObject temp = (JSONObject) report.get(lot);
+            if (temp.get("stock_name").equals(stock)) {
+              open += Double.parseDouble((String) temp.get("open_quantity"));
+            }
+          }
+          double expected = fifoOpenQuantity(portfolio, stock, day);
+          assertEquals(expected, ledger.getOpenQuantity(stock, day), 1e-9);
+          assertEquals(expected, open, 1e-6);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void addTest() {
+    Random random = new Random(41);
+    JSONArray portfolio = portfolio(random, 60, true);
+    TransactionTable full = TransactionTable.of(portfolio);
+    PortfolioSnapshotCache.Source source = PortfolioSnapshotCache.Source.of(PATH + "add", 1, 0);
+    TaxLotLedger ledger = TaxLotLedger.build(TransactionTable.load(new JSONArray(), source));
+    assertSame(ledger, TaxLotLedger.find(source));
+    for (int i = 0; i < full.size(); i++) {
+      ledger.add(full.getOperation(i), full.getStockSymbol(full.getStockId(i)), full.getDay(i),
+              full.getQuantity(i), full.getPrice(i), full.getCommission(i));
+    }
+    PortfolioSnapshotCache.Source written = PortfolioSnapshotCache.Source.of(PATH + "add", 2,
+            full.size());
+    ledger.setSource(written);
+    assertNull(TaxLotLedger.find(source));
+    assertSame(ledger, TaxLotLedger.find(written));
+
+    TaxLotLedger rebuilt = TaxLotLedger.build(full);
+    for (int day = EpochDays.parse("2022-01-01"); day < EpochDays.parse("2022-12-31"); day += 5) {
+      assertEquals(rebuilt.getLotReport(day, (stockSymbol, date) -> 90.0).toJSONString(),
+              ledger.getLotReport(day, (stockSymbol, date) -> 90.0).toJSONString());
+    }
+  }
+
+  @Test
+  public void outOfOrderTest() {
+    PortfolioSnapshotCache.Source source =
+            PortfolioSnapshotCache.Source.of(PATH + "unordered", 1, 0);
+    TaxLotLedger ledger = TaxLotLedger.build(TransactionTable.load(new JSONArray(), source));
+    int day = EpochDays.parse("2022-10-05");
+    ledger.add(TransactionTable.BUY, "GOOG", day, 10, 100, 0);
+    ledger.add(TransactionTable.SELL, "GOOG", day, 2, 100, 0);
+    ledger.add(TransactionTable.BUY, "AAPL", day - 3, 1, 100, 0);
+    assertSame(ledger, TaxLotLedger.find(source));
+
+    ledger.add(TransactionTable.BUY, "GOOG", day, 1, 100, 0);
+    assertNull(TaxLotLedger.find(source));
+    ledger.setSource(PortfolioSnapshotCache.Source.of(PATH + "unordered", 2, 4));
+    assertNull(TaxLotLedger.find(PortfolioSnapshotCache.Source.of(PATH + "unordered", 2, 4)));
+  }
+
+  @Test
+  public void reportMatchesScanTest() {
+    Random random = new Random(41);
+    for (int i = 0; i < 40; i++) {
+      JSONArray portfolio = portfolio(random, 1 + random.nextInt(50), false);
+      TaxLotLedger ledger = TaxLotLedger.build(TransactionTable.of(portfolio));
+      for (int day = EpochDays.parse("2022-01-01"); day < EpochDays.parse("2023-01-01");
+           day += 7) {
+        JSONArray report = ledger.getLotReport(day, (stockSymbol, date) -> 100.0);
+        List<double[]> expected = new ArrayList<>();
+        for (String stock : STOCKS) {
+          expected.addAll(fifoLots(portfolio, stock, day));
+        }
+        int lot = 0;
+        for (String stock : STOCKS) {
+          for (int j = 0; j < report.size(); j++) {
+            JSONObject temp = (JSONObject) report.get(j);
+            if (temp.get("stock_name").equals(stock)) {
+              assertEquals(expected.get(lot)[0],
+                      Double.parseDouble((String) temp.get("open_quantity")), 0.01);
+              assertEquals(expected.get(lot)[1],
+                      Double.parseDouble((String) temp.get("realized_gain")), 0.01);
+              lot++;
+            }
+          }
+        }
+        assertEquals(expected.size(), lot);
+      }
+    }
+  }
+
+  @Test
+  public void evictionTest() {
+    PortfolioSnapshotCache.Source first = PortfolioSnapshotCache.Source.of(PATH + "evicted", 1, 0);
+    TaxLotLedger ledger = TaxLotLedger.build(TransactionTable.load(new JSONArray(), first));
+    for (int i = 0; i < TaxLotLedger.MAX_PORTFOLIOS; i++) {
+      TaxLotLedger.build(TransactionTable.load(new JSONArray(),
+              PortfolioSnapshotCache.Source.of(PATH + "kept" + i, 1, 0)));
+      if (i == 0) {
+        assertSame(ledger, TaxLotLedger.find(first));
+      }
+    }
+    assertNull(TaxLotLedger.find(PortfolioSnapshotCache.Source.of(PATH + "kept0", 1, 0)));
+    assertSame(ledger, TaxLotLedger.find(first));
+  }
+
+  @Test
+  public void notLoadedTest() {
+    PortfolioSnapshotCache.Source missing = PortfolioSnapshotCache.Source.of(PATH + "none", 0, 0);
+    TaxLotLedger.build(TransactionTable.load(new JSONArray(), missing));
+    assertNull(TaxLotLedger.find(missing));
+  }
+
+  /**
+   * The quantity held on a date, found by replaying the transactions up to the date in order of
+   * date, with the purchases of a day first, against a queue of open lots.
+   */
+  private static double fifoOpenQuantity(JSONArray portfolio, String stock, int day) {
+    double open = 0;
+    for (int date = EpochDays.parse("2022-01-01"); date <= day; date++) {
+      for (String operation : new String[]{"BUY", "SELL"}) {
+        for (int i = 0; i < portfolio.size(); i++) {
+          JSONObject temp = (JSONObject) portfolio.get(i);
+          if (temp.get("stock_name").equals(stock) && temp.get("operation").equals(operation)
+                  && EpochDays.parse((String) temp.get("transaction_date")) == date) {
+            double quantity = Double.parseDouble((String) temp.get("quantity"));
+            open = operation.equals("BUY") ? open + quantity : Math.max(0, open - quantity);
+          }
+        }
+      }
+    }
+    return open;
+  }
+
+  /**
+   * The lots of a stock opened up to a date, in order of purchase: the quantity still open and the
+   * gain realized on each, found by replaying the sales up to the date against every lot.
+   */
+  private static List<double[]> fifoLots(JSONArray portfolio, String stock, int day) {
+    List<double[]> lots = new ArrayList<>();
+    List<Double> unitCosts = new ArrayList<>();
+    for (int date = EpochDays.parse("2022-01-01"); date <= day; date++) {
+      for (String operation : new String[]{"BUY", "SELL"}) {
+        for (int i = 0; i < portfolio.size(); i++) {
+          JSONObject temp = (JSONObject) portfolio.get(i);
+          if (!temp.get("stock_name").equals(stock) || !temp.get("operation").equals(operation)
+                  || EpochDays.parse((String) temp.get("transaction_date")) != date) {
+            continue;
+          }
+          double quantity = Double.parseDouble((String) temp.get("quantity"));
+          double price = Double.parseDouble((String) temp.get("price"));
+          double fees = Double.parseDouble((String) temp.get("commission")) / quantity;
+          if (operation.equals("BUY")) {
+            lots.add(new double[]{quantity, 0});
+            unitCosts.add(price + fees);
+            continue;
+          }
+          for (int lot = 0; lot < lots.size() && quantity > 1e-9; lot++) {
+            double closed = Math.min(lots.get(lot)[0], quantity);
+            lots.get(lot)[0] -= closed;
+            lots.get(lot)[1] += closed * (price - fees - unitCosts.get(lot));
+            quantity -= closed;
+          }
+        }
+      }
+    }
+    return lots;
+  }
+}
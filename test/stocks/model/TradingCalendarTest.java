@@ -0,0 +1,120 @@
+package stocks.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the TradingCalendar class against a day by day walk over the calendar.
+ */
+public class TradingCalendarTest {
+
+  private Set<Integer> holidays;
+  private TradingCalendar calendar;
+
+  @Before
+  public void setUp() {
+    this.holidays = new HashSet<>();
+    Random random = new Random(7);
+    for (int i = 0; i < 2000; i++) {
+      this.holidays.add((int) LocalDate.of(1970 + random.nextInt(131), 1, 1).toEpochDay()
+              + random.nextInt(365));
+    }
+    this.holidays.add(day("2022-11-24"));
+    this.holidays.add(day("2022-12-26"));
+    this.holidays.add(day("2023-01-02"));
+    this.calendar = new TradingCalendar(this.holidays);
+  }
+
+  @Test
+  public void weekendTest() {
+    assertTrue(TradingCalendar.isWeekend(day("2022-10-29")));
+    assertTrue(TradingCalendar.isWeekend(day("2022-10-30")));
+    assertFalse(TradingCalendar.isWeekend(day("2022-10-31")));
+    assertFalse(TradingCalendar.isWeekend(day("1969-12-31")));
+    assertTrue(TradingCalendar.isWeekend(day("1969-12-28")));
+  }
+
+  @Test
+  public void holidayTest() {
+    assertFalse(this.calendar.isTradingDay(day("2022-11-24")));
+    assertFalse(this.calendar.isTradingDay(day("2022-11-26")));
+    assertEquals(day("2022-11-23"), this.calendar.previousTradingDay(day("2022-11-24")));
+    assertEquals(day("2022-11-25"), this.calendar.nextTradingDay(day("2022-11-24")));
+    assertEquals(day("2022-12-23"), this.calendar.floorTradingDay(day("2022-12-26")));
+    assertEquals(day("2023-01-03"), this.calendar.ceilingTradingDay(day("2022-12-31")));
+    assertEquals(day("2022-12-30"), this.calendar.previousTradingDay(day("2023-01-03")));
+  }
+
+  @Test
+  public void matchesDayByDayWalkTest() {
+    for (int day = day("1969-06-01"); day <= day("2101-06-30"); day++) {
+      assertEquals("isTradingDay " + EpochDays.format(day), isOpen(day),
+              this.calendar.isTradingDay(day));
+    }
+    Random random = new Random(11);
+    for (int i = 0; i < 5000; i++) {
+      int day = day("1969-10-01") + random.nextInt(day("2101-03-31") - day("1969-10-01"));
+      assertEquals(walk(day, 1), this.calendar.nextTradingDay(day));
+      assertEquals(walk(day, -1), this.calendar.previousTradingDay(day));
+      assertEquals(isOpen(day) ? day : walk(day, -1), this.calendar.floorTradingDay(day));
+      assertEquals(isOpen(day) ? day : walk(day, 1), this.calendar.ceilingTradingDay(day));
+    }
+  }
+
+  @Test
+  public void countTradingDaysTest() {
+    List<int[]> ranges = new ArrayList<>();
+    ranges.add(new int[]{day("2022-01-01"), day("2022-12-31")});
+    ranges.add(new int[]{day("1969-12-01"), day("1970-01-31")});
+    ranges.add(new int[]{day("2100-12-01"), day("2101-01-31")});
+    ranges.add(new int[]{day("2022-10-31"), day("2022-10-31")});
+    ranges.add(new int[]{day("2022-10-30"), day("2022-10-29")});
+    Random random = new Random(13);
+    for (int i = 0; i < 300; i++) {
+      int from = day("1969-10-01") + random.nextInt(48000);
+      ranges.add(new int[]{from, from + random.nextInt(2000)});
+    }
+    for (int[] range : ranges) {
+      int expected = 0;
+      for (int day = range[0]; day <= range[1]; day++) {
+        expected += isOpen(day) ? 1 : 0;
+      }
+      assertEquals(expected, this.calendar.countTradingDays(range[0], range[1]));
+    }
+  }
+
+  @Test
+  public void readHolidaysTest() {
+    assertTrue(TradingCalendar.readHolidays("/no-such-holidays.csv").isEmpty());
+  }
+
+  private boolean isOpen(int day) {
+    DayOfWeek dayOfWeek = LocalDate.ofEpochDay(day).getDayOfWeek();
+    boolean weekend = dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY;
+    boolean inRange = day >= day("1970-01-01") && day <= day("2100-12-31");
+    return !weekend && !(inRange && this.holidays.contains(day));
+  }
+
+  private int walk(int day, int step) {
+    int next = day + step;
+    while (!isOpen(next)) {
+      next += step;
+    }
+    return next;
+  }
+
+  private static int day(String date) {
+    return (int) LocalDate.parse(date).toEpochDay();
+  }
+}
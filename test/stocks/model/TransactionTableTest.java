@@ -0,0 +1,111 @@
+package stocks.model;
+
+import jsonparser.JSONArray;
+import jsonparser.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static stocks.model.PortfolioFixture.transaction;
+
+/**
+ * Tests the TransactionTable class, which keeps the transactions of a portfolio in typed columns.
+ */
+public class TransactionTableTest {
+  private JSONArray portfolio;
+  private PortfolioSnapshotCache.Source source;
+
+  @Before
+  public void setUp() {
+    this.portfolio = new JSONArray();
+    this.portfolio.add(transaction("GOOG", "2022-10-03", "10", "100.5", "1.5", "BUY"));
+    this.portfolio.add(transaction("AAPL", "2022-10-04", "4", "150", "1.5", "BUY"));
+    this.portfolio.add(transaction("GOOG", "2022-10-05", "3", "abc", "1.5", "SELL"));
+    this.source = PortfolioSnapshotCache.Source.of("res/users/test.db#user/flexible/p", 3, 3);
+  }
+
+  @Test
+  public void columnsTest() {
+    TransactionTable table = TransactionTable.load(this.portfolio, this.source);
+    assertEquals(3, table.size());
+    assertEquals(2, table.stockCount());
+    assertEquals("GOOG", table.getStockSymbol(table.getStockId(2)));
+    assertEquals(1, table.findStockId("AAPL"));
+    assertEquals(-1, table.findStockId("MSFT"));
+    assertEquals(EpochDays.parse("2022-10-04"), table.getDay(1));
+    assertEquals(10, table.getQuantity(0), 0);
+    assertEquals(100.5, table.getPrice(0), 0);
+    assertTrue(Double.isNaN(table.getPrice(2)));
+    assertEquals(1.5, table.getCommission(1), 0);
+    assertEquals(TransactionTable.BUY, table.getOperation(0));
+    assertEquals(TransactionTable.SELL, table.getOperation(2));
+  }
+
+  @Test
+  public void unchangedPortfolioTest() {
+    TransactionTable table = TransactionTable.load(this.portfolio, this.source);
+    assertSame(table, TransactionTable.of(this.portfolio));
+    assertSame(this.source, TransactionTable.of(this.portfolio).getSource());
+  }
+
+  @Test
+  public void notLoadedTest() {
+    TransactionTable table = TransactionTable.of(this.portfolio);
+    assertNull(table.getSource());
+    assertSame(table, TransactionTable.of(this.portfolio));
+  }
+
+  @Test
+  public void appendTest() {
+    TransactionTable table = TransactionTable.load(this.portfolio, this.source);
+    this.portfolio.add(transaction("MSFT", "2022-10-06", "1", "250", "1.5", "BUY"));
+    TransactionTable rebuilt = TransactionTable.of(this.portfolio);
+    assertNotSame(table, rebuilt);
+    assertNull(rebuilt.getSource());
+    assertEquals(4, rebuilt.size());
+    assertEquals(3, rebuilt.stockCount());
+  }
+
+  @Test
+  public void setTest() {
+    TransactionTable table = TransactionTable.load(this.portfolio, this.source);
+    this.portfolio.set(1, transaction("AAPL", "2022-10-04", "5", "150", "1.5", "BUY"));
+    TransactionTable rebuilt = TransactionTable.of(this.portfolio);
+    assertNotSame(table, rebuilt);
+    assertNull(rebuilt.getSource());
+    assertEquals(5, rebuilt.getQuantity(1), 0);
+  }
+
+  @Test
+  public void editInPlaceTest() {
+    TransactionTable table = TransactionTable.load(this.portfolio, this.source);
+    ((JSONObject) this.portfolio.get(0)).put("quantity", "12");
+    TransactionTable rebuilt = TransactionTable.of(this.portfolio);
+    assertNotSame(table, rebuilt);
+    assertNull(rebuilt.getSource());
+    assertEquals(12, rebuilt.getQuantity(0), 0);
+    assertSame(rebuilt, TransactionTable.of(this.portfolio));
+  }
+
+  @Test
+  public void editToEqualValueTest() {
+    TransactionTable table = TransactionTable.load(this.portfolio, this.source);
+    ((JSONObject) this.portfolio.get(2)).put("operation", new String("SELL"));
+    assertNotSame(table, TransactionTable.of(this.portfolio));
+  }
+
+  @Test
+  public void reloadTest() {
+    TransactionTable.load(this.portfolio, this.source);
+    ((JSONObject) this.portfolio.get(0)).put("price", "101");
+    PortfolioSnapshotCache.Source next =
+            PortfolioSnapshotCache.Source.of("res/users/test.db#user/flexible/p", 4, 3);
+    TransactionTable reloaded = TransactionTable.load(this.portfolio, next);
+    assertSame(reloaded, TransactionTable.of(this.portfolio));
+    assertSame(next, reloaded.getSource());
+  }
+}